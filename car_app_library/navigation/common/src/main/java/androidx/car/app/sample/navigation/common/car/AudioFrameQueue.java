@@ -0,0 +1,134 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A bounded queue of audio frames from one producer thread to one consumer thread, without locks.
+ *
+ * <p>The frames are allocated once, and handed back and forth between the threads: the producer
+ * {@link #claim claims} a free frame, fills it and {@link #publish publishes} it, and the consumer
+ * {@link #take takes} it, processes it and {@link #release releases} it. Nothing is allocated
+ * while audio flows.
+ */
+final class AudioFrameQueue {
+    private static final long WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(500);
+
+    /** A buffer of audio samples, and the time they were captured at. */
+    static final class Frame {
+        final byte[] mData;
+        // A view of mData, to hand the frame to channels without wrapping it every time.
+        final ByteBuffer mBuffer;
+        int mSize;
+        long mCaptureNanos;
+
+        Frame(int capacity) {
+            mData = new byte[capacity];
+            mBuffer = ByteBuffer.wrap(mData);
+        }
+
+        /** Returns the samples of this frame as a buffer, from its start to its size. */
+        @NonNull
+        ByteBuffer asBuffer() {
+            mBuffer.clear();
+            mBuffer.limit(mSize);
+            return mBuffer;
+        }
+    }
+
+    private final Frame[] mFrames;
+    private final int mMask;
+
+    // The index of the next frame to publish, only written by the producer.
+    private final AtomicLong mTail = new AtomicLong();
+    // The index of the next frame to take, only written by the consumer.
+    private final AtomicLong mHead = new AtomicLong();
+    private volatile boolean mIsClosed;
+
+    /**
+     * @param capacity  the number of frames, a power of two
+     * @param frameSize the size of each frame, in bytes
+     */
+    AudioFrameQueue(int capacity, int frameSize) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        mFrames = new Frame[capacity];
+        for (int i = 0; i < capacity; i++) {
+            mFrames[i] = new Frame(frameSize);
+        }
+        mMask = capacity - 1;
+    }
+
+    /**
+     * Returns a free frame to fill, or {@code null} if the consumer is too far behind.
+     *
+     * <p>Only called by the producer. The same frame is returned until it is published.
+     */
+    @Nullable
+    Frame claim() {
+        long tail = mTail.get();
+        if (tail - mHead.get() >= mFrames.length) {
+            return null;
+        }
+        return mFrames[(int) (tail & mMask)];
+    }
+
+    /** Hands the claimed frame to the consumer. Only called by the producer. */
+    void publish() {
+        mTail.lazySet(mTail.get() + 1);
+    }
+
+    /** Signals that no more frames will be published. Only called by the producer. */
+    void close() {
+        mIsClosed = true;
+    }
+
+    /**
+     * Returns the next published frame, waiting for it if needed, or {@code null} once the queue
+     * is closed and all its frames are taken.
+     *
+     * <p>Only called by the consumer. The same frame is returned until it is released.
+     */
+    @Nullable
+    Frame take() {
+        while (true) {
+            // Read the flag before polling, so that the frames published before closing are seen.
+            boolean isClosed = mIsClosed;
+            long head = mHead.get();
+            if (head < mTail.get()) {
+                return mFrames[(int) (head & mMask)];
+            }
+            if (isClosed) {
+                return null;
+            }
+            LockSupport.parkNanos(WAIT_NANOS);
+        }
+    }
+
+    /** Hands the taken frame back to the producer. Only called by the consumer. */
+    void release() {
+        mHead.lazySet(mHead.get() + 1);
+    }
+}
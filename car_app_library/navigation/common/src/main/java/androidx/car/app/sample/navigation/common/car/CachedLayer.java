@@ -0,0 +1,85 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.PorterDuff;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * A layer of a surface, drawn into an offscreen bitmap that is kept until the layer changes.
+ *
+ * <p>A frame then only redraws the layers that changed, and composites the bitmaps of the others.
+ */
+@WorkerThread
+final class CachedLayer {
+    /** Draws the content of a layer. */
+    interface Drawer {
+        /** Draws the layer onto the given canvas, which is cleared to transparent. */
+        void draw(@NonNull Canvas canvas);
+    }
+
+    private final Drawer mDrawer;
+    private final Canvas mCanvas = new Canvas();
+    @Nullable
+    private Bitmap mBitmap;
+    private boolean mIsDirty = true;
+
+    CachedLayer(@NonNull Drawer drawer) {
+        mDrawer = drawer;
+    }
+
+    /** Marks the layer to be redrawn by the next {@link #composite}. */
+    void invalidate() {
+        mIsDirty = true;
+    }
+
+    /**
+     * Draws the layer onto the given canvas, after redrawing its bitmap if the layer was
+     * invalidated, or the canvas changed size.
+     */
+    void composite(@NonNull Canvas canvas) {
+        int width = canvas.getWidth();
+        int height = canvas.getHeight();
+        if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+            release();
+            mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            mCanvas.setBitmap(mBitmap);
+            mIsDirty = true;
+        }
+        if (mIsDirty) {
+            mIsDirty = false;
+            mCanvas.drawColor(Color.TRANSPARENT, PorterDuff.Mode.CLEAR);
+            mDrawer.draw(mCanvas);
+        }
+        canvas.drawBitmap(mBitmap, 0, 0, null);
+    }
+
+    /** Frees the bitmap of the layer, the layer is redrawn by the next {@link #composite}. */
+    void release() {
+        if (mBitmap != null) {
+            mCanvas.setBitmap(null);
+            mBitmap.recycle();
+            mBitmap = null;
+        }
+    }
+}
@@ -40,8 +40,12 @@ import androidx.car.app.navigation.model.PlaceListNavigationTemplate;
 import androidx.car.app.sample.navigation.common.R;
 import androidx.car.app.sample.navigation.common.model.DemoScripts;
 import androidx.car.app.sample.navigation.common.model.PlaceInfo;
+import androidx.car.app.sample.navigation.common.model.RouteInstructions;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 /** Screen for showing a list of favorite places. */
@@ -62,6 +66,14 @@ public final class FavoritesScreen extends Screen {
         super(carContext);
         mSettingsAction = settingsAction;
         mSurfaceRenderer = surfaceRenderer;
+        getLifecycle().addObserver(
+                new DefaultLifecycleObserver() {
+                    @Override
+                    public void onStop(@NonNull LifecycleOwner owner) {
+                        // The places are only marked while their list is shown.
+                        mSurfaceRenderer.setMapMarkers(Collections.emptyList());
+                    }
+                });
     }
 
     @NonNull
@@ -70,6 +82,7 @@ public final class FavoritesScreen extends Screen {
         Log.i(TAG, "In FavoritesScreen.onGetTemplate()");
         mSurfaceRenderer.updateMarkerVisibility(
                 /* showMarkers=*/ false, /* numMarkers=*/ 0, /* activeMarker=*/ -1);
+        mSurfaceRenderer.setMapMarkers(getFavorites());
         ItemList.Builder listBuilder = new ItemList.Builder();
 
         for (PlaceInfo place : getFavorites()) {
@@ -86,7 +99,9 @@ public final class FavoritesScreen extends Screen {
                             .setMetadata(
                                     new Metadata.Builder()
                                             .setPlace(
-                                                    new Place.Builder(CarLocation.create(1, 1))
+                                                    new Place.Builder(CarLocation.create(
+                                                            place.getLatitude(),
+                                                            place.getLongitude()))
                                                             .build())
                                             .build())
                             .build());
@@ -112,6 +127,12 @@ public final class FavoritesScreen extends Screen {
     }
 
     private void onRoutePreviewResult(@Nullable Object previewResult) {
+        if (previewResult instanceof RouteInstructions) {
+            // A route was found in the road graph, so drive it instead of the demo route.
+            setResult(previewResult);
+            finish();
+            return;
+        }
         int previewIndex = previewResult == null ? -1 : (int) previewResult;
         if (previewIndex < 0) {
             return;
@@ -131,12 +152,16 @@ public final class FavoritesScreen extends Screen {
         PlaceInfo home =
                 new PlaceInfo(
                         getCarContext().getString(R.string.home_destination_label),
-                        "9 10th Street.");
+                        "9 10th Street.",
+                        /* latitude= */ 47.6101,
+                        /* longitude= */ -122.2015);
         favorites.add(home);
         PlaceInfo work =
                 new PlaceInfo(
                         getCarContext().getString(R.string.work_destination_label),
-                        "2 3rd Street.");
+                        "2 3rd Street.",
+                        /* latitude= */ 47.6769,
+                        /* longitude= */ -122.2060);
         favorites.add(work);
         mFavorites = favorites;
         return mFavorites;
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the frames of a surface take to render, and how many miss their budget.
+ *
+ * <p>Each frame is split into the time to lock the canvas, to draw, and to unlock and post it. The
+ * total times go into a histogram of 1 ms buckets. A frame over the budget is a jank, and each
+ * whole budget it overran is a frame dropped from the display.
+ *
+ * <p>The stats can be drawn over the surface with {@link #drawOverlay}, and read with {@link
+ * #dump}. All methods can be called from any thread.
+ */
+public final class FrameStats {
+    /** The budget of a frame at 60 Hz. */
+    public static final long DEFAULT_FRAME_BUDGET_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    private static final int BUCKET_MILLIS = 1;
+    // The last bucket holds all the frames longer than the others.
+    private static final int BUCKET_COUNT = 64;
+
+    private static final int PHASE_LOCK = 0;
+    private static final int PHASE_DRAW = 1;
+    private static final int PHASE_POST = 2;
+    private static final String[] PHASE_NAMES = {"lock", "draw", "post"};
+
+    private static final int OVERLAY_TEXT_SIZE = 18;
+    private static final int OVERLAY_MARGIN = 8;
+    private static final int OVERLAY_BAR_WIDTH = 3;
+    private static final int OVERLAY_GRAPH_HEIGHT = 40;
+
+    private final long mFrameBudgetNanos;
+    private final int[] mHistogram = new int[BUCKET_COUNT];
+    private final long[] mPhaseTotalNanos = new long[PHASE_NAMES.length];
+    private final long[] mPhaseMaxNanos = new long[PHASE_NAMES.length];
+    private long mFrameCount;
+    private long mJankCount;
+    private long mDroppedFrameCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+    private long mLastNanos;
+
+    private final Paint mBackgroundPaint = new Paint();
+    private final Paint mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mBarPaint = new Paint();
+    private final Paint mJankBarPaint = new Paint();
+    private final Rect mOverlayBounds = new Rect();
+
+    public FrameStats() {
+        this(DEFAULT_FRAME_BUDGET_NANOS);
+    }
+
+    /** @param frameBudgetNanos the time a frame must take at most to keep up with the display */
+    public FrameStats(long frameBudgetNanos) {
+        mFrameBudgetNanos = frameBudgetNanos;
+        mBackgroundPaint.setColor(Color.argb(160, 0, 0, 0));
+        mTextPaint.setColor(Color.WHITE);
+        mTextPaint.setTextSize(OVERLAY_TEXT_SIZE);
+        mBarPaint.setColor(Color.GREEN);
+        mJankBarPaint.setColor(Color.RED);
+    }
+
+    /**
+     * Records a frame.
+     *
+     * @param startNanos  the {@link System#nanoTime} the frame started, before locking the canvas
+     * @param lockedNanos the time the canvas was locked
+     * @param drawnNanos  the time the frame was drawn
+     * @param postedNanos the time the canvas was unlocked and posted
+     */
+    public synchronized void recordFrame(long startNanos, long lockedNanos, long drawnNanos,
+            long postedNanos) {
+        recordPhase(PHASE_LOCK, lockedNanos - startNanos);
+        recordPhase(PHASE_DRAW, drawnNanos - lockedNanos);
+        recordPhase(PHASE_POST, postedNanos - drawnNanos);
+
+        long frameNanos = postedNanos - startNanos;
+        mFrameCount++;
+        mTotalNanos += frameNanos;
+        mMaxNanos = Math.max(mMaxNanos, frameNanos);
+        mLastNanos = frameNanos;
+        int bucket = (int) (TimeUnit.NANOSECONDS.toMillis(frameNanos) / BUCKET_MILLIS);
+        mHistogram[Math.min(bucket, BUCKET_COUNT - 1)]++;
+        if (frameNanos > mFrameBudgetNanos) {
+            mJankCount++;
+            mDroppedFrameCount += (frameNanos - 1) / mFrameBudgetNanos;
+        }
+    }
+
+    /** Returns the number of frames recorded. */
+    public synchronized long getFrameCount() {
+        return mFrameCount;
+    }
+
+    /** Returns the number of frames over the budget. */
+    public synchronized long getJankCount() {
+        return mJankCount;
+    }
+
+    /** Returns the number of display refreshes missed by the frames over the budget. */
+    public synchronized long getDroppedFrameCount() {
+        return mDroppedFrameCount;
+    }
+
+    /**
+     * Returns the time, in milliseconds, that the given percentage of frames took at most, to the
+     * precision of the histogram.
+     */
+    public synchronized int getPercentileMillis(int percent) {
+        long threshold = (mFrameCount * percent + 99) / 100;
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += mHistogram[i];
+            if (count >= threshold && count > 0) {
+                return (i + 1) * BUCKET_MILLIS;
+            }
+        }
+        return 0;
+    }
+
+    /** Clears the stats, e.g. before measuring a scenario. */
+    public synchronized void reset() {
+        Arrays.fill(mHistogram, 0);
+        Arrays.fill(mPhaseTotalNanos, 0);
+        Arrays.fill(mPhaseMaxNanos, 0);
+        mFrameCount = 0;
+        mJankCount = 0;
+        mDroppedFrameCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+        mLastNanos = 0;
+    }
+
+    /** Prints the stats and the histogram of frame times. */
+    public synchronized void dump(@NonNull PrintWriter writer) {
+        writer.println(summary());
+        for (int i = 0; i < PHASE_NAMES.length; i++) {
+            writer.println(String.format(Locale.ROOT, "  %s: avg %.2f ms, max %.2f ms",
+                    PHASE_NAMES[i], averageMillis(mPhaseTotalNanos[i]),
+                    toMillis(mPhaseMaxNanos[i])));
+        }
+        writer.println("  histogram (ms: frames):");
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (mHistogram[i] == 0) {
+                continue;
+            }
+            String bucket = i == BUCKET_COUNT - 1
+                    ? ">=" + i * BUCKET_MILLIS
+                    : i * BUCKET_MILLIS + "-" + (i + 1) * BUCKET_MILLIS;
+            writer.println("    " + bucket + ": " + mHistogram[i]);
+        }
+        writer.flush();
+    }
+
+    @NonNull
+    @Override
+    public synchronized String toString() {
+        return summary();
+    }
+
+    /**
+     * Draws the stats and a graph of the histogram in the top left corner of the given area.
+     */
+    public synchronized void drawOverlay(@NonNull Canvas canvas, @NonNull Rect area) {
+        String times = String.format(Locale.ROOT, "last %.1f ms  avg %.1f ms  p95 %d ms",
+                toMillis(mLastNanos), averageMillis(mTotalNanos), getPercentileMillis(95));
+        String janks = String.format(Locale.ROOT, "jank %d/%d  dropped %d", mJankCount,
+                mFrameCount, mDroppedFrameCount);
+
+        int lineHeight = OVERLAY_TEXT_SIZE + OVERLAY_MARGIN / 2;
+        float contentWidth = Math.max(BUCKET_COUNT * OVERLAY_BAR_WIDTH,
+                Math.max(mTextPaint.measureText(times), mTextPaint.measureText(janks)));
+        int width = (int) Math.ceil(contentWidth) + 2 * OVERLAY_MARGIN;
+        int height = 2 * lineHeight + OVERLAY_GRAPH_HEIGHT + 2 * OVERLAY_MARGIN;
+        mOverlayBounds.set(area.left, area.top, area.left + width, area.top + height);
+        canvas.drawRect(mOverlayBounds, mBackgroundPaint);
+
+        int x = mOverlayBounds.left + OVERLAY_MARGIN;
+        int y = mOverlayBounds.top + OVERLAY_MARGIN + OVERLAY_TEXT_SIZE;
+        canvas.drawText(times, x, y, mTextPaint);
+        canvas.drawText(janks, x, y + lineHeight, mTextPaint);
+
+        int maxCount = 1;
+        for (int count : mHistogram) {
+            maxCount = Math.max(maxCount, count);
+        }
+        int bottom = mOverlayBounds.bottom - OVERLAY_MARGIN;
+        long budgetMillis = TimeUnit.NANOSECONDS.toMillis(mFrameBudgetNanos);
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (mHistogram[i] == 0) {
+                continue;
+            }
+            int barHeight = Math.max(1, mHistogram[i] * OVERLAY_GRAPH_HEIGHT / maxCount);
+            int left = x + i * OVERLAY_BAR_WIDTH;
+            canvas.drawRect(left, bottom - barHeight, left + OVERLAY_BAR_WIDTH - 1, bottom,
+                    i * BUCKET_MILLIS >= budgetMillis ? mJankBarPaint : mBarPaint);
+        }
+    }
+
+    private void recordPhase(int phase, long nanos) {
+        mPhaseTotalNanos[phase] += nanos;
+        mPhaseMaxNanos[phase] = Math.max(mPhaseMaxNanos[phase], nanos);
+    }
+
+    private String summary() {
+        return String.format(Locale.ROOT,
+                "%d frames, avg %.2f ms, p50 %d ms, p95 %d ms, p99 %d ms, max %.2f ms, "
+                        + "jank %d, dropped %d (budget %.2f ms)",
+                mFrameCount, averageMillis(mTotalNanos), getPercentileMillis(50),
+                getPercentileMillis(95), getPercentileMillis(99), toMillis(mMaxNanos),
+                mJankCount, mDroppedFrameCount, toMillis(mFrameBudgetNanos));
+    }
+
+    private double averageMillis(long totalNanos) {
+        return mFrameCount == 0 ? 0 : toMillis(totalNanos) / mFrameCount;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1e6;
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+/**
+ * A {@link VoiceRecognizer} that does not recognize words, and only reports how long each segment
+ * of speech lasted.
+ *
+ * <p>It runs on the device without any service, to try the voice input end to end, and to stand in
+ * for a real recognizer in tests.
+ */
+public final class LocalVoiceRecognizer implements VoiceRecognizer {
+    private int mSampleRate;
+    private long mByteCount;
+    private int mSegmentCount;
+
+    @Override
+    public void beginSegment(int sampleRate) {
+        mSampleRate = sampleRate;
+        mByteCount = 0;
+    }
+
+    @Override
+    public void addSamples(@NonNull ByteBuffer samples) {
+        mByteCount += samples.remaining();
+        samples.position(samples.limit());
+    }
+
+    @Nullable
+    @Override
+    public String endSegment() {
+        mSegmentCount++;
+        double seconds = mByteCount / 2.0 / mSampleRate;
+        return String.format(Locale.ROOT, "Speech #%d, %.1f s", mSegmentCount, seconds);
+    }
+
+    @Override
+    public void cancelSegment() {
+        mByteCount = 0;
+    }
+
+    /** Returns the number of segments recognized so far. */
+    public int getSegmentCount() {
+        return mSegmentCount;
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import androidx.annotation.WorkerThread;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gathers the pan and zoom gestures on the map between frames, so that they are applied once per
+ * frame, and animates flings and zooms.
+ *
+ * <p>Gestures are added from any thread, as the host sends them. Each frame then calls {@link
+ * #advance} with its vsync time, and applies the pan and zoom it returns, so the cost of a frame
+ * does not depend on how many gestures the host sent.
+ */
+final class MapGestureIntegrator {
+    /** The time for a fling to slow down by a factor of e. */
+    private static final float FLING_TIME_CONSTANT_SECONDS = 0.3f;
+    /** The speed a fling stops at, in pixels per second. */
+    private static final float MIN_FLING_VELOCITY = 30f;
+
+    private static final long ZOOM_DURATION_NANOS = TimeUnit.MILLISECONDS.toNanos(250);
+
+    /** The time between frames assumed for the first frame of an animation. */
+    private static final long DEFAULT_FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+    /** The longest time between frames an animation advances by, after a stall. */
+    private static final long MAX_FRAME_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    // The gestures gathered since the last frame.
+    private float mPendingTranslateX;
+    private float mPendingTranslateY;
+    private float mPendingScaleFactor = 1f;
+    private float mFocusX;
+    private float mFocusY;
+
+    // Fling, in pixels per second.
+    private float mVelocityX;
+    private float mVelocityY;
+
+    // Zoom animation, the total factor to zoom by and the part of it applied so far.
+    private boolean mIsZooming;
+    private float mZoomFactor;
+    private float mZoomAppliedFactor;
+    private long mZoomStartNanos;
+
+    // The time of the last frame, or 0 if no animation ran in it.
+    private long mLastFrameNanos;
+
+    // The result of the last call to advance.
+    private float mTranslateX;
+    private float mTranslateY;
+    private float mScaleFactor = 1f;
+
+    /** Adds a pan of the map, which stops a fling. */
+    synchronized void addScroll(float distanceX, float distanceY) {
+        mPendingTranslateX -= distanceX;
+        mPendingTranslateY -= distanceY;
+        mVelocityX = 0;
+        mVelocityY = 0;
+    }
+
+    /** Adds a zoom of the map around the given point. */
+    synchronized void addScale(float focusX, float focusY, float scaleFactor) {
+        mPendingScaleFactor *= scaleFactor;
+        mFocusX = focusX;
+        mFocusY = focusY;
+    }
+
+    /** Starts a fling of the map at the given speed, in pixels per second. */
+    synchronized void fling(float velocityX, float velocityY) {
+        mVelocityX = velocityX;
+        mVelocityY = velocityY;
+    }
+
+    /**
+     * Animates a zoom of the map around the given point, e.g. for the zoom buttons. A zoom started
+     * while another runs continues from where that one would have ended.
+     */
+    synchronized void animateScale(float focusX, float focusY, float scaleFactor) {
+        mZoomFactor = mIsZooming ? mZoomFactor / mZoomAppliedFactor * scaleFactor : scaleFactor;
+        mZoomAppliedFactor = 1f;
+        mZoomStartNanos = 0;
+        mIsZooming = true;
+        mFocusX = focusX;
+        mFocusY = focusY;
+    }
+
+    /** Drops the gestures not applied yet, and stops the animations. */
+    synchronized void stop() {
+        mPendingTranslateX = 0;
+        mPendingTranslateY = 0;
+        mPendingScaleFactor = 1f;
+        mVelocityX = 0;
+        mVelocityY = 0;
+        mIsZooming = false;
+        mLastFrameNanos = 0;
+    }
+
+    /**
+     * Computes the pan and zoom to apply in the frame at the given time, and returns whether there
+     * are any.
+     *
+     * <p>The map is to be scaled by {@link #getScaleFactor} around {@link #getFocusX}, {@link
+     * #getFocusY} first, then translated by {@link #getTranslateX}, {@link #getTranslateY}.
+     */
+    @WorkerThread
+    synchronized boolean advance(long frameTimeNanos) {
+        mTranslateX = mPendingTranslateX;
+        mTranslateY = mPendingTranslateY;
+        mScaleFactor = mPendingScaleFactor;
+        mPendingTranslateX = 0;
+        mPendingTranslateY = 0;
+        mPendingScaleFactor = 1f;
+
+        boolean isFlinging = mVelocityX != 0 || mVelocityY != 0;
+        if (!isFlinging && !mIsZooming) {
+            mLastFrameNanos = 0;
+            return mTranslateX != 0 || mTranslateY != 0 || mScaleFactor != 1f;
+        }
+
+        long frameNanos = mLastFrameNanos == 0
+                ? DEFAULT_FRAME_NANOS
+                : Math.min(Math.max(frameTimeNanos - mLastFrameNanos, 0), MAX_FRAME_NANOS);
+        mLastFrameNanos = frameTimeNanos;
+
+        if (isFlinging) {
+            // The speed decays exponentially, the distance is its integral over the frame.
+            float seconds = frameNanos / 1e9f;
+            float decay = (float) Math.exp(-seconds / FLING_TIME_CONSTANT_SECONDS);
+            mTranslateX += mVelocityX * FLING_TIME_CONSTANT_SECONDS * (1 - decay);
+            mTranslateY += mVelocityY * FLING_TIME_CONSTANT_SECONDS * (1 - decay);
+            mVelocityX *= decay;
+            mVelocityY *= decay;
+            if (Math.hypot(mVelocityX, mVelocityY) < MIN_FLING_VELOCITY) {
+                mVelocityX = 0;
+                mVelocityY = 0;
+            }
+        }
+
+        if (mIsZooming) {
+            if (mZoomStartNanos == 0) {
+                mZoomStartNanos = frameTimeNanos - frameNanos;
+            }
+            float progress = Math.min(1f,
+                    (float) (frameTimeNanos - mZoomStartNanos) / ZOOM_DURATION_NANOS);
+            // Decelerate, so that the zoom starts at once and settles smoothly.
+            float eased = 1 - (1 - progress) * (1 - progress);
+            float factor = (float) Math.pow(mZoomFactor, eased);
+            mScaleFactor *= factor / mZoomAppliedFactor;
+            mZoomAppliedFactor = factor;
+            if (progress >= 1f) {
+                mIsZooming = false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns whether a fling or zoom is still running, and needs another frame. */
+    synchronized boolean isAnimating() {
+        return mVelocityX != 0 || mVelocityY != 0 || mIsZooming;
+    }
+
+    synchronized float getTranslateX() {
+        return mTranslateX;
+    }
+
+    synchronized float getTranslateY() {
+        return mTranslateY;
+    }
+
+    synchronized float getScaleFactor() {
+        return mScaleFactor;
+    }
+
+    synchronized float getFocusX() {
+        return mFocusX;
+    }
+
+    synchronized float getFocusY() {
+        return mFocusY;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Paint.Align;
+import android.graphics.Paint.Style;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+/**
+ * Draws markers on the map, grouping the markers that are close to each other at the current zoom
+ * into clusters that show how many markers they hold.
+ *
+ * <p>Markers are indexed in a pyramid of grids over the map: level {@code n} has cells of {@code
+ * 4 * 2^n} map pixels, each holding the number of markers in it and the sum of their positions.
+ * A frame draws the level whose cells are about {@link #CLUSTER_SIZE_PX} on the canvas, and only
+ * visits the cells in the area drawn. A cell with one marker draws it, and a cell with more draws a
+ * cluster at their centroid. The cost of a frame thus depends on the size of the area, not on the
+ * number of markers.
+ */
+final class MapMarkerLayer {
+    /** The size on the canvas below which markers are grouped into a cluster. */
+    static final int CLUSTER_SIZE_PX = 48;
+
+    private static final int BASE_CELL_SIZE = 4;
+    private static final int MAX_LEVEL = 10;
+
+    private static final float MARKER_RADIUS = 6;
+    private static final float MIN_CLUSTER_RADIUS = 12;
+    private static final float CLUSTER_TEXT_SIZE = 16;
+
+    /** The markers indexed at every level, replaced as a whole when the markers change. */
+    static final class Index {
+        final int mLevelCount;
+        final int[] mColumns;
+        final int[] mRows;
+        final int[][] mCounts;
+        final float[][] mSumX;
+        final float[][] mSumY;
+
+        Index(float[] positions, int count, int mapWidth, int mapHeight) {
+            int levelCount = 1;
+            while (levelCount <= MAX_LEVEL
+                    && (BASE_CELL_SIZE << (levelCount - 1)) < Math.max(mapWidth, mapHeight)) {
+                levelCount++;
+            }
+            mLevelCount = levelCount;
+            mColumns = new int[levelCount];
+            mRows = new int[levelCount];
+            mCounts = new int[levelCount][];
+            mSumX = new float[levelCount][];
+            mSumY = new float[levelCount][];
+            for (int level = 0; level < levelCount; level++) {
+                int cellSize = BASE_CELL_SIZE << level;
+                mColumns[level] = (mapWidth + cellSize - 1) / cellSize;
+                mRows[level] = (mapHeight + cellSize - 1) / cellSize;
+                int cells = mColumns[level] * mRows[level];
+                mCounts[level] = new int[cells];
+                mSumX[level] = new float[cells];
+                mSumY[level] = new float[cells];
+            }
+
+            for (int i = 0; i < count; i++) {
+                float x = positions[2 * i];
+                float y = positions[2 * i + 1];
+                // Markers off the map are kept in the cells at its edges.
+                int column = clamp((int) (x / BASE_CELL_SIZE), mColumns[0] - 1);
+                int row = clamp((int) (y / BASE_CELL_SIZE), mRows[0] - 1);
+                for (int level = 0; level < levelCount; level++) {
+                    int cell = (row >> level) * mColumns[level] + (column >> level);
+                    mCounts[level][cell]++;
+                    mSumX[level][cell] += x;
+                    mSumY[level][cell] += y;
+                }
+            }
+        }
+
+        private static int clamp(int value, int max) {
+            return Math.max(0, Math.min(max, value));
+        }
+    }
+
+    private final int mMapWidth;
+    private final int mMapHeight;
+    @Nullable
+    private volatile Index mIndex;
+
+    private final Paint mMarkerPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mClusterPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint mClusterTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float[] mMatrixValues = new float[9];
+
+    /**
+     * @param mapWidth  the width of the map the markers are on, in pixels
+     * @param mapHeight the height of the map the markers are on, in pixels
+     */
+    MapMarkerLayer(int mapWidth, int mapHeight) {
+        mMapWidth = mapWidth;
+        mMapHeight = mapHeight;
+
+        mMarkerPaint.setColor(Color.MAGENTA);
+        mMarkerPaint.setStyle(Style.FILL);
+        mClusterPaint.setColor(Color.argb(200, 128, 0, 128));
+        mClusterPaint.setStyle(Style.FILL);
+        mClusterTextPaint.setColor(Color.WHITE);
+        mClusterTextPaint.setTextSize(CLUSTER_TEXT_SIZE);
+        mClusterTextPaint.setTextAlign(Align.CENTER);
+    }
+
+    /**
+     * Sets the markers to draw.
+     *
+     * <p>The markers are indexed on the calling thread, in time proportional to their number.
+     *
+     * @param positions the positions of the markers on the map, as x and y pairs in pixels
+     */
+    void setMarkers(@NonNull float[] positions) {
+        int count = positions.length / 2;
+        mIndex = count == 0 ? null : new Index(positions, count, mMapWidth, mMapHeight);
+    }
+
+    /**
+     * Draws the markers and clusters in the given area.
+     *
+     * @param matrix the transformation of the map on the canvas, which only scales and translates
+     */
+    @WorkerThread
+    void draw(@NonNull Canvas canvas, @NonNull Matrix matrix, @NonNull Rect area) {
+        Index index = mIndex;
+        if (index == null) {
+            return;
+        }
+        matrix.getValues(mMatrixValues);
+        float scale = mMatrixValues[Matrix.MSCALE_X];
+        float translateX = mMatrixValues[Matrix.MTRANS_X];
+        float translateY = mMatrixValues[Matrix.MTRANS_Y];
+        if (scale <= 0) {
+            return;
+        }
+
+        int level = 0;
+        while (level < index.mLevelCount - 1
+                && (BASE_CELL_SIZE << level) * scale < CLUSTER_SIZE_PX) {
+            level++;
+        }
+        int cellSize = BASE_CELL_SIZE << level;
+        int columns = index.mColumns[level];
+        int[] counts = index.mCounts[level];
+        float[] sumX = index.mSumX[level];
+        float[] sumY = index.mSumY[level];
+
+        // One more cell on each side, for the clusters drawn across the edges of the area.
+        float cellSizeOnCanvas = cellSize * scale;
+        int firstColumn = Math.max(0,
+                (int) Math.floor((area.left - translateX) / cellSizeOnCanvas) - 1);
+        int lastColumn = Math.min(columns - 1,
+                (int) Math.floor((area.right - translateX) / cellSizeOnCanvas) + 1);
+        int firstRow = Math.max(0,
+                (int) Math.floor((area.top - translateY) / cellSizeOnCanvas) - 1);
+        int lastRow = Math.min(index.mRows[level] - 1,
+                (int) Math.floor((area.bottom - translateY) / cellSizeOnCanvas) + 1);
+
+        float textOffset = CLUSTER_TEXT_SIZE / 3;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                int cell = row * columns + column;
+                int count = counts[cell];
+                if (count == 0) {
+                    continue;
+                }
+                float x = translateX + sumX[cell] / count * scale;
+                float y = translateY + sumY[cell] / count * scale;
+                if (count == 1) {
+                    if (isInArea(area, x, y, MARKER_RADIUS)) {
+                        canvas.drawCircle(x, y, MARKER_RADIUS, mMarkerPaint);
+                    }
+                    continue;
+                }
+                // Clusters grow with the number of markers they hold, but stay within a cell.
+                float radius = Math.min(CLUSTER_SIZE_PX / 2f,
+                        MIN_CLUSTER_RADIUS + 4 * (float) Math.log10(count));
+                if (isInArea(area, x, y, radius)) {
+                    canvas.drawCircle(x, y, radius, mClusterPaint);
+                    canvas.drawText(Integer.toString(count), x, y + textOffset,
+                            mClusterTextPaint);
+                }
+            }
+        }
+    }
+
+    private static boolean isInArea(Rect area, float x, float y, float radius) {
+        return x + radius >= area.left && x - radius <= area.right
+                && y + radius >= area.top && y - radius <= area.bottom;
+    }
+}
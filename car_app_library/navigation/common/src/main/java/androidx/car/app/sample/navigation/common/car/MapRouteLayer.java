@@ -0,0 +1,280 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Paint.Style;
+import android.graphics.Path;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.Arrays;
+
+/**
+ * Draws a route on the map as a polyline, simplified to the current zoom.
+ *
+ * <p>The route is simplified once with Douglas-Peucker when it is set: each point gets the
+ * tolerance below which it is kept, and level {@code n} keeps the points above a tolerance of
+ * {@code 2^(n - 6)} map pixels. A frame draws the coarsest level whose tolerance is under {@link
+ * #TOLERANCE_PX} on the canvas, so a zoomed out route only draws a few points.
+ *
+ * <p>The points of each level are grouped into chunks with their bounds, so that a frame skips the
+ * chunks outside the area drawn, and only adds the segments in it to a reused {@link Path}.
+ */
+final class MapRouteLayer {
+    /** The largest error on the canvas, in pixels, of the simplified route drawn. */
+    static final float TOLERANCE_PX = 0.75f;
+
+    private static final int LEVEL_COUNT = 12;
+    private static final int FINEST_TOLERANCE_LEVEL = 6;
+    /** The number of segments of a chunk. */
+    private static final int CHUNK_SIZE = 32;
+
+    private static final float ROUTE_WIDTH = 8;
+
+    /** A level of the simplified route. */
+    private static final class Level {
+        final float mTolerance;
+        /** The x and y pairs of the points kept at this level. */
+        final float[] mPoints;
+        /** The left, top, right and bottom bounds of each chunk. */
+        final float[] mChunkBounds;
+
+        Level(float tolerance, float[] points) {
+            mTolerance = tolerance;
+            mPoints = points;
+            int segmentCount = points.length / 2 - 1;
+            int chunkCount = (segmentCount + CHUNK_SIZE - 1) / CHUNK_SIZE;
+            mChunkBounds = new float[4 * chunkCount];
+            for (int chunk = 0; chunk < chunkCount; chunk++) {
+                float left = Float.MAX_VALUE;
+                float top = Float.MAX_VALUE;
+                float right = -Float.MAX_VALUE;
+                float bottom = -Float.MAX_VALUE;
+                int last = Math.min((chunk + 1) * CHUNK_SIZE, segmentCount);
+                for (int i = chunk * CHUNK_SIZE; i <= last; i++) {
+                    left = Math.min(left, points[2 * i]);
+                    top = Math.min(top, points[2 * i + 1]);
+                    right = Math.max(right, points[2 * i]);
+                    bottom = Math.max(bottom, points[2 * i + 1]);
+                }
+                mChunkBounds[4 * chunk] = left;
+                mChunkBounds[4 * chunk + 1] = top;
+                mChunkBounds[4 * chunk + 2] = right;
+                mChunkBounds[4 * chunk + 3] = bottom;
+            }
+        }
+    }
+
+    /** The levels of the route, from the full route to the coarsest, or null if there is none. */
+    @Nullable
+    private volatile Level[] mLevels;
+
+    private final Paint mRoutePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path mPath = new Path();
+    private final float[] mMatrixValues = new float[9];
+
+    MapRouteLayer() {
+        mRoutePaint.setColor(Color.rgb(66, 133, 244));
+        mRoutePaint.setStyle(Style.STROKE);
+        mRoutePaint.setStrokeWidth(ROUTE_WIDTH);
+        mRoutePaint.setStrokeCap(Paint.Cap.ROUND);
+        mRoutePaint.setStrokeJoin(Paint.Join.ROUND);
+    }
+
+    /**
+     * Sets the route to draw, or clears it if it has less than two points.
+     *
+     * <p>The route is simplified on the calling thread, in time proportional to its number of
+     * points times the depth of the simplification.
+     *
+     * @param points the points of the route on the map, as x and y pairs in pixels
+     */
+    void setRoute(@NonNull float[] points) {
+        int count = points.length / 2;
+        if (count < 2) {
+            mLevels = null;
+            return;
+        }
+        float[] tolerances = computeTolerances(points, count);
+
+        Level[] levels = new Level[LEVEL_COUNT];
+        levels[0] = new Level(0, Arrays.copyOf(points, 2 * count));
+        for (int level = 1; level < LEVEL_COUNT; level++) {
+            float tolerance = (float) Math.pow(2, level - FINEST_TOLERANCE_LEVEL);
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                if (tolerances[i] > tolerance) {
+                    kept++;
+                }
+            }
+            if (kept == levels[level - 1].mPoints.length / 2) {
+                // Nothing more is dropped at this tolerance, share the points of the finer level.
+                levels[level] = new Level(tolerance, levels[level - 1].mPoints);
+                continue;
+            }
+            float[] simplified = new float[2 * kept];
+            int j = 0;
+            for (int i = 0; i < count; i++) {
+                if (tolerances[i] > tolerance) {
+                    simplified[j++] = points[2 * i];
+                    simplified[j++] = points[2 * i + 1];
+                }
+            }
+            levels[level] = new Level(tolerance, simplified);
+        }
+        mLevels = levels;
+    }
+
+    /**
+     * Draws the part of the route in the given area.
+     *
+     * @param matrix the transformation of the map on the canvas, which only scales and translates
+     */
+    @WorkerThread
+    void draw(@NonNull Canvas canvas, @NonNull Matrix matrix, @NonNull Rect area) {
+        Level[] levels = mLevels;
+        if (levels == null) {
+            return;
+        }
+        matrix.getValues(mMatrixValues);
+        float scale = mMatrixValues[Matrix.MSCALE_X];
+        float translateX = mMatrixValues[Matrix.MTRANS_X];
+        float translateY = mMatrixValues[Matrix.MTRANS_Y];
+        if (scale <= 0) {
+            return;
+        }
+
+        Level level = levels[0];
+        for (int i = LEVEL_COUNT - 1; i > 0; i--) {
+            if (levels[i].mTolerance * scale <= TOLERANCE_PX) {
+                level = levels[i];
+                break;
+            }
+        }
+
+        // The area in map pixels, grown by the width of the route so that no edge is cut off.
+        float margin = ROUTE_WIDTH / 2;
+        float left = (area.left - margin - translateX) / scale;
+        float top = (area.top - margin - translateY) / scale;
+        float right = (area.right + margin - translateX) / scale;
+        float bottom = (area.bottom + margin - translateY) / scale;
+
+        float[] points = level.mPoints;
+        float[] bounds = level.mChunkBounds;
+        int segmentCount = points.length / 2 - 1;
+        mPath.rewind();
+        boolean isPenDown = false;
+        for (int chunk = 0; 4 * chunk < bounds.length; chunk++) {
+            if (bounds[4 * chunk] > right || bounds[4 * chunk + 2] < left
+                    || bounds[4 * chunk + 1] > bottom || bounds[4 * chunk + 3] < top) {
+                isPenDown = false;
+                continue;
+            }
+            int last = Math.min((chunk + 1) * CHUNK_SIZE, segmentCount);
+            for (int i = chunk * CHUNK_SIZE; i < last; i++) {
+                float x1 = points[2 * i];
+                float y1 = points[2 * i + 1];
+                float x2 = points[2 * i + 2];
+                float y2 = points[2 * i + 3];
+                if (Math.min(x1, x2) > right || Math.max(x1, x2) < left
+                        || Math.min(y1, y2) > bottom || Math.max(y1, y2) < top) {
+                    isPenDown = false;
+                    continue;
+                }
+                // The path is built on the canvas, so that the width of the route does not scale.
+                if (!isPenDown) {
+                    mPath.moveTo(translateX + x1 * scale, translateY + y1 * scale);
+                    isPenDown = true;
+                }
+                mPath.lineTo(translateX + x2 * scale, translateY + y2 * scale);
+            }
+        }
+        if (mPath.isEmpty()) {
+            return;
+        }
+        canvas.save();
+        canvas.clipRect(area);
+        canvas.drawPath(mPath, mRoutePaint);
+        canvas.restore();
+    }
+
+    /**
+     * Returns the tolerance of Douglas-Peucker below which each point is kept, infinite for the
+     * ends of the route.
+     *
+     * <p>A point is given its distance to the segment it splits, capped by the tolerance of the
+     * point that split the enclosing segment, so that keeping the points above a tolerance gives
+     * the same result as simplifying with it.
+     */
+    static float[] computeTolerances(float[] points, int count) {
+        float[] tolerances = new float[count];
+        tolerances[0] = Float.POSITIVE_INFINITY;
+        tolerances[count - 1] = Float.POSITIVE_INFINITY;
+
+        // The segments to split, as first and last point indices, without recursion for long
+        // routes.
+        int[] stack = new int[2 * count];
+        int size = 0;
+        stack[size++] = 0;
+        stack[size++] = count - 1;
+        while (size > 0) {
+            int last = stack[--size];
+            int first = stack[--size];
+            if (last - first < 2) {
+                continue;
+            }
+            int farthest = -1;
+            float maxDistance = -1;
+            for (int i = first + 1; i < last; i++) {
+                float distance = distanceToSegment(points, i, first, last);
+                if (distance > maxDistance) {
+                    maxDistance = distance;
+                    farthest = i;
+                }
+            }
+            tolerances[farthest] = Math.min(maxDistance,
+                    Math.min(tolerances[first], tolerances[last]));
+            stack[size++] = first;
+            stack[size++] = farthest;
+            stack[size++] = farthest;
+            stack[size++] = last;
+        }
+        return tolerances;
+    }
+
+    /** Returns the distance of a point of the route to the segment between two others. */
+    private static float distanceToSegment(float[] points, int point, int first, int last) {
+        float x = points[2 * point];
+        float y = points[2 * point + 1];
+        float x1 = points[2 * first];
+        float y1 = points[2 * first + 1];
+        float dx = points[2 * last] - x1;
+        float dy = points[2 * last + 1] - y1;
+        float lengthSquared = dx * dx + dy * dy;
+        float t = lengthSquared == 0
+                ? 0
+                : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+        return (float) Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+    }
+}
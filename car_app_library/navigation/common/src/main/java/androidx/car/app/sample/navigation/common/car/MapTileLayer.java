@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayDeque;
+
+/**
+ * Draws a map image as a pyramid of tiles, so that the cost of a frame depends on the size of the
+ * area drawn rather than on the size of the map or its zoom.
+ *
+ * <p>Level {@code n} of the pyramid is the map scaled by {@code 2^n}, cut into tiles of {@link
+ * #TILE_SIZE} pixels. Each frame draws the tiles of the level closest above the current zoom that
+ * intersect the area, so they are drawn at most halved. Tiles are cut from the map when first
+ * needed and kept in an LRU cache; a few are cut per frame, and the map itself is drawn where tiles
+ * are still missing, so that zooming does not stall a frame.
+ *
+ * <p>The cache grows to hold the tiles of the area twice, so that the tiles of a frame are never
+ * evicted by the tiles cut in the same frame, and panning or zooming back finds its tiles. If the
+ * memory allowed to the cache cannot even hold the tiles of the area once, no more frames are
+ * requested to cut the missing tiles, as each of them would evict tiles of the area in turn.
+ */
+final class MapTileLayer {
+    static final int TILE_SIZE = 256;
+
+    private static final int MAX_LEVEL = 5;
+    private static final int MAX_TILES_CUT_PER_FRAME = 4;
+    // Bitmaps of evicted tiles kept to cut new tiles into, instead of allocating them.
+    private static final int MAX_RECYCLED_TILES = 4;
+    private static final int TILE_BYTES = TILE_SIZE * TILE_SIZE * 4;
+    // The cache takes at most this fraction of the memory of the app.
+    private static final int MAX_CACHE_MEMORY_DIVISOR = 4;
+
+    private final Bitmap mMap;
+    private final int mMinCacheBytes;
+    private final int mMaxCacheBytes;
+    private final LruCache<Long, Bitmap> mTiles;
+    private final ArrayDeque<Bitmap> mRecycledTiles = new ArrayDeque<>();
+
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private final float[] mMatrixValues = new float[9];
+    private final Matrix mTileMatrix = new Matrix();
+    private final Rect mSource = new Rect();
+    private final Rect mDestination = new Rect();
+
+    /**
+     * @param map           the map image, at level 0
+     * @param minCacheBytes the size of the tiles kept in the cache before it grows to the area
+     */
+    MapTileLayer(@NonNull Bitmap map, int minCacheBytes) {
+        mMap = map;
+        mMinCacheBytes = minCacheBytes;
+        mMaxCacheBytes = (int) Math.max(minCacheBytes, Math.min(Integer.MAX_VALUE,
+                Runtime.getRuntime().maxMemory() / MAX_CACHE_MEMORY_DIVISOR));
+        mTiles = new LruCache<Long, Bitmap>(minCacheBytes) {
+            @Override
+            protected int sizeOf(Long key, Bitmap tile) {
+                return tile.getByteCount();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, Long key, Bitmap oldTile,
+                    @Nullable Bitmap newTile) {
+                // Tiles are drawn to a software canvas, so they are free to reuse once evicted.
+                if (evicted && mRecycledTiles.size() < MAX_RECYCLED_TILES) {
+                    mRecycledTiles.add(oldTile);
+                }
+            }
+        };
+    }
+
+    /**
+     * Draws the tiles of the map that intersect the given area.
+     *
+     * @param matrix the transformation of the map on the canvas, which only scales and translates
+     * @return whether some tiles are still missing, and another frame is needed to draw them
+     */
+    @WorkerThread
+    boolean draw(@NonNull Canvas canvas, @NonNull Matrix matrix, @NonNull Rect area) {
+        matrix.getValues(mMatrixValues);
+        float scale = mMatrixValues[Matrix.MSCALE_X];
+        float translateX = mMatrixValues[Matrix.MTRANS_X];
+        float translateY = mMatrixValues[Matrix.MTRANS_Y];
+        if (scale <= 0) {
+            return false;
+        }
+
+        int level = levelFor(scale);
+        int levelScale = 1 << level;
+        // The size of a tile on the canvas.
+        float tileSize = TILE_SIZE * scale / levelScale;
+        int columns = divideRoundingUp(mMap.getWidth() * levelScale, TILE_SIZE);
+        int rows = divideRoundingUp(mMap.getHeight() * levelScale, TILE_SIZE);
+
+        int firstColumn = Math.max(0, (int) Math.floor((area.left - translateX) / tileSize));
+        int lastColumn = Math.min(columns - 1, (int) ((area.right - translateX) / tileSize));
+        int firstRow = Math.max(0, (int) Math.floor((area.top - translateY) / tileSize));
+        int lastRow = Math.min(rows - 1, (int) ((area.bottom - translateY) / tileSize));
+        boolean canCacheArea = ensureCacheFits(
+                Math.max(0, lastColumn - firstColumn + 1) * Math.max(0, lastRow - firstRow + 1));
+
+        canvas.save();
+        canvas.clipRect(area);
+        int tilesCut = 0;
+        boolean isMissingTiles = false;
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int column = firstColumn; column <= lastColumn; column++) {
+                // Rounded the same way on both sides, so that neighbor tiles leave no seams.
+                mDestination.set(
+                        Math.round(translateX + column * tileSize),
+                        Math.round(translateY + row * tileSize),
+                        Math.round(translateX + (column + 1) * tileSize),
+                        Math.round(translateY + (row + 1) * tileSize));
+
+                long key = keyOf(level, column, row);
+                Bitmap tile = mTiles.get(key);
+                if (tile == null && tilesCut < MAX_TILES_CUT_PER_FRAME) {
+                    tile = cutTile(level, column, row);
+                    mTiles.put(key, tile);
+                    tilesCut++;
+                }
+                if (tile != null) {
+                    canvas.drawBitmap(tile, null, mDestination, mPaint);
+                } else {
+                    drawMapUnder(canvas, levelScale, column, row);
+                    isMissingTiles = true;
+                }
+            }
+        }
+        canvas.restore();
+        return isMissingTiles && canCacheArea;
+    }
+
+    /** Drops all the tiles, e.g. when the map is no longer shown. */
+    void clear() {
+        mTiles.evictAll();
+        mTiles.resize(mMinCacheBytes);
+        mRecycledTiles.clear();
+    }
+
+    /**
+     * Grows the cache to hold the given number of tiles twice, if the memory allows, and returns
+     * whether it holds them at least once.
+     */
+    private boolean ensureCacheFits(int tileCount) {
+        long bytes = (long) tileCount * TILE_BYTES;
+        if (mTiles.maxSize() < 2 * bytes && mTiles.maxSize() < mMaxCacheBytes) {
+            mTiles.resize((int) Math.min(2 * bytes, mMaxCacheBytes));
+        }
+        return bytes <= mTiles.maxSize();
+    }
+
+    private Bitmap cutTile(int level, int column, int row) {
+        Bitmap tile = mRecycledTiles.poll();
+        if (tile == null) {
+            tile = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+        } else {
+            tile.eraseColor(Color.TRANSPARENT);
+        }
+        float levelScale = 1 << level;
+        mTileMatrix.setScale(levelScale, levelScale);
+        mTileMatrix.postTranslate(-column * TILE_SIZE, -row * TILE_SIZE);
+        new Canvas(tile).drawBitmap(mMap, mTileMatrix, mPaint);
+        return tile;
+    }
+
+    /** Draws the part of the map a missing tile covers, scaled from the map itself. */
+    private void drawMapUnder(Canvas canvas, int levelScale, int column, int row) {
+        int tileSizeInMap = TILE_SIZE / levelScale;
+        mSource.set(column * tileSizeInMap, row * tileSizeInMap,
+                Math.min((column + 1) * tileSizeInMap, mMap.getWidth()),
+                Math.min((row + 1) * tileSizeInMap, mMap.getHeight()));
+        // Tiles cover whole pixels of the map, the destination only shrinks at its edges.
+        mDestination.right = mDestination.left + Math.round(
+                mDestination.width() * (float) mSource.width() / tileSizeInMap);
+        mDestination.bottom = mDestination.top + Math.round(
+                mDestination.height() * (float) mSource.height() / tileSizeInMap);
+        canvas.drawBitmap(mMap, mSource, mDestination, mPaint);
+    }
+
+    /** Returns the level of the pyramid to draw at the given scale of the map. */
+    private static int levelFor(float scale) {
+        int level = 0;
+        while (level < MAX_LEVEL && (1 << level) < scale) {
+            level++;
+        }
+        return level;
+    }
+
+    private static long keyOf(int level, int column, int row) {
+        return ((long) level << 48) | ((long) row << 24) | column;
+    }
+
+    private static int divideRoundingUp(int dividend, int divisor) {
+        return (dividend + divisor - 1) / divisor;
+    }
+}
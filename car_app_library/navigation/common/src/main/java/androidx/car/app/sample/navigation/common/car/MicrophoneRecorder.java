@@ -20,7 +20,7 @@ import static android.Manifest.permission.RECORD_AUDIO;
 import static android.media.AudioAttributes.CONTENT_TYPE_MUSIC;
 import static android.media.AudioAttributes.USAGE_ASSISTANCE_NAVIGATION_GUIDANCE;
 import static android.media.AudioFormat.CHANNEL_OUT_MONO;
-import static android.media.AudioFormat.ENCODING_DEFAULT;
+import static android.media.AudioFormat.ENCODING_PCM_16BIT;
 import static android.media.AudioManager.AUDIOFOCUS_REQUEST_GRANTED;
 import static android.os.Build.VERSION.SDK_INT;
 
@@ -36,33 +36,78 @@ import android.media.AudioFormat;
 import android.media.AudioManager;
 import android.media.AudioTrack;
 import android.os.Build.VERSION_CODES;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.annotation.RequiresPermission;
 import androidx.car.app.CarContext;
 import androidx.car.app.CarToast;
 import androidx.car.app.media.CarAudioRecord;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
 
-/** Manages recording the microphone and accessing the stored data from the microphone. */
+/**
+ * Manages recording the microphone and accessing the stored data from the microphone.
+ *
+ * <p>Recording stops by itself once the user stops speaking, and what was said is handed to a
+ * {@link VoiceRecognizer}.
+ */
 public class MicrophoneRecorder {
     private static final String FILE_NAME = "recording.wav";
 
+    private static final String TAG = "MicrophoneRecorder";
+
+    // The number of microphone reads that can wait to be played, about half a second at 16 kHz.
+    private static final int QUEUE_FRAMES = 32;
+    // 16-bit mono samples.
+    private static final int BYTES_PER_FRAME = 2;
+
+    // The number of reads from the microphone gathered before they are written to the file.
+    private static final int CAPTURE_BUFFER_READS = 8;
+
+    private static final long NANOS_PER_MILLI = 1_000_000L;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
     private final CarContext mCarContext;
+    private final VoiceRecognizer mVoiceRecognizer;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean mIsLiveMonitoringEnabled;
 
     public MicrophoneRecorder(@NonNull CarContext carContext) {
+        this(carContext, new LocalVoiceRecognizer());
+    }
+
+    public MicrophoneRecorder(@NonNull CarContext carContext,
+            @NonNull VoiceRecognizer voiceRecognizer) {
         mCarContext = carContext;
+        mVoiceRecognizer = voiceRecognizer;
+    }
+
+    /**
+     * Sets whether the microphone is played through the car speakers while it records, instead
+     * of once the recording is over.
+     *
+     * <p>This is off by default: the car microphone hears the car speakers, so playing it live is
+     * an acoustic feedback loop that howls unless the head unit cancels the echo. For the same
+     * reason, a recording monitored live is not stopped when the user stops speaking, as the
+     * voice detection would take the echo for speech: it lasts until the host stops it.
+     */
+    public void setLiveMonitoringEnabled(boolean isEnabled) {
+        mIsLiveMonitoringEnabled = isEnabled;
     }
 
     /**
-     * Starts recording the car microphone, then plays it back.
+     * Starts recording the car microphone until the user stops speaking, then plays it back.
+     *
+     * @see #setLiveMonitoringEnabled
      */
     public void record() {
         if (mCarContext.checkSelfPermission(RECORD_AUDIO)
@@ -80,64 +125,17 @@ public class MicrophoneRecorder {
         }
         CarAudioRecord record = CarAudioRecord.create(mCarContext);
 
+        boolean isLiveMonitoring = mIsLiveMonitoringEnabled;
         Thread recordingThread =
                 new Thread(
-                        () -> doRecord(record),
+                        () -> doRecord(record, isLiveMonitoring),
                         "AudioRecorder Thread");
         recordingThread.start();
     }
 
     @SuppressLint("ClassVerificationFailure") // runtime check for < API 26
     @RequiresPermission(RECORD_AUDIO)
-    private void play(AudioFocusRequest audioFocusRequest) {
-        if (SDK_INT < VERSION_CODES.O) {
-            return;
-        }
-
-        InputStream inputStream;
-        try {
-            inputStream = mCarContext.openFileInput(FILE_NAME);
-        } catch (FileNotFoundException e) {
-            e.printStackTrace();
-            return;
-        }
-
-        AudioTrack audioTrack = new AudioTrack.Builder()
-                .setAudioAttributes(new AudioAttributes.Builder()
-                        .setUsage(USAGE_ASSISTANCE_NAVIGATION_GUIDANCE)
-                        .setContentType(CONTENT_TYPE_MUSIC)
-                        .build())
-                .setAudioFormat(new AudioFormat.Builder()
-                        .setEncoding(ENCODING_DEFAULT)
-                        .setSampleRate(AUDIO_CONTENT_SAMPLING_RATE)
-                        .setChannelMask(CHANNEL_OUT_MONO)
-                        .build())
-                .setBufferSizeInBytes(AUDIO_CONTENT_BUFFER_SIZE)
-                .build();
-        audioTrack.play();
-        try {
-            while (inputStream.available() > 0) {
-                byte[] audioData = new byte[AUDIO_CONTENT_BUFFER_SIZE];
-                int size = inputStream.read(audioData, 0, audioData.length);
-
-                if (size < 0) {
-                    // End of file
-                    return;
-                }
-                audioTrack.write(audioData, 0, size);
-            }
-        } catch (IOException e) {
-            throw new IllegalStateException(e);
-        }
-        audioTrack.stop();
-        // Abandon the FocusRequest so that user's media can be resumed
-        mCarContext.getSystemService(AudioManager.class).abandonAudioFocusRequest(
-                audioFocusRequest);
-    }
-
-    @SuppressLint("ClassVerificationFailure") // runtime check for < API 26
-    @RequiresPermission(RECORD_AUDIO)
-    private void doRecord(CarAudioRecord record) {
+    private void doRecord(CarAudioRecord record, boolean isLiveMonitoring) {
         if (SDK_INT < VERSION_CODES.O) {
             return;
         }
@@ -165,92 +163,221 @@ public class MicrophoneRecorder {
             return;
         }
 
-        record.startRecording();
+        // The microphone is saved, and maybe played back, while it records: this thread only
+        // moves reads into the queue, and never waits on the consumer.
+        AudioFrameQueue queue = new AudioFrameQueue(QUEUE_FRAMES, AUDIO_CONTENT_BUFFER_SIZE);
+        Thread playbackThread =
+                new Thread(
+                        () -> playAndSave(record, queue, audioFocusRequest, isLiveMonitoring),
+                        "AudioPlayback Thread");
+        playbackThread.start();
 
-        List<Byte> bytes = new ArrayList<>();
-        boolean isRecording = true;
-        while (isRecording) {
-            // gets the voice output from microphone to byte format
-            byte[] bData = new byte[AUDIO_CONTENT_BUFFER_SIZE];
-            int len = record.read(bData, 0, AUDIO_CONTENT_BUFFER_SIZE);
+        record.startRecording();
 
-            if (len > 0) {
-                for (int i = 0; i < len; i++) {
-                    bytes.add(bData[i]);
+        // Reads that find the queue full go here, so that the microphone keeps being drained.
+        byte[] overrunData = new byte[AUDIO_CONTENT_BUFFER_SIZE];
+        int overruns = 0;
+        try {
+            while (true) {
+                AudioFrameQueue.Frame frame = queue.claim();
+                byte[] data = frame != null ? frame.mData : overrunData;
+                // gets the voice output from microphone to byte format
+                int len = record.read(data, 0, AUDIO_CONTENT_BUFFER_SIZE);
+                if (len <= 0) {
+                    break;
                 }
-            } else {
-                isRecording = false;
+                if (frame == null) {
+                    overruns++;
+                    continue;
+                }
+                frame.mSize = len;
+                frame.mCaptureNanos = System.nanoTime();
+                queue.publish();
             }
+        } finally {
+            record.stopRecording();
+            queue.close();
         }
+        if (overruns > 0) {
+            Log.w(TAG, "Dropped " + overruns + " microphone reads, saving fell behind");
+        }
+    }
 
+    /**
+     * Saves the frames of the given queue to the file as they are captured. If live monitoring is
+     * on, the frames are also played as they are captured. If not, the recording is stopped once
+     * the user stops speaking, and the file is played once the recording is over.
+     */
+    @SuppressLint("ClassVerificationFailure") // runtime check for < API 26
+    @RequiresPermission(RECORD_AUDIO)
+    private void playAndSave(CarAudioRecord record, AudioFrameQueue queue,
+            AudioFocusRequest audioFocusRequest, boolean isLiveMonitoring) {
+        if (SDK_INT < VERSION_CODES.O) {
+            return;
+        }
+
+        AudioTrack audioTrack = createAudioTrack();
+        audioTrack.play();
+
+        VoiceActivityDetector detector = new VoiceActivityDetector(AUDIO_CONTENT_SAMPLING_RATE);
+        LatencyStats latency = new LatencyStats();
+        long framesWritten = 0;
+        // Frames are gathered in a buffer reused for the whole recording, and streamed to the
+        // file every CAPTURE_BUFFER_READS reads, rather than with a write to the file per read.
+        ByteBuffer buffer = ByteBuffer.allocate(CAPTURE_BUFFER_READS * AUDIO_CONTENT_BUFFER_SIZE);
         try {
-            OutputStream outputStream = mCarContext.openFileOutput(FILE_NAME, Context.MODE_PRIVATE);
-            addHeader(outputStream, bytes.size());
-            for (Byte b : bytes) {
-                outputStream.write(b);
-            }
+            try (WavFileWriter writer =
+                         new WavFileWriter(
+                                 mCarContext.openFileOutput(FILE_NAME, Context.MODE_PRIVATE)
+                                         .getChannel(),
+                                 AUDIO_CONTENT_SAMPLING_RATE)) {
+                AudioFrameQueue.Frame frame;
+                while ((frame = queue.take()) != null) {
+                    if (isLiveMonitoring) {
+                        audioTrack.write(frame.mData, 0, frame.mSize);
+                        framesWritten += frame.mSize / BYTES_PER_FRAME;
 
-            outputStream.flush();
-            outputStream.close();
+                        // The time the frame waited in the queue, plus the time the audio written
+                        // to the track so far still takes to be heard.
+                        long queuedFrames = framesWritten
+                                - (audioTrack.getPlaybackHeadPosition() & 0xffffffffL);
+                        latency.add(System.nanoTime() - frame.mCaptureNanos
+                                + queuedFrames * NANOS_PER_SECOND / AUDIO_CONTENT_SAMPLING_RATE);
+                    }
+
+                    buffer.put(frame.mData, 0, frame.mSize);
+                    if (buffer.remaining() < AUDIO_CONTENT_BUFFER_SIZE) {
+                        buffer.flip();
+                        writer.write(buffer);
+                        buffer.clear();
+                    }
+                    if (!isLiveMonitoring) {
+                        // Only detected without playback, which the microphone would hear.
+                        recognize(detector, frame, record);
+                    }
+                    queue.release();
+                }
+                buffer.flip();
+                writer.write(buffer);
+                if (detector.isInSpeech()) {
+                    // The recording was stopped while the user was still speaking.
+                    onRecognized(mVoiceRecognizer.endSegment());
+                }
+            }
+            if (isLiveMonitoring) {
+                Log.i(TAG, "Microphone to speaker latency: " + latency);
+            } else {
+                playRecording(audioTrack);
+            }
         } catch (IOException e) {
             throw new IllegalStateException(e);
+        } finally {
+            // Stopping a streaming track plays what was written to it before stopping.
+            audioTrack.stop();
+            audioTrack.release();
+            // Abandon the FocusRequest so that user's media can be resumed
+            mCarContext.getSystemService(AudioManager.class).abandonAudioFocusRequest(
+                    audioFocusRequest);
         }
-        record.stopRecording();
-        play(audioFocusRequest);
     }
 
-    private void addHeader(OutputStream outputStream, int totalAudioLen) throws IOException {
-        int totalDataLen = totalAudioLen + 36;
-        byte[] header = new byte[44];
-        int dataElementSize = 8;
-        long longSampleRate = AUDIO_CONTENT_SAMPLING_RATE;
-
-        // See http://soundfile.sapp.org/doc/WaveFormat/
-        header[0] = 'R';  // RIFF/WAVE header
-        header[1] = 'I';
-        header[2] = 'F';
-        header[3] = 'F';
-        header[4] = (byte) (totalAudioLen & 0xff);
-        header[5] = (byte) ((totalDataLen >> 8) & 0xff);
-        header[6] = (byte) ((totalDataLen >> 16) & 0xff);
-        header[7] = (byte) ((totalDataLen >> 24) & 0xff);
-        header[8] = 'W';
-        header[9] = 'A';
-        header[10] = 'V';
-        header[11] = 'E';
-        header[12] = 'f';  // 'fmt ' chunk
-        header[13] = 'm';
-        header[14] = 't';
-        header[15] = ' ';
-        header[16] = 16;  // 4 bytes: size of 'fmt ' chunk
-        header[17] = 0;
-        header[18] = 0;
-        header[19] = 0;
-        header[20] = 1;  // format = 1 PCM
-        header[21] = 0;
-        header[22] = 1; // Num channels (mono)
-        header[23] = 0;
-        header[24] = (byte) (longSampleRate & 0xff); // sample rate
-        header[25] = (byte) ((longSampleRate >> 8) & 0xff);
-        header[26] = (byte) ((longSampleRate >> 16) & 0xff);
-        header[27] = (byte) ((longSampleRate >> 24) & 0xff);
-        header[28] = (byte) (longSampleRate & 0xff); // byte rate
-        header[29] = (byte) ((longSampleRate >> 8) & 0xff);
-        header[30] = (byte) ((longSampleRate >> 16) & 0xff);
-        header[31] = (byte) ((longSampleRate >> 24) & 0xff);
-        header[32] = 1;  // block align
-        header[33] = 0;
-        header[34] = (byte) (dataElementSize & 0xff);  // bits per sample
-        header[35] = (byte) ((dataElementSize >> 8) & 0xff);
-        header[36] = 'd';
-        header[37] = 'a';
-        header[38] = 't';
-        header[39] = 'a';
-        header[40] = (byte) (totalAudioLen & 0xff);
-        header[41] = (byte) ((totalAudioLen >> 8) & 0xff);
-        header[42] = (byte) ((totalAudioLen >> 16) & 0xff);
-        header[43] = (byte) ((totalAudioLen >> 24) & 0xff);
-
-        outputStream.write(header, 0, 44);
+    /** Writes the audio of the file to the given track. */
+    private void playRecording(AudioTrack audioTrack) throws IOException {
+        try (InputStream in = mCarContext.openFileInput(FILE_NAME)) {
+            byte[] data = new byte[AUDIO_CONTENT_BUFFER_SIZE];
+            long skipped = 0;
+            while (skipped < WavFileWriter.HEADER_SIZE) {
+                long count = in.skip(WavFileWriter.HEADER_SIZE - skipped);
+                if (count <= 0) {
+                    return;
+                }
+                skipped += count;
+            }
+            int size;
+            while ((size = in.read(data, 0, data.length)) > 0) {
+                audioTrack.write(data, 0, size);
+            }
+        }
+    }
+
+    @SuppressLint("ClassVerificationFailure") // runtime check for < API 26
+    private static AudioTrack createAudioTrack() {
+        return new AudioTrack.Builder()
+                .setAudioAttributes(new AudioAttributes.Builder()
+                        .setUsage(USAGE_ASSISTANCE_NAVIGATION_GUIDANCE)
+                        .setContentType(CONTENT_TYPE_MUSIC)
+                        .build())
+                .setAudioFormat(new AudioFormat.Builder()
+                        .setEncoding(ENCODING_PCM_16BIT)
+                        .setSampleRate(AUDIO_CONTENT_SAMPLING_RATE)
+                        .setChannelMask(CHANNEL_OUT_MONO)
+                        .build())
+                .setTransferMode(AudioTrack.MODE_STREAM)
+                .setBufferSizeInBytes(AUDIO_CONTENT_BUFFER_SIZE)
+                .build();
+    }
+
+    /** Feeds the speech in the given frame to the recognizer, and stops the recording after it. */
+    private void recognize(VoiceActivityDetector detector, AudioFrameQueue.Frame frame,
+            CarAudioRecord record) {
+        if (detector.isDone()) {
+            // The recording is stopping, the frames still in the queue are after the speech.
+            return;
+        }
+        switch (detector.process(frame.mData, frame.mSize)) {
+            case VoiceActivityDetector.EVENT_SPEECH_START:
+                mVoiceRecognizer.beginSegment(AUDIO_CONTENT_SAMPLING_RATE);
+                mVoiceRecognizer.addSamples(frame.asBuffer());
+                break;
+            case VoiceActivityDetector.EVENT_SPEECH_END:
+                onRecognized(mVoiceRecognizer.endSegment());
+                record.stopRecording();
+                break;
+            case VoiceActivityDetector.EVENT_SPEECH_DISCARDED:
+                mVoiceRecognizer.cancelSegment();
+                break;
+            case VoiceActivityDetector.EVENT_NO_SPEECH:
+                Log.i(TAG, "No speech heard, stopping the recording");
+                record.stopRecording();
+                break;
+            default:
+                if (detector.isInSpeech()) {
+                    mVoiceRecognizer.addSamples(frame.asBuffer());
+                }
+                break;
+        }
+    }
+
+    private void onRecognized(@Nullable String text) {
+        Log.i(TAG, "Recognized: " + text);
+        if (text == null) {
+            return;
+        }
+        mMainHandler.post(
+                () -> CarToast.makeText(mCarContext, text, CarToast.LENGTH_LONG).show());
+    }
+
+    /** The count, average and maximum of latencies, without keeping each of them. */
+    private static final class LatencyStats {
+        private long mCount;
+        private long mTotalNanos;
+        private long mMaxNanos;
+
+        void add(long nanos) {
+            mCount++;
+            mTotalNanos += nanos;
+            mMaxNanos = Math.max(mMaxNanos, nanos);
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            if (mCount == 0) {
+                return "no frames";
+            }
+            return String.format(Locale.ROOT, "%d frames, average %.1f ms, max %.1f ms", mCount,
+                    mTotalNanos / (double) mCount / NANOS_PER_MILLI,
+                    mMaxNanos / (double) NANOS_PER_MILLI);
+        }
     }
 }
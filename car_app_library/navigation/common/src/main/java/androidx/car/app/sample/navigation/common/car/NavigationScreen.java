@@ -16,6 +16,10 @@
 
 package androidx.car.app.sample.navigation.common.car;
 
+import static androidx.car.app.sample.navigation.common.nav.NavigationState.CHANGE_DESTINATION_TRAVEL_ESTIMATE;
+import static androidx.car.app.sample.navigation.common.nav.NavigationState.CHANGE_SHOULD_SHOW_LANES;
+import static androidx.car.app.sample.navigation.common.nav.NavigationState.CHANGE_STEPS;
+
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.car.app.CarContext;
@@ -25,20 +29,19 @@ import androidx.car.app.model.Action;
 import androidx.car.app.model.ActionStrip;
 import androidx.car.app.model.CarColor;
 import androidx.car.app.model.CarIcon;
-import androidx.car.app.model.Distance;
 import androidx.car.app.model.Template;
-import androidx.car.app.navigation.model.Destination;
 import androidx.car.app.navigation.model.Lane;
 import androidx.car.app.navigation.model.MessageInfo;
+import androidx.car.app.navigation.model.NavigationInfo;
 import androidx.car.app.navigation.model.NavigationTemplate;
 import androidx.car.app.navigation.model.RoutingInfo;
 import androidx.car.app.navigation.model.Step;
 import androidx.car.app.navigation.model.TravelEstimate;
 import androidx.car.app.sample.navigation.common.R;
 import androidx.car.app.sample.navigation.common.model.Instruction;
+import androidx.car.app.sample.navigation.common.nav.NavigationState;
 import androidx.core.graphics.drawable.IconCompat;
 
-import java.util.ArrayList;
 import java.util.List;
 
 /** Simple demo of how to present a trip on the routing screen. */
@@ -55,7 +58,7 @@ public final class NavigationScreen extends Screen {
     /** A listener for navigation start and stop signals. */
     public interface Listener {
         /** Executes the given instructions. */
-        void executeScript(@NonNull List<Instruction> instructions);
+        void executeScript(@NonNull Iterable<Instruction> instructions);
 
         /** Stops navigation. */
         void stopNavigation();
@@ -70,26 +73,14 @@ public final class NavigationScreen extends Screen {
     @NonNull
     private final MicrophoneRecorder mMicrophoneRecorder;
 
-    private boolean mIsNavigating;
-    private boolean mIsRerouting;
-    private boolean mHasArrived;
-
-    @Nullable
-    private List<Destination> mDestinations;
-
-    @Nullable
-    private List<Step> mSteps;
-
-    @Nullable
-    private Distance mStepRemainingDistance;
+    @NonNull
+    private NavigationState mState = NavigationState.IDLE;
 
+    // The parts of the template built from the state, kept until the state they show changes.
     @Nullable
-    private TravelEstimate mDestinationTravelEstimate;
-    private boolean mShouldShowNextStep;
-    private boolean mShouldShowLanes;
-
+    private NavigationInfo mNavigationInfo;
     @Nullable
-    CarIcon mJunctionImage;
+    private Step mCurrentStep;
 
     private boolean mIsInPanMode;
 
@@ -105,28 +96,23 @@ public final class NavigationScreen extends Screen {
         mMicrophoneRecorder = new MicrophoneRecorder(carContext);
     }
 
-    /** Updates the navigation screen with the next instruction. */
-    public void updateTrip(
-            boolean isNavigating,
-            boolean isRerouting,
-            boolean hasArrived,
-            @Nullable List<Destination> destinations,
-            @Nullable List<Step> steps,
-            @Nullable TravelEstimate nextDestinationTravelEstimate,
-            @Nullable Distance nextStepRemainingDistance,
-            boolean shouldShowNextStep,
-            boolean shouldShowLanes,
-            @Nullable CarIcon junctionImage) {
-        mIsNavigating = isNavigating;
-        mIsRerouting = isRerouting;
-        mHasArrived = hasArrived;
-        mDestinations = destinations;
-        mSteps = steps;
-        mStepRemainingDistance = nextStepRemainingDistance;
-        mDestinationTravelEstimate = nextDestinationTravelEstimate;
-        mShouldShowNextStep = shouldShowNextStep;
-        mShouldShowLanes = shouldShowLanes;
-        mJunctionImage = junctionImage;
+    /**
+     * Updates the navigation screen with the given state, rebuilding the parts of the template
+     * that show what changed.
+     */
+    public void updateTrip(@NonNull NavigationState state) {
+        int changes = state.diff(mState);
+        mState = state;
+        if (changes == 0) {
+            return;
+        }
+
+        if ((changes & (CHANGE_STEPS | CHANGE_SHOULD_SHOW_LANES)) != 0) {
+            mCurrentStep = null;
+        }
+        if ((changes & ~CHANGE_DESTINATION_TRAVEL_ESTIMATE) != 0) {
+            mNavigationInfo = null;
+        }
         invalidate();
     }
 
@@ -141,7 +127,7 @@ public final class NavigationScreen extends Screen {
 
         // Set the action strip.
         ActionStrip.Builder actionStripBuilder = new ActionStrip.Builder();
-        if (mIsNavigating) {
+        if (mState.getIsNavigating()) {
             actionStripBuilder.addAction(
                     new Action.Builder()
                             .setIcon(
@@ -161,9 +147,9 @@ public final class NavigationScreen extends Screen {
                         .setIcon(new CarIcon.Builder(
                             IconCompat.createWithResource(getCarContext(),
                                     R.drawable.ic_mic)).build()).setOnClickListener(
-                            mMicrophoneRecorder::record)
+                            this::record)
                         .build());
-        if (mIsNavigating) {
+        if (mState.getIsNavigating()) {
             actionStripBuilder.addAction(
                     new Action.Builder()
                             .setTitle("Stop")
@@ -259,68 +245,79 @@ public final class NavigationScreen extends Screen {
             invalidate();
         });
 
-        if (mIsNavigating) {
-            if (mDestinationTravelEstimate != null) {
-                builder.setDestinationTravelEstimate(mDestinationTravelEstimate);
+        if (mState.getIsNavigating()) {
+            TravelEstimate destinationTravelEstimate = mState.getDestinationTravelEstimate();
+            if (destinationTravelEstimate != null) {
+                builder.setDestinationTravelEstimate(destinationTravelEstimate);
             }
 
-            if (isRerouting()) {
-                builder.setNavigationInfo(new RoutingInfo.Builder().setLoading(true).build());
-            } else if (mHasArrived) {
-
-                MessageInfo messageInfo = new MessageInfo.Builder(
-                        getCarContext().getString(R.string.navigation_arrived)).build();
-                builder.setNavigationInfo(messageInfo);
-            } else {
-                RoutingInfo.Builder info = new RoutingInfo.Builder();
-                Step tmp = mSteps.get(0);
-                Step.Builder currentStep =
-                        new Step.Builder(tmp.getCue().toCharSequence())
-                                .setManeuver(tmp.getManeuver())
-                                .setRoad(tmp.getRoad().toCharSequence());
-                if (mShouldShowLanes) {
-                    for (Lane lane : tmp.getLanes()) {
-                        currentStep.addLane(lane);
-                    }
-                    currentStep.setLanesImage(tmp.getLanesImage());
-                }
-                info.setCurrentStep(currentStep.build(), mStepRemainingDistance);
-                if (mShouldShowNextStep && mSteps.size() > 1) {
-                    info.setNextStep(mSteps.get(1));
-                }
-                if (mJunctionImage != null) {
-                    info.setJunctionImage(mJunctionImage);
-                }
-                builder.setNavigationInfo(info.build());
+            if (mNavigationInfo == null) {
+                mNavigationInfo = buildNavigationInfo();
             }
+            builder.setNavigationInfo(mNavigationInfo);
         }
 
         return builder.build();
     }
 
+    private NavigationInfo buildNavigationInfo() {
+        if (isRerouting()) {
+            return new RoutingInfo.Builder().setLoading(true).build();
+        } else if (mState.getHasArrived()) {
+            return new MessageInfo.Builder(
+                    getCarContext().getString(R.string.navigation_arrived)).build();
+        }
+
+        List<Step> steps = mState.getSteps();
+        RoutingInfo.Builder info = new RoutingInfo.Builder();
+        if (mCurrentStep == null) {
+            Step tmp = steps.get(0);
+            Step.Builder currentStep =
+                    new Step.Builder(tmp.getCue().toCharSequence())
+                            .setManeuver(tmp.getManeuver())
+                            .setRoad(tmp.getRoad().toCharSequence());
+            if (mState.getShouldShowLanes()) {
+                for (Lane lane : tmp.getLanes()) {
+                    currentStep.addLane(lane);
+                }
+                currentStep.setLanesImage(tmp.getLanesImage());
+            }
+            mCurrentStep = currentStep.build();
+        }
+        info.setCurrentStep(mCurrentStep, mState.getStepRemainingDistance());
+        if (mState.getShouldShowNextStep() && steps.size() > 1) {
+            info.setNextStep(steps.get(1));
+        }
+        CarIcon junctionImage = mState.getJunctionImage();
+        if (junctionImage != null) {
+            info.setJunctionImage(junctionImage);
+        }
+        return info.build();
+    }
+
     private boolean isRerouting() {
-        return mIsRerouting || mDestinations == null;
+        return mState.getIsRerouting() || mState.getDestinations() == null;
     }
 
     private void stopNavigation() {
         mListener.stopNavigation();
     }
 
+    private void record() {
+        mMicrophoneRecorder.setLiveMonitoringEnabled(
+                SettingsScreen.isLiveMonitoringEnabled(getCarContext()));
+        mMicrophoneRecorder.record();
+    }
+
     private void openFavorites() {
         getScreenManager()
                 .pushForResult(
                         new FavoritesScreen(getCarContext(), mSettingsAction, mSurfaceRenderer),
                         (obj) -> {
-                            if (obj == null || mIsNavigating) {
+                            if (obj == null || mState.getIsNavigating()) {
                                 return;
                             }
-                            // Need to copy over each element to satisfy Java type safety.
-                            List<?> results = (List<?>) obj;
-                            List<Instruction> instructions = new ArrayList<Instruction>();
-                            for (Object result : results) {
-                                instructions.add((Instruction) result);
-                            }
-                            mListener.executeScript(instructions);
+                            mListener.executeScript(toInstructions(obj));
                         });
     }
 
@@ -330,14 +327,19 @@ public final class NavigationScreen extends Screen {
                         new SearchScreen(getCarContext(), mSettingsAction, mSurfaceRenderer),
                         (obj) -> {
                             if (obj != null) {
-                                // Need to copy over each element to satisfy Java type safety.
-                                List<?> results = (List<?>) obj;
-                                List<Instruction> instructions = new ArrayList<Instruction>();
-                                for (Object result : results) {
-                                    instructions.add((Instruction) result);
-                                }
-                                mListener.executeScript(instructions);
+                                mListener.executeScript(toInstructions(obj));
                             }
                         });
     }
+
+    /**
+     * Returns the instructions of a script returned as a screen result.
+     *
+     * <p>The instructions are not copied, so that a script generated on demand stays so.
+     */
+    @SuppressWarnings("unchecked")
+    @NonNull
+    static Iterable<Instruction> toInstructions(@NonNull Object result) {
+        return (Iterable<Instruction>) result;
+    }
 }
@@ -27,7 +27,9 @@ import android.content.res.Configuration;
 import android.location.Location;
 import android.location.LocationManager;
 import android.net.Uri;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -40,12 +42,11 @@ import androidx.car.app.Session;
 import androidx.car.app.SessionInfo;
 import androidx.car.app.model.Action;
 import androidx.car.app.model.CarIcon;
-import androidx.car.app.model.Distance;
-import androidx.car.app.navigation.model.Destination;
-import androidx.car.app.navigation.model.Step;
-import androidx.car.app.navigation.model.TravelEstimate;
 import androidx.car.app.sample.navigation.common.R;
 import androidx.car.app.sample.navigation.common.model.Instruction;
+import androidx.car.app.sample.navigation.common.model.ScriptScheduler;
+import androidx.car.app.sample.navigation.common.nav.LocationReplayer;
+import androidx.car.app.sample.navigation.common.nav.LocationTrack;
 import androidx.car.app.sample.navigation.common.nav.NavigationService;
 import androidx.core.graphics.drawable.IconCompat;
 import androidx.core.location.LocationListenerCompat;
@@ -54,8 +55,10 @@ import androidx.lifecycle.Lifecycle;
 import androidx.lifecycle.LifecycleObserver;
 import androidx.lifecycle.LifecycleOwner;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /** Session class for the Navigation sample app. */
 class NavigationSession extends Session implements NavigationScreen.Listener {
@@ -64,6 +67,11 @@ class NavigationSession extends Session implements NavigationScreen.Listener {
     static final String URI_SCHEME = "samples";
     static final String URI_HOST = "navigation";
 
+    // Tracks to replay instead of the GPS locations, in the files directory of the app.
+    static final String[] REPLAY_FILE_NAMES = {"replay.gpx", "replay.nmea"};
+    static final double REPLAY_SPEED_FACTOR = 1;
+    static final int REPLAY_RATE_HZ = 10;
+
     @Nullable
     NavigationScreen mNavigationScreen;
 
@@ -78,36 +86,25 @@ class NavigationSession extends Session implements NavigationScreen.Listener {
     Action mSettingsAction;
 
     final NavigationService.Listener mServiceListener =
-            new NavigationService.Listener() {
-                @Override
-                public void navigationStateChanged(
-                        boolean isNavigating,
-                        boolean isRerouting,
-                        boolean hasArrived,
-                        @Nullable List<Destination> destinations,
-                        @Nullable List<Step> steps,
-                        @Nullable TravelEstimate nextDestinationTravelEstimate,
-                        @Nullable Distance nextStepRemainingDistance,
-                        boolean shouldShowNextStep,
-                        boolean shouldShowLanes,
-                        @Nullable CarIcon junctionImage) {
-                    mNavigationScreen.updateTrip(
-                            isNavigating,
-                            isRerouting,
-                            hasArrived,
-                            destinations,
-                            steps,
-                            nextDestinationTravelEstimate,
-                            nextStepRemainingDistance,
-                            shouldShowNextStep,
-                            shouldShowLanes,
-                            junctionImage);
+            state -> mNavigationScreen.updateTrip(state);
+
+    // A listener to periodically update the surface with the location coordinates, and to tell
+    // the service when the car leaves the route.
+    LocationListenerCompat mLocationListener =
+            location -> {
+                mNavigationCarSurface.updateLocationString(getLocationString(location));
+                if (mService != null) {
+                    mService.onLocationChanged(location);
                 }
             };
 
-    // A listener to periodically update the surface with the location coordinates
-    LocationListenerCompat mLocationListener =
-            location -> mNavigationCarSurface.updateLocationString(getLocationString(location));
+    // Replays a recorded track into the location listener, if there is a track to replay.
+    @Nullable
+    LocationReplayer mLocationReplayer;
+
+    // Reads the track to replay, shut down with the session.
+    final ExecutorService mReplayReader =
+            Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "LocationReplay"));
 
     // Monitors the state of the connection to the Navigation service.
     final ServiceConnection mServiceConnection =
@@ -172,6 +169,11 @@ class NavigationSession extends Session implements NavigationScreen.Listener {
                             (LocationManager)
                                     getCarContext().getSystemService(Context.LOCATION_SERVICE);
                     locationManager.removeUpdates(mLocationListener);
+                    mReplayReader.shutdownNow();
+                    if (mLocationReplayer != null) {
+                        mLocationReplayer.stop();
+                        mLocationReplayer = null;
+                    }
                 }
             };
 
@@ -246,13 +248,7 @@ class NavigationSession extends Session implements NavigationScreen.Listener {
                             uri.getQueryParameter("q")),
                     (obj) -> {
                         if (obj != null) {
-                            // Need to copy over each element to satisfy Java type safety.
-                            List<?> results = (List<?>) obj;
-                            List<Instruction> instructions = new ArrayList<Instruction>();
-                            for (Object result : results) {
-                                instructions.add((Instruction) result);
-                            }
-                            executeScript(instructions);
+                            executeScript(NavigationScreen.toInstructions(obj));
                         }
                     });
 
@@ -286,7 +282,7 @@ class NavigationSession extends Session implements NavigationScreen.Listener {
     }
 
     @Override
-    public void executeScript(@NonNull List<Instruction> instructions) {
+    public void executeScript(@NonNull Iterable<Instruction> instructions) {
         if (mService != null) {
             mService.executeInstructions(instructions);
         }
@@ -300,12 +296,67 @@ class NavigationSession extends Session implements NavigationScreen.Listener {
     }
 
     /**
-     * Requests location updates for the navigation surface.
+     * Requests location updates for the navigation surface, from the GPS or from a recorded track
+     * if there is one in the files directory of the app.
      *
      * @throws java.lang.SecurityException if the app does not have the location permission.
      */
-    @SuppressLint("MissingPermission")
     void requestLocationUpdates() {
+        for (String name : REPLAY_FILE_NAMES) {
+            File file = new File(getCarContext().getFilesDir(), name);
+            if (file.exists()) {
+                replayLocations(file);
+                return;
+            }
+        }
+        requestGpsLocationUpdates();
+    }
+
+    /**
+     * Reads the track in the given file in the background, then replays it into the location
+     * listener, or falls back to the GPS if the track cannot be read.
+     *
+     * <p>The track is dropped if the session is destroyed while it is read.
+     */
+    private void replayLocations(@NonNull File file) {
+        Handler handler = new Handler(Looper.getMainLooper());
+        mReplayReader.execute(
+                () -> {
+                    LocationTrack track;
+                    try {
+                        track = LocationTrack.read(file);
+                    } catch (IOException e) {
+                        Log.e(TAG, "Cannot read the track to replay: " + file, e);
+                        handler.post(
+                                () -> {
+                                    if (!isDestroyed()) {
+                                        requestGpsLocationUpdates();
+                                    }
+                                });
+                        return;
+                    }
+                    handler.post(
+                            () -> {
+                                if (isDestroyed()) {
+                                    return;
+                                }
+                                Log.i(TAG, "Replaying " + track.size() + " fixes from " + file);
+                                if (mLocationReplayer != null) {
+                                    mLocationReplayer.stop();
+                                }
+                                mLocationReplayer =
+                                        new LocationReplayer(
+                                                track,
+                                                ScriptScheduler.accelerated(REPLAY_SPEED_FACTOR),
+                                                REPLAY_RATE_HZ,
+                                                mLocationListener);
+                                mLocationReplayer.start();
+                            });
+                });
+    }
+
+    @SuppressLint("MissingPermission")
+    void requestGpsLocationUpdates() {
         LocationManager locationManager =
                 (LocationManager) getCarContext().getSystemService(Context.LOCATION_SERVICE);
         Location location = locationManager.getLastKnownLocation(LocationManager.GPS_PROVIDER);
@@ -317,6 +368,10 @@ class NavigationSession extends Session implements NavigationScreen.Listener {
                 mLocationListener);
     }
 
+    boolean isDestroyed() {
+        return getLifecycle().getCurrentState() == Lifecycle.State.DESTROYED;
+    }
+
     static String getLocationString(@Nullable Location location) {
         if (location == null) {
             return "unknown";
@@ -20,6 +20,7 @@ import android.text.SpannableString;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.car.app.CarContext;
 import androidx.car.app.Screen;
 import androidx.car.app.model.Action;
@@ -31,24 +32,57 @@ import androidx.car.app.model.Row;
 import androidx.car.app.model.Template;
 import androidx.car.app.navigation.model.RoutePreviewNavigationTemplate;
 import androidx.car.app.sample.navigation.common.R;
-
+import androidx.car.app.sample.navigation.common.model.AlternativeRoutes;
+import androidx.car.app.sample.navigation.common.model.DemoRoadGraph;
+import androidx.car.app.sample.navigation.common.model.Route;
+import androidx.car.app.sample.navigation.common.model.RouteInstructions;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.TimeUnit;
 
-/** The route preview screen for the app. */
+/**
+ * The route preview screen for the app.
+ *
+ * <p>The routes shown are searched in the road graph in the app's files, between two demo places,
+ * and each one is added to the list once it is found. The screen then returns the {@link
+ * RouteInstructions} of the route picked. The {@link DemoRoadGraph} is written there on first use,
+ * unless another graph was pushed, e.g. with {@code adb push}. If the graph cannot be written, the
+ * screen shows fixed demo routes, and returns the index of the route picked.
+ */
 public final class RoutePreviewScreen extends Screen {
     private static final String TAG = "NavigationDemo";
 
+    private static final String ROAD_GRAPH_FILE_NAME = "road_graph.bin";
+    private static final int MAX_ROUTE_COUNT = 3;
+
+    private static final String DEMO_DESTINATION_NAME = "Work";
+    private static final String DEMO_DESTINATION_ADDRESS = "747 6th St.";
+
     @NonNull
     private final Action mSettingsAction;
     @NonNull
     private final SurfaceRenderer mSurfaceRenderer;
     @NonNull
     private final List<Row> mRouteRows;
+    // The routes found in the road graph, one per row, or none if the rows are the demo routes.
+    @NonNull
+    private final List<Route> mRoutes = new ArrayList<>();
 
     int mLastSelectedIndex = -1;
 
+    // The route drawn on the map, so that it is only set again when another one is selected.
+    @Nullable
+    private Route mShownRoute;
+
+    // The search of the routes, or null if it is done or the screen shows the demo routes.
+    @Nullable
+    private AlternativeRoutes mAlternativeRoutes;
+
     public RoutePreviewScreen(
             @NonNull CarContext carContext,
             @NonNull Action settingsAction,
@@ -58,30 +92,66 @@ public final class RoutePreviewScreen extends Screen {
         mSurfaceRenderer = surfaceRenderer;
 
         mRouteRows = new ArrayList<>();
-        SpannableString firstRoute = new SpannableString("   \u00b7 Shortest route");
-        firstRoute.setSpan(DurationSpan.create(TimeUnit.HOURS.toSeconds(26)), 0, 1, 0);
-        SpannableString secondRoute = new SpannableString("   \u00b7 Less busy");
-        secondRoute.setSpan(DurationSpan.create(TimeUnit.HOURS.toSeconds(24)), 0, 1, 0);
-        SpannableString thirdRoute = new SpannableString("   \u00b7 HOV friendly");
-        thirdRoute.setSpan(DurationSpan.create(TimeUnit.MINUTES.toSeconds(867)), 0, 1, 0);
 
-        mRouteRows.add(new Row.Builder().setTitle(firstRoute).addText("Via NE 8th Street").build());
-        mRouteRows.add(new Row.Builder().setTitle(secondRoute).addText("Via NE 1st Ave").build());
-        mRouteRows.add(new Row.Builder().setTitle(thirdRoute).addText("Via NE 4th Street").build());
+        File graphFile = new File(carContext.getFilesDir(), ROAD_GRAPH_FILE_NAME);
+        try {
+            DemoRoadGraph.writeIfMissing(graphFile);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot write the demo road graph", e);
+            addDemoRoutes();
+            return;
+        }
+        mAlternativeRoutes = new AlternativeRoutes(graphFile, MAX_ROUTE_COUNT,
+                new AlternativeRoutes.Listener() {
+                    @Override
+                    public void onRouteFound(@NonNull Route route) {
+                        addRoute(route);
+                    }
+
+                    @Override
+                    public void onDone() {
+                        onRoutesDone();
+                    }
+                });
+        mAlternativeRoutes.start(DemoRoadGraph.START_LATITUDE, DemoRoadGraph.START_LONGITUDE,
+                DemoRoadGraph.DESTINATION_LATITUDE, DemoRoadGraph.DESTINATION_LONGITUDE);
+        getLifecycle().addObserver(
+                new DefaultLifecycleObserver() {
+                    @Override
+                    public void onStop(@NonNull LifecycleOwner owner) {
+                        // The route is only drawn while it is previewed.
+                        mSurfaceRenderer.setRoute(null);
+                        mShownRoute = null;
+                    }
+
+                    @Override
+                    public void onDestroy(@NonNull LifecycleOwner owner) {
+                        cancelRoutes();
+                    }
+                });
     }
 
     @NonNull
     @Override
     public Template onGetTemplate() {
         Log.i(TAG, "In RoutePreviewScreen.onGetTemplate()");
-        onRouteSelected(0);
-
-        ItemList.Builder listBuilder = new ItemList.Builder();
-        listBuilder
-                .setOnSelectedListener(this::onRouteSelected)
-                .setOnItemsVisibilityChangedListener(this::onRoutesVisible);
-        for (Row row : mRouteRows) {
-            listBuilder.addItem(row);
+
+        RoutePreviewNavigationTemplate.Builder builder =
+                new RoutePreviewNavigationTemplate.Builder();
+        if (mRouteRows.isEmpty()) {
+            // The first route is still being searched.
+            builder.setLoading(true);
+        } else {
+            onRouteSelected(Math.max(mLastSelectedIndex, 0));
+            ItemList.Builder listBuilder = new ItemList.Builder();
+            listBuilder
+                    .setSelectedIndex(mLastSelectedIndex)
+                    .setOnSelectedListener(this::onRouteSelected)
+                    .setOnItemsVisibilityChangedListener(this::onRoutesVisible);
+            for (Row row : mRouteRows) {
+                listBuilder.addItem(row);
+            }
+            builder.setItemList(listBuilder.build());
         }
 
         Header header = new Header.Builder()
@@ -89,8 +159,7 @@ public final class RoutePreviewScreen extends Screen {
                 .setTitle(getCarContext().getString(R.string.route_preview))
                 .build();
 
-        return new RoutePreviewNavigationTemplate.Builder()
-                .setItemList(listBuilder.build())
+        return builder
                 .setActionStrip(new ActionStrip.Builder().addAction(mSettingsAction).build())
                 .setHeader(header)
                 .setNavigateAction(
@@ -101,12 +170,61 @@ public final class RoutePreviewScreen extends Screen {
                 .build();
     }
 
+    private void addDemoRoutes() {
+        SpannableString firstRoute = new SpannableString("   \u00b7 Shortest route");
+        firstRoute.setSpan(DurationSpan.create(TimeUnit.HOURS.toSeconds(26)), 0, 1, 0);
+        SpannableString secondRoute = new SpannableString("   \u00b7 Less busy");
+        secondRoute.setSpan(DurationSpan.create(TimeUnit.HOURS.toSeconds(24)), 0, 1, 0);
+        SpannableString thirdRoute = new SpannableString("   \u00b7 HOV friendly");
+        thirdRoute.setSpan(DurationSpan.create(TimeUnit.MINUTES.toSeconds(867)), 0, 1, 0);
+
+        mRouteRows.add(new Row.Builder().setTitle(firstRoute).addText("Via NE 8th Street").build());
+        mRouteRows.add(new Row.Builder().setTitle(secondRoute).addText("Via NE 1st Ave").build());
+        mRouteRows.add(new Row.Builder().setTitle(thirdRoute).addText("Via NE 4th Street").build());
+    }
+
+    /** Adds a row for a route found, the fastest one first, and shows it right away. */
+    private void addRoute(@NonNull Route route) {
+        SpannableString title = new SpannableString(
+                mRouteRows.isEmpty() ? "   \u00b7 Fastest route" : "   \u00b7 Alternative route");
+        title.setSpan(DurationSpan.create(
+                TimeUnit.MILLISECONDS.toSeconds(route.getDurationMillis())), 0, 1, 0);
+        Row.Builder row = new Row.Builder().setTitle(title);
+        String roadName = route.getMainRoadName();
+        if (!roadName.isEmpty()) {
+            row.addText("Via " + roadName);
+        }
+        mRouteRows.add(row.build());
+        mRoutes.add(route);
+        invalidate();
+    }
+
+    private void onRoutesDone() {
+        mAlternativeRoutes = null;
+        if (mRouteRows.isEmpty()) {
+            Log.w(TAG, "No route found in the road graph, showing the demo routes");
+            addDemoRoutes();
+            invalidate();
+        }
+    }
+
+    private void cancelRoutes() {
+        if (mAlternativeRoutes != null) {
+            mAlternativeRoutes.cancel();
+            mAlternativeRoutes = null;
+        }
+    }
+
     private void onRouteSelected(int index) {
         mLastSelectedIndex = index;
         mSurfaceRenderer.updateMarkerVisibility(
                 /* showMarkers=*/ true,
                 /* numMarkers=*/ mRouteRows.size(),
                 /* activeMarker=*/ mLastSelectedIndex);
+        if (index < mRoutes.size() && mRoutes.get(index) != mShownRoute) {
+            mShownRoute = mRoutes.get(index);
+            mSurfaceRenderer.setRoute(mShownRoute);
+        }
     }
 
     private void onRoutesVisible(int startIndex, int endIndex) {
@@ -117,7 +235,14 @@ public final class RoutePreviewScreen extends Screen {
     }
 
     private void onNavigate() {
-        setResult(mLastSelectedIndex);
+        // The routes still being searched would not be shown anymore.
+        cancelRoutes();
+        if (mLastSelectedIndex >= 0 && mLastSelectedIndex < mRoutes.size()) {
+            setResult(RouteInstructions.create(getCarContext(), mRoutes.get(mLastSelectedIndex),
+                    DEMO_DESTINATION_NAME, DEMO_DESTINATION_ADDRESS));
+        } else {
+            setResult(mLastSelectedIndex);
+        }
         finish();
     }
 }
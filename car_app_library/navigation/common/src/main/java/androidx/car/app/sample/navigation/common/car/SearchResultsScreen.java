@@ -38,9 +38,21 @@ import androidx.car.app.model.Template;
 import androidx.car.app.navigation.model.PlaceListNavigationTemplate;
 import androidx.car.app.sample.navigation.common.model.DemoScripts;
 import androidx.car.app.sample.navigation.common.model.PlaceInfo;
+import androidx.car.app.sample.navigation.common.model.RouteInstructions;
+import androidx.lifecycle.DefaultLifecycleObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 /** Screen for showing a list of places from a search. */
 public final class SearchResultsScreen extends Screen {
+    // The results are north of the start of the demo routes, as far from it as their distances say.
+    private static final double SEARCH_LATITUDE = 47.6101;
+    private static final double SEARCH_LONGITUDE = -122.2015;
+    private static final double DEGREES_PER_KILOMETER = 0.009;
+
     @NonNull
     private final Action mSettingsAction;
     @NonNull
@@ -57,6 +69,14 @@ public final class SearchResultsScreen extends Screen {
         mSettingsAction = settingsAction;
         mSurfaceRenderer = surfaceRenderer;
         mSearchText = searchText;
+        getLifecycle().addObserver(
+                new DefaultLifecycleObserver() {
+                    @Override
+                    public void onStop(@NonNull LifecycleOwner owner) {
+                        // The places are only marked while their list is shown.
+                        mSurfaceRenderer.setMapMarkers(Collections.emptyList());
+                    }
+                });
     }
 
     @NonNull
@@ -68,11 +88,19 @@ public final class SearchResultsScreen extends Screen {
 
         int numItems = ((int) (Math.random() * 6.0)) + 1;
 
+        List<PlaceInfo> places = new ArrayList<>(numItems);
         for (int i = 0; i < numItems; i++) {
-            PlaceInfo place =
+            places.add(
                     new PlaceInfo(
                             String.format("Result %d", i + 1),
-                            String.format("%d Main Street.", (i + 1) * 10));
+                            String.format("%d Main Street.", (i + 1) * 10),
+                            SEARCH_LATITUDE + (i + 1) * DEGREES_PER_KILOMETER,
+                            SEARCH_LONGITUDE));
+        }
+        mSurfaceRenderer.setMapMarkers(places);
+
+        for (int i = 0; i < numItems; i++) {
+            PlaceInfo place = places.get(i);
 
             SpannableString address = new SpannableString("  \u00b7 " + place.getDisplayAddress());
             DistanceSpan distanceSpan =
@@ -88,7 +116,9 @@ public final class SearchResultsScreen extends Screen {
                             .setMetadata(
                                     new Metadata.Builder()
                                             .setPlace(
-                                                    new Place.Builder(CarLocation.create(1, 1))
+                                                    new Place.Builder(CarLocation.create(
+                                                            place.getLatitude(),
+                                                            place.getLongitude()))
                                                             .build())
                                             .build())
                             .build());
@@ -114,6 +144,12 @@ public final class SearchResultsScreen extends Screen {
     }
 
     private void onRoutePreviewResult(@Nullable Object previewResult) {
+        if (previewResult instanceof RouteInstructions) {
+            // A route was found in the road graph, so drive it instead of the demo route.
+            setResult(previewResult);
+            finish();
+            return;
+        }
         int previewIndex = previewResult == null ? -1 : (int) previewResult;
         if (previewIndex < 0) {
             return;
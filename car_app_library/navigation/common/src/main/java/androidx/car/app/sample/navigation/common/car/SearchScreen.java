@@ -27,6 +27,7 @@ import androidx.car.app.model.SearchTemplate;
 import androidx.car.app.model.SearchTemplate.SearchCallback;
 import androidx.car.app.model.Template;
 import androidx.car.app.sample.navigation.common.model.DemoScripts;
+import androidx.car.app.sample.navigation.common.model.RouteInstructions;
 
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -119,6 +120,12 @@ public final class SearchScreen extends Screen {
     }
 
     private void onRouteSelected(@Nullable Object previewResult) {
+        if (previewResult instanceof RouteInstructions) {
+            // A route was found in the road graph, so drive it instead of the demo route.
+            setResult(previewResult);
+            finish();
+            return;
+        }
         int previewIndex = previewResult == null ? -1 : (int) previewResult;
         if (previewIndex < 0) {
             return;
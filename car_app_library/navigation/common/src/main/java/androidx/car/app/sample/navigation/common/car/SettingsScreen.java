@@ -33,13 +33,23 @@ import androidx.car.app.sample.navigation.common.R;
 
 /** Settings screen demo. */
 public final class SettingsScreen extends Screen {
+    private static final String PREFERENCES_NAME = "SETTINGS";
 
     @NonNull
     final SharedPreferences mSharedPref;
 
     SettingsScreen(@NonNull CarContext carContext) {
         super(carContext);
-        mSharedPref = carContext.getSharedPreferences("SETTINGS", Context.MODE_PRIVATE);
+        mSharedPref = carContext.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Returns whether the microphone is played while it records, see {@link
+     * MicrophoneRecorder#setLiveMonitoringEnabled}.
+     */
+    static boolean isLiveMonitoringEnabled(@NonNull Context context) {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE)
+                .getBoolean(context.getString(R.string.settings_live_monitoring_pref), false);
     }
 
     @NonNull
@@ -70,6 +80,17 @@ public final class SettingsScreen extends Screen {
                 SectionedItemList.create(
                         sectionBBuilder.build(),
                         getCarContext().getString(R.string.settings_section_b_label)));
+
+        ItemList.Builder voiceSectionBuilder = new ItemList.Builder();
+        voiceSectionBuilder.addItem(
+                buildRow(
+                        R.string.settings_live_monitoring_label,
+                        R.string.settings_live_monitoring_pref));
+
+        templateBuilder.addSectionedList(
+                SectionedItemList.create(
+                        voiceSectionBuilder.build(),
+                        getCarContext().getString(R.string.settings_section_voice_label)));
         return templateBuilder
                 .setHeaderAction(Action.BACK)
                 .setTitle(getCarContext().getString(R.string.settings_title))
@@ -27,24 +27,49 @@ import android.graphics.Paint.Style;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.os.Handler;
-import android.os.Looper;
-import android.os.Message;
+import android.os.HandlerThread;
+import android.os.Process;
 import android.util.Log;
+import android.view.Choreographer;
 import android.view.Surface;
 
-import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 import androidx.car.app.AppManager;
 import androidx.car.app.CarContext;
 import androidx.car.app.SurfaceCallback;
 import androidx.car.app.SurfaceContainer;
 import androidx.car.app.sample.navigation.common.R;
+import androidx.car.app.sample.navigation.common.model.PlaceInfo;
+import androidx.car.app.sample.navigation.common.model.RoadGraph;
+import androidx.car.app.sample.navigation.common.model.Route;
 import androidx.lifecycle.DefaultLifecycleObserver;
 import androidx.lifecycle.Lifecycle;
 import androidx.lifecycle.LifecycleOwner;
 
-/** A very simple implementation of a renderer for the app's background surface. */
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A very simple implementation of a renderer for the app's background surface.
+ *
+ * <p>Frames are drawn on a render thread of their own, so that drawing does not compete with the
+ * templates on the main thread. Requests to render are coalesced into at most one pending frame,
+ * which is drawn at the next vsync, so a burst of gestures or updates draws once per refresh.
+ *
+ * <p>The surface is composited from layers that are each cached in a bitmap, and only redrawn when
+ * what they show changes, e.g. a location update only redraws the location text. The markers on
+ * the map and the route are drawn in the map layer, by a {@link MapMarkerLayer} which clusters the
+ * markers and only draws the visible ones, and a {@link MapRouteLayer} which simplifies the route
+ * to the zoom.
+ *
+ * <p>Pan and zoom gestures are gathered by a {@link MapGestureIntegrator} and applied once per
+ * frame, which also animates flings and the zoom buttons.
+ *
+ * <p>The time each frame takes is recorded in a {@link FrameStats}, which can be drawn over the
+ * map with {@link #setShowFrameStats}.
+ */
 public final class SurfaceRenderer implements DefaultLifecycleObserver {
     private static final String TAG = "SurfaceRenderer";
 
@@ -57,9 +82,38 @@ public final class SurfaceRenderer implements DefaultLifecycleObserver {
     /** The scale factor to apply when initializing the background map. */
     private static final float MAP_ENLARGE_FACTOR = 5f;
 
-    /** Looper msg to trigger a frame rendering */
-    private static final int MSG_RENDER_FRAME = 1;
+    /**
+     * The size of the tiles of the background map kept in memory, until the cache grows to the
+     * visible area.
+     */
+    private static final int MAP_TILE_CACHE_BYTES = 16 * 1024 * 1024;
 
+    /**
+     * The area the background map image covers, in degrees. The image is only a picture, so these
+     * place it over the area of the demo places and road graph, with the same aspect ratio.
+     */
+    private static final double MAP_NORTH = 47.685;
+    private static final double MAP_SOUTH = 47.604;
+    private static final double MAP_WEST = -122.28;
+    private static final double MAP_EAST = -122.12;
+
+    /** The background and the map. */
+    private static final int LAYER_MAP = 1;
+    /** The visible area rectangle and the stable area cross-hairs. */
+    private static final int LAYER_AREAS = 1 << 1;
+    private static final int LAYER_MARKERS = 1 << 2;
+    private static final int LAYER_LOCATION = 1 << 3;
+    /** The markers set with {@link #setMapMarkers}, drawn in the map layer. */
+    private static final int LAYER_MAP_MARKERS = 1 << 4;
+    /** The route set with {@link #setRoute}, drawn in the map layer. */
+    private static final int LAYER_ROUTE = 1 << 5;
+    private static final int LAYER_ALL = (1 << 6) - 1;
+
+    private static final int HORIZONTAL_TEXT_MARGIN = 10;
+    private static final int VERTICAL_TEXT_MARGIN_FROM_TOP = 20;
+    private static final int VERTICAL_TEXT_MARGIN_FROM_BOTTOM = 10;
+
+    // Guarded by mSurfaceLock, so that the surface is not released while a frame is drawn to it.
     @Nullable
     Surface mSurface;
     @Nullable
@@ -68,11 +122,15 @@ public final class SurfaceRenderer implements DefaultLifecycleObserver {
     Rect mStableArea;
 
     private final CarContext mCarContext;
+    private final Object mSurfaceLock = new Object();
     private final Paint mLeftInsetPaint = new Paint();
     private final Paint mRightInsetPaint = new Paint();
     private final Paint mCenterPaint = new Paint();
     private final Paint mMarkerPaint = new Paint();
 
+    /** The {@code LAYER_*} bits of the layers to redraw in the next frame. */
+    private int mDirtyLayers = LAYER_ALL;
+
     private boolean mShowMarkers;
     private int mNumMarkers;
     private int mActiveMarker;
@@ -81,6 +139,15 @@ public final class SurfaceRenderer implements DefaultLifecycleObserver {
     /** The bitmap that contains the background map image. */
     private final Bitmap mBackgroundMap;
 
+    /** The tiles the background map is drawn with, only used on the render thread. */
+    private final MapTileLayer mBackgroundMapTiles;
+
+    /** The markers on the background map, drawn on the render thread. */
+    private final MapMarkerLayer mMapMarkers;
+
+    /** The route on the background map, drawn on the render thread. */
+    private final MapRouteLayer mRoute = new MapRouteLayer();
+
     /**
      * The transformation matrix for the background map image, to reflect the result of the user's
      * pan and zoom actions.
@@ -112,14 +179,14 @@ public final class SurfaceRenderer implements DefaultLifecycleObserver {
             new SurfaceCallback() {
                 @Override
                 public void onSurfaceAvailable(@NonNull SurfaceContainer surfaceContainer) {
-                    synchronized (SurfaceRenderer.this) {
+                    synchronized (mSurfaceLock) {
                         Log.i(TAG, "Surface available " + surfaceContainer);
                         if (mSurface != null) {
                             mSurface.release();
                         }
                         mSurface = surfaceContainer.getSurface();
-                        renderFrame();
                     }
+                    invalidate(LAYER_ALL);
                 }
 
                 @Override
@@ -128,7 +195,7 @@ public final class SurfaceRenderer implements DefaultLifecycleObserver {
                         Log.i(TAG, "Visible area changed " + mSurface + ". stableArea: "
                                 + mStableArea + " visibleArea:" + visibleArea);
                         mVisibleArea = visibleArea;
-                        renderFrame();
+                        invalidate(LAYER_ALL);
                     }
                 }
 
@@ -138,54 +205,96 @@ public final class SurfaceRenderer implements DefaultLifecycleObserver {
                         Log.i(TAG, "Stable area changed " + mSurface + ". stableArea: "
                                 + mStableArea + " visibleArea:" + mVisibleArea);
                         mStableArea = stableArea;
-                        renderFrame();
+                        invalidate(LAYER_AREAS | LAYER_MARKERS);
                     }
                 }
 
                 @Override
                 public void onSurfaceDestroyed(@NonNull SurfaceContainer surfaceContainer) {
-                    synchronized (SurfaceRenderer.this) {
+                    // Waits for a frame being drawn, the surface must not be used after returning.
+                    synchronized (mSurfaceLock) {
                         Log.i(TAG, "Surface destroyed");
                         if (mSurface != null) {
                             mSurface.release();
                             mSurface = null;
                         }
                     }
+                    // Free the layers while there is nothing to draw them to.
+                    mRenderHandler.post(mReleaseLayers);
                 }
 
                 @Override
                 public void onScroll(float distanceX, float distanceY) {
-                    synchronized (SurfaceRenderer.this) {
-                        float newBackgroundCenterX = mBackgroundMapCenterX - distanceX;
-                        float newBackgroundCenterY = mBackgroundMapCenterY - distanceY;
-
-                        // If the map stays within the clip bounds, pan the map.
-                        if (mBackgroundMapClipBounds.contains((int) newBackgroundCenterX,
-                                (int) newBackgroundCenterY)) {
-                            mBackgroundMapCenterX = newBackgroundCenterX;
-                            mBackgroundMapCenterY = newBackgroundCenterY;
-                            mBackgroundMapMatrix.postTranslate(-distanceX, -distanceY);
-                            renderFrame();
-                        }
-                    }
+                    mGestures.addScroll(distanceX, distanceY);
+                    renderFrame();
+                }
+
+                @Override
+                public void onFling(float velocityX, float velocityY) {
+                    mGestures.fling(velocityX, velocityY);
+                    renderFrame();
                 }
 
                 @Override
                 public void onScale(float focusX, float focusY, float scaleFactor) {
-                    handleScale(focusX, focusY, scaleFactor);
+                    synchronized (SurfaceRenderer.this) {
+                        mGestures.addScale(resolveFocusX(focusX), resolveFocusY(focusY),
+                                scaleFactor);
+                    }
+                    renderFrame();
                 }
             };
 
-    private Handler mHandler = new Handler(Looper.getMainLooper()) {
-        @Override
-        public void handleMessage(Message msg) {
-            switch (msg.what) {
-                case MSG_RENDER_FRAME:
-                    doRenderFrame();
-            }
+    private final HandlerThread mRenderThread =
+            new HandlerThread("SurfaceRenderer", Process.THREAD_PRIORITY_DISPLAY);
+    private final Handler mRenderHandler;
+
+    private final FrameStats mFrameStats = new FrameStats();
+    private volatile boolean mShowFrameStats;
+
+    private final MapGestureIntegrator mGestures = new MapGestureIntegrator();
+
+    /** Whether a frame is requested and not drawn yet, further requests are coalesced into it. */
+    private final AtomicBoolean mIsFramePending = new AtomicBoolean();
+
+    // Only used on the render thread, where the choreographer is bound to.
+    @Nullable
+    private Choreographer mChoreographer;
+    private final Choreographer.FrameCallback mFrameCallback = frameTimeNanos -> {
+        // Cleared before drawing, so that the changes made while drawing get a frame of their own.
+        mIsFramePending.set(false);
+        applyGestures(frameTimeNanos);
+        doRenderFrame();
+    };
+    private final Runnable mScheduleFrame = () -> {
+        if (mChoreographer == null) {
+            mChoreographer = Choreographer.getInstance();
         }
+        mChoreographer.postFrameCallback(mFrameCallback);
     };
 
+    // A copy of the state drawn by the current frame, only used on the render thread.
+    private final Matrix mFrameMapMatrix = new Matrix();
+    private final Rect mFrameVisibleArea = new Rect();
+    private final Rect mFrameStableArea = new Rect();
+    private final Rect mFrameMapArea = new Rect();
+    private final Rect mFrameStatsArea = new Rect();
+    @Nullable
+    private Rect mFrameVisibleAreaOrNull;
+    @Nullable
+    private Rect mFrameStableAreaOrNull;
+    private boolean mFrameShowMarkers;
+    private int mFrameNumMarkers;
+    private int mFrameActiveMarker;
+    private String mFrameLocationString = "";
+
+    // The layers, from bottom to top, only used on the render thread.
+    private final CachedLayer mMapLayer = new CachedLayer(this::drawMapLayer);
+    private final CachedLayer mAreasLayer = new CachedLayer(this::drawAreasLayer);
+    private final CachedLayer mMarkersLayer = new CachedLayer(this::drawMarkersLayer);
+    private final CachedLayer mLocationLayer = new CachedLayer(this::drawLocationLayer);
+    private final Runnable mReleaseLayers = this::releaseLayers;
+
     public SurfaceRenderer(@NonNull CarContext carContext, @NonNull Lifecycle lifecycle) {
         mCarContext = carContext;
 
@@ -209,6 +318,11 @@ public final class SurfaceRenderer implements DefaultLifecycleObserver {
 
         mBackgroundMap = BitmapFactory.decodeResource(carContext.getResources(),
                 R.drawable.map);
+        mBackgroundMapTiles = new MapTileLayer(mBackgroundMap, MAP_TILE_CACHE_BYTES);
+        mMapMarkers = new MapMarkerLayer(mBackgroundMap.getWidth(), mBackgroundMap.getHeight());
+
+        mRenderThread.start();
+        mRenderHandler = new Handler(mRenderThread.getLooper());
         lifecycle.addObserver(this);
     }
 
@@ -218,112 +332,265 @@ public final class SurfaceRenderer implements DefaultLifecycleObserver {
         mCarContext.getCarService(AppManager.class).setSurfaceCallback(mSurfaceCallback);
     }
 
+    @Override
+    public void onDestroy(@NonNull LifecycleOwner owner) {
+        Log.i(TAG, "SurfaceRenderer destroyed, frames: " + mFrameStats);
+        mRenderHandler.removeCallbacksAndMessages(null);
+        mRenderHandler.post(mReleaseLayers);
+        mRenderThread.quitSafely();
+    }
+
     /** Callback called when the car configuration changes. */
     public void onCarConfigurationChanged() {
-        renderFrame();
+        invalidate(LAYER_ALL);
     }
 
-    /** Handles the map zoom-in and zoom-out events. */
+    /** Handles the map zoom-in and zoom-out events, by animating the zoom. */
     public void handleScale(float focusX, float focusY, float scaleFactor) {
         synchronized (this) {
-            float x = focusX;
-            float y = focusY;
-
-            Rect visibleArea = mVisibleArea;
-            if (visibleArea != null) {
-                // If a focal point value is negative, use the center point of the visible area.
-                if (x < 0) {
-                    x = visibleArea.centerX();
-                }
-                if (y < 0) {
-                    y = visibleArea.centerY();
-                }
-            }
-
-            // If the map stays between the maximum and minimum scale factors, scale the map.
-            float newCumulativeScaleFactor = mCumulativeScaleFactor * scaleFactor;
-            if (newCumulativeScaleFactor > MIN_SCALE_FACTOR
-                    && newCumulativeScaleFactor < MAX_SCALE_FACTOR) {
-                mCumulativeScaleFactor = newCumulativeScaleFactor;
-                mBackgroundMapMatrix.postScale(scaleFactor, scaleFactor, x, y);
-                renderFrame();
-            }
+            mGestures.animateScale(resolveFocusX(focusX), resolveFocusY(focusY), scaleFactor);
         }
+        renderFrame();
     }
 
     /** Handles the map re-centering events. */
     public void handleRecenter() {
-        // Resetting the map matrix will trigger the initialization logic in renderFrame().
-        mBackgroundMapMatrix.reset();
-        renderFrame();
+        mGestures.stop();
+        synchronized (this) {
+            // Resetting the map matrix will trigger the initialization logic in renderFrame().
+            mBackgroundMapMatrix.reset();
+        }
+        invalidate(LAYER_MAP);
     }
 
     /** Updates the markers drawn on the surface. */
     public void updateMarkerVisibility(boolean showMarkers, int numMarkers, int activeMarker) {
-        mShowMarkers = showMarkers;
-        mNumMarkers = numMarkers;
-        mActiveMarker = activeMarker;
-        renderFrame();
+        synchronized (this) {
+            mShowMarkers = showMarkers;
+            mNumMarkers = numMarkers;
+            mActiveMarker = activeMarker;
+        }
+        invalidate(LAYER_MARKERS);
+    }
+
+    /**
+     * Sets the places marked on the map, e.g. search results or favorites, or clears them if the
+     * list is empty.
+     *
+     * <p>Markers close to each other at the current zoom are drawn as a cluster showing their
+     * count, and only the markers in the visible area are drawn, so there can be many of them.
+     */
+    public void setMapMarkers(@NonNull List<PlaceInfo> places) {
+        float[] positions = new float[2 * places.size()];
+        for (int i = 0; i < places.size(); i++) {
+            PlaceInfo place = places.get(i);
+            positions[2 * i] = toMapX(place.getLongitude());
+            positions[2 * i + 1] = toMapY(place.getLatitude());
+        }
+        mMapMarkers.setMarkers(positions);
+        invalidate(LAYER_MAP_MARKERS);
+    }
+
+    /**
+     * Sets the route drawn on the map, or clears it if it is {@code null}.
+     *
+     * <p>The route is simplified for each zoom level when set, and only the part of it in the
+     * visible area is drawn, so long routes stay cheap to draw while zooming.
+     */
+    public void setRoute(@Nullable Route route) {
+        float[] points = new float[route == null ? 0 : 2 * route.getNodeCount()];
+        if (route != null) {
+            RoadGraph graph = route.getGraph();
+            for (int i = 0; i < route.getNodeCount(); i++) {
+                int node = route.getNode(i);
+                points[2 * i] = toMapX(graph.getLongitude(node));
+                points[2 * i + 1] = toMapY(graph.getLatitude(node));
+            }
+        }
+        mRoute.setRoute(points);
+        invalidate(LAYER_ROUTE);
     }
 
     /** Updates the location coordinate string drawn on the surface. */
     public void updateLocationString(@NonNull String locationString) {
-        mLocationString = locationString;
+        synchronized (this) {
+            mLocationString = locationString;
+        }
+        invalidate(LAYER_LOCATION);
+    }
+
+    /** Returns the stats of the frames drawn so far, e.g. to dump them. */
+    @NonNull
+    public FrameStats getFrameStats() {
+        return mFrameStats;
+    }
+
+    /** Sets whether to draw the stats of the frames over the map. */
+    public void setShowFrameStats(boolean showFrameStats) {
+        mShowFrameStats = showFrameStats;
         renderFrame();
     }
 
+    // If a focal point value is negative, use the center point of the visible area.
+    private float resolveFocusX(float focusX) {
+        return focusX < 0 && mVisibleArea != null ? mVisibleArea.centerX() : focusX;
+    }
+
+    private float resolveFocusY(float focusY) {
+        return focusY < 0 && mVisibleArea != null ? mVisibleArea.centerY() : focusY;
+    }
+
+    /** Applies the gestures gathered since the last frame, and keeps animations running. */
+    @WorkerThread
+    private void applyGestures(long frameTimeNanos) {
+        if (mGestures.advance(frameTimeNanos)) {
+            synchronized (this) {
+                scaleMap(mGestures.getFocusX(), mGestures.getFocusY(),
+                        mGestures.getScaleFactor());
+                panMap(mGestures.getTranslateX(), mGestures.getTranslateY());
+                mDirtyLayers |= LAYER_MAP;
+            }
+        }
+        if (mGestures.isAnimating()) {
+            renderFrame();
+        }
+    }
+
+    private void scaleMap(float focusX, float focusY, float scaleFactor) {
+        if (scaleFactor == 1f) {
+            return;
+        }
+        // Keep the map between the maximum and minimum scale factors.
+        float newCumulativeScaleFactor = Math.max(MIN_SCALE_FACTOR,
+                Math.min(MAX_SCALE_FACTOR, mCumulativeScaleFactor * scaleFactor));
+        scaleFactor = newCumulativeScaleFactor / mCumulativeScaleFactor;
+        mCumulativeScaleFactor = newCumulativeScaleFactor;
+        mBackgroundMapMatrix.postScale(scaleFactor, scaleFactor, focusX, focusY);
+    }
+
+    private void panMap(float translateX, float translateY) {
+        if (mBackgroundMapClipBounds.isEmpty() || (translateX == 0 && translateY == 0)) {
+            return;
+        }
+        // Keep the map center within the clip bounds, so that the map does not disappear.
+        float newBackgroundCenterX = Math.max(mBackgroundMapClipBounds.left,
+                Math.min(mBackgroundMapClipBounds.right - 1, mBackgroundMapCenterX + translateX));
+        float newBackgroundCenterY = Math.max(mBackgroundMapClipBounds.top,
+                Math.min(mBackgroundMapClipBounds.bottom - 1, mBackgroundMapCenterY + translateY));
+        mBackgroundMapMatrix.postTranslate(newBackgroundCenterX - mBackgroundMapCenterX,
+                newBackgroundCenterY - mBackgroundMapCenterY);
+        mBackgroundMapCenterX = newBackgroundCenterX;
+        mBackgroundMapCenterY = newBackgroundCenterY;
+    }
+
+    /** Marks the given {@code LAYER_*} bits to be redrawn, and requests a frame. */
+    private void invalidate(int layers) {
+        synchronized (this) {
+            mDirtyLayers |= layers;
+        }
+        renderFrame();
+    }
+
+    /** Requests a frame to be drawn at the next vsync, unless one is already pending. */
     void renderFrame() {
-        mHandler.sendEmptyMessage(MSG_RENDER_FRAME);
+        if (mIsFramePending.compareAndSet(false, true)) {
+            mRenderHandler.post(mScheduleFrame);
+        }
     }
 
-    @MainThread
+    @WorkerThread
     void doRenderFrame() {
-        if (mSurface == null || !mSurface.isValid()) {
-            // Surface is not available, or has been destroyed, skip this frame.
-            return;
+        synchronized (mSurfaceLock) {
+            if (mSurface == null || !mSurface.isValid()) {
+                // Surface is not available, or has been destroyed, skip this frame.
+                return;
+            }
+            long startNanos = System.nanoTime();
+            Canvas canvas = mSurface.lockCanvas(null);
+            long lockedNanos = System.nanoTime();
+            drawFrame(canvas);
+            long drawnNanos = System.nanoTime();
+            mSurface.unlockCanvasAndPost(canvas);
+            mFrameStats.recordFrame(startNanos, lockedNanos, drawnNanos, System.nanoTime());
         }
-        Canvas canvas = mSurface.lockCanvas(null);
+    }
 
-        // Clear the background.
-        canvas.drawColor(mCarContext.isDarkMode() ? Color.DKGRAY : Color.LTGRAY);
+    private void drawFrame(Canvas canvas) {
+        int dirtyLayers;
+        // Copy the state to draw, so that gestures are not blocked while the frame is drawn.
+        synchronized (this) {
+            initBackgroundMap(canvas);
+            mFrameMapMatrix.set(mBackgroundMapMatrix);
+            mFrameVisibleAreaOrNull = copyOf(mVisibleArea, mFrameVisibleArea);
+            mFrameStableAreaOrNull = copyOf(mStableArea, mFrameStableArea);
+            mFrameShowMarkers = mShowMarkers;
+            mFrameNumMarkers = mNumMarkers;
+            mFrameActiveMarker = mActiveMarker;
+            mFrameLocationString = mLocationString;
+            dirtyLayers = mDirtyLayers;
+            mDirtyLayers = 0;
+        }
+        if (mFrameVisibleAreaOrNull != null && mFrameVisibleAreaOrNull.isEmpty()) {
+            // No inset set. The entire area is considered safe to draw.
+            mFrameVisibleAreaOrNull.set(0, 0, canvas.getWidth() - 1, canvas.getHeight() - 1);
+        }
 
-        // Initialize the background map.
-        if (mBackgroundMapMatrix.isIdentity()) {
-            // Enlarge the original image.
-            RectF backgroundRect = new RectF(0, 0, mBackgroundMap.getWidth(),
-                    mBackgroundMap.getHeight());
-            RectF scaledBackgroundRect = new RectF(0, 0,
-                    backgroundRect.width() * MAP_ENLARGE_FACTOR,
-                    backgroundRect.height() * MAP_ENLARGE_FACTOR);
-
-            // Initialize the cumulative scale factor and map center points.
-            mCumulativeScaleFactor = 1f;
-            mBackgroundMapCenterX = scaledBackgroundRect.centerX();
-            mBackgroundMapCenterY = scaledBackgroundRect.centerY();
-
-            // Move to the center of the enlarged map.
-            mBackgroundMapMatrix.setRectToRect(backgroundRect, scaledBackgroundRect,
-                    Matrix.ScaleToFit.FILL);
-            mBackgroundMapMatrix.postTranslate(
-                    -mBackgroundMapCenterX + canvas.getClipBounds().centerX(),
-                    -mBackgroundMapCenterY + canvas.getClipBounds().centerY());
-            scaledBackgroundRect.round(mBackgroundMapClipBounds);
+        // Only draw the map where it is not covered by the templates.
+        if (mFrameVisibleAreaOrNull != null) {
+            mFrameMapArea.set(mFrameVisibleAreaOrNull);
+        } else {
+            canvas.getClipBounds(mFrameMapArea);
         }
-        canvas.drawBitmap(mBackgroundMap, mBackgroundMapMatrix, null);
 
+        // The route and markers move with the map, so they are drawn with it rather than
+        // composited from layers of their own, which would cost full-screen blits on every frame
+        // of a pan.
+        if ((dirtyLayers & (LAYER_MAP | LAYER_ROUTE | LAYER_MAP_MARKERS)) != 0) {
+            mMapLayer.invalidate();
+        }
+        if ((dirtyLayers & LAYER_AREAS) != 0) {
+            mAreasLayer.invalidate();
+        }
+        if ((dirtyLayers & LAYER_MARKERS) != 0) {
+            mMarkersLayer.invalidate();
+        }
+        if ((dirtyLayers & LAYER_LOCATION) != 0) {
+            mLocationLayer.invalidate();
+        }
+        mMapLayer.composite(canvas);
+        mAreasLayer.composite(canvas);
+        mMarkersLayer.composite(canvas);
+        mLocationLayer.composite(canvas);
+
+        if (mShowFrameStats) {
+            // Drawn on every frame, it changes with each of them.
+            if (mFrameVisibleAreaOrNull != null) {
+                mFrameStatsArea.set(mFrameVisibleAreaOrNull);
+            } else {
+                canvas.getClipBounds(mFrameStatsArea);
+            }
+            mFrameStatsArea.offset(HORIZONTAL_TEXT_MARGIN, VERTICAL_TEXT_MARGIN_FROM_TOP * 2);
+            mFrameStats.drawOverlay(canvas, mFrameStatsArea);
+        }
+    }
 
-        final int horizontalTextMargin = 10;
-        final int verticalTextMarginFromTop = 20;
-        final int verticalTextMarginFromBottom = 10;
+    private void drawMapLayer(Canvas canvas) {
+        // Clear the background.
+        canvas.drawColor(mCarContext.isDarkMode() ? Color.DKGRAY : Color.LTGRAY);
 
+        if (mBackgroundMapTiles.draw(canvas, mFrameMapMatrix, mFrameMapArea)) {
+            // Some tiles could not be cut in time for this frame, draw them in the next one.
+            mMapLayer.invalidate();
+            renderFrame();
+        }
+        mRoute.draw(canvas, mFrameMapMatrix, mFrameMapArea);
+        mMapMarkers.draw(canvas, mFrameMapMatrix, mFrameMapArea);
+    }
+
+    private void drawAreasLayer(Canvas canvas) {
         // Draw a rectangle showing the inset.
-        Rect visibleArea = mVisibleArea;
+        Rect visibleArea = mFrameVisibleAreaOrNull;
         if (visibleArea != null) {
-            if (visibleArea.isEmpty()) {
-                // No inset set. The entire area is considered safe to draw.
-                visibleArea.set(0, 0, canvas.getWidth() - 1, canvas.getHeight() - 1);
-            }
-
             canvas.drawRect(visibleArea, mLeftInsetPaint);
             canvas.drawLine(
                     visibleArea.left,
@@ -339,68 +606,134 @@ public final class SurfaceRenderer implements DefaultLifecycleObserver {
                     mLeftInsetPaint);
             canvas.drawText(
                     "(" + visibleArea.left + " , " + visibleArea.top + ")",
-                    visibleArea.left + horizontalTextMargin,
-                    visibleArea.top + verticalTextMarginFromTop,
+                    visibleArea.left + HORIZONTAL_TEXT_MARGIN,
+                    visibleArea.top + VERTICAL_TEXT_MARGIN_FROM_TOP,
                     mLeftInsetPaint);
             canvas.drawText(
                     "(" + visibleArea.right + " , " + visibleArea.bottom + ")",
-                    visibleArea.right - horizontalTextMargin,
-                    visibleArea.bottom - verticalTextMarginFromBottom,
-                    mRightInsetPaint);
-
-            // Draw location on the top right corner of the screen.
-            canvas.drawText(
-                    "(" + mLocationString + ")",
-                    visibleArea.right - horizontalTextMargin,
-                    visibleArea.top + verticalTextMarginFromTop,
+                    visibleArea.right - HORIZONTAL_TEXT_MARGIN,
+                    visibleArea.bottom - VERTICAL_TEXT_MARGIN_FROM_BOTTOM,
                     mRightInsetPaint);
         } else {
             Log.d(TAG, "Visible area not available.");
         }
 
-        if (mStableArea != null) {
+        Rect stableArea = mFrameStableAreaOrNull;
+        if (stableArea != null) {
             // Draw a cross-hairs at the stable center.
             final int lengthPx = 15;
-            int centerX = mStableArea.centerX();
-            int centerY = mStableArea.centerY();
+            int centerX = stableArea.centerX();
+            int centerY = stableArea.centerY();
             canvas.drawLine(centerX - lengthPx, centerY, centerX + lengthPx, centerY, mCenterPaint);
             canvas.drawLine(centerX, centerY - lengthPx, centerX, centerY + lengthPx, mCenterPaint);
             canvas.drawText(
                     "(" + centerX + ", " + centerY + ")",
-                    centerX + horizontalTextMargin,
+                    centerX + HORIZONTAL_TEXT_MARGIN,
                     centerY,
                     mCenterPaint);
         } else {
             Log.d(TAG, "Stable area not available.");
         }
+    }
 
-        if (mShowMarkers) {
-            // Show a set number of markers centered around the midpoint of the stable area. If no
-            // stable area, then use visible area or canvas dimensions. If an active marker is set
-            // draw
-            // a line from the center to that marker.
-            Rect markerArea =
-                    mStableArea != null
-                            ? mStableArea
-                            : (mVisibleArea != null
-                                    ? mVisibleArea
-                                    : new Rect(0, 0, canvas.getWidth() - 1, canvas.getHeight()));
-            int centerX = markerArea.centerX();
-            int centerY = markerArea.centerY();
-            double radius = Math.min(centerX / 2, centerY / 2);
-
-            double circleAngle = 2.0d * Math.PI;
-            double markerpiece = circleAngle / mNumMarkers;
-            for (int i = 0; i < mNumMarkers; i++) {
-                int markerX = centerX + (int) (radius * Math.cos(markerpiece * i));
-                int markerY = centerY + (int) (radius * Math.sin(markerpiece * i));
-                canvas.drawCircle(markerX, markerY, 5, mMarkerPaint);
-                if (i == mActiveMarker) {
-                    canvas.drawLine(centerX, centerY, markerX, markerY, mMarkerPaint);
-                }
+    private void drawMarkersLayer(Canvas canvas) {
+        if (!mFrameShowMarkers) {
+            return;
+        }
+        // Show a set number of markers centered around the midpoint of the stable area. If no
+        // stable area, then use visible area or canvas dimensions. If an active marker is set
+        // draw
+        // a line from the center to that marker.
+        Rect markerArea =
+                mFrameStableAreaOrNull != null
+                        ? mFrameStableAreaOrNull
+                        : (mFrameVisibleAreaOrNull != null
+                                ? mFrameVisibleAreaOrNull
+                                : new Rect(0, 0, canvas.getWidth() - 1, canvas.getHeight()));
+        int centerX = markerArea.centerX();
+        int centerY = markerArea.centerY();
+        double radius = Math.min(centerX / 2, centerY / 2);
+
+        double circleAngle = 2.0d * Math.PI;
+        double markerpiece = circleAngle / mFrameNumMarkers;
+        for (int i = 0; i < mFrameNumMarkers; i++) {
+            int markerX = centerX + (int) (radius * Math.cos(markerpiece * i));
+            int markerY = centerY + (int) (radius * Math.sin(markerpiece * i));
+            canvas.drawCircle(markerX, markerY, 5, mMarkerPaint);
+            if (i == mFrameActiveMarker) {
+                canvas.drawLine(centerX, centerY, markerX, markerY, mMarkerPaint);
             }
         }
+    }
+
+    private void drawLocationLayer(Canvas canvas) {
+        Rect visibleArea = mFrameVisibleAreaOrNull;
+        if (visibleArea == null) {
+            return;
+        }
+        // Draw location on the top right corner of the screen.
+        canvas.drawText(
+                "(" + mFrameLocationString + ")",
+                visibleArea.right - HORIZONTAL_TEXT_MARGIN,
+                visibleArea.top + VERTICAL_TEXT_MARGIN_FROM_TOP,
+                mRightInsetPaint);
+    }
+
+    /** Frees the bitmaps of the layers and the map tiles, they are redrawn by the next frame. */
+    @WorkerThread
+    private void releaseLayers() {
+        mMapLayer.release();
+        mAreasLayer.release();
+        mMarkersLayer.release();
+        mLocationLayer.release();
+        mBackgroundMapTiles.clear();
+    }
+
+    /** Centers the enlarged map on the canvas, when it was never drawn or is recentered. */
+    private void initBackgroundMap(Canvas canvas) {
+        if (!mBackgroundMapMatrix.isIdentity()) {
+            return;
+        }
 
-        mSurface.unlockCanvasAndPost(canvas);
+        // Enlarge the original image.
+        RectF backgroundRect = new RectF(0, 0, mBackgroundMap.getWidth(),
+                mBackgroundMap.getHeight());
+        RectF scaledBackgroundRect = new RectF(0, 0,
+                backgroundRect.width() * MAP_ENLARGE_FACTOR,
+                backgroundRect.height() * MAP_ENLARGE_FACTOR);
+
+        // Initialize the cumulative scale factor and map center points.
+        mCumulativeScaleFactor = 1f;
+        mBackgroundMapCenterX = scaledBackgroundRect.centerX();
+        mBackgroundMapCenterY = scaledBackgroundRect.centerY();
+
+        // Move to the center of the enlarged map.
+        mBackgroundMapMatrix.setRectToRect(backgroundRect, scaledBackgroundRect,
+                Matrix.ScaleToFit.FILL);
+        mBackgroundMapMatrix.postTranslate(
+                -mBackgroundMapCenterX + canvas.getClipBounds().centerX(),
+                -mBackgroundMapCenterY + canvas.getClipBounds().centerY());
+        scaledBackgroundRect.round(mBackgroundMapClipBounds);
+    }
+
+    /** Returns the x position on the background map image of the given longitude. */
+    private float toMapX(double longitude) {
+        return (float) ((longitude - MAP_WEST) / (MAP_EAST - MAP_WEST) * mBackgroundMap.getWidth());
+    }
+
+    /** Returns the y position on the background map image of the given latitude. */
+    private float toMapY(double latitude) {
+        return (float) ((MAP_NORTH - latitude) / (MAP_NORTH - MAP_SOUTH)
+                * mBackgroundMap.getHeight());
+    }
+
+    /** Copies the given area into the given rect, or returns {@code null} if there is none. */
+    @Nullable
+    private static Rect copyOf(@Nullable Rect area, Rect copy) {
+        if (area == null) {
+            return null;
+        }
+        copy.set(area);
+        return copy;
     }
 }
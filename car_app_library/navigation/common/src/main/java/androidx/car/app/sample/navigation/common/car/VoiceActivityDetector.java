@@ -0,0 +1,178 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Finds where speech starts and ends in a stream of 16-bit little-endian mono PCM.
+ *
+ * <p>Each frame is classified by its energy, and by its zero-crossing rate, which keeps the quiet
+ * but noisy sounds of speech such as "s" or "f" within a segment. Both thresholds follow the
+ * background noise, measured on the frames that are not speech, so that the same detector works
+ * with the engine idling or on the highway.
+ *
+ * <p>A segment ends after {@link #TRAILING_SILENCE_MILLIS} without speech, and segments shorter
+ * than {@link #MIN_SPEECH_MILLIS} are discarded as clicks or bumps.
+ */
+final class VoiceActivityDetector {
+    /** Nothing started or ended with the frame. */
+    static final int EVENT_NONE = 0;
+    /** A segment of speech starts with the frame. */
+    static final int EVENT_SPEECH_START = 1;
+    /** The segment of speech ends with the frame. */
+    static final int EVENT_SPEECH_END = 2;
+    /** The segment ends with the frame, but was too short to be speech. */
+    static final int EVENT_SPEECH_DISCARDED = 3;
+    /** Nothing was said for {@link #NO_SPEECH_TIMEOUT_MILLIS}. */
+    static final int EVENT_NO_SPEECH = 4;
+
+    static final int TRAILING_SILENCE_MILLIS = 800;
+    static final int MIN_SPEECH_MILLIS = 150;
+    static final int NO_SPEECH_TIMEOUT_MILLIS = 6000;
+    static final int MAX_SPEECH_MILLIS = 15000;
+
+    // The start of the stream, only used to measure the noise.
+    private static final int CALIBRATION_MILLIS = 200;
+
+    // Speech starts 4 times (6 dB) above the noise, and goes on down to twice (3 dB) the noise.
+    private static final double START_ENERGY_RATIO = 4;
+    private static final double CONTINUE_ENERGY_RATIO = 2;
+    // The lowest energy that is speech, in squared sample units, about -60 dBFS.
+    private static final double MIN_ENERGY = 1000;
+
+    // Fricatives cross zero much more often than the noise, which is mostly low frequencies.
+    private static final double ZERO_CROSSING_RATIO = 1.5;
+    private static final double MIN_ZERO_CROSSING_RATE = 0.15;
+
+    // How fast the noise follows the frames that are not speech, per frame.
+    private static final double NOISE_SMOOTHING = 0.05;
+
+    private final int mSampleRate;
+
+    private double mNoiseEnergy = MIN_ENERGY / START_ENERGY_RATIO;
+    private double mNoiseZeroCrossingRate;
+    private long mSamples;
+    private boolean mIsInSpeech;
+    // Within a segment, the samples since it started, and since the last frame of speech.
+    private long mSpeechSamples;
+    private long mSilenceSamples;
+    private boolean mIsDone;
+
+    /** @param sampleRate the sample rate of the audio, in Hz */
+    VoiceActivityDetector(int sampleRate) {
+        mSampleRate = sampleRate;
+    }
+
+    /**
+     * Classifies the next frame of audio, and returns the {@code EVENT_*} it causes.
+     *
+     * @param data the frame, as 16-bit little-endian samples
+     * @param size the size of the frame in {@code data}, in bytes
+     */
+    int process(@NonNull byte[] data, int size) {
+        int sampleCount = size / 2;
+        if (sampleCount == 0) {
+            return EVENT_NONE;
+        }
+
+        double energy = 0;
+        int zeroCrossings = 0;
+        int previous = 0;
+        for (int i = 0; i < sampleCount; i++) {
+            int sample = (data[2 * i] & 0xff) | (data[2 * i + 1] << 8);
+            energy += (double) sample * sample;
+            if (i > 0 && (sample < 0) != (previous < 0)) {
+                zeroCrossings++;
+            }
+            previous = sample;
+        }
+        energy /= sampleCount;
+        double zeroCrossingRate = (double) zeroCrossings / sampleCount;
+
+        boolean isCalibrating = mSamples < millisToSamples(CALIBRATION_MILLIS);
+        mSamples += sampleCount;
+        if (isCalibrating) {
+            // Follow the noise quickly while it is the only thing heard.
+            updateNoise(energy, zeroCrossingRate, 0.5);
+            return EVENT_NONE;
+        }
+
+        boolean isSpeech;
+        if (mIsInSpeech) {
+            isSpeech = energy > Math.max(mNoiseEnergy * CONTINUE_ENERGY_RATIO, MIN_ENERGY)
+                    || (energy > mNoiseEnergy
+                            && zeroCrossingRate > Math.max(
+                                    mNoiseZeroCrossingRate * ZERO_CROSSING_RATIO,
+                                    MIN_ZERO_CROSSING_RATE));
+        } else {
+            isSpeech = energy > Math.max(mNoiseEnergy * START_ENERGY_RATIO, MIN_ENERGY);
+        }
+        if (!isSpeech) {
+            updateNoise(energy, zeroCrossingRate, NOISE_SMOOTHING);
+        }
+
+        if (!mIsInSpeech) {
+            if (isSpeech) {
+                mIsInSpeech = true;
+                mSpeechSamples = sampleCount;
+                mSilenceSamples = 0;
+                return EVENT_SPEECH_START;
+            }
+            if (mSamples >= millisToSamples(NO_SPEECH_TIMEOUT_MILLIS)) {
+                mIsDone = true;
+                return EVENT_NO_SPEECH;
+            }
+            return EVENT_NONE;
+        }
+
+        mSpeechSamples += sampleCount;
+        mSilenceSamples = isSpeech ? 0 : mSilenceSamples + sampleCount;
+        if (mSilenceSamples >= millisToSamples(TRAILING_SILENCE_MILLIS)
+                || mSpeechSamples >= millisToSamples(MAX_SPEECH_MILLIS)) {
+            mIsInSpeech = false;
+            if (mSpeechSamples - mSilenceSamples < millisToSamples(MIN_SPEECH_MILLIS)) {
+                return EVENT_SPEECH_DISCARDED;
+            }
+            mIsDone = true;
+            return EVENT_SPEECH_END;
+        }
+        return EVENT_NONE;
+    }
+
+    /** Returns whether the last frame processed is within a segment of speech. */
+    boolean isInSpeech() {
+        return mIsInSpeech;
+    }
+
+    /** Returns whether a segment of speech ended, or nothing was said, so capture can stop. */
+    boolean isDone() {
+        return mIsDone;
+    }
+
+    private void updateNoise(double energy, double zeroCrossingRate, double smoothing) {
+        // Drop to quieter noise at once, so that a loud start does not hide the speech after it.
+        mNoiseEnergy = energy < mNoiseEnergy
+                ? energy
+                : mNoiseEnergy + (energy - mNoiseEnergy) * smoothing;
+        mNoiseZeroCrossingRate += (zeroCrossingRate - mNoiseZeroCrossingRate) * smoothing;
+    }
+
+    private long millisToSamples(int millis) {
+        return (long) millis * mSampleRate / 1000;
+    }
+}
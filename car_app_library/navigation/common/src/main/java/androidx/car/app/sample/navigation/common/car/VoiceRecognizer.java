@@ -0,0 +1,54 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Recognizes segments of speech captured by the {@link MicrophoneRecorder}.
+ *
+ * <p>The samples of a segment are streamed to the recognizer as they are captured, between {@link
+ * #beginSegment} and {@link #endSegment} or {@link #cancelSegment}. All the methods are called on
+ * the thread of the recorder that saves the audio, not on the one capturing it, so a slow
+ * recognizer delays the file rather than the microphone reads.
+ */
+public interface VoiceRecognizer {
+    /**
+     * Starts a new segment of speech.
+     *
+     * @param sampleRate the sample rate of the 16-bit mono samples of the segment, in Hz
+     */
+    @WorkerThread
+    void beginSegment(int sampleRate);
+
+    /** Adds the remaining samples of the given buffer to the segment. */
+    @WorkerThread
+    void addSamples(@NonNull ByteBuffer samples);
+
+    /** Ends the segment, and returns the text recognized in it, or {@code null} if none. */
+    @WorkerThread
+    @Nullable
+    String endSegment();
+
+    /** Drops the segment, e.g. when it turned out to be too short to be speech. */
+    @WorkerThread
+    void cancelSegment();
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import androidx.annotation.NonNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Streams 16-bit mono PCM audio to a WAV file.
+ *
+ * <p>The header is written with empty sizes first, and patched with the actual sizes on {@link
+ * #close}, so that the audio never needs to be held in memory.
+ */
+final class WavFileWriter implements Closeable {
+    static final int HEADER_SIZE = 44;
+
+    private static final short FORMAT_PCM = 1;
+    private static final short CHANNEL_COUNT = 1;
+    private static final short BITS_PER_SAMPLE = 16;
+
+    // Offsets of the sizes to patch, see http://soundfile.sapp.org/doc/WaveFormat/
+    private static final int RIFF_SIZE_OFFSET = 4;
+    private static final int DATA_SIZE_OFFSET = 40;
+
+    private final FileChannel mChannel;
+    private final ByteBuffer mSize = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+    private long mDataSize;
+
+    /**
+     * @param channel    the channel to write to, from its start, which is closed along with this
+     *                   writer
+     * @param sampleRate the sample rate of the audio, in Hz
+     */
+    WavFileWriter(@NonNull FileChannel channel, int sampleRate) throws IOException {
+        mChannel = channel;
+        int blockAlign = CHANNEL_COUNT * BITS_PER_SAMPLE / 8;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.put(new byte[] {'R', 'I', 'F', 'F'})
+                .putInt(0) // Patched on close.
+                .put(new byte[] {'W', 'A', 'V', 'E'})
+                .put(new byte[] {'f', 'm', 't', ' '})
+                .putInt(16) // Size of the 'fmt ' chunk.
+                .putShort(FORMAT_PCM)
+                .putShort(CHANNEL_COUNT)
+                .putInt(sampleRate)
+                .putInt(sampleRate * blockAlign) // Byte rate.
+                .putShort((short) blockAlign)
+                .putShort(BITS_PER_SAMPLE)
+                .put(new byte[] {'d', 'a', 't', 'a'})
+                .putInt(0); // Patched on close.
+        header.flip();
+        mChannel.truncate(0);
+        writeFully(header, 0);
+    }
+
+    /** Appends the remaining bytes of the given buffer to the audio data. */
+    void write(@NonNull ByteBuffer samples) throws IOException {
+        long position = HEADER_SIZE + mDataSize;
+        mDataSize += writeFully(samples, position);
+    }
+
+    /** Returns the number of bytes of audio data written so far. */
+    long getDataSize() {
+        return mDataSize;
+    }
+
+    /** Patches the sizes in the header, and closes the file. */
+    @Override
+    public void close() throws IOException {
+        try {
+            // WAV sizes are 32 bits, a limit of about 37 hours at 16 kHz.
+            int dataSize = (int) Math.min(mDataSize, 0xffffffffL - 36);
+            patchSize(RIFF_SIZE_OFFSET, dataSize + 36);
+            patchSize(DATA_SIZE_OFFSET, dataSize);
+            mChannel.force(false);
+        } finally {
+            mChannel.close();
+        }
+    }
+
+    private void patchSize(int offset, int size) throws IOException {
+        mSize.clear();
+        mSize.putInt(size).flip();
+        writeFully(mSize, offset);
+    }
+
+    private int writeFully(ByteBuffer buffer, long position) throws IOException {
+        int written = 0;
+        while (buffer.hasRemaining()) {
+            written += mChannel.write(buffer, position + written);
+        }
+        return written;
+    }
+}
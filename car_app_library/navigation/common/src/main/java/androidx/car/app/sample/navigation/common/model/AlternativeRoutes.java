@@ -0,0 +1,298 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Finds the fastest route between two places and a few alternatives to it, in the background.
+ *
+ * <p>The alternatives are found with penalties: the roads of the fastest route are made slower by
+ * a different factor for each alternative, and the fastest route with the penalty is searched.
+ * The searches are independent, so they run concurrently on a small pool of threads. An
+ * alternative is dropped if it mostly drives on the roads of a route kept before, or takes much
+ * longer than the fastest one. The alternatives are checked and handed to the {@link Listener} in
+ * the order of their penalties, each once it and the ones before it are found, so that the routes
+ * kept do not depend on which search ends first.
+ *
+ * <p>{@link #cancel} interrupts the searches that are still running, e.g. when a route is picked.
+ */
+@MainThread
+public final class AlternativeRoutes {
+    private static final String TAG = "AlternativeRoutes";
+
+    // Routes are searched by at most this many threads, shared by all the instances.
+    private static final int THREAD_COUNT =
+            Math.max(1, Math.min(3, Runtime.getRuntime().availableProcessors() - 1));
+    private static final ExecutorService EXECUTOR = newExecutor();
+
+    // The penalties of the searches for alternatives, one search each, in the order to start them.
+    private static final float[] PENALTY_FACTORS = {1.4f, 2f, 3f, 5f};
+
+    // An alternative must share at most this fraction of its length with the routes found before,
+    // and take at most this many times as long as the fastest route.
+    private static final double MAX_SHARED_FRACTION = 0.7;
+    private static final double MAX_STRETCH = 1.5;
+
+    // The graph last read, and its routers not used by a search, kept to reuse their arrays,
+    // which are as large as the graph.
+    private static final Object sLock = new Object();
+    @Nullable
+    private static File sGraphFile;
+    @Nullable
+    private static RoadGraph sGraph;
+    private static final ArrayDeque<Router> sIdleRouters = new ArrayDeque<>();
+
+    /** Receives the routes found, in the main thread. */
+    public interface Listener {
+        /** Called with each route found, the fastest first. */
+        void onRouteFound(@NonNull Route route);
+
+        /** Called once all the searches are done, whether they found routes or not. */
+        void onDone();
+    }
+
+    private final File mGraphFile;
+    private final int mMaxRouteCount;
+    private final Listener mListener;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final List<Future<?>> mSearches = new ArrayList<>();
+    private final List<Route> mRoutes = new ArrayList<>();
+    // The alternatives found, by penalty, until the ones before them are found too.
+    private final Route[] mAlternatives = new Route[PENALTY_FACTORS.length];
+    private final boolean[] mIsAlternativeFound = new boolean[PENALTY_FACTORS.length];
+    private int mNextAlternative;
+    private int mPendingSearchCount;
+    private boolean mIsCancelled;
+
+    /**
+     * @param graphFile     the file of the {@link RoadGraph} to route in
+     * @param maxRouteCount the number of routes to find at most, including the fastest one
+     */
+    public AlternativeRoutes(@NonNull File graphFile, int maxRouteCount,
+            @NonNull Listener listener) {
+        mGraphFile = graphFile;
+        mMaxRouteCount = maxRouteCount;
+        mListener = listener;
+    }
+
+    /** Starts to search routes between the roads closest to the given positions. */
+    public void start(double fromLatitude, double fromLongitude, double toLatitude,
+            double toLongitude) {
+        mPendingSearchCount = 1;
+        submit(() -> findFastestRoute(fromLatitude, fromLongitude, toLatitude, toLongitude),
+                () -> onSearchDone(null));
+    }
+
+    /** Stops the searches still running, after which the listener is not called anymore. */
+    public void cancel() {
+        mIsCancelled = true;
+        for (Future<?> search : mSearches) {
+            search.cancel(/* mayInterruptIfRunning= */ true);
+        }
+        mSearches.clear();
+    }
+
+    @WorkerThread
+    private void findFastestRoute(double fromLatitude, double fromLongitude, double toLatitude,
+            double toLongitude) {
+        RoadGraph graph;
+        try {
+            graph = getGraph(mGraphFile);
+        } catch (IOException e) {
+            Log.e(TAG, "Cannot read the road graph: " + mGraphFile, e);
+            mMainHandler.post(
+                    () -> {
+                        if (!mIsCancelled) {
+                            onSearchDone(null);
+                        }
+                    });
+            return;
+        }
+        int from = graph.findNearestNode(fromLatitude, fromLongitude);
+        int to = graph.findNearestNode(toLatitude, toLongitude);
+        Route route = null;
+        if (from >= 0 && to >= 0) {
+            Router router = obtainRouter(graph);
+            route = router.route(from, to);
+            recycleRouter(router);
+        }
+        Route fastest = route;
+        mMainHandler.post(
+                () -> {
+                    if (mIsCancelled) {
+                        return;
+                    }
+                    if (fastest != null && mMaxRouteCount > 1) {
+                        // Counted before the result below, so that it does not finish the search.
+                        mPendingSearchCount += PENALTY_FACTORS.length;
+                        for (int i = 0; i < PENALTY_FACTORS.length; i++) {
+                            int penalty = i;
+                            submit(() -> findAlternative(fastest, penalty),
+                                    () -> onAlternativeFound(penalty, null, fastest));
+                        }
+                    }
+                    onSearchDone(fastest);
+                });
+    }
+
+    @WorkerThread
+    private void findAlternative(@NonNull Route fastest, int penalty) {
+        Router router = obtainRouter(fastest.getGraph());
+        router.setPenalty(fastest, PENALTY_FACTORS[penalty]);
+        int to = fastest.getNode(fastest.getNodeCount() - 1);
+        Route route = router.route(fastest.getNode(0), to);
+        router.setPenalty(null, 1);
+        // The arrays of an interrupted search are still fine to reuse.
+        recycleRouter(router);
+        if (!Thread.currentThread().isInterrupted()) {
+            mMainHandler.post(() -> onAlternativeFound(penalty, route, fastest));
+        }
+    }
+
+    /**
+     * Keeps the alternative found with the given penalty, and checks the alternatives found in
+     * the order of their penalties, up to the first one still searched.
+     */
+    private void onAlternativeFound(int penalty, @Nullable Route route, @NonNull Route fastest) {
+        if (mIsCancelled) {
+            return;
+        }
+        mAlternatives[penalty] = route;
+        mIsAlternativeFound[penalty] = true;
+        while (!mIsCancelled && mNextAlternative < PENALTY_FACTORS.length
+                && mIsAlternativeFound[mNextAlternative]) {
+            Route alternative = mAlternatives[mNextAlternative];
+            mAlternatives[mNextAlternative] = null;
+            mNextAlternative++;
+            onSearchDone(alternative != null && isAlternative(alternative, fastest)
+                    ? alternative : null);
+        }
+    }
+
+    /** Returns whether the given route is different enough from the routes kept before. */
+    private boolean isAlternative(@NonNull Route route, @NonNull Route fastest) {
+        if (route.getDurationMillis() > fastest.getDurationMillis() * MAX_STRETCH) {
+            return false;
+        }
+        double maxSharedLength = route.getLengthMeters() * MAX_SHARED_FRACTION;
+        for (Route other : mRoutes) {
+            if (route.getSharedLengthMeters(other) > maxSharedLength) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void onSearchDone(@Nullable Route route) {
+        if (route != null && mRoutes.size() < mMaxRouteCount) {
+            mRoutes.add(route);
+            mListener.onRouteFound(route);
+        }
+        boolean isLast = --mPendingSearchCount == 0;
+        if (mRoutes.size() == mMaxRouteCount && !isLast) {
+            // Enough routes were found, the other searches would be dropped anyway.
+            cancel();
+            isLast = true;
+        }
+        if (isLast) {
+            mListener.onDone();
+        }
+    }
+
+    /**
+     * Runs the given search in the background. If it throws, the given callback runs in the main
+     * thread instead of the result of the search, so that the search still counts as done.
+     */
+    private void submit(@NonNull Runnable search, @NonNull Runnable onFailure) {
+        mSearches.add(EXECUTOR.submit(
+                () -> {
+                    try {
+                        search.run();
+                    } catch (RuntimeException e) {
+                        Log.e(TAG, "Route search failed", e);
+                        mMainHandler.post(
+                                () -> {
+                                    if (!mIsCancelled) {
+                                        onFailure.run();
+                                    }
+                                });
+                    }
+                }));
+    }
+
+    /** Returns the graph in the given file, reading it only if it is not the last one read. */
+    @WorkerThread
+    @NonNull
+    private static RoadGraph getGraph(@NonNull File file) throws IOException {
+        synchronized (sLock) {
+            if (sGraph == null || !file.equals(sGraphFile)) {
+                sGraph = RoadGraph.map(file);
+                sGraphFile = file;
+                sIdleRouters.clear();
+            }
+            return sGraph;
+        }
+    }
+
+    @NonNull
+    private static Router obtainRouter(@NonNull RoadGraph graph) {
+        synchronized (sLock) {
+            if (graph == sGraph && !sIdleRouters.isEmpty()) {
+                return sIdleRouters.pop();
+            }
+        }
+        return new Router(graph);
+    }
+
+    private static void recycleRouter(@NonNull Router router) {
+        synchronized (sLock) {
+            if (router.getGraph() == sGraph && sIdleRouters.size() < THREAD_COUNT) {
+                sIdleRouters.push(router);
+            }
+        }
+    }
+
+    private static ExecutorService newExecutor() {
+        AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newFixedThreadPool(
+                THREAD_COUNT,
+                runnable -> {
+                    Thread thread =
+                            new Thread(runnable, "Router-" + threadCount.incrementAndGet());
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+    }
+}
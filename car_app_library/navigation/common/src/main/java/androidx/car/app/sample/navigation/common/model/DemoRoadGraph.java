@@ -0,0 +1,137 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A small road network between the start and the destination of the demo routes, built with
+ * {@link RoadGraphWriter}, so that routes can be searched without converting map data first.
+ *
+ * <p>It holds the streets of the {@link DemoScripts}, a road along the lake and a freeway, which
+ * gives the route preview a fastest route and a few alternatives. Like the demo scripts, it is only
+ * loosely based on the real streets.
+ */
+public final class DemoRoadGraph {
+    /** Where the demo routes start. */
+    public static final double START_LATITUDE = 47.6101;
+    public static final double START_LONGITUDE = -122.2015;
+
+    /** Where the demo routes end, at the destination of the demo scripts. */
+    public static final double DESTINATION_LATITUDE = 47.6769;
+    public static final double DESTINATION_LONGITUDE = -122.2060;
+
+    private static final double STREET_SPEED_METERS_PER_SECOND = 11.2; // 25 mph
+    private static final double ARTERIAL_SPEED_METERS_PER_SECOND = 15.6; // 35 mph
+    private static final double FREEWAY_SPEED_METERS_PER_SECOND = 26.8; // 60 mph
+
+    private final RoadGraphWriter mWriter = new RoadGraphWriter();
+    // The latitude and longitude of each node, to compute the lengths of the roads.
+    private final List<double[]> mPositions = new ArrayList<>();
+
+    // Intersections.
+    private final int mBellevueWay4th = node(START_LATITUDE, START_LONGITUDE);
+    private final int mBellevueWay8th = node(47.6165, -122.2015);
+    private final int mBellevueWayNorth = node(47.6300, -122.2030);
+    private final int m108th4th = node(47.6101, -122.1960);
+    private final int m108th8th = node(47.6165, -122.1960);
+    private final int mFreeway4th = node(47.6101, -122.1885);
+    private final int mFreeway8th = node(47.6165, -122.1885);
+    private final int mFreeway68th = node(47.6600, -122.1880);
+    private final int mFreewayCentral = node(47.6780, -122.1880);
+    private final int mLakeBend = node(47.6450, -122.2075);
+    private final int mLake68th = node(47.6600, -122.2080);
+    private final int mState68th = node(47.6600, -122.2035);
+    private final int mStateKirkland = node(47.6700, -122.2035);
+    private final int mStateCentral = node(47.6769, -122.2035);
+    private final int m3rdKirkland = node(47.6700, -122.2060);
+    private final int m3rdCentral = node(DESTINATION_LATITUDE, DESTINATION_LONGITUDE);
+    private final int m6th68th = node(47.6600, -122.1970);
+    private final int m6thKirklandWay = node(47.6740, -122.1970);
+    private final int m6thCentral = node(47.6769, -122.1970);
+
+    /**
+     * Writes the demo graph to the given file, unless the file exists, e.g. a graph converted from
+     * map data and pushed to the app's files.
+     *
+     * <p>The graph only takes a few kilobytes, and is quick enough to write from the main thread.
+     */
+    public static void writeIfMissing(@NonNull File file) throws IOException {
+        if (file.exists()) {
+            return;
+        }
+        // Written aside first, so that a partial file is never mistaken for a graph.
+        File partialFile = new File(file.getPath() + ".partial");
+        try (OutputStream out = new BufferedOutputStream(new FileOutputStream(partialFile))) {
+            new DemoRoadGraph().mWriter.writeTo(out);
+        }
+        if (!partialFile.renameTo(file)) {
+            partialFile.delete();
+            throw new IOException("Cannot rename " + partialFile + " to " + file);
+        }
+    }
+
+    private DemoRoadGraph() {
+        road("NE 4th St", STREET_SPEED_METERS_PER_SECOND, 2,
+                mBellevueWay4th, m108th4th, mFreeway4th);
+        road("NE 8th St", ARTERIAL_SPEED_METERS_PER_SECOND, 2,
+                mBellevueWay8th, m108th8th, mFreeway8th);
+        road("Bellevue Way NE", ARTERIAL_SPEED_METERS_PER_SECOND, 2,
+                mBellevueWay4th, mBellevueWay8th, mBellevueWayNorth);
+        road("108th Ave NE", STREET_SPEED_METERS_PER_SECOND, 1, m108th4th, m108th8th);
+        road("I-405", FREEWAY_SPEED_METERS_PER_SECOND, 3,
+                mFreeway4th, mFreeway8th, mFreeway68th, mFreewayCentral);
+        road("Lake Washington Blvd NE", ARTERIAL_SPEED_METERS_PER_SECOND, 1,
+                mBellevueWayNorth, mLakeBend, mLake68th);
+        road("NE 68th St", ARTERIAL_SPEED_METERS_PER_SECOND, 2,
+                mLake68th, mState68th, m6th68th, mFreeway68th);
+        road("State Street", STREET_SPEED_METERS_PER_SECOND, 1,
+                mState68th, mStateKirkland, mStateCentral);
+        road("3rd Street", STREET_SPEED_METERS_PER_SECOND, 1, m3rdKirkland, m3rdCentral);
+        road("Kirkland Ave", STREET_SPEED_METERS_PER_SECOND, 1, m3rdKirkland, mStateKirkland);
+        road("Kirkland Way", STREET_SPEED_METERS_PER_SECOND, 1, mStateKirkland, m6thKirklandWay);
+        road("6th Street", STREET_SPEED_METERS_PER_SECOND, 1,
+                m6th68th, m6thKirklandWay, m6thCentral);
+        road("Central Way", ARTERIAL_SPEED_METERS_PER_SECOND, 2,
+                m3rdCentral, mStateCentral, m6thCentral, mFreewayCentral);
+        mWriter.contract();
+    }
+
+    private int node(double latitude, double longitude) {
+        mPositions.add(new double[]{latitude, longitude});
+        return mWriter.addNode(latitude, longitude);
+    }
+
+    /** Adds a two-way road through the given nodes, in a straight line between each of them. */
+    private void road(String name, double speedMetersPerSecond, int lanes, int... nodes) {
+        for (int i = 1; i < nodes.length; i++) {
+            double[] from = mPositions.get(nodes[i - 1]);
+            double[] to = mPositions.get(nodes[i]);
+            double lengthMeters = RoadGraph.distanceMeters(from[0], from[1], to[0], to[1]);
+            mWriter.addTwoWayRoad(nodes[i - 1], nodes[i], lengthMeters, speedMetersPerSecond,
+                    name, lanes, 0);
+        }
+    }
+}
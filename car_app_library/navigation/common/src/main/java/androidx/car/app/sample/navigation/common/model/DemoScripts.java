@@ -83,9 +83,12 @@ import androidx.car.app.sample.navigation.common.R;
 import androidx.core.graphics.drawable.IconCompat;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
+import java.util.Collections;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.Iterator;
 import java.util.List;
 import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
@@ -93,8 +96,9 @@ import java.util.concurrent.TimeUnit;
 /**
  * Example scripts to "control" navigation within the app.
  *
- * <p>The script takes the form of a list of instructions which can be passed to different parts of
- * the app. This is the central location where scripts are stored.
+ * <p>The script takes the form of a sequence of instructions which can be passed to different parts
+ * of the app. This is the central location where scripts are stored. Instructions are generated on
+ * demand as the script runs, so a script of any length takes constant memory.
  *
  * <p>The scripts start with a setup phase where all destinations and steps are added to the
  * instruction list. Then navigation updates are added for each step to simulate driving.
@@ -126,16 +130,20 @@ public class DemoScripts {
     private static final int SPEED_METERS_PER_SEC = 5;
     private static final int DISTANCE_METERS = 450;
 
-    /** Create instructions for home. */
+    /**
+     * Create instructions for home.
+     *
+     * <p>The instructions are generated on demand, as the script is executed, and each call to
+     * {@link Iterable#iterator} starts a new sequence.
+     */
     @NonNull
-    public static List<Instruction> getNavigateHome(@NonNull CarContext carContext) {
-        ArrayList<Instruction> instructions = new ArrayList<>();
+    public static Iterable<Instruction> getNavigateHome(@NonNull CarContext carContext) {
+        return () -> generateNavigateHome(carContext);
+    }
 
+    private static Iterator<Instruction> generateNavigateHome(@NonNull CarContext carContext) {
         DateTimeWithZone arrivalTimeAtDestination = getCurrentDateTimeZoneWithOffset(30);
 
-        CarIcon lanesImage =
-                new CarIcon.Builder(IconCompat.createWithResource(carContext, R.drawable.lanes))
-                        .build();
         CarIcon junctionImage =
                 new CarIcon.Builder(
                         IconCompat.createWithResource(
@@ -143,6 +151,106 @@ public class DemoScripts {
                                 R.drawable.junction_image))
                         .build();
 
+        int step1IconResourceId =
+                getTurnIconResourceId(Maneuver.TYPE_ROUNDABOUT_ENTER_AND_EXIT_CCW_WITH_ANGLE);
+        int step2IconResourceId = getTurnIconResourceId(Maneuver.TYPE_TURN_NORMAL_LEFT);
+        int step3IconResourceId = getTurnIconResourceId(Maneuver.TYPE_TURN_NORMAL_RIGHT);
+        int step4IconResourceId = getTurnIconResourceId(Maneuver.TYPE_DESTINATION_RIGHT);
+
+        List<InstructionGenerator.Part> parts = new ArrayList<>();
+
+        // Start the navigation and add destination and steps.
+        parts.add(
+                () ->
+                        getNavigateHomeSetup(
+                                carContext,
+                                arrivalTimeAtDestination,
+                                step1IconResourceId,
+                                step2IconResourceId,
+                                step3IconResourceId,
+                                step4IconResourceId)
+                                .iterator());
+
+        // Add trip positions for each step.
+        parts.add(
+                () ->
+                        generateTripUpdateSequence(
+                                /* count= */ 4,
+                                /* startDestinationDistanceRemaining= */ DISTANCE_METERS,
+                                /* startStepDistanceRemaining= */ 100,
+                                arrivalTimeAtDestination,
+                                "3rd Street",
+                                junctionImage,
+                                /* showLanes= */ true,
+                                "onto State Street",
+                                SPEED_METERS_PER_SEC,
+                                step1IconResourceId));
+        parts.add(DemoScripts::popStep);
+
+        parts.add(
+                () ->
+                        generateTripUpdateSequence(
+                                /* count= */ 6,
+                                /* startDestinationDistanceRemaining= */ DISTANCE_METERS - 100,
+                                /* startStepDistanceRemaining= */ 150,
+                                arrivalTimeAtDestination,
+                                "State Street",
+                                junctionImage,
+                                /* showLanes= */ true,
+                                "onto Kirkland Way",
+                                SPEED_METERS_PER_SEC,
+                                step2IconResourceId));
+        parts.add(DemoScripts::popStep);
+
+        parts.add(
+                () ->
+                        generateTripUpdateSequence(
+                                /* count= */ 4,
+                                /* startDestinationDistanceRemaining= */ DISTANCE_METERS - 250,
+                                /* startStepDistanceRemaining= */ 100,
+                                arrivalTimeAtDestination,
+                                "Kirkland Way",
+                                junctionImage,
+                                /* showLanes= */ true,
+                                "onto 6th Street",
+                                SPEED_METERS_PER_SEC,
+                                step3IconResourceId));
+        parts.add(DemoScripts::popStep);
+
+        parts.add(
+                () ->
+                        generateTripUpdateSequence(
+                                /* count= */ 4,
+                                /* startDestinationDistanceRemaining= */ DISTANCE_METERS - 350,
+                                /* startStepDistanceRemaining= */ 100,
+                                arrivalTimeAtDestination,
+                                "6th Street",
+                                /* junctionImage= */ null,
+                                /* showLanes= */ false,
+                                "to Google Kirkland on right",
+                                SPEED_METERS_PER_SEC,
+                                step4IconResourceId));
+
+        // Set arrived state and then stop navigation.
+        parts.add(DemoScripts::arrive);
+
+        return InstructionGenerator.concat(parts);
+    }
+
+    /** Returns the instructions that start the navigation, and add the destination and steps. */
+    private static List<Instruction> getNavigateHomeSetup(
+            @NonNull CarContext carContext,
+            DateTimeWithZone arrivalTimeAtDestination,
+            int step1IconResourceId,
+            int step2IconResourceId,
+            int step3IconResourceId,
+            int step4IconResourceId) {
+        List<Instruction> instructions = new ArrayList<>();
+
+        CarIcon lanesImage =
+                new CarIcon.Builder(IconCompat.createWithResource(carContext, R.drawable.lanes))
+                        .build();
+
         Lane straightNormal =
                 new Lane.Builder()
                         .addDirection(LaneDirection.create(SHAPE_STRAIGHT, false))
@@ -152,8 +260,6 @@ public class DemoScripts {
                         .addDirection(LaneDirection.create(SHAPE_NORMAL_RIGHT, true))
                         .build();
 
-        int step1IconResourceId =
-                getTurnIconResourceId(Maneuver.TYPE_ROUNDABOUT_ENTER_AND_EXIT_CCW_WITH_ANGLE);
         Step step1 =
                 new Step.Builder("State Street")
                         .setManeuver(
@@ -171,7 +277,6 @@ public class DemoScripts {
                         .addLane(rightHighlighted)
                         .setLanesImage(lanesImage)
                         .build();
-        int step2IconResourceId = getTurnIconResourceId(Maneuver.TYPE_TURN_NORMAL_LEFT);
         Step step2 =
                 new Step.Builder("Kirkland Way")
                         .setManeuver(
@@ -187,7 +292,6 @@ public class DemoScripts {
                         .addLane(rightHighlighted)
                         .setLanesImage(lanesImage)
                         .build();
-        int step3IconResourceId = getTurnIconResourceId(Maneuver.TYPE_TURN_NORMAL_RIGHT);
         Step step3 =
                 new Step.Builder("6th Street.")
                         .setManeuver(
@@ -203,7 +307,6 @@ public class DemoScripts {
                         .addLane(rightHighlighted)
                         .setLanesImage(lanesImage)
                         .build();
-        int step4IconResourceId = getTurnIconResourceId(Maneuver.TYPE_DESTINATION_RIGHT);
         Step step4 =
                 new Step.Builder("Google Kirkland.")
                         .setManeuver(
@@ -264,91 +367,32 @@ public class DemoScripts {
                         .setStep(step4)
                         .build());
 
-        // Add trip positions for each step.
-        int updateDistanceRemaining = DISTANCE_METERS;
-        instructions.addAll(
-                generateTripUpdateSequence(
-                        /* count= */ 4,
-                        /* startDestinationDistanceRemaining= */ updateDistanceRemaining,
-                        /* startStepDistanceRemaining= */ 100,
-                        arrivalTimeAtDestination,
-                        "3rd Street",
-                        junctionImage,
-                        /* showLanes= */ true,
-                        "onto State Street",
-                        SPEED_METERS_PER_SEC,
-                        step1IconResourceId));
-        instructions.add(
-                Instruction.builder(
-                        Instruction.Type.POP_STEP_NAVIGATION, INSTRUCTION_NO_ELAPSED_TIME)
-                        .build());
-        updateDistanceRemaining -= 100;
-
-        instructions.addAll(
-                generateTripUpdateSequence(
-                        /* count= */ 6,
-                        /* startDestinationDistanceRemaining= */ updateDistanceRemaining,
-                        /* startStepDistanceRemaining= */ 150,
-                        arrivalTimeAtDestination,
-                        "State Street",
-                        junctionImage,
-                        /* showLanes= */ true,
-                        "onto Kirkland Way",
-                        SPEED_METERS_PER_SEC,
-                        step2IconResourceId));
-        instructions.add(
-                Instruction.builder(
-                        Instruction.Type.POP_STEP_NAVIGATION, INSTRUCTION_NO_ELAPSED_TIME)
-                        .build());
-        updateDistanceRemaining -= 150;
-
-        instructions.addAll(
-                generateTripUpdateSequence(
-                        /* count= */ 4,
-                        /* startDestinationDistanceRemaining= */ updateDistanceRemaining,
-                        /* startStepDistanceRemaining= */ 100,
-                        arrivalTimeAtDestination,
-                        "Kirkland Way",
-                        junctionImage,
-                        /* showLanes= */ true,
-                        "onto 6th Street",
-                        SPEED_METERS_PER_SEC,
-                        step3IconResourceId));
-        instructions.add(
+        return instructions;
+    }
+
+    static Iterator<Instruction> popStep() {
+        return Collections.singletonList(
                 Instruction.builder(
                         Instruction.Type.POP_STEP_NAVIGATION, INSTRUCTION_NO_ELAPSED_TIME)
-                        .build());
-        updateDistanceRemaining -= 100;
-
-        instructions.addAll(
-                generateTripUpdateSequence(
-                        /* count= */ 4,
-                        /* startDestinationDistanceRemaining= */ updateDistanceRemaining,
-                        /* startStepDistanceRemaining= */ 100,
-                        arrivalTimeAtDestination,
-                        "6th Street",
-                        /* junctionImage= */ null,
-                        /* showLanes= */ false,
-                        "to Google Kirkland on right",
-                        SPEED_METERS_PER_SEC,
-                        step4IconResourceId));
+                        .build())
+                .iterator();
+    }
 
-        // Set arrived state and then stop navigation.
-        instructions.add(
+    /** Returns the instructions that set the arrived state, and then stop navigation. */
+    static Iterator<Instruction> arrive() {
+        return Arrays.asList(
                 Instruction.builder(Instruction.Type.SET_ARRIVED, TimeUnit.SECONDS.toMillis(5))
-                        .build());
-
-        instructions.add(
-                Instruction.builder(Instruction.Type.POP_DESTINATION_NAVIGATION,
+                        .build(),
+                Instruction.builder(
+                        Instruction.Type.POP_DESTINATION_NAVIGATION,
                         INSTRUCTION_NO_ELAPSED_TIME)
-                        .build());
-        instructions.add(
+                        .build(),
                 Instruction.builder(Instruction.Type.END_NAVIGATION, INSTRUCTION_NO_ELAPSED_TIME)
-                        .build());
-        return instructions;
+                        .build())
+                .iterator();
     }
 
-    private static DateTimeWithZone getCurrentDateTimeZoneWithOffset(int offsetSeconds) {
+    static DateTimeWithZone getCurrentDateTimeZoneWithOffset(int offsetSeconds) {
         GregorianCalendar startTime = new GregorianCalendar();
         GregorianCalendar destinationETA = (GregorianCalendar) startTime.clone();
         destinationETA.add(Calendar.SECOND, offsetSeconds);
@@ -384,9 +428,9 @@ public class DemoScripts {
      * @param showLanes                         indicates if the lane info should be shown for
      *                                          this maneuver
      * @param speed                             meters/second being traveled
-     * @return sequence of instructions until the next step
+     * @return sequence of instructions until the next step, generated on demand
      */
-    private static List<Instruction> generateTripUpdateSequence(
+    static Iterator<Instruction> generateTripUpdateSequence(
             int count,
             int startDestinationDistanceRemaining,
             int startStepDistanceRemaining,
@@ -397,67 +441,76 @@ public class DemoScripts {
             String nextInstruction,
             int speed,
             int notificationIcon) {
-        List<Instruction> sequence = new ArrayList<>(count);
-        int destinationDistanceRemaining = startDestinationDistanceRemaining;
-        int stepDistanceRemaining = startStepDistanceRemaining;
         int distanceIncrement = startStepDistanceRemaining / count;
-        boolean notify = true;
-
-        for (int i = 0; i < count; i++) {
-            Distance remainingDistance =
-                    Distance.create(stepDistanceRemaining, Distance.UNIT_METERS);
-            TravelEstimate destinationTravelEstimate =
-                    new TravelEstimate.Builder(
-                            Distance.create(
-                                    destinationDistanceRemaining, Distance.UNIT_METERS),
-                            arrivalTimeAtDestination)
-                            .setRemainingTimeSeconds(destinationDistanceRemaining / speed)
-                            .setRemainingTimeColor(CarColor.YELLOW)
-                            .setRemainingDistanceColor(CarColor.GREEN)
-                            .build();
-            TravelEstimate stepTravelEstimate =
-                    new TravelEstimate.Builder(
-                            remainingDistance,
-                            getCurrentDateTimeZoneWithOffset(distanceIncrement))
-                            .setRemainingTimeSeconds(/* remainingTimeSeconds= */ distanceIncrement)
-                            .build();
-            String notificationTitle = String.format("%dm", stepDistanceRemaining);
-            Instruction.Builder instruction =
-                    Instruction.builder(
-                            Instruction.Type.SET_TRIP_POSITION_NAVIGATION,
-                            TimeUnit.SECONDS.toMillis(distanceIncrement / speed))
-                            .setStepRemainingDistance(remainingDistance)
-                            .setStepTravelEstimate(stepTravelEstimate)
-                            .setDestinationTravelEstimate(destinationTravelEstimate)
-                            .setRoad(currentRoad)
-                            .setNotification(
-                                    notify, notificationTitle, nextInstruction, notificationIcon);
-            // Don't show lanes in the first and last part of the maneuver. In the middle part of
-            // the
-            // maneuver use the passed parameter to determine if lanes should be shown.
-            if (i == 0) {
-                instruction.setShouldShowLanes(false).setShouldShowNextStep(true);
-            } else if (i == 1) {
-                instruction.setShouldShowLanes(showLanes).setShouldShowNextStep(true);
-            } else if (i == 2) {
-                instruction.setShouldShowLanes(showLanes).setShouldShowNextStep(false);
-            } else {
-                instruction
-                        .setShouldShowLanes(false)
-                        .setShouldShowNextStep(false)
-                        .setJunctionImage(junctionImage);
-            }
-            sequence.add(instruction.build());
 
-            destinationDistanceRemaining -= distanceIncrement;
-            stepDistanceRemaining -= distanceIncrement;
-            notify = false;
-        }
-        return sequence;
+        return new InstructionGenerator() {
+            private int mIndex;
+
+            @Nullable
+            @Override
+            protected Instruction generateNext() {
+                int i = mIndex++;
+                if (i >= count) {
+                    return null;
+                }
+                int destinationDistanceRemaining =
+                        startDestinationDistanceRemaining - i * distanceIncrement;
+                int stepDistanceRemaining = startStepDistanceRemaining - i * distanceIncrement;
+                boolean notify = i == 0;
+
+                Distance remainingDistance =
+                        Distance.create(stepDistanceRemaining, Distance.UNIT_METERS);
+                TravelEstimate destinationTravelEstimate =
+                        new TravelEstimate.Builder(
+                                Distance.create(
+                                        destinationDistanceRemaining, Distance.UNIT_METERS),
+                                arrivalTimeAtDestination)
+                                .setRemainingTimeSeconds(destinationDistanceRemaining / speed)
+                                .setRemainingTimeColor(CarColor.YELLOW)
+                                .setRemainingDistanceColor(CarColor.GREEN)
+                                .build();
+                TravelEstimate stepTravelEstimate =
+                        new TravelEstimate.Builder(
+                                remainingDistance,
+                                getCurrentDateTimeZoneWithOffset(distanceIncrement))
+                                .setRemainingTimeSeconds(
+                                        /* remainingTimeSeconds= */ distanceIncrement)
+                                .build();
+                String notificationTitle = String.format("%dm", stepDistanceRemaining);
+                Instruction.Builder instruction =
+                        Instruction.builder(
+                                Instruction.Type.SET_TRIP_POSITION_NAVIGATION,
+                                TimeUnit.SECONDS.toMillis(distanceIncrement / speed))
+                                .setStepRemainingDistance(remainingDistance)
+                                .setStepTravelEstimate(stepTravelEstimate)
+                                .setDestinationTravelEstimate(destinationTravelEstimate)
+                                .setRoad(currentRoad)
+                                .setNotification(
+                                        notify,
+                                        notificationTitle,
+                                        nextInstruction,
+                                        notificationIcon);
+                // Don't show lanes in the first and last part of the maneuver. In the middle part
+                // of the maneuver use the passed parameter to determine if lanes should be shown.
+                if (i == 0) {
+                    instruction.setShouldShowLanes(false).setShouldShowNextStep(true);
+                } else if (i == 1) {
+                    instruction.setShouldShowLanes(showLanes).setShouldShowNextStep(true);
+                } else if (i == 2) {
+                    instruction.setShouldShowLanes(showLanes).setShouldShowNextStep(false);
+                } else {
+                    instruction
+                            .setShouldShowLanes(false)
+                            .setShouldShowNextStep(false)
+                            .setJunctionImage(junctionImage);
+                }
+                return instruction.build();
+            }
+        };
     }
 
     /** Returns a maneuver with image selected from resources. */
-    private static Maneuver getManeuver(
+    static Maneuver getManeuver(
             @NonNull CarContext carContext, int type, int iconResourceId) {
         return new Maneuver.Builder(type).setIcon(getCarIcon(carContext, iconResourceId)).build();
     }
@@ -465,7 +518,7 @@ public class DemoScripts {
     /**
      * Returns a maneuver that includes an exit number and angle with image selected from resources.
      */
-    private static Maneuver getManeuverWithExitNumberAndAngle(
+    static Maneuver getManeuverWithExitNumberAndAngle(
             @NonNull CarContext carContext,
             int type,
             int iconResourceId,
@@ -479,11 +532,11 @@ public class DemoScripts {
     }
 
     /** Generates a {@link CarIcon} representing the turn. */
-    private static CarIcon getCarIcon(@NonNull CarContext carContext, int resourceId) {
+    static CarIcon getCarIcon(@NonNull CarContext carContext, int resourceId) {
         return new CarIcon.Builder(IconCompat.createWithResource(carContext, resourceId)).build();
     }
 
-    private static int getTurnIconResourceId(int type) {
+    static int getTurnIconResourceId(int type) {
         int resourceId = R.drawable.ic_launcher;
         switch (type) {
             case TYPE_TURN_NORMAL_LEFT:
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Constants and primitives of the binary format of instruction streams, shared by {@link
+ * InstructionWriter} and {@link InstructionReader}.
+ *
+ * <p>A stream starts with {@link #MAGIC} and {@link #VERSION}, followed by one record per
+ * instruction:
+ *
+ * <ul>
+ *   <li>The instruction type, as a byte, and a varint of {@code FLAG_*} bits.
+ *   <li>The duration, as a varint.
+ *   <li>The destination, step, step remaining distance and travel estimates, if flagged.
+ *   <li>References to the road, junction image, notification title, content and icon.
+ * </ul>
+ *
+ * <p>Strings, including the resource names of icons, are interned: a reference is a varint where
+ * {@code 0} is {@code null}, {@code n} is the n-th string seen so far, and one past the last string
+ * seen introduces a new string, whose UTF-8 bytes follow. Notification titles, which change with
+ * every position update, are not interned but written as their length plus one and their bytes.
+ *
+ * <p>Distances are stored in thousandths of their display unit, and travel estimates as deltas
+ * from the previous estimate of the same kind, so that the position updates of a route take a few
+ * bytes each.
+ */
+final class InstructionFormat {
+    static final int MAGIC = 0x4e415653; // "NAVS"
+    static final int VERSION = 1;
+
+    static final int FLAG_SHOULD_SHOW_NEXT_STEP = 1;
+    static final int FLAG_SHOULD_SHOW_LANES = 1 << 1;
+    static final int FLAG_SHOULD_NOTIFY = 1 << 2;
+    static final int FLAG_DESTINATION = 1 << 3;
+    static final int FLAG_STEP = 1 << 4;
+    static final int FLAG_STEP_REMAINING_DISTANCE = 1 << 5;
+    static final int FLAG_STEP_TRAVEL_ESTIMATE = 1 << 6;
+    static final int FLAG_DESTINATION_TRAVEL_ESTIMATE = 1 << 7;
+
+    /** The scale of distances, i.e. they are stored in thousandths of their display unit. */
+    static final double DISTANCE_SCALE = 1000;
+
+    /**
+     * The last values written or read for a kind of travel estimate, that the next one is encoded
+     * as a delta from.
+     */
+    static class EstimateState {
+        long mDistance;
+        long mRemainingTimeSeconds;
+        long mArrivalTimeMillis;
+        int mZoneOffsetSeconds;
+    }
+
+    static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    /** Writes a signed value, zigzag-encoded so that small negative values take few bytes. */
+    static void writeSignedVarint(OutputStream out, long value) throws IOException {
+        writeVarint(out, (value << 1) ^ (value >> 63));
+    }
+
+    static long readVarint(ByteBuffer in) {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint");
+    }
+
+    static long readSignedVarint(ByteBuffer in) {
+        long value = readVarint(in);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static int readVarintInt(ByteBuffer in) {
+        long value = readVarint(in);
+        if (value > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Value out of range: " + value);
+        }
+        return (int) value;
+    }
+
+    private InstructionFormat() {
+    }
+}
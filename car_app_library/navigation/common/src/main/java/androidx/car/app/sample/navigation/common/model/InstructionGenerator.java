@@ -0,0 +1,98 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * A sequence of instructions produced on demand, one at a time, so that a script of any length
+ * can be executed in constant memory.
+ */
+public abstract class InstructionGenerator implements Iterator<Instruction> {
+    @Nullable
+    private Instruction mNext;
+    private boolean mIsDone;
+
+    /** A part of a script, created only once the parts before it have been executed. */
+    public interface Part {
+        /** Returns the instructions of this part. */
+        @NonNull
+        Iterator<Instruction> create();
+    }
+
+    /**
+     * Returns the next instruction of the sequence, or {@code null} if the sequence is finished.
+     *
+     * <p>This is called at most once per instruction, and never again after returning {@code
+     * null}.
+     */
+    @Nullable
+    protected abstract Instruction generateNext();
+
+    /** Returns the instructions of all the given parts, one after another. */
+    @NonNull
+    public static Iterator<Instruction> concat(@NonNull List<Part> parts) {
+        return new InstructionGenerator() {
+            private int mNextPart;
+            @Nullable
+            private Iterator<Instruction> mCurrentPart;
+
+            @Nullable
+            @Override
+            protected Instruction generateNext() {
+                while (mCurrentPart == null || !mCurrentPart.hasNext()) {
+                    if (mNextPart >= parts.size()) {
+                        return null;
+                    }
+                    mCurrentPart = parts.get(mNextPart++).create();
+                }
+                return mCurrentPart.next();
+            }
+        };
+    }
+
+    @Override
+    public final boolean hasNext() {
+        if (mNext == null && !mIsDone) {
+            mNext = generateNext();
+            mIsDone = mNext == null;
+        }
+        return mNext != null;
+    }
+
+    @NonNull
+    @Override
+    public final Instruction next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Instruction next = mNext;
+        mNext = null;
+        return next;
+    }
+
+    // Iterator.remove() only has a default implementation from API level 24.
+    @Override
+    public final void remove() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.DISTANCE_SCALE;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_DESTINATION;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_DESTINATION_TRAVEL_ESTIMATE;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_SHOULD_NOTIFY;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_SHOULD_SHOW_LANES;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_SHOULD_SHOW_NEXT_STEP;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_STEP;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_STEP_REMAINING_DISTANCE;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_STEP_TRAVEL_ESTIMATE;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.MAGIC;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.VERSION;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.readSignedVarint;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.readVarint;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.readVarintInt;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.car.app.model.CarColor;
+import androidx.car.app.model.CarIcon;
+import androidx.car.app.model.DateTimeWithZone;
+import androidx.car.app.model.Distance;
+import androidx.car.app.navigation.model.Destination;
+import androidx.car.app.navigation.model.Lane;
+import androidx.car.app.navigation.model.LaneDirection;
+import androidx.car.app.navigation.model.Maneuver;
+import androidx.car.app.navigation.model.Step;
+import androidx.car.app.navigation.model.TravelEstimate;
+import androidx.core.graphics.drawable.IconCompat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads a sequence of {@link Instruction}s written by {@link InstructionWriter}, one at a time as
+ * they are requested, so that it can be passed to {@link Script} directly.
+ *
+ * <p>A stream that ends in the middle of an instruction, e.g. a recording that was interrupted,
+ * ends at the last complete instruction. So does a stream with a corrupt instruction, e.g. one of
+ * an unknown type, or with an icon whose resource is not in this build of the app.
+ */
+public class InstructionReader extends InstructionGenerator {
+    private static final String TAG = "InstructionReader";
+
+    private final Context mContext;
+    private final Resources mResources;
+    private final ByteBuffer mIn;
+
+    // The strings read so far, in the order they were introduced.
+    private final List<String> mStrings = new ArrayList<>();
+
+    // Icons are resolved once per resource name, as looking up resources by name is slow.
+    private final Map<String, CarIcon> mIcons = new HashMap<>();
+    private final Map<String, Integer> mResourceIds = new HashMap<>();
+
+    private final InstructionFormat.EstimateState mStepEstimate =
+            new InstructionFormat.EstimateState();
+    private final InstructionFormat.EstimateState mDestinationEstimate =
+            new InstructionFormat.EstimateState();
+
+    /**
+     * Maps the given file into memory, and returns the instructions it contains.
+     *
+     * <p>The file is mapped once, and each call to {@link Iterable#iterator} reads it again from
+     * the start, without copying it.
+     *
+     * @throws IOException if the file cannot be read, or is not an instruction stream
+     */
+    @NonNull
+    public static Iterable<Instruction> map(@NonNull Context context, @NonNull File file)
+            throws IOException {
+        ByteBuffer buffer;
+        try (FileInputStream in = new FileInputStream(file);
+                FileChannel channel = in.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        // Fail early on a file of the wrong format, rather than when navigation starts.
+        new InstructionReader(context, buffer.duplicate());
+        return () -> {
+            try {
+                return new InstructionReader(context, buffer.duplicate());
+            } catch (IOException e) {
+                // Already checked above.
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    /**
+     * @param context the context whose resources the icons in the instructions come from
+     * @param in      the buffer to read, from its current position
+     * @throws IOException if the buffer does not start with a supported instruction stream header
+     */
+    public InstructionReader(@NonNull Context context, @NonNull ByteBuffer in)
+            throws IOException {
+        mContext = context;
+        mResources = context.getResources();
+        mIn = in;
+        try {
+            if (in.getInt() != MAGIC) {
+                throw new IOException("Not an instruction stream");
+            }
+            long version = readVarint(in);
+            if (version != VERSION) {
+                throw new IOException("Unsupported instruction stream version: " + version);
+            }
+        } catch (BufferUnderflowException | IllegalStateException e) {
+            throw new IOException("Truncated instruction stream header", e);
+        }
+    }
+
+    @Nullable
+    @Override
+    protected Instruction generateNext() {
+        if (!mIn.hasRemaining()) {
+            return null;
+        }
+        try {
+            return readInstruction();
+        } catch (BufferUnderflowException e) {
+            Log.w(TAG, "Instruction stream truncated at " + mIn.position());
+            return null;
+        } catch (IllegalStateException | IllegalArgumentException e) {
+            // Thrown on unknown values, and by the builders on values they reject.
+            Log.e(TAG, "Corrupt instruction stream at " + mIn.position(), e);
+            return null;
+        }
+    }
+
+    private Instruction readInstruction() {
+        int typeOrdinal = mIn.get();
+        Instruction.Type[] types = Instruction.Type.values();
+        if (typeOrdinal < 0 || typeOrdinal >= types.length) {
+            throw new IllegalStateException("Unknown instruction type: " + typeOrdinal);
+        }
+        int flags = readVarintInt(mIn);
+        Instruction.Builder builder = Instruction.builder(types[typeOrdinal], readVarint(mIn));
+
+        if ((flags & FLAG_DESTINATION) != 0) {
+            Destination.Builder destination = new Destination.Builder();
+            String name = readString();
+            if (name != null) {
+                destination.setName(name);
+            }
+            String address = readString();
+            if (address != null) {
+                destination.setAddress(address);
+            }
+            CarIcon image = readIcon();
+            if (image != null) {
+                destination.setImage(image);
+            }
+            builder.setDestination(destination.build());
+        }
+        if ((flags & FLAG_STEP) != 0) {
+            builder.setStep(readStep());
+        }
+        if ((flags & FLAG_STEP_REMAINING_DISTANCE) != 0) {
+            int unit = readVarintInt(mIn);
+            builder.setStepRemainingDistance(
+                    Distance.create(readSignedVarint(mIn) / DISTANCE_SCALE, unit));
+        }
+        if ((flags & FLAG_STEP_TRAVEL_ESTIMATE) != 0) {
+            builder.setStepTravelEstimate(readTravelEstimate(mStepEstimate));
+        }
+        if ((flags & FLAG_DESTINATION_TRAVEL_ESTIMATE) != 0) {
+            builder.setDestinationTravelEstimate(readTravelEstimate(mDestinationEstimate));
+        }
+
+        builder.setRoad(readString());
+        builder.setJunctionImage(readIcon());
+        String notificationTitle = readLiteral();
+        String notificationContent = readString();
+        String notificationIcon = readString();
+        builder.setNotification(
+                (flags & FLAG_SHOULD_NOTIFY) != 0,
+                notificationTitle,
+                notificationContent,
+                notificationIcon == null ? 0 : getResourceId(notificationIcon));
+        builder.setShouldShowNextStep((flags & FLAG_SHOULD_SHOW_NEXT_STEP) != 0);
+        builder.setShouldShowLanes((flags & FLAG_SHOULD_SHOW_LANES) != 0);
+        return builder.build();
+    }
+
+    private Step readStep() {
+        Step.Builder step = new Step.Builder();
+        String cue = readString();
+        if (cue != null) {
+            step.setCue(cue);
+        }
+        String road = readString();
+        if (road != null) {
+            step.setRoad(road);
+        }
+
+        int maneuverType = readVarintInt(mIn) - 1;
+        if (maneuverType >= 0) {
+            Maneuver.Builder maneuver = new Maneuver.Builder(maneuverType);
+            CarIcon icon = readIcon();
+            if (icon != null) {
+                maneuver.setIcon(icon);
+            }
+            int exitNumber = readVarintInt(mIn);
+            if (exitNumber > 0) {
+                maneuver.setRoundaboutExitNumber(exitNumber);
+            }
+            int exitAngle = readVarintInt(mIn);
+            if (exitAngle > 0) {
+                maneuver.setRoundaboutExitAngle(exitAngle);
+            }
+            step.setManeuver(maneuver.build());
+        }
+
+        int laneCount = readVarintInt(mIn);
+        for (int i = 0; i < laneCount; i++) {
+            Lane.Builder lane = new Lane.Builder();
+            int directionCount = readVarintInt(mIn);
+            for (int j = 0; j < directionCount; j++) {
+                int shape = readVarintInt(mIn);
+                lane.addDirection(LaneDirection.create(shape, mIn.get() != 0));
+            }
+            step.addLane(lane.build());
+        }
+        CarIcon lanesImage = readIcon();
+        if (lanesImage != null) {
+            step.setLanesImage(lanesImage);
+        }
+        return step.build();
+    }
+
+    private TravelEstimate readTravelEstimate(InstructionFormat.EstimateState previous) {
+        int unit = readVarintInt(mIn);
+        previous.mDistance += readSignedVarint(mIn);
+        Distance distance = Distance.create(previous.mDistance / DISTANCE_SCALE, unit);
+
+        previous.mRemainingTimeSeconds += readSignedVarint(mIn);
+
+        previous.mArrivalTimeMillis += readSignedVarint(mIn);
+        previous.mZoneOffsetSeconds += (int) readSignedVarint(mIn);
+        String zoneShortName = readString();
+        if (zoneShortName == null) {
+            throw new IllegalStateException("Missing time zone");
+        }
+        DateTimeWithZone arrivalTime =
+                DateTimeWithZone.create(
+                        previous.mArrivalTimeMillis, previous.mZoneOffsetSeconds, zoneShortName);
+
+        TravelEstimate.Builder estimate = new TravelEstimate.Builder(distance, arrivalTime)
+                .setRemainingTimeSeconds(previous.mRemainingTimeSeconds);
+        CarColor remainingTimeColor = readColor();
+        if (remainingTimeColor != null) {
+            estimate.setRemainingTimeColor(remainingTimeColor);
+        }
+        CarColor remainingDistanceColor = readColor();
+        if (remainingDistanceColor != null) {
+            estimate.setRemainingDistanceColor(remainingDistanceColor);
+        }
+        return estimate.build();
+    }
+
+    @Nullable
+    private CarColor readColor() {
+        int type = readVarintInt(mIn) - 1;
+        switch (type) {
+            case -1:
+                return null;
+            case CarColor.TYPE_CUSTOM:
+                int color = mIn.getInt();
+                int colorDark = mIn.getInt();
+                return CarColor.createCustom(color, colorDark);
+            case CarColor.TYPE_DEFAULT:
+                return CarColor.DEFAULT;
+            case CarColor.TYPE_PRIMARY:
+                return CarColor.PRIMARY;
+            case CarColor.TYPE_SECONDARY:
+                return CarColor.SECONDARY;
+            case CarColor.TYPE_RED:
+                return CarColor.RED;
+            case CarColor.TYPE_GREEN:
+                return CarColor.GREEN;
+            case CarColor.TYPE_BLUE:
+                return CarColor.BLUE;
+            case CarColor.TYPE_YELLOW:
+                return CarColor.YELLOW;
+            default:
+                throw new IllegalStateException("Unknown color type: " + type);
+        }
+    }
+
+    @Nullable
+    private CarIcon readIcon() {
+        String name = readString();
+        if (name == null) {
+            return null;
+        }
+        CarIcon icon = mIcons.get(name);
+        if (icon == null) {
+            icon = new CarIcon.Builder(
+                    IconCompat.createWithResource(mContext, getResourceId(name)))
+                    .build();
+            mIcons.put(name, icon);
+        }
+        return icon;
+    }
+
+    private int getResourceId(String name) {
+        Integer id = mResourceIds.get(name);
+        if (id == null) {
+            // Resource names are fully qualified, i.e. "package:type/entry".
+            id = mResources.getIdentifier(name, null, null);
+            if (id == 0) {
+                throw new IllegalStateException("Unknown resource: " + name);
+            }
+            mResourceIds.put(name, id);
+        }
+        return id;
+    }
+
+    @Nullable
+    private String readString() {
+        int index = readVarintInt(mIn);
+        if (index == 0) {
+            return null;
+        }
+        if (index <= mStrings.size()) {
+            return mStrings.get(index - 1);
+        }
+        if (index != mStrings.size() + 1) {
+            throw new IllegalStateException("Unknown string: " + index);
+        }
+
+        String string = readBytes(readVarintInt(mIn));
+        mStrings.add(string);
+        return string;
+    }
+
+    @Nullable
+    private String readLiteral() {
+        int length = readVarintInt(mIn) - 1;
+        return length < 0 ? null : readBytes(length);
+    }
+
+    private String readBytes(int length) {
+        // Checked before allocating, so that a corrupt length does not allocate up to 2 GB.
+        if (length > mIn.remaining()) {
+            throw new IllegalStateException("String past the end of the stream: " + length);
+        }
+        byte[] bytes = new byte[length];
+        mIn.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
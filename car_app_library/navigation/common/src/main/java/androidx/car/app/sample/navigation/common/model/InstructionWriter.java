@@ -0,0 +1,292 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.DISTANCE_SCALE;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_DESTINATION;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_DESTINATION_TRAVEL_ESTIMATE;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_SHOULD_NOTIFY;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_SHOULD_SHOW_LANES;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_SHOULD_SHOW_NEXT_STEP;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_STEP;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_STEP_REMAINING_DISTANCE;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.FLAG_STEP_TRAVEL_ESTIMATE;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.MAGIC;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.VERSION;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.writeSignedVarint;
+import static androidx.car.app.sample.navigation.common.model.InstructionFormat.writeVarint;
+
+import android.content.Context;
+import android.content.res.Resources;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.car.app.model.CarColor;
+import androidx.car.app.model.CarIcon;
+import androidx.car.app.model.CarText;
+import androidx.car.app.model.DateTimeWithZone;
+import androidx.car.app.model.Distance;
+import androidx.car.app.navigation.model.Destination;
+import androidx.car.app.navigation.model.Lane;
+import androidx.car.app.navigation.model.LaneDirection;
+import androidx.car.app.navigation.model.Maneuver;
+import androidx.car.app.navigation.model.Step;
+import androidx.car.app.navigation.model.TravelEstimate;
+import androidx.core.graphics.drawable.IconCompat;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a sequence of {@link Instruction}s in a compact binary format, e.g. to record a route to
+ * replay later with {@link InstructionReader}.
+ *
+ * <p>Icons are written as the names of their resources, so that recordings stay valid across
+ * builds of the app. Only icons created from resources are supported, and their tint is not kept.
+ */
+public class InstructionWriter implements Closeable {
+    private final Resources mResources;
+    private final DataOutputStream mOut;
+
+    // The index of each string written so far, starting at 1.
+    private final Map<String, Integer> mStrings = new HashMap<>();
+
+    private final InstructionFormat.EstimateState mStepEstimate =
+            new InstructionFormat.EstimateState();
+    private final InstructionFormat.EstimateState mDestinationEstimate =
+            new InstructionFormat.EstimateState();
+
+    /**
+     * @param context the context whose resources the icons in the instructions come from
+     * @param out     the stream to write to, which is closed along with this writer
+     */
+    public InstructionWriter(@NonNull Context context, @NonNull OutputStream out)
+            throws IOException {
+        mResources = context.getResources();
+        mOut = new DataOutputStream(new BufferedOutputStream(out));
+        mOut.writeInt(MAGIC);
+        writeVarint(mOut, VERSION);
+    }
+
+    /** Writes the given instruction. */
+    public void write(@NonNull Instruction instruction) throws IOException {
+        int flags = 0;
+        if (instruction.getShouldShowNextStep()) {
+            flags |= FLAG_SHOULD_SHOW_NEXT_STEP;
+        }
+        if (instruction.getShouldShowLanes()) {
+            flags |= FLAG_SHOULD_SHOW_LANES;
+        }
+        if (instruction.getShouldNotify()) {
+            flags |= FLAG_SHOULD_NOTIFY;
+        }
+        if (instruction.getDestination() != null) {
+            flags |= FLAG_DESTINATION;
+        }
+        if (instruction.getStep() != null) {
+            flags |= FLAG_STEP;
+        }
+        if (instruction.getStepRemainingDistance() != null) {
+            flags |= FLAG_STEP_REMAINING_DISTANCE;
+        }
+        if (instruction.getStepTravelEstimate() != null) {
+            flags |= FLAG_STEP_TRAVEL_ESTIMATE;
+        }
+        if (instruction.getDestinationTravelEstimate() != null) {
+            flags |= FLAG_DESTINATION_TRAVEL_ESTIMATE;
+        }
+
+        mOut.writeByte(instruction.getType().ordinal());
+        writeVarint(mOut, flags);
+        writeVarint(mOut, instruction.getDurationMillis());
+
+        Destination destination = instruction.getDestination();
+        if (destination != null) {
+            writeText(destination.getName());
+            writeText(destination.getAddress());
+            writeIcon(destination.getImage());
+        }
+        Step step = instruction.getStep();
+        if (step != null) {
+            writeStep(step);
+        }
+        Distance stepRemainingDistance = instruction.getStepRemainingDistance();
+        if (stepRemainingDistance != null) {
+            writeVarint(mOut, stepRemainingDistance.getDisplayUnit());
+            writeSignedVarint(mOut, scale(stepRemainingDistance));
+        }
+        TravelEstimate stepTravelEstimate = instruction.getStepTravelEstimate();
+        if (stepTravelEstimate != null) {
+            writeTravelEstimate(stepTravelEstimate, mStepEstimate);
+        }
+        TravelEstimate destinationTravelEstimate = instruction.getDestinationTravelEstimate();
+        if (destinationTravelEstimate != null) {
+            writeTravelEstimate(destinationTravelEstimate, mDestinationEstimate);
+        }
+
+        writeString(instruction.getRoad());
+        writeIcon(instruction.getJunctionImage());
+        // Titles change with every position update, e.g. "100m", so they are not worth interning.
+        writeLiteral(instruction.getNotificationTitle());
+        writeString(instruction.getNotificationContent());
+        writeString(
+                instruction.getNotificationIcon() == 0
+                        ? null
+                        : mResources.getResourceName(instruction.getNotificationIcon()));
+    }
+
+    /** Writes all the given instructions. */
+    public void writeAll(@NonNull Iterable<Instruction> instructions) throws IOException {
+        for (Instruction instruction : instructions) {
+            write(instruction);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        mOut.close();
+    }
+
+    private void writeStep(Step step) throws IOException {
+        writeText(step.getCue());
+        writeText(step.getRoad());
+
+        Maneuver maneuver = step.getManeuver();
+        if (maneuver == null) {
+            writeVarint(mOut, 0);
+        } else {
+            writeVarint(mOut, maneuver.getType() + 1);
+            writeIcon(maneuver.getIcon());
+            writeVarint(mOut, maneuver.getRoundaboutExitNumber());
+            writeVarint(mOut, maneuver.getRoundaboutExitAngle());
+        }
+
+        List<Lane> lanes = step.getLanes();
+        writeVarint(mOut, lanes.size());
+        for (Lane lane : lanes) {
+            List<LaneDirection> directions = lane.getDirections();
+            writeVarint(mOut, directions.size());
+            for (LaneDirection direction : directions) {
+                writeVarint(mOut, direction.getShape());
+                mOut.writeBoolean(direction.isRecommended());
+            }
+        }
+        writeIcon(step.getLanesImage());
+    }
+
+    private void writeTravelEstimate(
+            TravelEstimate estimate, InstructionFormat.EstimateState previous)
+            throws IOException {
+        Distance distance = estimate.getRemainingDistance();
+        DateTimeWithZone arrivalTime = estimate.getArrivalTimeAtDestination();
+        if (distance == null || arrivalTime == null || arrivalTime.getZoneShortName() == null) {
+            throw new IllegalArgumentException("Incomplete travel estimate: " + estimate);
+        }
+
+        long scaled = scale(distance);
+        writeVarint(mOut, distance.getDisplayUnit());
+        writeSignedVarint(mOut, scaled - previous.mDistance);
+        previous.mDistance = scaled;
+
+        long remainingTimeSeconds = estimate.getRemainingTimeSeconds();
+        writeSignedVarint(mOut, remainingTimeSeconds - previous.mRemainingTimeSeconds);
+        previous.mRemainingTimeSeconds = remainingTimeSeconds;
+
+        long arrivalTimeMillis = arrivalTime.getTimeSinceEpochMillis();
+        writeSignedVarint(mOut, arrivalTimeMillis - previous.mArrivalTimeMillis);
+        previous.mArrivalTimeMillis = arrivalTimeMillis;
+        writeSignedVarint(mOut, arrivalTime.getZoneOffsetSeconds() - previous.mZoneOffsetSeconds);
+        previous.mZoneOffsetSeconds = arrivalTime.getZoneOffsetSeconds();
+        writeString(arrivalTime.getZoneShortName());
+
+        writeColor(estimate.getRemainingTimeColor());
+        writeColor(estimate.getRemainingDistanceColor());
+    }
+
+    private void writeColor(@Nullable CarColor color) throws IOException {
+        if (color == null) {
+            writeVarint(mOut, 0);
+            return;
+        }
+        writeVarint(mOut, color.getType() + 1);
+        if (color.getType() == CarColor.TYPE_CUSTOM) {
+            mOut.writeInt(color.getColor());
+            mOut.writeInt(color.getColorDark());
+        }
+    }
+
+    private void writeIcon(@Nullable CarIcon carIcon) throws IOException {
+        IconCompat icon = carIcon == null ? null : carIcon.getIcon();
+        if (icon == null) {
+            if (carIcon != null) {
+                throw new IllegalArgumentException("Unsupported icon: " + carIcon);
+            }
+            writeString(null);
+            return;
+        }
+        if (icon.getType() != IconCompat.TYPE_RESOURCE) {
+            throw new IllegalArgumentException("Only resource icons are supported: " + carIcon);
+        }
+        writeString(mResources.getResourceName(icon.getResId()));
+    }
+
+    private void writeText(@Nullable CarText text) throws IOException {
+        writeString(text == null ? null : text.toCharSequence().toString());
+    }
+
+    private void writeString(@Nullable String string) throws IOException {
+        if (string == null) {
+            writeVarint(mOut, 0);
+            return;
+        }
+        Integer index = mStrings.get(string);
+        if (index != null) {
+            writeVarint(mOut, index);
+            return;
+        }
+
+        // A new string takes the next index, and is followed by its bytes.
+        int newIndex = mStrings.size() + 1;
+        mStrings.put(string, newIndex);
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarint(mOut, newIndex);
+        writeVarint(mOut, bytes.length);
+        mOut.write(bytes);
+    }
+
+    /** Writes a string that is not interned, as its length plus one, followed by its bytes. */
+    private void writeLiteral(@Nullable String string) throws IOException {
+        if (string == null) {
+            writeVarint(mOut, 0);
+            return;
+        }
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        writeVarint(mOut, bytes.length + 1);
+        mOut.write(bytes);
+    }
+
+    private static long scale(Distance distance) {
+        return Math.round(distance.getDisplayDistance() * DISTANCE_SCALE);
+    }
+}
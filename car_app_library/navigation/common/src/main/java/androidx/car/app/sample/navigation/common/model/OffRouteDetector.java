@@ -0,0 +1,142 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Tells when the car has left a {@link Route}, from its location fixes.
+ *
+ * <p>Each fix is only matched against a window of the route around the last matched segment, a
+ * few hundred meters ahead and one segment back, so the cost of a fix does not grow with the
+ * length of the route. The car is off the route once a few fixes in a row, over a few seconds, are
+ * farther from the window than the accuracy of the fixes allows, so that a single jump of the GPS
+ * does not trigger a reroute. Fixes only count once one has matched the route, so that the car is
+ * not off the route before it even reached it, e.g. while it leaves a parking lot.
+ */
+final class OffRouteDetector {
+    /** How far a fix can be from the route and still be on it, if the fix is accurate. */
+    private static final double MIN_ON_ROUTE_METERS = 30;
+
+    /** How far ahead of the last matched segment a fix is matched. */
+    private static final double WINDOW_AHEAD_METERS = 500;
+
+    /** How many fixes in a row, over how long, must be off the route to leave it. */
+    private static final int MIN_OFF_ROUTE_FIXES = 3;
+    private static final long MIN_OFF_ROUTE_MILLIS = 4000;
+
+    private static final double METERS_PER_DEGREE = 6371000 * Math.PI / 180;
+
+    private final Route mRoute;
+    // The distance along the route to each of its nodes, to bound the window and tell how much of
+    // the route is left.
+    private final double[] mNodeMeters;
+
+    // The segment, from a node of the route to the next one, the last fix on the route was on.
+    private int mSegment;
+    private boolean mHasMatched;
+    private int mOffRouteFixes;
+    private long mOffRouteSinceMillis;
+
+    OffRouteDetector(@NonNull Route route) {
+        mRoute = route;
+        RoadGraph graph = route.getGraph();
+        mNodeMeters = new double[route.getNodeCount()];
+        for (int i = 1; i < mNodeMeters.length; i++) {
+            mNodeMeters[i] = mNodeMeters[i - 1]
+                    + graph.getEdgeLengthDecimeters(route.getEdge(i - 1)) / 10.0;
+        }
+    }
+
+    /**
+     * Matches the given fix against the route, and returns whether the car has been off the route
+     * long enough to search a new one.
+     *
+     * <p>Once it returns {@code true}, the count starts again, so that the search is retried after
+     * as long if it does not find a route.
+     */
+    boolean onLocation(double latitude, double longitude, float accuracyMeters, long timeMillis) {
+        if (mNodeMeters.length < 2) {
+            return false;
+        }
+        RoadGraph graph = mRoute.getGraph();
+        double cosLatitude = Math.cos(Math.toRadians(latitude));
+        double maxMeters = Math.max(MIN_ON_ROUTE_METERS, accuracyMeters);
+        double bestMeters = Double.POSITIVE_INFINITY;
+        int bestSegment = -1;
+        int first = Math.max(0, mSegment - 1);
+        double windowEndMeters = mNodeMeters[mSegment] + WINDOW_AHEAD_METERS;
+        for (int segment = first; segment < mNodeMeters.length - 1; segment++) {
+            if (segment > mSegment && mNodeMeters[segment] > windowEndMeters) {
+                break;
+            }
+            int from = mRoute.getNode(segment);
+            int to = mRoute.getNode(segment + 1);
+            double meters = getDistanceToSegmentMeters(latitude, longitude, cosLatitude,
+                    graph.getLatitude(from), graph.getLongitude(from),
+                    graph.getLatitude(to), graph.getLongitude(to));
+            if (meters < bestMeters) {
+                bestMeters = meters;
+                bestSegment = segment;
+            }
+        }
+
+        if (bestMeters <= maxMeters) {
+            mSegment = bestSegment;
+            mHasMatched = true;
+            mOffRouteFixes = 0;
+            return false;
+        }
+        if (!mHasMatched) {
+            return false;
+        }
+        if (mOffRouteFixes++ == 0) {
+            mOffRouteSinceMillis = timeMillis;
+        }
+        if (mOffRouteFixes >= MIN_OFF_ROUTE_FIXES
+                && timeMillis - mOffRouteSinceMillis >= MIN_OFF_ROUTE_MILLIS) {
+            mOffRouteFixes = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /** Returns the length of the route left after the start of the last matched segment. */
+    double getRemainingMeters() {
+        return mNodeMeters[mNodeMeters.length - 1] - mNodeMeters[mSegment];
+    }
+
+    /**
+     * Returns the distance from a point to a segment, on a plane tangent to the earth at the
+     * point, which is precise enough over the length of a road.
+     */
+    private static double getDistanceToSegmentMeters(double latitude, double longitude,
+            double cosLatitude, double fromLatitude, double fromLongitude, double toLatitude,
+            double toLongitude) {
+        double fromX = (fromLongitude - longitude) * cosLatitude * METERS_PER_DEGREE;
+        double fromY = (fromLatitude - latitude) * METERS_PER_DEGREE;
+        double dx = (toLongitude - fromLongitude) * cosLatitude * METERS_PER_DEGREE;
+        double dy = (toLatitude - fromLatitude) * METERS_PER_DEGREE;
+        double lengthSquared = dx * dx + dy * dy;
+        // The position along the segment of the point closest to the fix, from 0 to 1.
+        double t = lengthSquared == 0 ? 0
+                : Math.max(0, Math.min(1, -(fromX * dx + fromY * dy) / lengthSquared));
+        double x = fromX + t * dx;
+        double y = fromY + t * dy;
+        return Math.sqrt(x * x + y * y);
+    }
+}
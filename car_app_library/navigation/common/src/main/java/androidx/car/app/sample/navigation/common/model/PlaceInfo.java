@@ -22,10 +22,15 @@ import androidx.annotation.NonNull;
 public class PlaceInfo {
     private final String mName;
     private final String mDisplayAddress;
+    private final double mLatitude;
+    private final double mLongitude;
 
-    public PlaceInfo(@NonNull String name, @NonNull String displayAddress) {
+    public PlaceInfo(@NonNull String name, @NonNull String displayAddress, double latitude,
+            double longitude) {
         mName = name;
         mDisplayAddress = displayAddress;
+        mLatitude = latitude;
+        mLongitude = longitude;
     }
 
     @NonNull
@@ -37,4 +42,12 @@ public class PlaceInfo {
     public String getDisplayAddress() {
         return mDisplayAddress;
     }
+
+    public double getLatitude() {
+        return mLatitude;
+    }
+
+    public double getLongitude() {
+        return mLongitude;
+    }
 }
@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Follows the car along the route of some {@link RouteInstructions}, and searches a new route to
+ * the same destination when the car leaves it.
+ *
+ * <p>Each location fix is matched by an {@link OffRouteDetector}. When the car has left the route,
+ * the listener first gets a rerouting instruction to show, then the instructions of the new route
+ * from where the car is, which is searched in a background thread. A fix on the route again while
+ * a new route is searched does not cancel the search: the new route starts from the car anyway.
+ * No route is searched from a fix too far from the roads of the graph, and if none is found, the
+ * instructions left of the previous route go on once the rerouting instruction is over.
+ */
+@MainThread
+public final class Rerouter {
+    private static final String TAG = "Rerouter";
+
+    /** How far the car can be from the closest node of the graph to search a route from it. */
+    private static final double MAX_NEAREST_NODE_METERS = 100;
+
+    // Reroutes are rare, and only the last one matters, so one thread is enough.
+    private static final ExecutorService EXECUTOR =
+            Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "Rerouter"));
+
+    /** Receives the instructions to execute instead of the ones left, in the main thread. */
+    public interface Listener {
+        /**
+         * Called when the car left the route, with the instruction to show meanwhile, before the
+         * instructions left.
+         */
+        void onRerouting(@NonNull Instruction instruction);
+
+        /** Called with the instructions of the new route, which replace the previous steps. */
+        void onRerouted(@NonNull RouteInstructions instructions);
+    }
+
+    private final Listener mListener;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private final int mDestinationNode;
+
+    private RouteInstructions mInstructions;
+    private OffRouteDetector mDetector;
+    @Nullable
+    private Router mRouter;
+    @Nullable
+    private Future<?> mSearch;
+    // Counts the searches, to drop the route of a search that was replaced by another.
+    private int mSearchNumber;
+
+    public Rerouter(@NonNull RouteInstructions instructions, @NonNull Listener listener) {
+        mListener = listener;
+        Route route = instructions.getRoute();
+        mDestinationNode = route.getNode(route.getNodeCount() - 1);
+        setInstructions(instructions);
+    }
+
+    /** Matches the given fix against the route, and searches a new one if the car left it. */
+    public void onLocationChanged(@NonNull Location location) {
+        if (!mDetector.onLocation(location.getLatitude(), location.getLongitude(),
+                location.getAccuracy(), location.getTime())) {
+            return;
+        }
+        Log.i(TAG, "Off the route, searching a new one");
+        Route route = mInstructions.getRoute();
+        double remainingMeters = mDetector.getRemainingMeters();
+        long remainingMillis = route.getLengthMeters() == 0 ? 0
+                : (long) (route.getDurationMillis() * remainingMeters / route.getLengthMeters());
+        mListener.onRerouting(mInstructions.getRerouting(remainingMeters, remainingMillis));
+
+        if (mSearch != null) {
+            mSearch.cancel(/* mayInterruptIfRunning= */ true);
+        }
+        double latitude = location.getLatitude();
+        double longitude = location.getLongitude();
+        RouteInstructions instructions = mInstructions;
+        int searchNumber = ++mSearchNumber;
+        mSearch = EXECUTOR.submit(() -> reroute(instructions, searchNumber, latitude, longitude));
+    }
+
+    /** Stops following the route, and cancels the search of a new one. */
+    public void stop() {
+        if (mSearch != null) {
+            mSearch.cancel(/* mayInterruptIfRunning= */ true);
+            mSearch = null;
+        }
+    }
+
+    private void setInstructions(@NonNull RouteInstructions instructions) {
+        mInstructions = instructions;
+        mDetector = new OffRouteDetector(instructions.getRoute());
+    }
+
+    @WorkerThread
+    private void reroute(@NonNull RouteInstructions previous, int searchNumber, double latitude,
+            double longitude) {
+        RoadGraph graph = previous.getRoute().getGraph();
+        int from = graph.findNearestNode(latitude, longitude);
+        if (from < 0 || RoadGraph.distanceMeters(latitude, longitude, graph.getLatitude(from),
+                graph.getLongitude(from)) > MAX_NEAREST_NODE_METERS) {
+            Log.w(TAG, "The car is too far from the roads to search a route");
+            return;
+        }
+        // Only used by the search thread, and kept to reuse its arrays.
+        if (mRouter == null || mRouter.getGraph() != graph) {
+            mRouter = new Router(graph);
+        }
+        Route route = mRouter.route(from, mDestinationNode);
+        if (Thread.currentThread().isInterrupted()) {
+            return;
+        }
+        if (route == null) {
+            Log.w(TAG, "No route from the car to the destination");
+            return;
+        }
+        RouteInstructions instructions = previous.continueWith(route);
+        mMainHandler.post(
+                () -> {
+                    if (mSearch == null || searchNumber != mSearchNumber) {
+                        return;
+                    }
+                    mSearch = null;
+                    setInstructions(instructions);
+                    mListener.onRerouted(instructions);
+                });
+    }
+}
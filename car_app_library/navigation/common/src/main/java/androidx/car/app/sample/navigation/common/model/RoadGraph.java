@@ -0,0 +1,325 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A road network read from a file written by {@link RoadGraphWriter}, for {@link Router} to find
+ * routes in without a connection.
+ *
+ * <p>The file is laid out as fixed-size records, so that it is read in place from a memory mapped
+ * buffer, and only the pages a route search touches are loaded:
+ *
+ * <ul>
+ *   <li>A header of {@link #MAGIC}, {@link #VERSION}, {@code FLAG_*} bits, the node, edge and
+ *       name counts, the size of the names and the highest speed of the roads.
+ *   <li>The latitude and longitude of each node, in millionths of a degree.
+ *   <li>The rank of each node in the contraction hierarchy, if {@link #FLAG_HIERARCHY} is set.
+ *   <li>The index of the first outgoing edge of each node, followed by the edges sorted by their
+ *       source node. An edge is its target node, travel time, length, road info, and for a
+ *       shortcut of the hierarchy, the two edges it stands for.
+ *   <li>The index of the first incoming edge of each node, followed by the source node and edge
+ *       of each incoming edge, for searching backward from the destination.
+ *   <li>The offset of each road name, followed by the UTF-8 bytes of the names.
+ * </ul>
+ *
+ * <p>Instances are immutable and can be shared by threads.
+ */
+public final class RoadGraph {
+    static final int MAGIC = 0x524f4144; // "ROAD"
+    static final int VERSION = 1;
+
+    /** Set if the nodes are ranked, and the edges include the shortcuts of a hierarchy. */
+    static final int FLAG_HIERARCHY = 1;
+
+    static final int HEADER_BYTES = 8 * 4;
+    static final int NODE_BYTES = 2 * 4;
+    static final int EDGE_BYTES = 6 * 4;
+    static final int IN_EDGE_BYTES = 2 * 4;
+
+    // The fields of an edge record.
+    private static final int EDGE_TARGET = 0;
+    private static final int EDGE_TIME = 4;
+    private static final int EDGE_LENGTH = 8;
+    private static final int EDGE_INFO = 12;
+    private static final int EDGE_FIRST_CHILD = 16;
+    private static final int EDGE_SECOND_CHILD = 20;
+
+    // The road info of an edge: the name index, the number of lanes and the road flags.
+    static final int INFO_NAME_BITS = 22;
+    static final int INFO_NAME_MASK = (1 << INFO_NAME_BITS) - 1;
+    static final int INFO_LANES_SHIFT = INFO_NAME_BITS;
+    static final int INFO_LANES_MASK = 0xf;
+    static final int INFO_FLAGS_SHIFT = INFO_LANES_SHIFT + 4;
+
+    /** The edge is part of a roundabout. */
+    public static final int ROAD_ROUNDABOUT = 1;
+
+    /** The scale of coordinates, i.e. they are stored in millionths of a degree. */
+    static final double COORDINATE_SCALE = 1e6;
+
+    private static final double EARTH_RADIUS_METERS = 6371000;
+
+    private final ByteBuffer mBuffer;
+    private final int mFlags;
+    private final int mNodeCount;
+    private final int mEdgeCount;
+    private final int mNameCount;
+    private final float mMaxSpeedMetersPerSecond;
+
+    // The offsets of the sections of the buffer.
+    private final int mNodes;
+    private final int mRanks;
+    private final int mOutIndex;
+    private final int mOutEdges;
+    private final int mInIndex;
+    private final int mInEdges;
+    private final int mNameIndex;
+    private final int mNames;
+
+    /**
+     * Maps the given file into memory, and returns the road graph it contains.
+     *
+     * @throws IOException if the file cannot be read, or is not a road graph
+     */
+    @NonNull
+    public static RoadGraph map(@NonNull File file) throws IOException {
+        ByteBuffer buffer;
+        try (FileInputStream in = new FileInputStream(file);
+                FileChannel channel = in.getChannel()) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        return new RoadGraph(buffer);
+    }
+
+    /**
+     * @param buffer the buffer holding the graph, from its current position to its limit
+     * @throws IOException if the buffer does not hold a supported road graph
+     */
+    public RoadGraph(@NonNull ByteBuffer buffer) throws IOException {
+        mBuffer = buffer.slice();
+        if (mBuffer.remaining() < HEADER_BYTES || mBuffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a road graph");
+        }
+        int version = mBuffer.getInt(4);
+        if (version != VERSION) {
+            throw new IOException("Unsupported road graph version: " + version);
+        }
+        mFlags = mBuffer.getInt(8);
+        mNodeCount = mBuffer.getInt(12);
+        mEdgeCount = mBuffer.getInt(16);
+        mNameCount = mBuffer.getInt(20);
+        int nameBytes = mBuffer.getInt(24);
+        mMaxSpeedMetersPerSecond = Float.intBitsToFloat(mBuffer.getInt(28));
+        if (mNodeCount < 0 || mEdgeCount < 0 || mNameCount < 0 || nameBytes < 0
+                || !(mMaxSpeedMetersPerSecond > 0)) {
+            throw new IOException("Malformed road graph header");
+        }
+
+        long offset = HEADER_BYTES;
+        mNodes = (int) offset;
+        offset += (long) mNodeCount * NODE_BYTES;
+        mRanks = (int) offset;
+        if (hasHierarchy()) {
+            offset += (long) mNodeCount * 4;
+        }
+        mOutIndex = (int) offset;
+        offset += (long) (mNodeCount + 1) * 4;
+        mOutEdges = (int) offset;
+        offset += (long) mEdgeCount * EDGE_BYTES;
+        mInIndex = (int) offset;
+        offset += (long) (mNodeCount + 1) * 4;
+        mInEdges = (int) offset;
+        offset += (long) mEdgeCount * IN_EDGE_BYTES;
+        mNameIndex = (int) offset;
+        offset += (long) (mNameCount + 1) * 4;
+        mNames = (int) offset;
+        offset += nameBytes;
+        if (offset > mBuffer.limit()) {
+            throw new IOException("Truncated road graph");
+        }
+    }
+
+    /** Returns whether the graph has the ranks and shortcuts of a contraction hierarchy. */
+    public boolean hasHierarchy() {
+        return (mFlags & FLAG_HIERARCHY) != 0;
+    }
+
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    /** Returns the number of edges, including the shortcuts of the hierarchy. */
+    public int getEdgeCount() {
+        return mEdgeCount;
+    }
+
+    /** Returns the highest speed of the roads, which bounds the time to reach any node. */
+    public float getMaxSpeedMetersPerSecond() {
+        return mMaxSpeedMetersPerSecond;
+    }
+
+    public double getLatitude(int node) {
+        return mBuffer.getInt(mNodes + node * NODE_BYTES) / COORDINATE_SCALE;
+    }
+
+    public double getLongitude(int node) {
+        return mBuffer.getInt(mNodes + node * NODE_BYTES + 4) / COORDINATE_SCALE;
+    }
+
+    /** Returns the rank of the given node in the hierarchy, or 0 if there is none. */
+    int getRank(int node) {
+        return hasHierarchy() ? mBuffer.getInt(mRanks + node * 4) : 0;
+    }
+
+    /**
+     * Returns the node closest to the given position, or -1 if the graph is empty.
+     *
+     * <p>This looks at every node, it is meant to be called once per route, not per position.
+     */
+    public int findNearestNode(double latitude, double longitude) {
+        int nearest = -1;
+        double nearestDistance = Double.MAX_VALUE;
+        for (int node = 0; node < mNodeCount; node++) {
+            double distance = distanceMeters(latitude, longitude, getLatitude(node),
+                    getLongitude(node));
+            if (distance < nearestDistance) {
+                nearestDistance = distance;
+                nearest = node;
+            }
+        }
+        return nearest;
+    }
+
+    /** Returns the index of the first outgoing edge of the given node. */
+    int getFirstOutEdge(int node) {
+        return mBuffer.getInt(mOutIndex + node * 4);
+    }
+
+    /** Returns the index past the last outgoing edge of the given node. */
+    int getLastOutEdge(int node) {
+        return mBuffer.getInt(mOutIndex + (node + 1) * 4);
+    }
+
+    int getFirstInEdge(int node) {
+        return mBuffer.getInt(mInIndex + node * 4);
+    }
+
+    int getLastInEdge(int node) {
+        return mBuffer.getInt(mInIndex + (node + 1) * 4);
+    }
+
+    /** Returns the source node of the given incoming edge. */
+    int getInEdgeSource(int inEdge) {
+        return mBuffer.getInt(mInEdges + inEdge * IN_EDGE_BYTES);
+    }
+
+    /** Returns the edge of the given incoming edge. */
+    int getInEdge(int inEdge) {
+        return mBuffer.getInt(mInEdges + inEdge * IN_EDGE_BYTES + 4);
+    }
+
+    int getEdgeTarget(int edge) {
+        return mBuffer.getInt(mOutEdges + edge * EDGE_BYTES + EDGE_TARGET);
+    }
+
+    /** Returns the time to travel the given edge, in milliseconds. */
+    int getEdgeTimeMillis(int edge) {
+        return mBuffer.getInt(mOutEdges + edge * EDGE_BYTES + EDGE_TIME);
+    }
+
+    /** Returns the length of the given edge, in decimeters. */
+    int getEdgeLengthDecimeters(int edge) {
+        return mBuffer.getInt(mOutEdges + edge * EDGE_BYTES + EDGE_LENGTH);
+    }
+
+    /** Returns the first of the two edges the given shortcut stands for, or -1 for a road. */
+    int getEdgeFirstChild(int edge) {
+        return mBuffer.getInt(mOutEdges + edge * EDGE_BYTES + EDGE_FIRST_CHILD);
+    }
+
+    int getEdgeSecondChild(int edge) {
+        return mBuffer.getInt(mOutEdges + edge * EDGE_BYTES + EDGE_SECOND_CHILD);
+    }
+
+    boolean isShortcut(int edge) {
+        return getEdgeFirstChild(edge) >= 0;
+    }
+
+    /** Returns the name of the road of the given edge, empty if it has none. */
+    @NonNull
+    String getEdgeName(int edge) {
+        int name = getEdgeInfo(edge) & INFO_NAME_MASK;
+        int start = mBuffer.getInt(mNameIndex + name * 4);
+        int end = mBuffer.getInt(mNameIndex + (name + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = mBuffer.get(mNames + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Returns the index of the name of the road of the given edge, to compare names cheaply. */
+    int getEdgeNameIndex(int edge) {
+        return getEdgeInfo(edge) & INFO_NAME_MASK;
+    }
+
+    int getEdgeLanes(int edge) {
+        return (getEdgeInfo(edge) >>> INFO_LANES_SHIFT) & INFO_LANES_MASK;
+    }
+
+    /** Returns the {@code ROAD_*} flags of the given edge. */
+    int getEdgeFlags(int edge) {
+        return getEdgeInfo(edge) >>> INFO_FLAGS_SHIFT;
+    }
+
+    private int getEdgeInfo(int edge) {
+        return mBuffer.getInt(mOutEdges + edge * EDGE_BYTES + EDGE_INFO);
+    }
+
+    /** Returns the great-circle distance between two positions, in meters. */
+    static double distanceMeters(double latitude1, double longitude1, double latitude2,
+            double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double sinHalfDeltaPhi = Math.sin((phi2 - phi1) / 2);
+        double sinHalfDeltaLambda = Math.sin(Math.toRadians(longitude2 - longitude1) / 2);
+        double a = sinHalfDeltaPhi * sinHalfDeltaPhi
+                + Math.cos(phi1) * Math.cos(phi2) * sinHalfDeltaLambda * sinHalfDeltaLambda;
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /** Returns the initial bearing from one position to another, in degrees from north. */
+    static double bearingDegrees(double latitude1, double longitude1, double latitude2,
+            double longitude2) {
+        double phi1 = Math.toRadians(latitude1);
+        double phi2 = Math.toRadians(latitude2);
+        double deltaLambda = Math.toRadians(longitude2 - longitude1);
+        double y = Math.sin(deltaLambda) * Math.cos(phi2);
+        double x = Math.cos(phi1) * Math.sin(phi2)
+                - Math.sin(phi1) * Math.cos(phi2) * Math.cos(deltaLambda);
+        return (Math.toDegrees(Math.atan2(y, x)) + 360) % 360;
+    }
+}
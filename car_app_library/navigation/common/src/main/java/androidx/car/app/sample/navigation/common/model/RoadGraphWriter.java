@@ -0,0 +1,447 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import static androidx.car.app.sample.navigation.common.model.RoadGraph.COORDINATE_SCALE;
+import static androidx.car.app.sample.navigation.common.model.RoadGraph.FLAG_HIERARCHY;
+import static androidx.car.app.sample.navigation.common.model.RoadGraph.INFO_FLAGS_SHIFT;
+import static androidx.car.app.sample.navigation.common.model.RoadGraph.INFO_LANES_MASK;
+import static androidx.car.app.sample.navigation.common.model.RoadGraph.INFO_LANES_SHIFT;
+import static androidx.car.app.sample.navigation.common.model.RoadGraph.INFO_NAME_MASK;
+import static androidx.car.app.sample.navigation.common.model.RoadGraph.MAGIC;
+import static androidx.car.app.sample.navigation.common.model.RoadGraph.VERSION;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Builds a road network and writes it in the format read by {@link RoadGraph}, e.g. to convert map
+ * data into a file shipped with the app or downloaded for offline use.
+ *
+ * <p>{@link #contract} optionally adds the shortcuts of a contraction hierarchy, which makes
+ * routes over long distances much faster to find, at the cost of a larger file and of the time to
+ * build it.
+ */
+public final class RoadGraphWriter {
+    // Witness searches give up after this many nodes, which may add a few needless shortcuts.
+    private static final int MAX_WITNESS_SETTLED_NODES = 500;
+    private static final long PRIORITY_OFFSET = 1L << 30;
+
+    private int mNodeCount;
+    private int[] mLatitudes = new int[16];
+    private int[] mLongitudes = new int[16];
+
+    // The edges, including the shortcuts added by contract().
+    private int mEdgeCount;
+    private int[] mSources = new int[16];
+    private int[] mTargets = new int[16];
+    private int[] mTimes = new int[16];
+    private int[] mLengths = new int[16];
+    private int[] mInfos = new int[16];
+    private int[] mFirstChildren = new int[16];
+    private int[] mSecondChildren = new int[16];
+
+    private final List<String> mNames = new ArrayList<>();
+    private final Map<String, Integer> mNameIndices = new HashMap<>();
+    private float mMaxSpeedMetersPerSecond;
+
+    @Nullable
+    private int[] mRanks;
+
+    public RoadGraphWriter() {
+        internName("");
+    }
+
+    /** Adds a node, e.g. an intersection or a point of the shape of a road, and returns it. */
+    public int addNode(double latitude, double longitude) {
+        if (mNodeCount == mLatitudes.length) {
+            mLatitudes = Arrays.copyOf(mLatitudes, 2 * mNodeCount);
+            mLongitudes = Arrays.copyOf(mLongitudes, 2 * mNodeCount);
+        }
+        mLatitudes[mNodeCount] = (int) Math.round(latitude * COORDINATE_SCALE);
+        mLongitudes[mNodeCount] = (int) Math.round(longitude * COORDINATE_SCALE);
+        return mNodeCount++;
+    }
+
+    /**
+     * Adds a road that can be driven from one node to another, but not back.
+     *
+     * @param name  the name of the road, or {@code null} if it has none
+     * @param lanes the number of lanes in this direction, up to 15, or 0 if unknown
+     * @param flags the {@code RoadGraph.ROAD_*} flags of the road
+     */
+    public void addRoad(int from, int to, double lengthMeters, double speedMetersPerSecond,
+            @Nullable String name, int lanes, int flags) {
+        checkNode(from);
+        checkNode(to);
+        if (!(lengthMeters >= 0) || !(speedMetersPerSecond > 0)) {
+            throw new IllegalArgumentException("Invalid length or speed");
+        }
+        if (lanes < 0 || lanes > INFO_LANES_MASK) {
+            throw new IllegalArgumentException("Invalid number of lanes: " + lanes);
+        }
+        if (mRanks != null) {
+            throw new IllegalStateException("Roads cannot be added once contracted");
+        }
+        int info = internName(name == null ? "" : name)
+                | lanes << INFO_LANES_SHIFT
+                | flags << INFO_FLAGS_SHIFT;
+        int timeMillis = (int) Math.max(1, Math.round(lengthMeters / speedMetersPerSecond * 1000));
+        addEdge(from, to, timeMillis, (int) Math.round(lengthMeters * 10), info, -1, -1);
+        mMaxSpeedMetersPerSecond = Math.max(mMaxSpeedMetersPerSecond,
+                (float) speedMetersPerSecond);
+    }
+
+    /** Adds a road that can be driven both ways, with the same number of lanes each way. */
+    public void addTwoWayRoad(int from, int to, double lengthMeters, double speedMetersPerSecond,
+            @Nullable String name, int lanes, int flags) {
+        addRoad(from, to, lengthMeters, speedMetersPerSecond, name, lanes, flags);
+        addRoad(to, from, lengthMeters, speedMetersPerSecond, name, lanes, flags);
+    }
+
+    /**
+     * Ranks the nodes and adds the shortcuts of a contraction hierarchy.
+     *
+     * <p>Nodes are contracted in the order of how many shortcuts they add, updated lazily as their
+     * neighbors are contracted. Contracting a node adds a shortcut between two of its neighbors
+     * when it is on the fastest path between them, as checked by a bounded search.
+     */
+    public void contract() {
+        if (mRanks != null) {
+            return;
+        }
+        List<List<Integer>> outEdges = new ArrayList<>(mNodeCount);
+        List<List<Integer>> inEdges = new ArrayList<>(mNodeCount);
+        for (int node = 0; node < mNodeCount; node++) {
+            outEdges.add(new ArrayList<>());
+            inEdges.add(new ArrayList<>());
+        }
+        for (int edge = 0; edge < mEdgeCount; edge++) {
+            outEdges.get(mSources[edge]).add(edge);
+            inEdges.get(mTargets[edge]).add(edge);
+        }
+
+        Contraction contraction = new Contraction(outEdges, inEdges);
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        for (int node = 0; node < mNodeCount; node++) {
+            queue.add(queueEntry(contraction.priority(node), node));
+        }
+        int[] ranks = new int[mNodeCount];
+        int rank = 0;
+        while (!queue.isEmpty()) {
+            int node = (int) (queue.poll() & 0xffffffffL);
+            if (contraction.mIsContracted[node]) {
+                continue;
+            }
+            // The priority may have grown since the node was queued.
+            long entry = queueEntry(contraction.priority(node), node);
+            Long next = queue.peek();
+            if (next != null && entry > next) {
+                queue.add(entry);
+                continue;
+            }
+            contraction.contract(node);
+            ranks[node] = rank++;
+        }
+        mRanks = ranks;
+    }
+
+    /** Writes the graph, and closes the given stream. */
+    public void writeTo(@NonNull OutputStream out) throws IOException {
+        // Sort the edges by source and by target, keeping the order they were added in.
+        int[] outIndex = countBy(mSources);
+        int[] inIndex = countBy(mTargets);
+        int[] newEdges = new int[mEdgeCount];
+        int[] outNext = Arrays.copyOf(outIndex, mNodeCount);
+        for (int edge = 0; edge < mEdgeCount; edge++) {
+            newEdges[edge] = outNext[mSources[edge]]++;
+        }
+        int[] edgesByNewIndex = new int[mEdgeCount];
+        for (int edge = 0; edge < mEdgeCount; edge++) {
+            edgesByNewIndex[newEdges[edge]] = edge;
+        }
+        int[] inEdges = new int[mEdgeCount];
+        int[] inNext = Arrays.copyOf(inIndex, mNodeCount);
+        for (int edge = 0; edge < mEdgeCount; edge++) {
+            inEdges[inNext[mTargets[edge]]++] = edge;
+        }
+
+        List<byte[]> names = new ArrayList<>(mNames.size());
+        int nameBytes = 0;
+        for (String name : mNames) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            names.add(bytes);
+            nameBytes += bytes.length;
+        }
+
+        try (DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out))) {
+            data.writeInt(MAGIC);
+            data.writeInt(VERSION);
+            data.writeInt(mRanks != null ? FLAG_HIERARCHY : 0);
+            data.writeInt(mNodeCount);
+            data.writeInt(mEdgeCount);
+            data.writeInt(mNames.size());
+            data.writeInt(nameBytes);
+            data.writeFloat(mMaxSpeedMetersPerSecond > 0 ? mMaxSpeedMetersPerSecond : 1);
+
+            for (int node = 0; node < mNodeCount; node++) {
+                data.writeInt(mLatitudes[node]);
+                data.writeInt(mLongitudes[node]);
+            }
+            if (mRanks != null) {
+                for (int node = 0; node < mNodeCount; node++) {
+                    data.writeInt(mRanks[node]);
+                }
+            }
+
+            for (int index : outIndex) {
+                data.writeInt(index);
+            }
+            for (int newEdge = 0; newEdge < mEdgeCount; newEdge++) {
+                int edge = edgesByNewIndex[newEdge];
+                data.writeInt(mTargets[edge]);
+                data.writeInt(mTimes[edge]);
+                data.writeInt(mLengths[edge]);
+                data.writeInt(mInfos[edge]);
+                data.writeInt(mFirstChildren[edge] < 0 ? -1 : newEdges[mFirstChildren[edge]]);
+                data.writeInt(mSecondChildren[edge] < 0 ? -1 : newEdges[mSecondChildren[edge]]);
+            }
+
+            for (int index : inIndex) {
+                data.writeInt(index);
+            }
+            for (int edge : inEdges) {
+                data.writeInt(mSources[edge]);
+                data.writeInt(newEdges[edge]);
+            }
+
+            int offset = 0;
+            for (byte[] name : names) {
+                data.writeInt(offset);
+                offset += name.length;
+            }
+            data.writeInt(offset);
+            for (byte[] name : names) {
+                data.write(name);
+            }
+        }
+    }
+
+    /** The state of the graph while it is contracted. */
+    private final class Contraction {
+        final List<List<Integer>> mOutEdges;
+        final List<List<Integer>> mInEdges;
+        final boolean[] mIsContracted = new boolean[mNodeCount];
+        final int[] mContractedNeighbors = new int[mNodeCount];
+
+        // The witness search, reset lazily by bumping the search number.
+        final int[] mWitnessTimes = new int[mNodeCount];
+        final int[] mWitnessSearches = new int[mNodeCount];
+        int mWitnessSearch;
+
+        Contraction(List<List<Integer>> outEdges, List<List<Integer>> inEdges) {
+            mOutEdges = outEdges;
+            mInEdges = inEdges;
+        }
+
+        /** Returns the priority of contracting the given node next, lower first. */
+        int priority(int node) {
+            int shortcuts = addShortcuts(node, /* add= */ false);
+            int removed = countRemaining(mOutEdges.get(node), true)
+                    + countRemaining(mInEdges.get(node), false);
+            return shortcuts - removed + mContractedNeighbors[node];
+        }
+
+        void contract(int node) {
+            addShortcuts(node, /* add= */ true);
+            mIsContracted[node] = true;
+            for (int edge : mOutEdges.get(node)) {
+                mContractedNeighbors[mTargets[edge]]++;
+            }
+            for (int edge : mInEdges.get(node)) {
+                mContractedNeighbors[mSources[edge]]++;
+            }
+        }
+
+        /** Returns the number of shortcuts contracting the given node needs, and adds them. */
+        private int addShortcuts(int node, boolean add) {
+            List<Integer> inEdges = mInEdges.get(node);
+            List<Integer> outEdges = mOutEdges.get(node);
+            int maxOutTime = 0;
+            for (int outEdge : outEdges) {
+                if (!mIsContracted[mTargets[outEdge]]) {
+                    maxOutTime = Math.max(maxOutTime, mTimes[outEdge]);
+                }
+            }
+            int shortcuts = 0;
+            // Copied, as adding shortcuts modifies the lists of the neighbors.
+            for (int inEdge : inEdges.toArray(new Integer[0])) {
+                int source = mSources[inEdge];
+                if (mIsContracted[source] || source == node) {
+                    continue;
+                }
+                searchWitnesses(source, node, mTimes[inEdge] + maxOutTime);
+                for (int outEdge : outEdges.toArray(new Integer[0])) {
+                    int target = mTargets[outEdge];
+                    if (mIsContracted[target] || target == source || target == node) {
+                        continue;
+                    }
+                    int time = mTimes[inEdge] + mTimes[outEdge];
+                    if (witnessTime(target) <= time) {
+                        continue;
+                    }
+                    shortcuts++;
+                    if (add) {
+                        int shortcut = addEdge(source, target, time,
+                                mLengths[inEdge] + mLengths[outEdge], 0, inEdge, outEdge);
+                        mOutEdges.get(source).add(shortcut);
+                        mInEdges.get(target).add(shortcut);
+                        // Later pairs of this source can use the shortcut as a witness.
+                        if (mWitnessSearches[target] == mWitnessSearch) {
+                            mWitnessTimes[target] = Math.min(mWitnessTimes[target], time);
+                        } else {
+                            mWitnessSearches[target] = mWitnessSearch;
+                            mWitnessTimes[target] = time;
+                        }
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        /**
+         * Finds the fastest times from the given node to its neighbors without going through the
+         * node being contracted, up to the given time.
+         */
+        private void searchWitnesses(int source, int excluded, int maxTime) {
+            mWitnessSearch++;
+            mWitnessSearches[source] = mWitnessSearch;
+            mWitnessTimes[source] = 0;
+            PriorityQueue<Long> queue = new PriorityQueue<>();
+            queue.add((long) source);
+            int settled = 0;
+            while (!queue.isEmpty() && settled < MAX_WITNESS_SETTLED_NODES) {
+                long entry = queue.poll();
+                int node = (int) (entry & 0xffffffffL);
+                int time = (int) (entry >>> 32);
+                if (time > mWitnessTimes[node]) {
+                    continue;
+                }
+                if (time > maxTime) {
+                    break;
+                }
+                settled++;
+                for (int edge : mOutEdges.get(node)) {
+                    int target = mTargets[edge];
+                    if (target == excluded || mIsContracted[target]) {
+                        continue;
+                    }
+                    int targetTime = time + mTimes[edge];
+                    if (targetTime < witnessTime(target)) {
+                        mWitnessSearches[target] = mWitnessSearch;
+                        mWitnessTimes[target] = targetTime;
+                        queue.add((long) targetTime << 32 | target);
+                    }
+                }
+            }
+        }
+
+        private int witnessTime(int node) {
+            return mWitnessSearches[node] == mWitnessSearch
+                    ? mWitnessTimes[node] : Integer.MAX_VALUE;
+        }
+
+        private int countRemaining(List<Integer> edges, boolean byTarget) {
+            int count = 0;
+            for (int edge : edges) {
+                if (!mIsContracted[byTarget ? mTargets[edge] : mSources[edge]]) {
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    private int addEdge(int source, int target, int timeMillis, int lengthDecimeters, int info,
+            int firstChild, int secondChild) {
+        if (mEdgeCount == mSources.length) {
+            int capacity = 2 * mEdgeCount;
+            mSources = Arrays.copyOf(mSources, capacity);
+            mTargets = Arrays.copyOf(mTargets, capacity);
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mLengths = Arrays.copyOf(mLengths, capacity);
+            mInfos = Arrays.copyOf(mInfos, capacity);
+            mFirstChildren = Arrays.copyOf(mFirstChildren, capacity);
+            mSecondChildren = Arrays.copyOf(mSecondChildren, capacity);
+        }
+        mSources[mEdgeCount] = source;
+        mTargets[mEdgeCount] = target;
+        mTimes[mEdgeCount] = timeMillis;
+        mLengths[mEdgeCount] = lengthDecimeters;
+        mInfos[mEdgeCount] = info;
+        mFirstChildren[mEdgeCount] = firstChild;
+        mSecondChildren[mEdgeCount] = secondChild;
+        return mEdgeCount++;
+    }
+
+    private int internName(String name) {
+        Integer index = mNameIndices.get(name);
+        if (index == null) {
+            index = mNames.size();
+            if (index > INFO_NAME_MASK) {
+                throw new IllegalStateException("Too many road names");
+            }
+            mNames.add(name);
+            mNameIndices.put(name, index);
+        }
+        return index;
+    }
+
+    /** Returns the index of the first edge of each node, and the edge count, by the given node. */
+    private int[] countBy(int[] nodes) {
+        int[] index = new int[mNodeCount + 1];
+        for (int edge = 0; edge < mEdgeCount; edge++) {
+            index[nodes[edge] + 1]++;
+        }
+        for (int node = 0; node < mNodeCount; node++) {
+            index[node + 1] += index[node];
+        }
+        return index;
+    }
+
+    private void checkNode(int node) {
+        if (node < 0 || node >= mNodeCount) {
+            throw new IllegalArgumentException("Unknown node: " + node);
+        }
+    }
+
+    private static long queueEntry(int priority, int node) {
+        return (priority + PRIORITY_OFFSET) << 32 | node;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import androidx.annotation.NonNull;
+
+import java.util.Arrays;
+
+/** A route found by a {@link Router}, as the roads of a {@link RoadGraph} to drive one by one. */
+public final class Route {
+    private final RoadGraph mGraph;
+    private final int[] mNodes;
+    private final int[] mEdges;
+    private final long mDurationMillis;
+    private final long mLengthDecimeters;
+
+    /**
+     * @param nodes the nodes of the route, from the start to the destination
+     * @param edges the roads between each node and the next, without shortcuts
+     */
+    Route(@NonNull RoadGraph graph, @NonNull int[] nodes, @NonNull int[] edges) {
+        mGraph = graph;
+        mNodes = nodes;
+        mEdges = edges;
+        long durationMillis = 0;
+        long lengthDecimeters = 0;
+        for (int edge : edges) {
+            durationMillis += graph.getEdgeTimeMillis(edge);
+            lengthDecimeters += graph.getEdgeLengthDecimeters(edge);
+        }
+        mDurationMillis = durationMillis;
+        mLengthDecimeters = lengthDecimeters;
+    }
+
+    @NonNull
+    public RoadGraph getGraph() {
+        return mGraph;
+    }
+
+    public long getDurationMillis() {
+        return mDurationMillis;
+    }
+
+    public double getLengthMeters() {
+        return mLengthDecimeters / 10.0;
+    }
+
+    /**
+     * Returns the name of the road the route drives the longest on, to tell routes apart, or an
+     * empty string if none of its roads has a name.
+     */
+    @NonNull
+    public String getMainRoadName() {
+        // Sorts the edges by name, to add up the length of each name in one pass.
+        long[] edgesByName = new long[mEdges.length];
+        for (int i = 0; i < mEdges.length; i++) {
+            edgesByName[i] = (long) mGraph.getEdgeNameIndex(mEdges[i]) << 32 | mEdges[i];
+        }
+        Arrays.sort(edgesByName);
+        int bestEdge = -1;
+        long bestLength = 0;
+        long length = 0;
+        for (int i = 0; i < edgesByName.length; i++) {
+            int edge = (int) edgesByName[i];
+            length += mGraph.getEdgeLengthDecimeters(edge);
+            boolean isLastOfName = i + 1 == edgesByName.length
+                    || edgesByName[i + 1] >>> 32 != edgesByName[i] >>> 32;
+            if (isLastOfName) {
+                if (length > bestLength) {
+                    bestLength = length;
+                    bestEdge = edge;
+                }
+                length = 0;
+            }
+        }
+        return bestEdge < 0 ? "" : mGraph.getEdgeName(bestEdge);
+    }
+
+    /** Returns the length in meters of the roads this route shares with the given one. */
+    public double getSharedLengthMeters(@NonNull Route other) {
+        int[] otherEdges = Arrays.copyOf(other.mEdges, other.mEdges.length);
+        Arrays.sort(otherEdges);
+        long lengthDecimeters = 0;
+        for (int edge : mEdges) {
+            if (Arrays.binarySearch(otherEdges, edge) >= 0) {
+                lengthDecimeters += mGraph.getEdgeLengthDecimeters(edge);
+            }
+        }
+        return lengthDecimeters / 10.0;
+    }
+
+    /** Returns the number of nodes of the route, one more than its number of roads. */
+    public int getNodeCount() {
+        return mNodes.length;
+    }
+
+    /** Returns the node of the graph at the given index of the route. */
+    public int getNode(int index) {
+        return mNodes[index];
+    }
+
+    /** Returns the edge of the graph from the node at the given index to the next one. */
+    int getEdge(int index) {
+        return mEdges[index];
+    }
+
+    int getEdgeCount() {
+        return mEdges.length;
+    }
+}
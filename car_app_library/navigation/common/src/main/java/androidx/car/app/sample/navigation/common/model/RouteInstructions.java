@@ -0,0 +1,447 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import static androidx.car.app.navigation.model.LaneDirection.SHAPE_NORMAL_LEFT;
+import static androidx.car.app.navigation.model.LaneDirection.SHAPE_NORMAL_RIGHT;
+import static androidx.car.app.navigation.model.LaneDirection.SHAPE_SHARP_LEFT;
+import static androidx.car.app.navigation.model.LaneDirection.SHAPE_SHARP_RIGHT;
+import static androidx.car.app.navigation.model.LaneDirection.SHAPE_SLIGHT_LEFT;
+import static androidx.car.app.navigation.model.LaneDirection.SHAPE_SLIGHT_RIGHT;
+import static androidx.car.app.navigation.model.LaneDirection.SHAPE_STRAIGHT;
+import static androidx.car.app.navigation.model.LaneDirection.SHAPE_U_TURN_LEFT;
+import static androidx.car.app.navigation.model.LaneDirection.SHAPE_U_TURN_RIGHT;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.car.app.CarContext;
+import androidx.car.app.model.CarIcon;
+import androidx.car.app.model.DateTimeWithZone;
+import androidx.car.app.model.Distance;
+import androidx.car.app.navigation.model.Destination;
+import androidx.car.app.navigation.model.Lane;
+import androidx.car.app.navigation.model.LaneDirection;
+import androidx.car.app.navigation.model.Maneuver;
+import androidx.car.app.navigation.model.Step;
+import androidx.car.app.navigation.model.TravelEstimate;
+import androidx.car.app.sample.navigation.common.R;
+import androidx.core.graphics.drawable.IconCompat;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns a {@link Route} into the instructions of a navigation script, as {@link DemoScripts} does
+ * for its fixed route.
+ *
+ * <p>The roads of the route are grouped into legs, each ending with a maneuver: where the road
+ * name changes, where the route turns at an intersection, through a roundabout, and at the
+ * destination. Each maneuver becomes a {@link Step}, with the lanes to take for turns, and each
+ * leg is driven through with position updates every few seconds.
+ *
+ * <p>The route is kept with its instructions, so that a new route can be searched when the car
+ * leaves it, see {@link Rerouter}.
+ */
+public final class RouteInstructions implements Iterable<Instruction> {
+    private static final long INSTRUCTION_NO_ELAPSED_TIME = 0;
+
+    /** The smallest change of direction at an intersection that is announced as a turn. */
+    private static final double MIN_TURN_DEGREES = 30;
+    private static final double MIN_NORMAL_TURN_DEGREES = 60;
+    private static final double MIN_SHARP_TURN_DEGREES = 120;
+    private static final double MIN_U_TURN_DEGREES = 165;
+
+    /** The time between position updates along a leg. */
+    private static final int TRIP_UPDATE_INTERVAL_SECONDS = 5;
+
+    private static final String UNNAMED_ROAD = "Unnamed road";
+
+    /**
+     * How long the rerouting instruction lasts at most, if no new route replaces it, after which
+     * the instructions left of the previous route go on.
+     */
+    private static final long REROUTING_DURATION_MILLIS = TimeUnit.SECONDS.toMillis(30);
+
+    /** A part of the route on one road, and the maneuver at its end. */
+    private static final class Leg {
+        final String mRoad;
+        double mLengthMeters;
+        long mDurationMillis;
+        int mLanes;
+        double mTurnDegrees;
+
+        int mManeuverType = Maneuver.TYPE_DESTINATION;
+        int mRoundaboutExitNumber;
+        int mRoundaboutExitAngle;
+        @Nullable
+        String mNextRoad;
+
+        Leg(String road) {
+            mRoad = road;
+        }
+    }
+
+    private final CarContext mCarContext;
+    private final Route mRoute;
+    private final String mDestinationName;
+    private final String mDestinationAddress;
+    private final List<Leg> mLegs;
+    // Whether the instructions continue a navigation, which already has its destination.
+    private final boolean mIsContinuation;
+
+    /**
+     * Returns the instructions to drive the given route.
+     *
+     * <p>The instructions are generated on demand, as the script is executed, and each call to
+     * {@link Iterable#iterator} starts a new sequence, with arrival times from that moment.
+     */
+    @NonNull
+    public static RouteInstructions create(@NonNull CarContext carContext,
+            @NonNull Route route, @NonNull String destinationName,
+            @NonNull String destinationAddress) {
+        return new RouteInstructions(carContext, route, destinationName, destinationAddress,
+                /* isContinuation= */ false);
+    }
+
+    /**
+     * Returns the instructions to drive the given route to the destination of the navigation
+     * these instructions are part of, e.g. after a reroute. They only add the steps of the route,
+     * which replace the steps of the previous one.
+     */
+    @NonNull
+    RouteInstructions continueWith(@NonNull Route route) {
+        return new RouteInstructions(mCarContext, route, mDestinationName, mDestinationAddress,
+                /* isContinuation= */ true);
+    }
+
+    private RouteInstructions(CarContext carContext, Route route, String destinationName,
+            String destinationAddress, boolean isContinuation) {
+        mCarContext = carContext;
+        mRoute = route;
+        mDestinationName = destinationName;
+        mDestinationAddress = destinationAddress;
+        mLegs = getLegs(route);
+        mIsContinuation = isContinuation;
+    }
+
+    @NonNull
+    public Route getRoute() {
+        return mRoute;
+    }
+
+    /** Returns whether these instructions replace the steps of a navigation already started. */
+    public boolean isContinuation() {
+        return mIsContinuation;
+    }
+
+    @NonNull
+    @Override
+    public Iterator<Instruction> iterator() {
+        return generate(mCarContext, mLegs, mDestinationName, mDestinationAddress,
+                mIsContinuation);
+    }
+
+    /**
+     * Returns the instruction shown while a new route is searched, with the distance and time
+     * left on the route when the car left it. It is meant to run before the instructions left, as
+     * the route to follow if no new one is found.
+     */
+    @NonNull
+    Instruction getRerouting(double remainingMeters, long remainingMillis) {
+        int remainingSeconds = (int) TimeUnit.MILLISECONDS.toSeconds(remainingMillis);
+        return Instruction.builder(Instruction.Type.SET_REROUTING, REROUTING_DURATION_MILLIS)
+                .setDestinationTravelEstimate(
+                        new TravelEstimate.Builder(
+                                Distance.create(remainingMeters, Distance.UNIT_METERS),
+                                DemoScripts.getCurrentDateTimeZoneWithOffset(remainingSeconds))
+                                .setRemainingTimeSeconds(remainingSeconds)
+                                .build())
+                .setNotification(
+                        true,
+                        mCarContext.getString(R.string.navigation_rerouting),
+                        null,
+                        R.drawable.ic_launcher)
+                .build();
+    }
+
+    private static Iterator<Instruction> generate(CarContext carContext, List<Leg> legs,
+            String destinationName, String destinationAddress, boolean isContinuation) {
+        double totalLengthMeters = 0;
+        long totalDurationMillis = 0;
+        for (Leg leg : legs) {
+            totalLengthMeters += leg.mLengthMeters;
+            totalDurationMillis += leg.mDurationMillis;
+        }
+        DateTimeWithZone arrivalTimeAtDestination = DemoScripts.getCurrentDateTimeZoneWithOffset(
+                (int) TimeUnit.MILLISECONDS.toSeconds(totalDurationMillis));
+
+        List<InstructionGenerator.Part> parts = new ArrayList<>();
+        parts.add(() -> getSetup(carContext, legs, destinationName, destinationAddress,
+                isContinuation).iterator());
+
+        double destinationDistanceRemaining = totalLengthMeters;
+        for (int i = 0; i < legs.size(); i++) {
+            Leg leg = legs.get(i);
+            int lengthMeters = (int) Math.round(leg.mLengthMeters);
+            int speed = (int) Math.max(1, Math.round(
+                    leg.mLengthMeters / Math.max(1, leg.mDurationMillis / 1000.0)));
+            int count = Math.max(2, lengthMeters / (speed * TRIP_UPDATE_INTERVAL_SECONDS));
+            int startDestinationDistanceRemaining = (int) Math.round(destinationDistanceRemaining);
+            String nextInstruction = leg.mNextRoad != null
+                    ? "onto " + leg.mNextRoad
+                    : "to " + destinationName;
+            int iconResourceId = DemoScripts.getTurnIconResourceId(leg.mManeuverType);
+            parts.add(() -> DemoScripts.generateTripUpdateSequence(
+                    count,
+                    startDestinationDistanceRemaining,
+                    lengthMeters,
+                    arrivalTimeAtDestination,
+                    leg.mRoad,
+                    /* junctionImage= */ null,
+                    /* showLanes= */ leg.mLanes > 1 && isTurn(leg.mTurnDegrees),
+                    nextInstruction,
+                    speed,
+                    iconResourceId));
+            if (i < legs.size() - 1) {
+                parts.add(DemoScripts::popStep);
+            }
+            destinationDistanceRemaining -= leg.mLengthMeters;
+        }
+        parts.add(DemoScripts::arrive);
+        return InstructionGenerator.concat(parts);
+    }
+
+    /**
+     * Returns the instructions that start the navigation and add the destination, unless it
+     * continues, and add the steps.
+     */
+    private static List<Instruction> getSetup(CarContext carContext, List<Leg> legs,
+            String destinationName, String destinationAddress, boolean isContinuation) {
+        List<Instruction> instructions = new ArrayList<>();
+        if (!isContinuation) {
+            instructions.add(
+                    Instruction.builder(
+                            Instruction.Type.START_NAVIGATION, INSTRUCTION_NO_ELAPSED_TIME)
+                            .build());
+            Destination destination =
+                    new Destination.Builder()
+                            .setName(destinationName)
+                            .setAddress(destinationAddress)
+                            .build();
+            instructions.add(
+                    Instruction.builder(
+                            Instruction.Type.ADD_DESTINATION_NAVIGATION,
+                            INSTRUCTION_NO_ELAPSED_TIME)
+                            .setDestination(destination)
+                            .build());
+        }
+
+        CarIcon lanesImage =
+                new CarIcon.Builder(IconCompat.createWithResource(carContext, R.drawable.lanes))
+                        .build();
+        for (Leg leg : legs) {
+            instructions.add(
+                    Instruction.builder(
+                            Instruction.Type.ADD_STEP_NAVIGATION, INSTRUCTION_NO_ELAPSED_TIME)
+                            .setStep(getStep(carContext, leg, destinationName, lanesImage))
+                            .build());
+        }
+        return instructions;
+    }
+
+    private static Step getStep(CarContext carContext, Leg leg, String destinationName,
+            CarIcon lanesImage) {
+        int iconResourceId = DemoScripts.getTurnIconResourceId(leg.mManeuverType);
+        Maneuver maneuver = leg.mRoundaboutExitNumber > 0
+                ? DemoScripts.getManeuverWithExitNumberAndAngle(carContext, leg.mManeuverType,
+                        iconResourceId, leg.mRoundaboutExitNumber, leg.mRoundaboutExitAngle)
+                : DemoScripts.getManeuver(carContext, leg.mManeuverType, iconResourceId);
+        String road = leg.mNextRoad != null ? leg.mNextRoad : destinationName;
+        Step.Builder step = new Step.Builder(road).setManeuver(maneuver).setRoad(road);
+
+        // Recommend the outermost lane on the side of the turn.
+        if (leg.mLanes > 1 && isTurn(leg.mTurnDegrees)) {
+            boolean isRight = leg.mTurnDegrees > 0;
+            Lane straight = new Lane.Builder()
+                    .addDirection(LaneDirection.create(SHAPE_STRAIGHT, false))
+                    .build();
+            Lane turn = new Lane.Builder()
+                    .addDirection(LaneDirection.create(getLaneShape(leg.mTurnDegrees), true))
+                    .build();
+            for (int lane = 0; lane < leg.mLanes; lane++) {
+                boolean isTurnLane = isRight ? lane == leg.mLanes - 1 : lane == 0;
+                step.addLane(isTurnLane ? turn : straight);
+            }
+            step.setLanesImage(lanesImage);
+        }
+        return step.build();
+    }
+
+    /** Groups the roads of the given route into legs, each ending with a maneuver. */
+    private static List<Leg> getLegs(Route route) {
+        RoadGraph graph = route.getGraph();
+        List<Leg> legs = new ArrayList<>();
+        int edgeCount = route.getEdgeCount();
+        if (edgeCount == 0) {
+            return legs;
+        }
+        Leg leg = new Leg(getRoadName(graph, route.getEdge(0)));
+        int i = 0;
+        while (i < edgeCount) {
+            int edge = route.getEdge(i);
+            addEdge(graph, leg, edge);
+            if (i == edgeCount - 1) {
+                break;
+            }
+            int next = route.getEdge(i + 1);
+            boolean isRoundabout = (graph.getEdgeFlags(edge) & RoadGraph.ROAD_ROUNDABOUT) != 0;
+            boolean isNextRoundabout =
+                    (graph.getEdgeFlags(next) & RoadGraph.ROAD_ROUNDABOUT) != 0;
+
+            if (isNextRoundabout && !isRoundabout) {
+                // Go around the roundabout, counting the exits up to the one taken.
+                int exit = i + 1;
+                int exitNumber = 0;
+                while (exit < edgeCount
+                        && (graph.getEdgeFlags(route.getEdge(exit)) & RoadGraph.ROAD_ROUNDABOUT)
+                        != 0) {
+                    addEdge(graph, leg, route.getEdge(exit));
+                    if (hasExit(graph, route.getNode(exit + 1))) {
+                        exitNumber++;
+                    }
+                    exit++;
+                }
+                if (exit == edgeCount) {
+                    // The destination is on the roundabout.
+                    break;
+                }
+                double turn = getTurnDegrees(route, i, exit);
+                leg.mManeuverType = Maneuver.TYPE_ROUNDABOUT_ENTER_AND_EXIT_CCW_WITH_ANGLE;
+                leg.mRoundaboutExitNumber = Math.max(1, exitNumber);
+                // Counter-clockwise, from the entry: a right turn is a quarter of the way round.
+                int angle = (int) Math.round(180 - turn) % 360;
+                leg.mRoundaboutExitAngle = angle <= 0 ? angle + 360 : angle;
+                leg = finishLeg(legs, leg, getRoadName(graph, route.getEdge(exit)));
+                i = exit;
+                continue;
+            }
+
+            double turn = getTurnDegrees(route, i, i + 1);
+            boolean isNameChange = graph.getEdgeNameIndex(edge) != graph.getEdgeNameIndex(next);
+            boolean isAnnouncedTurn = Math.abs(turn) >= MIN_TURN_DEGREES
+                    && hasChoice(graph, route.getNode(i + 1), route.getNode(i));
+            if (isNameChange || isAnnouncedTurn) {
+                leg.mTurnDegrees = turn;
+                leg.mManeuverType = getManeuverType(turn, isNameChange);
+                leg = finishLeg(legs, leg, getRoadName(graph, next));
+            }
+            i++;
+        }
+        legs.add(leg);
+        return legs;
+    }
+
+    private static Leg finishLeg(List<Leg> legs, Leg leg, String nextRoad) {
+        leg.mNextRoad = nextRoad;
+        legs.add(leg);
+        return new Leg(nextRoad);
+    }
+
+    private static void addEdge(RoadGraph graph, Leg leg, int edge) {
+        leg.mLengthMeters += graph.getEdgeLengthDecimeters(edge) / 10.0;
+        leg.mDurationMillis += graph.getEdgeTimeMillis(edge);
+        leg.mLanes = graph.getEdgeLanes(edge);
+    }
+
+    /** Returns the change of direction between two roads of the route, positive to the right. */
+    private static double getTurnDegrees(Route route, int from, int to) {
+        RoadGraph graph = route.getGraph();
+        double in = getBearing(graph, route.getNode(from), route.getNode(from + 1));
+        double out = getBearing(graph, route.getNode(to), route.getNode(to + 1));
+        double turn = (out - in + 360) % 360;
+        return turn > 180 ? turn - 360 : turn;
+    }
+
+    private static double getBearing(RoadGraph graph, int from, int to) {
+        return RoadGraph.bearingDegrees(graph.getLatitude(from), graph.getLongitude(from),
+                graph.getLatitude(to), graph.getLongitude(to));
+    }
+
+    /** Returns whether the given node has a road other than the one back to where it came from. */
+    private static boolean hasChoice(RoadGraph graph, int node, int previous) {
+        int roads = 0;
+        int last = graph.getLastOutEdge(node);
+        for (int edge = graph.getFirstOutEdge(node); edge < last; edge++) {
+            if (!graph.isShortcut(edge) && graph.getEdgeTarget(edge) != previous) {
+                roads++;
+            }
+        }
+        return roads > 1;
+    }
+
+    /** Returns whether the given node of a roundabout has a road out of it. */
+    private static boolean hasExit(RoadGraph graph, int node) {
+        int last = graph.getLastOutEdge(node);
+        for (int edge = graph.getFirstOutEdge(node); edge < last; edge++) {
+            if (!graph.isShortcut(edge)
+                    && (graph.getEdgeFlags(edge) & RoadGraph.ROAD_ROUNDABOUT) == 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isTurn(double turn) {
+        return Math.abs(turn) >= MIN_TURN_DEGREES;
+    }
+
+    private static int getManeuverType(double turn, boolean isNameChange) {
+        double angle = Math.abs(turn);
+        boolean isRight = turn > 0;
+        if (angle < MIN_TURN_DEGREES) {
+            return isNameChange ? Maneuver.TYPE_NAME_CHANGE : Maneuver.TYPE_STRAIGHT;
+        } else if (angle < MIN_NORMAL_TURN_DEGREES) {
+            return isRight ? Maneuver.TYPE_TURN_SLIGHT_RIGHT : Maneuver.TYPE_TURN_SLIGHT_LEFT;
+        } else if (angle < MIN_SHARP_TURN_DEGREES) {
+            return isRight ? Maneuver.TYPE_TURN_NORMAL_RIGHT : Maneuver.TYPE_TURN_NORMAL_LEFT;
+        } else if (angle < MIN_U_TURN_DEGREES) {
+            return isRight ? Maneuver.TYPE_TURN_SHARP_RIGHT : Maneuver.TYPE_TURN_SHARP_LEFT;
+        }
+        return isRight ? Maneuver.TYPE_U_TURN_RIGHT : Maneuver.TYPE_U_TURN_LEFT;
+    }
+
+    private static int getLaneShape(double turn) {
+        double angle = Math.abs(turn);
+        boolean isRight = turn > 0;
+        if (angle < MIN_NORMAL_TURN_DEGREES) {
+            return isRight ? SHAPE_SLIGHT_RIGHT : SHAPE_SLIGHT_LEFT;
+        } else if (angle < MIN_SHARP_TURN_DEGREES) {
+            return isRight ? SHAPE_NORMAL_RIGHT : SHAPE_NORMAL_LEFT;
+        } else if (angle < MIN_U_TURN_DEGREES) {
+            return isRight ? SHAPE_SHARP_RIGHT : SHAPE_SHARP_LEFT;
+        }
+        return isRight ? SHAPE_U_TURN_RIGHT : SHAPE_U_TURN_LEFT;
+    }
+
+    private static String getRoadName(RoadGraph graph, int edge) {
+        String name = graph.getEdgeName(edge);
+        return name.isEmpty() ? UNNAMED_ROAD : name;
+    }
+
+}
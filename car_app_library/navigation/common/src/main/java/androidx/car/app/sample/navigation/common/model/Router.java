@@ -0,0 +1,446 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.Arrays;
+
+/**
+ * Finds the fastest route between two nodes of a {@link RoadGraph}.
+ *
+ * <p>The route is searched from both ends at once, until the two searches meet:
+ *
+ * <ul>
+ *   <li>In a plain graph, the searches are A*, guided by the time to drive in a straight line at
+ *       the highest speed of the graph. Both use the average of the forward and backward estimates,
+ *       so that the first path found where they meet is the fastest.
+ *   <li>In a graph with a contraction hierarchy, each search only goes up the hierarchy, from a
+ *       node to a higher ranked one, which mostly follows the shortcuts and settles a few hundred
+ *       nodes even for long routes. The shortcuts of the route are then expanded into roads.
+ * </ul>
+ *
+ * <p>The roads of a previous route can be made slower with {@link #setPenalty}, so that the next
+ * routes look for a way around them, to offer alternatives. Penalties change the times the
+ * shortcuts were built with, so a penalized route is always searched with A*.
+ *
+ * <p>A router keeps the state of its searches between routes, to avoid allocating it each time,
+ * so it must only be used by one thread at a time. A search stops early, without a route, when
+ * its thread is interrupted.
+ */
+@WorkerThread
+public final class Router {
+    private static final int FORWARD = 0;
+    private static final int BACKWARD = 1;
+    // How many nodes are settled between checks that the thread was interrupted.
+    private static final int INTERRUPT_CHECK_INTERVAL = 1024;
+
+    private final RoadGraph mGraph;
+    private final Search[] mSearches;
+    private final double mMillisPerMeter;
+
+    // The route whose roads are made slower for the next routes, or null if none is, and whether
+    // each edge is one of them.
+    @Nullable
+    private Route mPenalizedRoute;
+    private boolean[] mPenalizedEdges;
+    private float mPenaltyFactor;
+
+    // The ends of the current route, and the fastest path found so far where the searches meet.
+    private int mFrom;
+    private int mTo;
+    private long mBestTime;
+    private int mMeetingNode;
+
+    public Router(@NonNull RoadGraph graph) {
+        mGraph = graph;
+        mSearches = new Search[]{
+                new Search(graph.getNodeCount()), new Search(graph.getNodeCount())};
+        mMillisPerMeter = 1000 / graph.getMaxSpeedMetersPerSecond();
+    }
+
+    @NonNull
+    RoadGraph getGraph() {
+        return mGraph;
+    }
+
+    /**
+     * Makes the roads of the given route slower by the given factor for the next routes, or
+     * removes the penalty if the route is {@code null}.
+     */
+    public void setPenalty(@Nullable Route route, float factor) {
+        // Only the entries of the previous route are cleared, not the whole array.
+        if (mPenalizedRoute != null) {
+            for (int i = 0; i < mPenalizedRoute.getEdgeCount(); i++) {
+                mPenalizedEdges[mPenalizedRoute.getEdge(i)] = false;
+            }
+        }
+        mPenalizedRoute = factor > 1 ? route : null;
+        mPenaltyFactor = factor;
+        if (mPenalizedRoute == null) {
+            return;
+        }
+        if (mPenalizedEdges == null) {
+            mPenalizedEdges = new boolean[mGraph.getEdgeCount()];
+        }
+        for (int i = 0; i < route.getEdgeCount(); i++) {
+            mPenalizedEdges[route.getEdge(i)] = true;
+        }
+    }
+
+    /**
+     * Returns the fastest route between the nodes closest to the given positions, or {@code null}
+     * if there is none.
+     */
+    @Nullable
+    public Route route(double fromLatitude, double fromLongitude, double toLatitude,
+            double toLongitude) {
+        int from = mGraph.findNearestNode(fromLatitude, fromLongitude);
+        int to = mGraph.findNearestNode(toLatitude, toLongitude);
+        return from < 0 || to < 0 ? null : route(from, to);
+    }
+
+    /**
+     * Returns the fastest route between the given nodes, or {@code null} if there is none or the
+     * thread was interrupted.
+     */
+    @Nullable
+    public Route route(int from, int to) {
+        if (from == to) {
+            return new Route(mGraph, new int[]{from}, new int[0]);
+        }
+        mFrom = from;
+        mTo = to;
+        boolean isHierarchy = mGraph.hasHierarchy() && mPenalizedRoute == null;
+        Search forward = mSearches[FORWARD];
+        Search backward = mSearches[BACKWARD];
+        forward.start(from, isHierarchy ? 0 : potential(from));
+        backward.start(to, isHierarchy ? 0 : -potential(to));
+        mBestTime = Long.MAX_VALUE;
+        mMeetingNode = -1;
+
+        for (int settled = 1; ; settled++) {
+            if (settled % INTERRUPT_CHECK_INTERVAL == 0
+                    && Thread.currentThread().isInterrupted()) {
+                return null;
+            }
+            double forwardKey = forward.peekKey();
+            double backwardKey = backward.peekKey();
+            int direction;
+            if (isHierarchy) {
+                // Each search goes on until it cannot find a faster path up the hierarchy.
+                boolean isForwardDone = forwardKey >= mBestTime;
+                boolean isBackwardDone = backwardKey >= mBestTime;
+                if (isForwardDone && isBackwardDone) {
+                    break;
+                }
+                direction = isBackwardDone || (!isForwardDone && forwardKey <= backwardKey)
+                        ? FORWARD : BACKWARD;
+            } else {
+                // With the average potentials, no faster path is left once the keys add up to it.
+                if (forwardKey == Double.POSITIVE_INFINITY
+                        || backwardKey == Double.POSITIVE_INFINITY
+                        || forwardKey + backwardKey >= mBestTime) {
+                    break;
+                }
+                direction = forwardKey <= backwardKey ? FORWARD : BACKWARD;
+            }
+
+            int node = mSearches[direction].poll();
+            if (direction == FORWARD) {
+                relaxOutEdges(node, isHierarchy);
+            } else {
+                relaxInEdges(node, isHierarchy);
+            }
+        }
+        return mMeetingNode < 0 ? null : buildRoute(mMeetingNode);
+    }
+
+    private void relaxOutEdges(int node, boolean isHierarchy) {
+        Search search = mSearches[FORWARD];
+        int rank = mGraph.getRank(node);
+        int last = mGraph.getLastOutEdge(node);
+        for (int edge = mGraph.getFirstOutEdge(node); edge < last; edge++) {
+            int target = mGraph.getEdgeTarget(edge);
+            if (isHierarchy ? mGraph.getRank(target) <= rank : mGraph.isShortcut(edge)) {
+                continue;
+            }
+            int time = search.getTime(node) + getEdgeTimeMillis(edge);
+            if (time < search.getTime(target)) {
+                double potential = isHierarchy ? 0 : potential(target);
+                search.update(target, time, time + potential, edge, node);
+                meet(target);
+            }
+        }
+    }
+
+    private void relaxInEdges(int node, boolean isHierarchy) {
+        Search search = mSearches[BACKWARD];
+        int rank = mGraph.getRank(node);
+        int last = mGraph.getLastInEdge(node);
+        for (int inEdge = mGraph.getFirstInEdge(node); inEdge < last; inEdge++) {
+            int source = mGraph.getInEdgeSource(inEdge);
+            int edge = mGraph.getInEdge(inEdge);
+            if (isHierarchy ? mGraph.getRank(source) <= rank : mGraph.isShortcut(edge)) {
+                continue;
+            }
+            int time = search.getTime(node) + getEdgeTimeMillis(edge);
+            if (time < search.getTime(source)) {
+                double potential = isHierarchy ? 0 : -potential(source);
+                search.update(source, time, time + potential, edge, node);
+                meet(source);
+            }
+        }
+    }
+
+    /** Returns the time to drive the given edge, with its penalty if it has one. */
+    private int getEdgeTimeMillis(int edge) {
+        int time = mGraph.getEdgeTimeMillis(edge);
+        return mPenalizedRoute != null && mPenalizedEdges[edge]
+                ? (int) Math.min(time * mPenaltyFactor, Integer.MAX_VALUE / 2) : time;
+    }
+
+    /** Keeps the path through the given node if both searches reached it, and it is faster. */
+    private void meet(int node) {
+        Search forward = mSearches[FORWARD];
+        Search backward = mSearches[BACKWARD];
+        if (forward.isReached(node) && backward.isReached(node)) {
+            long time = (long) forward.getTime(node) + backward.getTime(node);
+            if (time < mBestTime) {
+                mBestTime = time;
+                mMeetingNode = node;
+            }
+        }
+    }
+
+    /**
+     * Returns the average of the estimated times to the destination and from the start, which is
+     * a consistent estimate for the searches in both directions.
+     */
+    private double potential(int node) {
+        double latitude = mGraph.getLatitude(node);
+        double longitude = mGraph.getLongitude(node);
+        double toDestination = RoadGraph.distanceMeters(latitude, longitude,
+                mGraph.getLatitude(mTo), mGraph.getLongitude(mTo));
+        double fromStart = RoadGraph.distanceMeters(mGraph.getLatitude(mFrom),
+                mGraph.getLongitude(mFrom), latitude, longitude);
+        return (toDestination - fromStart) / 2 * mMillisPerMeter;
+    }
+
+    /** Joins the paths of both searches at the given node, and expands their shortcuts. */
+    private Route buildRoute(int meetingNode) {
+        Search forward = mSearches[FORWARD];
+        Search backward = mSearches[BACKWARD];
+        IntList edges = new IntList();
+        for (int node = meetingNode; node != mFrom; node = forward.getParentNode(node)) {
+            edges.add(forward.getParentEdge(node));
+        }
+        edges.reverse();
+        for (int node = meetingNode; node != mTo; node = backward.getParentNode(node)) {
+            edges.add(backward.getParentEdge(node));
+        }
+
+        IntList roads = new IntList();
+        IntList pending = new IntList();
+        for (int i = edges.size() - 1; i >= 0; i--) {
+            pending.add(edges.get(i));
+        }
+        while (pending.size() > 0) {
+            int edge = pending.removeLast();
+            if (mGraph.isShortcut(edge)) {
+                pending.add(mGraph.getEdgeSecondChild(edge));
+                pending.add(mGraph.getEdgeFirstChild(edge));
+            } else {
+                roads.add(edge);
+            }
+        }
+
+        int[] nodes = new int[roads.size() + 1];
+        nodes[0] = mFrom;
+        for (int i = 0; i < roads.size(); i++) {
+            nodes[i + 1] = mGraph.getEdgeTarget(roads.get(i));
+        }
+        return new Route(mGraph, nodes, roads.toArray());
+    }
+
+    /**
+     * The state of the search in one direction: the best time found to each node, the edge and
+     * node it was reached from, and a heap of the nodes to settle by their key.
+     *
+     * <p>The arrays are sized for the whole graph once, and reset lazily by numbering the
+     * searches, so that a route only touches the entries of the nodes it reaches.
+     */
+    private static final class Search {
+        private final int[] mTimes;
+        private final int[] mParentEdges;
+        private final int[] mParentNodes;
+        private final int[] mSearchNumbers;
+        private final double[] mKeys;
+        private final int[] mHeapPositions;
+        private int[] mHeap = new int[64];
+        private int mHeapSize;
+        private int mSearchNumber;
+
+        Search(int nodeCount) {
+            mTimes = new int[nodeCount];
+            mParentEdges = new int[nodeCount];
+            mParentNodes = new int[nodeCount];
+            mSearchNumbers = new int[nodeCount];
+            mKeys = new double[nodeCount];
+            mHeapPositions = new int[nodeCount];
+        }
+
+        void start(int node, double key) {
+            mSearchNumber++;
+            mHeapSize = 0;
+            update(node, 0, key, -1, -1);
+        }
+
+        boolean isReached(int node) {
+            return mSearchNumbers[node] == mSearchNumber;
+        }
+
+        int getTime(int node) {
+            return isReached(node) ? mTimes[node] : Integer.MAX_VALUE;
+        }
+
+        int getParentEdge(int node) {
+            return mParentEdges[node];
+        }
+
+        int getParentNode(int node) {
+            return mParentNodes[node];
+        }
+
+        /** Returns the smallest key of the heap, or infinity if it is empty. */
+        double peekKey() {
+            return mHeapSize == 0 ? Double.POSITIVE_INFINITY : mKeys[mHeap[0]];
+        }
+
+        /** Sets a faster time to the given node, and adds it to the heap or moves it up. */
+        void update(int node, int time, double key, int parentEdge, int parentNode) {
+            int position;
+            if (!isReached(node)) {
+                mSearchNumbers[node] = mSearchNumber;
+                position = -1;
+            } else {
+                position = mHeapPositions[node];
+            }
+            mTimes[node] = time;
+            mKeys[node] = key;
+            mParentEdges[node] = parentEdge;
+            mParentNodes[node] = parentNode;
+            if (position < 0) {
+                // Reached for the first time, or settled before with a larger key, which a
+                // consistent estimate rules out, but keeps the search correct anyway.
+                if (mHeapSize == mHeap.length) {
+                    mHeap = Arrays.copyOf(mHeap, 2 * mHeapSize);
+                }
+                position = mHeapSize++;
+            }
+            siftUp(node, position);
+        }
+
+        /** Removes the node with the smallest key from the heap, and returns it. */
+        int poll() {
+            int node = mHeap[0];
+            mHeapPositions[node] = -1;
+            int last = mHeap[--mHeapSize];
+            if (mHeapSize > 0) {
+                siftDown(last, 0);
+            }
+            return node;
+        }
+
+        private void siftUp(int node, int position) {
+            double key = mKeys[node];
+            while (position > 0) {
+                int parentPosition = (position - 1) / 2;
+                int parent = mHeap[parentPosition];
+                if (mKeys[parent] <= key) {
+                    break;
+                }
+                place(parent, position);
+                position = parentPosition;
+            }
+            place(node, position);
+        }
+
+        private void siftDown(int node, int position) {
+            double key = mKeys[node];
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= mHeapSize) {
+                    break;
+                }
+                if (child + 1 < mHeapSize && mKeys[mHeap[child + 1]] < mKeys[mHeap[child]]) {
+                    child++;
+                }
+                if (mKeys[mHeap[child]] >= key) {
+                    break;
+                }
+                place(mHeap[child], position);
+                position = child;
+            }
+            place(node, position);
+        }
+
+        private void place(int node, int position) {
+            mHeap[position] = node;
+            mHeapPositions[node] = position;
+        }
+    }
+
+    /** A growable list of ints, to build routes without boxing. */
+    private static final class IntList {
+        private int[] mValues = new int[16];
+        private int mSize;
+
+        void add(int value) {
+            if (mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, 2 * mSize);
+            }
+            mValues[mSize++] = value;
+        }
+
+        int get(int index) {
+            return mValues[index];
+        }
+
+        int removeLast() {
+            return mValues[--mSize];
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        void reverse() {
+            for (int i = 0, j = mSize - 1; i < j; i++, j--) {
+                int value = mValues[i];
+                mValues[i] = mValues[j];
+                mValues[j] = value;
+            }
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(mValues, mSize);
+        }
+    }
+}
@@ -16,21 +16,27 @@
 
 package androidx.car.app.sample.navigation.common.model;
 
-import android.os.Handler;
-import android.os.Looper;
-
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
-import java.util.List;
+import java.util.Iterator;
 
-/** Represents an instruction sequence and parameters for a executing a script. */
+/**
+ * Represents an instruction sequence and parameters for a executing a script.
+ *
+ * <p>Each instruction runs when the previous one has lasted for its duration, as measured by the
+ * {@link ScriptScheduler} the script is executed with. Instructions are pulled from the given
+ * iterator only when they are about to run, so the script never holds more than the current
+ * instruction and the one after it.
+ */
 public class Script {
 
-    private final Handler mHandler = new Handler(Looper.getMainLooper());
-    private final List<Instruction> mInstructions;
+    private final ScriptScheduler mScheduler;
+    private Iterator<Instruction> mInstructions;
     private final Processor mProcessor;
-    private int mCurrentInstruction;
+
+    @Nullable
+    private Instruction mNextInstruction;
 
     /** An interface for a block of code that processes an instruction. */
     public interface Processor {
@@ -38,40 +44,95 @@ public class Script {
         void process(@NonNull Instruction instruction, @Nullable Instruction nextInstruction);
     }
 
-    /** Executes the given list of instructions. */
+    /** Executes the given sequence of instructions in real time. */
     @NonNull
-    public static Script execute(@NonNull List<Instruction> instructions,
+    public static Script execute(@NonNull Iterator<Instruction> instructions,
             @NonNull Processor processor) {
-        return new Script(instructions, processor);
+        return execute(instructions, processor, ScriptScheduler.realTime());
+    }
+
+    /** Executes the given sequence of instructions, at the pace of the given scheduler. */
+    @NonNull
+    public static Script execute(@NonNull Iterator<Instruction> instructions,
+            @NonNull Processor processor, @NonNull ScriptScheduler scheduler) {
+        Script script = create(instructions, processor, scheduler);
+        script.start();
+        return script;
+    }
+
+    /**
+     * Returns a script for the given sequence of instructions, which only starts executing them
+     * with {@link #start}.
+     *
+     * <p>E.g. to keep a reference to the script before its first instruction runs, as the whole
+     * script can run before {@link #start} returns with {@link ScriptScheduler#asFastAsPossible}.
+     */
+    @NonNull
+    public static Script create(@NonNull Iterator<Instruction> instructions,
+            @NonNull Processor processor, @NonNull ScriptScheduler scheduler) {
+        return new Script(instructions, processor, scheduler);
+    }
+
+    /** Starts executing the instructions, the first one right away to avoid flicker. */
+    public void start() {
+        mNextInstruction = mInstructions.hasNext() ? mInstructions.next() : null;
+        nextInstruction();
+    }
+
+    /** Returns the current time as seen by the script, in milliseconds since the epoch. */
+    public long getTimeMillis() {
+        return mScheduler.getTimeMillis();
     }
 
     /** Stops executing the instructions. */
     public void stop() {
-        mHandler.removeCallbacksAndMessages(null);
-        mCurrentInstruction = mInstructions.size();
+        mScheduler.cancelAll();
+        mNextInstruction = null;
     }
 
-    private Script(@NonNull List<Instruction> instructions, @NonNull Processor processor) {
+    /**
+     * Replaces the instructions not executed yet with the given ones, the first of which is
+     * executed right away, e.g. to follow a new route without starting the navigation again.
+     *
+     * <p>This also works once the previous instructions ran out.
+     */
+    public void splice(@NonNull Iterator<Instruction> instructions) {
+        mScheduler.cancelAll();
         mInstructions = instructions;
-        mProcessor = processor;
-        mCurrentInstruction = 0;
-        // Execute the first instruction right away to start navigation and avoid flicker.
+        mNextInstruction = instructions.hasNext() ? instructions.next() : null;
         nextInstruction();
     }
 
+    /**
+     * Executes the given instruction right away, and the instructions not executed yet once it
+     * has lasted for its duration, e.g. to show that a new route is searched and to go on with the
+     * previous route if none is found.
+     */
+    public void insert(@NonNull Instruction instruction) {
+        mScheduler.cancelAll();
+        mProcessor.process(instruction, mNextInstruction);
+        if (mNextInstruction != null) {
+            mScheduler.schedule(this::nextInstruction, instruction.getDurationMillis());
+        }
+    }
+
+    private Script(@NonNull Iterator<Instruction> instructions, @NonNull Processor processor,
+            @NonNull ScriptScheduler scheduler) {
+        mScheduler = scheduler;
+        mInstructions = instructions;
+        mProcessor = processor;
+    }
+
     private void nextInstruction() {
-        if (mCurrentInstruction >= mInstructions.size()) {
-            // Script is finished.
+        Instruction instruction = mNextInstruction;
+        if (instruction == null) {
+            // Script is finished, or stopped.
             return;
         }
-        Instruction instruction = mInstructions.get(mCurrentInstruction);
-        Instruction nextInstruction = null;
-        int nextPosition = mCurrentInstruction + 1;
-        if (nextPosition < mInstructions.size()) {
-            nextInstruction = mInstructions.get(nextPosition);
+        mNextInstruction = mInstructions.hasNext() ? mInstructions.next() : null;
+        mProcessor.process(instruction, mNextInstruction);
+        if (mNextInstruction != null) {
+            mScheduler.schedule(this::nextInstruction, instruction.getDurationMillis());
         }
-        mProcessor.process(instruction, nextInstruction);
-        mCurrentInstruction++;
-        mHandler.postDelayed(this::nextInstruction, instruction.getDurationMillis());
     }
 }
@@ -0,0 +1,168 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+
+import java.util.PriorityQueue;
+
+/**
+ * Decides when the instructions of a {@link Script} run, and keeps the time as seen by the script.
+ *
+ * <p>A scheduler drives a single script: stopping the script cancels every task scheduled on it.
+ */
+public abstract class ScriptScheduler {
+    /** Returns the current time as seen by the script, in milliseconds since the epoch. */
+    public abstract long getTimeMillis();
+
+    /** Runs the given task after the given delay, in script time. */
+    public abstract void schedule(@NonNull Runnable task, long delayMillis);
+
+    /** Cancels all the tasks scheduled and not run yet. */
+    public abstract void cancelAll();
+
+    /** Returns a scheduler that runs the script in real time, in the main thread. */
+    @NonNull
+    public static ScriptScheduler realTime() {
+        return new HandlerScheduler(1);
+    }
+
+    /**
+     * Returns a scheduler that runs the script in the main thread, with time going {@code
+     * speedFactor} times faster than real time.
+     */
+    @NonNull
+    public static ScriptScheduler accelerated(double speedFactor) {
+        if (speedFactor <= 0) {
+            throw new IllegalArgumentException("Speed factor must be positive");
+        }
+        return new HandlerScheduler(speedFactor);
+    }
+
+    /**
+     * Returns a scheduler that runs the script as fast as possible, in the thread that starts it,
+     * advancing a virtual clock by the duration of each instruction.
+     *
+     * <p>The whole script runs before {@link Script#execute} or {@link Script#start} returns.
+     * This scheduler does not depend on a {@link Looper}, and can be used in JVM tests.
+     */
+    @NonNull
+    public static ScriptScheduler asFastAsPossible() {
+        return new VirtualScheduler(System.currentTimeMillis());
+    }
+
+    /** A scheduler that posts the tasks to the main thread, with scaled delays. */
+    private static class HandlerScheduler extends ScriptScheduler {
+        private final Handler mHandler = new Handler(Looper.getMainLooper());
+        private final double mSpeedFactor;
+        private final long mStartTimeMillis = System.currentTimeMillis();
+        private final long mStartUptimeMillis = SystemClock.uptimeMillis();
+
+        HandlerScheduler(double speedFactor) {
+            mSpeedFactor = speedFactor;
+        }
+
+        @Override
+        public long getTimeMillis() {
+            long elapsed = SystemClock.uptimeMillis() - mStartUptimeMillis;
+            return mStartTimeMillis + (long) (elapsed * mSpeedFactor);
+        }
+
+        @Override
+        public void schedule(@NonNull Runnable task, long delayMillis) {
+            mHandler.postDelayed(task, (long) (delayMillis / mSpeedFactor));
+        }
+
+        @Override
+        public void cancelAll() {
+            mHandler.removeCallbacksAndMessages(null);
+        }
+    }
+
+    /**
+     * A scheduler that runs the tasks in order of their scheduled time, one after another, without
+     * waiting.
+     *
+     * <p>Tasks scheduled from a running task are queued rather than run recursively, so that
+     * scripts of any length run in constant stack depth.
+     */
+    private static class VirtualScheduler extends ScriptScheduler {
+        /** A task and the virtual time at which it runs. */
+        private static class Task {
+            final long mTimeMillis;
+            final long mSequence;
+            final Runnable mRunnable;
+
+            Task(long timeMillis, long sequence, Runnable runnable) {
+                mTimeMillis = timeMillis;
+                mSequence = sequence;
+                mRunnable = runnable;
+            }
+        }
+
+        // Tasks scheduled for the same time run in the order they were scheduled.
+        private final PriorityQueue<Task> mTasks =
+                new PriorityQueue<>(
+                        11,
+                        (a, b) ->
+                                a.mTimeMillis != b.mTimeMillis
+                                        ? Long.compare(a.mTimeMillis, b.mTimeMillis)
+                                        : Long.compare(a.mSequence, b.mSequence));
+
+        private long mTimeMillis;
+        private long mNextSequence;
+        private boolean mIsRunning;
+
+        VirtualScheduler(long startTimeMillis) {
+            mTimeMillis = startTimeMillis;
+        }
+
+        @Override
+        public long getTimeMillis() {
+            return mTimeMillis;
+        }
+
+        @Override
+        public void schedule(@NonNull Runnable task, long delayMillis) {
+            mTasks.add(new Task(mTimeMillis + Math.max(0, delayMillis), mNextSequence++, task));
+            if (mIsRunning) {
+                // The running loop picks up the new task.
+                return;
+            }
+
+            mIsRunning = true;
+            try {
+                Task next;
+                while ((next = mTasks.poll()) != null) {
+                    mTimeMillis = next.mTimeMillis;
+                    next.mRunnable.run();
+                }
+            } finally {
+                mIsRunning = false;
+            }
+        }
+
+        @Override
+        public void cancelAll() {
+            mTasks.clear();
+        }
+    }
+}
@@ -0,0 +1,478 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.nav;
+
+import static android.media.AudioManager.AUDIOFOCUS_REQUEST_GRANTED;
+
+import android.content.Context;
+import android.content.res.AssetFileDescriptor;
+import android.media.AudioAttributes;
+import android.media.AudioFocusRequest;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RawRes;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.WorkerThread;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Plays the audio cues of the navigation guidance with a low latency.
+ *
+ * <p>Cues are decoded to PCM once, ahead of time if {@link #preload preloaded}, and played through
+ * a single {@link AudioTrack} that is reused from one cue to the next. Cues that overlap are
+ * queued by priority, and a burst of cues holds the audio focus once, from its first cue until
+ * {@link #FOCUS_HOLD_MILLIS} after its last one. When another app takes the audio focus, the cue
+ * playing is stopped and the queued ones are dropped, as a cue heard late would be misleading.
+ *
+ * <p>All the decoding and playback happens in a thread of the engine, so the methods of this class
+ * can be called from any thread.
+ */
+@RequiresApi(Build.VERSION_CODES.O)
+public class GuidanceAudioEngine {
+    private static final String TAG = "GuidanceAudioEngine";
+
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_HIGH = 2;
+
+    /** How long the audio focus is kept after a cue, in case another cue follows. */
+    static final long FOCUS_HOLD_MILLIS = 1000;
+
+    private static final long CODEC_TIMEOUT_US = 10_000;
+    private static final long PLAYBACK_POLL_MILLIS = 10;
+
+    private final Context mContext;
+    private final AudioManager mAudioManager;
+    private final AudioAttributes mAudioAttributes;
+    private final AudioFocusRequest mFocusRequest;
+
+    private final Object mLock = new Object();
+
+    // Guarded by mLock.
+    private final PriorityQueue<Cue> mCues =
+            new PriorityQueue<>(
+                    11,
+                    (a, b) ->
+                            a.mPriority != b.mPriority
+                                    ? Integer.compare(b.mPriority, a.mPriority)
+                                    : Long.compare(a.mSequence, b.mSequence));
+    private final List<Integer> mPreloads = new ArrayList<>();
+    private final Map<Integer, Pcm> mPcms = new HashMap<>();
+    private long mNextSequence;
+    private boolean mIsReleased;
+    private boolean mIsFocusLost;
+
+    // Only accessed by the thread of the engine.
+    @Nullable
+    private AudioTrack mTrack;
+    private long mFramesWritten;
+    private boolean mHasFocus;
+    private long mLastCueEndUptimeMillis;
+
+    /** An audio cue waiting to be played. */
+    private static class Cue {
+        final int mResourceId;
+        final int mPriority;
+        final long mSequence;
+
+        Cue(int resourceId, int priority, long sequence) {
+            mResourceId = resourceId;
+            mPriority = priority;
+            mSequence = sequence;
+        }
+    }
+
+    /** A decoded cue, as 16-bit PCM samples. */
+    private static class Pcm {
+        final byte[] mData;
+        final int mSampleRate;
+        final int mChannelCount;
+
+        Pcm(byte[] data, int sampleRate, int channelCount) {
+            mData = data;
+            mSampleRate = sampleRate;
+            mChannelCount = channelCount;
+        }
+
+        long getDurationMillis() {
+            return mData.length * 1000L / (2L * mChannelCount * mSampleRate);
+        }
+    }
+
+    public GuidanceAudioEngine(@NonNull Context context) {
+        mContext = context;
+        mAudioManager = context.getSystemService(AudioManager.class);
+
+        // Use USAGE_ASSISTANCE_NAVIGATION_GUIDANCE as the usage type for any navigation related
+        // audio, so that the audio will be played in the car speaker.
+        mAudioAttributes =
+                new AudioAttributes.Builder()
+                        .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
+                        .setUsage(AudioAttributes.USAGE_ASSISTANCE_NAVIGATION_GUIDANCE)
+                        .build();
+
+        // Request audio focus with AUDIOFOCUS_GAIN_TRANSIENT_MAY_DUCK so that it will duck ongoing
+        // media. Ducking will behave differently depending on what is playing, if it is music it
+        // will lower the volume, if it is speech, it will pause it.
+        mFocusRequest =
+                new AudioFocusRequest.Builder(AudioManager.AUDIOFOCUS_GAIN_TRANSIENT_MAY_DUCK)
+                        .setAudioAttributes(mAudioAttributes)
+                        .setOnAudioFocusChangeListener(this::onAudioFocusChange)
+                        .build();
+
+        new Thread(this::run, "GuidanceAudio").start();
+    }
+
+    /** Decodes the given cues in the background, so that they play without delay. */
+    public void preload(@NonNull @RawRes int... resourceIds) {
+        synchronized (mLock) {
+            for (int resourceId : resourceIds) {
+                mPreloads.add(resourceId);
+            }
+            mLock.notifyAll();
+        }
+    }
+
+    /**
+     * Plays the given cue after the ones of a higher or the same priority queued before it.
+     *
+     * <p>A cue that is already queued is not queued again, but takes the higher of the two
+     * priorities.
+     */
+    public void play(@RawRes int resourceId, int priority) {
+        synchronized (mLock) {
+            if (mIsReleased) {
+                return;
+            }
+            for (Iterator<Cue> it = mCues.iterator(); it.hasNext(); ) {
+                Cue cue = it.next();
+                if (cue.mResourceId == resourceId) {
+                    if (cue.mPriority >= priority) {
+                        return;
+                    }
+                    it.remove();
+                    break;
+                }
+            }
+            mCues.add(new Cue(resourceId, priority, mNextSequence++));
+            mLock.notifyAll();
+        }
+    }
+
+    /** Stops playing, drops the queued cues and releases the audio resources. */
+    public void release() {
+        synchronized (mLock) {
+            mIsReleased = true;
+            mCues.clear();
+            mPreloads.clear();
+            mLock.notifyAll();
+        }
+    }
+
+    private void onAudioFocusChange(int focusChange) {
+        if (focusChange < 0) {
+            Log.i(TAG, "Audio focus lost: " + focusChange);
+        }
+        // The cues can still be heard over the other audio when they may duck it.
+        if (focusChange != AudioManager.AUDIOFOCUS_LOSS
+                && focusChange != AudioManager.AUDIOFOCUS_LOSS_TRANSIENT) {
+            return;
+        }
+        synchronized (mLock) {
+            mCues.clear();
+            mIsFocusLost = true;
+            mLock.notifyAll();
+        }
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                Integer preload = null;
+                Cue cue = null;
+                synchronized (mLock) {
+                    while (!mIsReleased
+                            && !mIsFocusLost
+                            && mPreloads.isEmpty()
+                            && mCues.isEmpty()) {
+                        if (!mHasFocus) {
+                            mLock.wait();
+                            continue;
+                        }
+                        long remaining =
+                                mLastCueEndUptimeMillis
+                                        + FOCUS_HOLD_MILLIS
+                                        - SystemClock.uptimeMillis();
+                        if (remaining <= 0) {
+                            break;
+                        }
+                        mLock.wait(remaining);
+                    }
+                    if (mIsReleased) {
+                        return;
+                    }
+                    if (mIsFocusLost) {
+                        // Ends the burst below.
+                        mIsFocusLost = false;
+                    } else if (!mPreloads.isEmpty()) {
+                        preload = mPreloads.remove(0);
+                    } else {
+                        cue = mCues.poll();
+                    }
+                }
+
+                if (preload != null) {
+                    getPcm(preload);
+                } else if (cue != null) {
+                    playCue(cue);
+                } else {
+                    // The burst of cues is over, or the audio focus was lost.
+                    endBurst();
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            endBurst();
+            if (mTrack != null) {
+                mTrack.release();
+                mTrack = null;
+            }
+        }
+    }
+
+    @WorkerThread
+    private void playCue(Cue cue) throws InterruptedException {
+        Pcm pcm = getPcm(cue.mResourceId);
+        if (pcm == null) {
+            return;
+        }
+
+        if (!mHasFocus) {
+            if (mAudioManager.requestAudioFocus(mFocusRequest) != AUDIOFOCUS_REQUEST_GRANTED) {
+                // If audio focus is not granted ignore the cue.
+                Log.w(TAG, "Audio focus not granted, skipping cue");
+                return;
+            }
+            mHasFocus = true;
+        }
+
+        AudioTrack track = getTrack(pcm);
+        track.play();
+        int written = track.write(pcm.mData, 0, pcm.mData.length);
+        if (written < 0) {
+            Log.e(TAG, "Failure writing cue: " + written);
+        } else {
+            mFramesWritten += written / (2 * pcm.mChannelCount);
+        }
+
+        // Wait until the cue is heard, so that the focus is held until then, giving up if the
+        // track stalls, e.g. if its output device went away, or the audio focus is lost.
+        long deadline = SystemClock.uptimeMillis() + pcm.getDurationMillis() + FOCUS_HOLD_MILLIS;
+        while (!isCueCancelled()
+                && track.getPlaybackHeadPosition() < mFramesWritten
+                && SystemClock.uptimeMillis() < deadline) {
+            Thread.sleep(PLAYBACK_POLL_MILLIS);
+        }
+        mLastCueEndUptimeMillis = SystemClock.uptimeMillis();
+    }
+
+    /** Returns the track to play the given cue with, reusing the current one if it can. */
+    @WorkerThread
+    private AudioTrack getTrack(Pcm pcm) {
+        int channelMask =
+                pcm.mChannelCount == 1 ? AudioFormat.CHANNEL_OUT_MONO
+                        : AudioFormat.CHANNEL_OUT_STEREO;
+        if (mTrack != null
+                && mTrack.getSampleRate() == pcm.mSampleRate
+                && mTrack.getChannelCount() == pcm.mChannelCount) {
+            return mTrack;
+        }
+        if (mTrack != null) {
+            mTrack.release();
+        }
+
+        AudioFormat format =
+                new AudioFormat.Builder()
+                        .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                        .setSampleRate(pcm.mSampleRate)
+                        .setChannelMask(channelMask)
+                        .build();
+        mTrack =
+                new AudioTrack.Builder()
+                        .setAudioAttributes(mAudioAttributes)
+                        .setAudioFormat(format)
+                        .setTransferMode(AudioTrack.MODE_STREAM)
+                        .setBufferSizeInBytes(
+                                AudioTrack.getMinBufferSize(
+                                        pcm.mSampleRate,
+                                        channelMask,
+                                        AudioFormat.ENCODING_PCM_16BIT))
+                        .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                        .build();
+        mFramesWritten = 0;
+        return mTrack;
+    }
+
+    /** Stops the track and abandons the audio focus, so that other audio can continue. */
+    @WorkerThread
+    private void endBurst() {
+        if (mTrack != null) {
+            mTrack.stop();
+            mTrack.flush();
+            mFramesWritten = 0;
+        }
+        if (mHasFocus) {
+            mAudioManager.abandonAudioFocusRequest(mFocusRequest);
+            mHasFocus = false;
+        }
+    }
+
+    /** Returns whether to stop playing the current cue. */
+    private boolean isCueCancelled() {
+        synchronized (mLock) {
+            return mIsReleased || mIsFocusLost;
+        }
+    }
+
+    /** Returns the given cue decoded, decoding it if needed, or {@code null} if it fails. */
+    @Nullable
+    @WorkerThread
+    private Pcm getPcm(@RawRes int resourceId) {
+        synchronized (mLock) {
+            Pcm pcm = mPcms.get(resourceId);
+            if (pcm != null) {
+                return pcm;
+            }
+        }
+        try {
+            long start = SystemClock.uptimeMillis();
+            Pcm pcm = decode(resourceId);
+            Log.i(TAG, "Decoded cue " + resourceId + " in "
+                    + (SystemClock.uptimeMillis() - start) + "ms");
+            synchronized (mLock) {
+                mPcms.put(resourceId, pcm);
+            }
+            return pcm;
+        } catch (IOException | RuntimeException e) {
+            Log.e(TAG, "Failure decoding audio resource", e);
+            return null;
+        }
+    }
+
+    /** Decodes the first audio track of the given resource to 16-bit PCM. */
+    @WorkerThread
+    private Pcm decode(@RawRes int resourceId) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec codec = null;
+        try {
+            try (AssetFileDescriptor afd =
+                         mContext.getResources().openRawResourceFd(resourceId)) {
+                extractor.setDataSource(
+                        afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
+            }
+
+            MediaFormat format = null;
+            for (int i = 0; i < extractor.getTrackCount(); i++) {
+                MediaFormat trackFormat = extractor.getTrackFormat(i);
+                String mime = trackFormat.getString(MediaFormat.KEY_MIME);
+                if (mime != null && mime.startsWith("audio/")) {
+                    extractor.selectTrack(i);
+                    format = trackFormat;
+                    break;
+                }
+            }
+            if (format == null) {
+                throw new IOException("No audio track in resource " + resourceId);
+            }
+
+            codec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            codec.configure(format, null, null, 0);
+            codec.start();
+
+            int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+            int channelCount = format.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] chunk = new byte[0];
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean isInputDone = false;
+            boolean isOutputDone = false;
+            while (!isOutputDone) {
+                if (!isInputDone) {
+                    int inputIndex = codec.dequeueInputBuffer(CODEC_TIMEOUT_US);
+                    if (inputIndex >= 0) {
+                        ByteBuffer input = codec.getInputBuffer(inputIndex);
+                        int size = extractor.readSampleData(input, 0);
+                        if (size < 0) {
+                            codec.queueInputBuffer(
+                                    inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            isInputDone = true;
+                        } else {
+                            codec.queueInputBuffer(
+                                    inputIndex, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+
+                int outputIndex = codec.dequeueOutputBuffer(info, CODEC_TIMEOUT_US);
+                if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    MediaFormat outputFormat = codec.getOutputFormat();
+                    sampleRate = outputFormat.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+                    channelCount = outputFormat.getInteger(MediaFormat.KEY_CHANNEL_COUNT);
+                } else if (outputIndex >= 0) {
+                    ByteBuffer output = codec.getOutputBuffer(outputIndex);
+                    if (info.size > 0 && output != null) {
+                        if (chunk.length < info.size) {
+                            chunk = new byte[info.size];
+                        }
+                        output.position(info.offset);
+                        output.get(chunk, 0, info.size);
+                        out.write(chunk, 0, info.size);
+                    }
+                    codec.releaseOutputBuffer(outputIndex, false);
+                    isOutputDone = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                }
+            }
+            return new Pcm(out.toByteArray(), sampleRate, channelCount);
+        } finally {
+            if (codec != null) {
+                codec.release();
+            }
+            extractor.release();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.nav;
+
+import android.location.Location;
+import android.os.SystemClock;
+
+import androidx.annotation.NonNull;
+import androidx.car.app.sample.navigation.common.model.ScriptScheduler;
+import androidx.core.location.LocationListenerCompat;
+
+/**
+ * Replays a {@link LocationTrack} into a {@link LocationListenerCompat}, as if its fixes came from
+ * the GPS, so that rendering and guidance can be tested under a realistic position load without a
+ * vehicle.
+ *
+ * <p>The replay is paced by a {@link ScriptScheduler} of its own, i.e. in real time or faster.
+ * Fixes are either replayed as recorded, or sampled at a fixed rate, interpolating between the
+ * recorded fixes, to simulate a receiver of a higher rate than the one of the recording.
+ */
+public class LocationReplayer {
+    /** The provider of the replayed locations. */
+    public static final String PROVIDER = "replay";
+
+    /** The highest rate at which fixes can be sampled, in track time. */
+    public static final int MAX_RATE_HZ = 50;
+
+    // The accuracy reported for the replayed locations, since recordings rarely have one.
+    private static final float ACCURACY_METERS = 5;
+
+    private final LocationTrack mTrack;
+    private final ScriptScheduler mScheduler;
+    private final long mIntervalMillis;
+    private final LocationListenerCompat mListener;
+    private final Runnable mEmitTask = this::emit;
+
+    // The difference between the scheduler time and the track time.
+    private long mTimeOffsetMillis;
+    private long mTrackTimeMillis;
+    private int mIndex;
+    private boolean mIsRunning;
+
+    /**
+     * @param rateHz the number of fixes per second of track time to sample, or {@code 0} to
+     *               replay the fixes as recorded
+     * @throws IllegalArgumentException if the rate is negative or above {@link #MAX_RATE_HZ}
+     */
+    public LocationReplayer(
+            @NonNull LocationTrack track,
+            @NonNull ScriptScheduler scheduler,
+            int rateHz,
+            @NonNull LocationListenerCompat listener) {
+        if (rateHz < 0 || rateHz > MAX_RATE_HZ) {
+            throw new IllegalArgumentException("Rate must be between 0 and " + MAX_RATE_HZ);
+        }
+        mTrack = track;
+        mScheduler = scheduler;
+        mIntervalMillis = rateHz == 0 ? 0 : 1000 / rateHz;
+        mListener = listener;
+    }
+
+    /** Starts replaying the track from its first fix, or does nothing if it is replaying. */
+    public void start() {
+        if (mIsRunning) {
+            return;
+        }
+        mIsRunning = true;
+        mTrackTimeMillis = mTrack.getStartTimeMillis();
+        mTimeOffsetMillis = mScheduler.getTimeMillis() - mTrackTimeMillis;
+        mIndex = 0;
+        mScheduler.schedule(mEmitTask, 0);
+    }
+
+    /** Stops replaying the track. */
+    public void stop() {
+        mIsRunning = false;
+        mScheduler.cancelAll();
+    }
+
+    /** Returns whether the track is replaying, i.e. it was started and has not ended. */
+    public boolean isRunning() {
+        return mIsRunning;
+    }
+
+    private void emit() {
+        if (!mIsRunning) {
+            return;
+        }
+
+        // A new location every time, since listeners may keep the ones they are given.
+        Location location = new Location(PROVIDER);
+        mIndex = mTrack.sample(mTrackTimeMillis, mIndex, location);
+        location.setTime(mTrackTimeMillis + mTimeOffsetMillis);
+        location.setElapsedRealtimeNanos(SystemClock.elapsedRealtimeNanos());
+        location.setAccuracy(ACCURACY_METERS);
+        mListener.onLocationChanged(location);
+
+        long endTimeMillis = mTrack.getEndTimeMillis();
+        if (mTrackTimeMillis >= endTimeMillis) {
+            mIsRunning = false;
+            return;
+        }
+
+        long nextTimeMillis =
+                mIntervalMillis > 0
+                        ? mTrackTimeMillis + mIntervalMillis
+                        : mTrack.getTimeMillis(mIndex + 1);
+        mTrackTimeMillis = Math.min(nextTimeMillis, endTimeMillis);
+
+        // Delays are computed from the start of the replay rather than from the previous fix, so
+        // that the lateness of each task does not accumulate over the track.
+        long delayMillis = mTrackTimeMillis + mTimeOffsetMillis - mScheduler.getTimeMillis();
+        mScheduler.schedule(mEmitTask, Math.max(0, delayMillis));
+    }
+}
@@ -0,0 +1,550 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.nav;
+
+import android.location.Location;
+import android.util.Log;
+import android.util.Xml;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A recorded sequence of location fixes, e.g. read from a GPX or NMEA file, that can be sampled at
+ * any time between its first and last fix.
+ *
+ * <p>The fixes are kept in parallel arrays of primitives rather than as {@link Location}s, so that
+ * tracks of hours at a high rate stay small.
+ */
+public final class LocationTrack {
+    private static final String TAG = "LocationTrack";
+
+    // The interval between fixes that have no time, e.g. the points of a GPX route.
+    private static final long DEFAULT_INTERVAL_MILLIS = 1000;
+
+    private static final float METERS_PER_SECOND_PER_KNOT = 0.514444f;
+
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    private static final Pattern ISO_8601_TIME =
+            Pattern.compile(
+                    "(\\d{4})-(\\d{2})-(\\d{2})T(\\d{2}):(\\d{2}):(\\d{2})(\\.\\d+)?"
+                            + "(Z|[+-]\\d{2}:?\\d{2})?");
+
+    private final int mSize;
+    private final long[] mTimeMillis;
+    private final double[] mLatitudes;
+    private final double[] mLongitudes;
+    // The optional values are NaN when a fix does not have them.
+    private final double[] mAltitudes;
+    private final float[] mSpeeds;
+    private final float[] mBearings;
+
+    private LocationTrack(Builder builder) {
+        mSize = builder.mSize;
+        mTimeMillis = Arrays.copyOf(builder.mTimeMillis, mSize);
+        mLatitudes = Arrays.copyOf(builder.mLatitudes, mSize);
+        mLongitudes = Arrays.copyOf(builder.mLongitudes, mSize);
+        mAltitudes = Arrays.copyOf(builder.mAltitudes, mSize);
+        mSpeeds = Arrays.copyOf(builder.mSpeeds, mSize);
+        mBearings = Arrays.copyOf(builder.mBearings, mSize);
+    }
+
+    /**
+     * Reads the track in the given file, as NMEA sentences if its name ends with {@code .nmea} or
+     * {@code .txt}, or as GPX otherwise.
+     */
+    @NonNull
+    @WorkerThread
+    public static LocationTrack read(@NonNull File file) throws IOException {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        try (InputStream in = new FileInputStream(file)) {
+            return name.endsWith(".nmea") || name.endsWith(".txt") ? readNmea(in) : readGpx(in);
+        }
+    }
+
+    /**
+     * Reads the track points of a GPX document, along with the route points and waypoints if it
+     * has no track.
+     *
+     * <p>Points without a time are given one a second after the previous point.
+     */
+    @NonNull
+    @WorkerThread
+    public static LocationTrack readGpx(@NonNull InputStream in) throws IOException {
+        Builder trackPoints = new Builder();
+        Builder otherPoints = new Builder();
+        try {
+            XmlPullParser parser = Xml.newPullParser();
+            parser.setInput(in, null);
+
+            Builder points = null;
+            double latitude = 0;
+            double longitude = 0;
+            double altitude = Double.NaN;
+            float speed = Float.NaN;
+            float bearing = Float.NaN;
+            long timeMillis = -1;
+            String element = null;
+
+            for (int event = parser.getEventType();
+                    event != XmlPullParser.END_DOCUMENT;
+                    event = parser.next()) {
+                switch (event) {
+                    case XmlPullParser.START_TAG:
+                        element = parser.getName();
+                        if ("trkpt".equals(element)
+                                || "rtept".equals(element)
+                                || "wpt".equals(element)) {
+                            points = "trkpt".equals(element) ? trackPoints : otherPoints;
+                            latitude = parseDouble(parser.getAttributeValue(null, "lat"));
+                            longitude = parseDouble(parser.getAttributeValue(null, "lon"));
+                            altitude = Double.NaN;
+                            speed = Float.NaN;
+                            bearing = Float.NaN;
+                            timeMillis = -1;
+                        }
+                        break;
+                    case XmlPullParser.TEXT:
+                        if (points == null || element == null) {
+                            break;
+                        }
+                        String text = parser.getText().trim();
+                        switch (element) {
+                            case "ele":
+                                altitude = parseDouble(text);
+                                break;
+                            case "time":
+                                timeMillis = parseIso8601(text);
+                                break;
+                            case "speed":
+                                speed = (float) parseDouble(text);
+                                break;
+                            case "course":
+                                bearing = (float) parseDouble(text);
+                                break;
+                            default:
+                                // Not part of a fix.
+                        }
+                        break;
+                    case XmlPullParser.END_TAG:
+                        element = null;
+                        String name = parser.getName();
+                        if (points != null
+                                && ("trkpt".equals(name)
+                                        || "rtept".equals(name)
+                                        || "wpt".equals(name))) {
+                            points.add(timeMillis, latitude, longitude, altitude, speed, bearing);
+                            points = null;
+                        }
+                        break;
+                    default:
+                        // Ignore.
+                }
+            }
+        } catch (XmlPullParserException | IllegalArgumentException e) {
+            throw new IOException("Malformed GPX", e);
+        }
+        return (trackPoints.mSize > 0 ? trackPoints : otherPoints).build();
+    }
+
+    /**
+     * Reads the fixes of a log of NMEA 0183 sentences.
+     *
+     * <p>Positions are read from the RMC sentences, or from the GGA sentences if there are none,
+     * and altitudes from the GGA sentences of the same time. Sentences with a wrong checksum or
+     * without a valid fix are skipped. GGA sentences have no date, so a log of GGA sentences only
+     * starts on the epoch, and moves to the next day each time the time of day wraps at midnight.
+     */
+    @NonNull
+    @WorkerThread
+    public static LocationTrack readNmea(@NonNull InputStream in) throws IOException {
+        Builder builder = new Builder();
+        BufferedReader reader =
+                new BufferedReader(new InputStreamReader(in, StandardCharsets.US_ASCII));
+
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        long dateMillis = 0;
+        // The time of day of the last fix, to tell when a log without dates passes midnight.
+        long lastTimeOfDay = -1;
+        boolean hasRmc = false;
+
+        // The fix being assembled from the sentences of the same time of day.
+        String fixTime = null;
+        boolean hasPosition = false;
+        double latitude = 0;
+        double longitude = 0;
+        double altitude = Double.NaN;
+        float speed = Float.NaN;
+        float bearing = Float.NaN;
+        long timeMillis = 0;
+
+        String line;
+        while ((line = reader.readLine()) != null) {
+            String[] fields = parseSentence(line.trim());
+            if (fields == null || fields[0].length() != 5) {
+                continue;
+            }
+            String type = fields[0].substring(2);
+            boolean isRmc = "RMC".equals(type) && fields.length > 9;
+            boolean isGga = "GGA".equals(type) && fields.length > 9;
+            if ((!isRmc && !isGga) || fields[1].length() < 6) {
+                continue;
+            }
+
+            try {
+                if (!fields[1].equals(fixTime)) {
+                    if (hasPosition) {
+                        builder.add(timeMillis, latitude, longitude, altitude, speed, bearing);
+                    }
+                    fixTime = fields[1];
+                    hasPosition = false;
+                    altitude = Double.NaN;
+                    speed = Float.NaN;
+                    bearing = Float.NaN;
+                }
+
+                if (isRmc) {
+                    hasRmc = true;
+                    if (!"A".equals(fields[2])) {
+                        continue;
+                    }
+                    String date = fields[9];
+                    long timeOfDay = parseTimeOfDay(fields[1]);
+                    if (date.length() == 6) {
+                        // Years have two digits, and GPS receivers date from 1980.
+                        int year = Integer.parseInt(date.substring(4, 6));
+                        calendar.set(
+                                year < 80 ? 2000 + year : 1900 + year,
+                                Integer.parseInt(date.substring(2, 4)) - 1,
+                                Integer.parseInt(date.substring(0, 2)));
+                        dateMillis = calendar.getTimeInMillis();
+                    } else {
+                        dateMillis = carryDayOver(dateMillis, lastTimeOfDay, timeOfDay);
+                    }
+                    lastTimeOfDay = timeOfDay;
+                    timeMillis = dateMillis + timeOfDay;
+                    latitude = parseCoordinate(fields[3], fields[4]);
+                    longitude = parseCoordinate(fields[5], fields[6]);
+                    speed = fields[7].isEmpty()
+                            ? Float.NaN
+                            : Float.parseFloat(fields[7]) * METERS_PER_SECOND_PER_KNOT;
+                    bearing = fields[8].isEmpty() ? Float.NaN : Float.parseFloat(fields[8]);
+                    hasPosition = true;
+                } else {
+                    // Fix quality 0 means there is no fix.
+                    if (fields[6].isEmpty() || "0".equals(fields[6])) {
+                        continue;
+                    }
+                    altitude = fields[9].isEmpty() ? Double.NaN : Double.parseDouble(fields[9]);
+                    if (!hasRmc) {
+                        long timeOfDay = parseTimeOfDay(fields[1]);
+                        dateMillis = carryDayOver(dateMillis, lastTimeOfDay, timeOfDay);
+                        lastTimeOfDay = timeOfDay;
+                        timeMillis = dateMillis + timeOfDay;
+                        latitude = parseCoordinate(fields[2], fields[3]);
+                        longitude = parseCoordinate(fields[4], fields[5]);
+                        hasPosition = true;
+                    }
+                }
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                // A corrupted sentence with a valid checksum, e.g. from a faulty receiver.
+                Log.w(TAG, "Skipping malformed sentence: " + line);
+            }
+        }
+        if (hasPosition) {
+            builder.add(timeMillis, latitude, longitude, altitude, speed, bearing);
+        }
+        return builder.build();
+    }
+
+    /** Returns the number of fixes in this track. */
+    public int size() {
+        return mSize;
+    }
+
+    /** Returns the time of the first fix, in milliseconds since the epoch. */
+    public long getStartTimeMillis() {
+        return mTimeMillis[0];
+    }
+
+    /** Returns the time of the last fix, in milliseconds since the epoch. */
+    public long getEndTimeMillis() {
+        return mTimeMillis[mSize - 1];
+    }
+
+    /** Returns the time of the fix at the given index, in milliseconds since the epoch. */
+    public long getTimeMillis(int index) {
+        return mTimeMillis[index];
+    }
+
+    /**
+     * Returns the index of the last fix at or before the given time, or {@code 0} if the time is
+     * before the first fix.
+     */
+    public int indexAt(long timeMillis) {
+        int index = Arrays.binarySearch(mTimeMillis, 0, mSize, timeMillis);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        return Math.max(0, Math.min(index, mSize - 1));
+    }
+
+    /**
+     * Sets the given location to the position at the given time, interpolated between the fixes
+     * around it.
+     *
+     * <p>The bearing, if the fixes do not have one, is that of the segment between them. The time
+     * of the location is left unchanged.
+     *
+     * @param hint the index of a fix at or before the given time, e.g. the one returned for a
+     *             previous time, to start the search from
+     * @return the index of the last fix at or before the given time, to pass as the next hint
+     */
+    public int sample(long timeMillis, int hint, @NonNull Location location) {
+        int index = Math.max(0, Math.min(hint, mSize - 1));
+        if (mTimeMillis[index] > timeMillis) {
+            index = indexAt(timeMillis);
+        }
+        // Replay moves forward a fix or two at a time, so a linear scan beats a binary search.
+        while (index + 1 < mSize && mTimeMillis[index + 1] <= timeMillis) {
+            index++;
+        }
+
+        int next = Math.min(index + 1, mSize - 1);
+        long span = mTimeMillis[next] - mTimeMillis[index];
+        double fraction = span <= 0 ? 0 : (double) (timeMillis - mTimeMillis[index]) / span;
+        fraction = Math.max(0, Math.min(1, fraction));
+
+        location.setLatitude(lerp(mLatitudes[index], mLatitudes[next], fraction));
+        location.setLongitude(lerp(mLongitudes[index], mLongitudes[next], fraction));
+
+        double altitude = lerp(mAltitudes[index], mAltitudes[next], fraction);
+        if (Double.isNaN(altitude)) {
+            location.removeAltitude();
+        } else {
+            location.setAltitude(altitude);
+        }
+
+        // The length and initial bearing of the segment, for fixes without a speed or bearing.
+        float[] segment = new float[2];
+        if (next != index) {
+            Location.distanceBetween(
+                    mLatitudes[index], mLongitudes[index],
+                    mLatitudes[next], mLongitudes[next], segment);
+        }
+
+        float speed = (float) lerp(mSpeeds[index], mSpeeds[next], fraction);
+        if (Float.isNaN(speed) && span > 0) {
+            speed = segment[0] * 1000f / span;
+        }
+        if (Float.isNaN(speed)) {
+            location.removeSpeed();
+        } else {
+            location.setSpeed(speed);
+        }
+
+        float bearing = mBearings[index];
+        if (Float.isNaN(bearing) && segment[0] > 0) {
+            bearing = (segment[1] + 360) % 360;
+        }
+        if (Float.isNaN(bearing)) {
+            location.removeBearing();
+        } else {
+            location.setBearing(bearing);
+        }
+        return index;
+    }
+
+    private static double lerp(double from, double to, double fraction) {
+        if (Double.isNaN(to)) {
+            return from;
+        }
+        return from + (to - from) * fraction;
+    }
+
+    /**
+     * Splits an NMEA sentence into its fields, the first being the talker and sentence type, or
+     * returns {@code null} if it is not a sentence or its checksum is wrong.
+     */
+    private static String[] parseSentence(String line) {
+        if (line.isEmpty() || line.charAt(0) != '$') {
+            return null;
+        }
+        int end = line.indexOf('*');
+        if (end >= 0) {
+            if (end + 3 > line.length()) {
+                return null;
+            }
+            int checksum = 0;
+            for (int i = 1; i < end; i++) {
+                checksum ^= line.charAt(i);
+            }
+            try {
+                if (Integer.parseInt(line.substring(end + 1, end + 3), 16) != checksum) {
+                    return null;
+                }
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        } else {
+            end = line.length();
+        }
+        return line.substring(1, end).split(",", -1);
+    }
+
+    /** Parses a time of day in the {@code hhmmss.sss} format into milliseconds. */
+    private static long parseTimeOfDay(String time) {
+        int hours = Integer.parseInt(time.substring(0, 2));
+        int minutes = Integer.parseInt(time.substring(2, 4));
+        double seconds = Double.parseDouble(time.substring(4));
+        return (hours * 3600L + minutes * 60L) * 1000 + Math.round(seconds * 1000);
+    }
+
+    /**
+     * Returns the date of a fix that has no date of its own, which is the one of the previous fix,
+     * or the next day if the time of day went back by more than half a day, i.e. past midnight.
+     */
+    private static long carryDayOver(long dateMillis, long lastTimeOfDay, long timeOfDay) {
+        return lastTimeOfDay - timeOfDay > DAY_MILLIS / 2 ? dateMillis + DAY_MILLIS : dateMillis;
+    }
+
+    /** Parses a coordinate in the {@code (d)ddmm.mmmm} format, with its hemisphere. */
+    private static double parseCoordinate(String value, String hemisphere) {
+        int point = value.indexOf('.');
+        int degreesLength = (point < 0 ? value.length() : point) - 2;
+        double degrees = Integer.parseInt(value.substring(0, degreesLength))
+                + Double.parseDouble(value.substring(degreesLength)) / 60;
+        return "S".equals(hemisphere) || "W".equals(hemisphere) ? -degrees : degrees;
+    }
+
+    private static double parseDouble(String value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Missing coordinate");
+        }
+        return Double.parseDouble(value);
+    }
+
+    /** Parses a date and time in the ISO 8601 format of GPX, e.g. {@code 2021-06-01T12:00:00Z}. */
+    private static long parseIso8601(String value) {
+        Matcher matcher = ISO_8601_TIME.matcher(value);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Malformed time: " + value);
+        }
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(
+                Integer.parseInt(matcher.group(1)),
+                Integer.parseInt(matcher.group(2)) - 1,
+                Integer.parseInt(matcher.group(3)),
+                Integer.parseInt(matcher.group(4)),
+                Integer.parseInt(matcher.group(5)),
+                Integer.parseInt(matcher.group(6)));
+        long millis = calendar.getTimeInMillis();
+
+        String fraction = matcher.group(7);
+        if (fraction != null) {
+            millis += Math.round(Double.parseDouble(fraction) * 1000);
+        }
+        String zone = matcher.group(8);
+        if (zone != null && !"Z".equals(zone)) {
+            String digits = zone.replace(":", "");
+            int offsetMinutes =
+                    Integer.parseInt(digits.substring(1, 3)) * 60
+                            + Integer.parseInt(digits.substring(3, 5));
+            // The time is local to the zone, so the offset is subtracted to get UTC.
+            millis -= (zone.charAt(0) == '-' ? -offsetMinutes : offsetMinutes) * 60_000L;
+        }
+        return millis;
+    }
+
+    /**
+     * Accumulates fixes in arrays that grow as needed.
+     *
+     * <p>Fixes that go back in time are dropped, so that the track can be searched by time.
+     */
+    private static class Builder {
+        int mSize;
+        long[] mTimeMillis = new long[256];
+        double[] mLatitudes = new double[256];
+        double[] mLongitudes = new double[256];
+        double[] mAltitudes = new double[256];
+        float[] mSpeeds = new float[256];
+        float[] mBearings = new float[256];
+
+        /** Adds a fix, whose time is negative if it does not have one. */
+        void add(
+                long timeMillis,
+                double latitude,
+                double longitude,
+                double altitude,
+                float speed,
+                float bearing) {
+            if (timeMillis < 0) {
+                timeMillis =
+                        mSize == 0
+                                ? System.currentTimeMillis()
+                                : mTimeMillis[mSize - 1] + DEFAULT_INTERVAL_MILLIS;
+            }
+            if (mSize > 0 && timeMillis < mTimeMillis[mSize - 1]) {
+                Log.w(TAG, "Skipping fix out of order at " + timeMillis);
+                return;
+            }
+            if (mSize == mTimeMillis.length) {
+                int capacity = mSize * 2;
+                mTimeMillis = Arrays.copyOf(mTimeMillis, capacity);
+                mLatitudes = Arrays.copyOf(mLatitudes, capacity);
+                mLongitudes = Arrays.copyOf(mLongitudes, capacity);
+                mAltitudes = Arrays.copyOf(mAltitudes, capacity);
+                mSpeeds = Arrays.copyOf(mSpeeds, capacity);
+                mBearings = Arrays.copyOf(mBearings, capacity);
+            }
+            mTimeMillis[mSize] = timeMillis;
+            mLatitudes[mSize] = latitude;
+            mLongitudes[mSize] = longitude;
+            mAltitudes[mSize] = altitude;
+            mSpeeds[mSize] = speed;
+            mBearings[mSize] = bearing;
+            mSize++;
+        }
+
+        LocationTrack build() throws IOException {
+            if (mSize == 0) {
+                throw new IOException("No location fixes found");
+            }
+            return new LocationTrack(this);
+        }
+    }
+}
@@ -16,8 +16,6 @@
 
 package androidx.car.app.sample.navigation.common.nav;
 
-import static android.media.AudioManager.AUDIOFOCUS_REQUEST_GRANTED;
-
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
@@ -25,12 +23,8 @@ import android.app.PendingIntent;
 import android.app.Service;
 import android.content.ComponentName;
 import android.content.Intent;
-import android.content.res.AssetFileDescriptor;
 import android.graphics.BitmapFactory;
-import android.media.AudioAttributes;
-import android.media.AudioFocusRequest;
-import android.media.AudioManager;
-import android.media.MediaPlayer;
+import android.location.Location;
 import android.os.Binder;
 import android.os.Build;
 import android.os.IBinder;
@@ -42,8 +36,6 @@ import androidx.annotation.Nullable;
 import androidx.annotation.RawRes;
 import androidx.car.app.CarContext;
 import androidx.car.app.CarToast;
-import androidx.car.app.model.CarIcon;
-import androidx.car.app.model.Distance;
 import androidx.car.app.navigation.NavigationManager;
 import androidx.car.app.navigation.NavigationManagerCallback;
 import androidx.car.app.navigation.model.Destination;
@@ -56,13 +48,16 @@ import androidx.car.app.sample.navigation.common.R;
 import androidx.car.app.sample.navigation.common.app.MainActivity;
 import androidx.car.app.sample.navigation.common.car.NavigationCarAppService;
 import androidx.car.app.sample.navigation.common.model.Instruction;
+import androidx.car.app.sample.navigation.common.model.Rerouter;
+import androidx.car.app.sample.navigation.common.model.RouteInstructions;
 import androidx.car.app.sample.navigation.common.model.Script;
+import androidx.car.app.sample.navigation.common.model.ScriptScheduler;
 import androidx.core.app.NotificationCompat;
 import androidx.core.app.NotificationManagerCompat;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 /** Foreground service to provide navigation directions. */
 public class NavigationService extends Service {
@@ -97,6 +92,10 @@ public class NavigationService extends Service {
 
     @Nullable
     private NavigationManager mNavigationManager;
+
+    // Sends the trips to the host, skipping the ones that would not change the display.
+    @Nullable
+    private TripUpdater mTripUpdater;
     private boolean mIsNavigating;
     private int mStepsSent;
 
@@ -106,20 +105,44 @@ public class NavigationService extends Service {
     @Nullable
     private Script mScript;
 
+    // Searches a new route when the car leaves the route of the script, if it has one.
+    @Nullable
+    private Rerouter mRerouter;
+
+    // Splices the instructions from the rerouter into the script, without starting it again.
+    private final Rerouter.Listener mRerouterListener =
+            new Rerouter.Listener() {
+                @Override
+                public void onRerouting(@NonNull Instruction instruction) {
+                    if (mScript != null) {
+                        mScript.insert(instruction);
+                    }
+                }
+
+                @Override
+                public void onRerouted(@NonNull RouteInstructions instructions) {
+                    if (mScript != null) {
+                        // The new route adds its own steps, and keeps the destination.
+                        mSteps.clear();
+                        mLastShownPosition = null;
+                        mScript.splice(instructions.iterator());
+                    }
+                }
+            };
+
+    // The last position shown, to skip the positions that would not change the screen or the
+    // notification.
+    @Nullable
+    private Instruction mLastShownPosition;
+
+    // Plays the turn cues, only available from API level 26.
+    @Nullable
+    private GuidanceAudioEngine mAudioEngine;
+
     /** A listener for the navigation state changes. */
     public interface Listener {
         /** Callback called when the navigation state changes. */
-        void navigationStateChanged(
-                boolean isNavigating,
-                boolean isRerouting,
-                boolean hasArrived,
-                @Nullable List<Destination> destinations,
-                @Nullable List<Step> steps,
-                @Nullable TravelEstimate nextDestinationTravelEstimate,
-                @Nullable Distance nextStepRemainingDistance,
-                boolean shouldShowNextStep,
-                boolean shouldShowLanes,
-                @Nullable CarIcon junctionImage);
+        void navigationStateChanged(@NonNull NavigationState state);
     }
 
     /**
@@ -137,6 +160,20 @@ public class NavigationService extends Service {
     public void onCreate() {
         Log.i(TAG, "In onCreate()");
         createNotificationChannel();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            mAudioEngine = new GuidanceAudioEngine(this);
+            mAudioEngine.preload(R.raw.turn_right);
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        Log.i(TAG, "In onDestroy()");
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && mAudioEngine != null) {
+            mAudioEngine.release();
+            mAudioEngine = null;
+        }
+        super.onDestroy();
     }
 
     @Override
@@ -163,6 +200,7 @@ public class NavigationService extends Service {
     public void setCarContext(@NonNull CarContext carContext, @NonNull Listener listener) {
         mCarContext = carContext;
         mNavigationManager = mCarContext.getCarService(NavigationManager.class);
+        mTripUpdater = new TripUpdater(mNavigationManager);
         mNavigationManager.setNavigationManagerCallback(
                 new NavigationManagerCallback() {
                     @Override
@@ -187,13 +225,35 @@ public class NavigationService extends Service {
     public void clearCarContext() {
         mCarContext = null;
         mNavigationManager = null;
+        if (mTripUpdater != null) {
+            mTripUpdater.reset();
+            mTripUpdater = null;
+        }
+    }
+
+    /** Executes the given sequence of navigation instructions. */
+    public void executeInstructions(@NonNull Iterable<Instruction> instructions) {
+        executeInstructions(instructions, ScriptScheduler.realTime());
     }
 
-    /** Executes the given list of navigation instructions. */
-    public void executeInstructions(@NonNull List<Instruction> instructions) {
-        mScript =
-                Script.execute(
-                        instructions,
+    /**
+     * Executes the given sequence of navigation instructions, at the pace of the given scheduler.
+     *
+     * <p>E.g. use {@link ScriptScheduler#accelerated} to demo a long route in a short time.
+     *
+     * <p>If the instructions are those of a {@link RouteInstructions}, the location fixes passed to
+     * {@link #onLocationChanged} are matched against the route, and the instructions of a new
+     * route replace the ones left when the car leaves it.
+     */
+    public void executeInstructions(
+            @NonNull Iterable<Instruction> instructions, @NonNull ScriptScheduler scheduler) {
+        stopRerouter();
+        if (instructions instanceof RouteInstructions) {
+            mRerouter = new Rerouter((RouteInstructions) instructions, mRerouterListener);
+        }
+        Script script =
+                Script.create(
+                        instructions.iterator(),
                         (instruction, nextInstruction) -> {
                             switch (instruction.getType()) {
                                 case START_NAVIGATION:
@@ -245,7 +305,9 @@ public class NavigationService extends Service {
                                         if (road != null) {
                                             tripBuilder.setCurrentRoad(road);
                                         }
-                                        mNavigationManager.updateTrip(tripBuilder.build());
+                                        boolean tripChanged =
+                                                mTripUpdater.update(
+                                                        tripBuilder.build(), scheduler);
 
                                         if (++mStepsSent % 10 == 0) {
                                             // For demo purposes only play audio of next turn every
@@ -256,21 +318,30 @@ public class NavigationService extends Service {
                                                     getTrafficAccidentWarningNotification());
                                         }
 
+                                        if (!tripChanged
+                                                && !instruction.getShouldNotify()
+                                                && isSameDisplay(mLastShownPosition, instruction)) {
+                                            break;
+                                        }
+                                        mLastShownPosition = instruction;
                                         update(
-                                                /* isNavigating= */ true,
-                                                /* isRerouting= */ false,
-                                                /* hasArrived= */ false,
-                                                mDestinations,
-                                                mSteps,
-                                                destinationTravelEstimate,
-                                                instruction.getStepRemainingDistance(),
-                                                instruction.getShouldNotify(),
-                                                instruction.getNotificationTitle(),
-                                                instruction.getNotificationContent(),
-                                                instruction.getNotificationIcon(),
-                                                instruction.getShouldShowNextStep(),
-                                                instruction.getShouldShowLanes(),
-                                                instruction.getJunctionImage());
+                                                NavigationState.builder()
+                                                        .setIsNavigating(true)
+                                                        .setDestinations(mDestinations)
+                                                        .setSteps(mSteps)
+                                                        .setDestinationTravelEstimate(
+                                                                destinationTravelEstimate)
+                                                        .setStepRemainingDistance(
+                                                                instruction
+                                                                        .getStepRemainingDistance())
+                                                        .setShouldShowNextStep(
+                                                                instruction.getShouldShowNextStep())
+                                                        .setShouldShowLanes(
+                                                                instruction.getShouldShowLanes())
+                                                        .setJunctionImage(
+                                                                instruction.getJunctionImage())
+                                                        .build(),
+                                                instruction);
                                     }
                                     break;
                                 case SET_REROUTING:
@@ -283,85 +354,96 @@ public class NavigationService extends Service {
                                                         mDestinations.get(0),
                                                         destinationTravelEstimate)
                                                 .setLoading(true);
-                                        mNavigationManager.updateTrip(tripBuilder.build());
+                                        mTripUpdater.update(tripBuilder.build(), scheduler);
+                                        mLastShownPosition = null;
                                         update(
-                                                /* isNavigating= */ true,
-                                                /* isRerouting= */ true,
-                                                /* hasArrived= */ false,
-                                                null,
-                                                null,
-                                                null,
-                                                null,
-                                                instruction.getShouldNotify(),
-                                                instruction.getNotificationTitle(),
-                                                instruction.getNotificationContent(),
-                                                instruction.getNotificationIcon(),
-                                                instruction.getShouldShowNextStep(),
-                                                instruction.getShouldShowLanes(),
-                                                instruction.getJunctionImage());
+                                                NavigationState.builder()
+                                                        .setIsNavigating(true)
+                                                        .setIsRerouting(true)
+                                                        .setShouldShowNextStep(
+                                                                instruction.getShouldShowNextStep())
+                                                        .setShouldShowLanes(
+                                                                instruction.getShouldShowLanes())
+                                                        .setJunctionImage(
+                                                                instruction.getJunctionImage())
+                                                        .build(),
+                                                instruction);
                                     }
                                     break;
                                 case SET_ARRIVED:
                                     if (mIsNavigating) {
                                         update(
-                                                /* isNavigating= */ true,
-                                                /* isRerouting= */ false,
-                                                /* hasArrived= */ true,
-                                                mDestinations,
-                                                null,
-                                                null,
-                                                null,
-                                                instruction.getShouldNotify(),
-                                                instruction.getNotificationTitle(),
-                                                instruction.getNotificationContent(),
-                                                instruction.getNotificationIcon(),
-                                                instruction.getShouldShowNextStep(),
-                                                instruction.getShouldShowLanes(),
-                                                instruction.getJunctionImage());
+                                                NavigationState.builder()
+                                                        .setIsNavigating(true)
+                                                        .setHasArrived(true)
+                                                        .setDestinations(mDestinations)
+                                                        .setShouldShowNextStep(
+                                                                instruction.getShouldShowNextStep())
+                                                        .setShouldShowLanes(
+                                                                instruction.getShouldShowLanes())
+                                                        .setJunctionImage(
+                                                                instruction.getJunctionImage())
+                                                        .build(),
+                                                instruction);
                                     }
                                     break;
                             }
-                        });
+                        },
+                        scheduler);
+        // Kept before the first instruction runs, as a script running as fast as possible ends,
+        // and stops the navigation, before start returns.
+        mScript = script;
+        script.start();
     }
 
-    void update(
-            boolean isNavigating,
-            boolean isRerouting,
-            boolean hasArrived,
-            List<Destination> destinations,
-            List<Step> steps,
-            TravelEstimate nextDestinationTravelEstimate,
-            Distance nextStepRemainingDistance,
-            boolean shouldNotify,
-            @Nullable String notificationTitle,
-            @Nullable String notificationContent,
-            int notificationIcon,
-            boolean shouldShowNextStep,
-            boolean shouldShowLanes,
-            @Nullable CarIcon junctionImage) {
+    /** Passes a location fix to the rerouter, if the navigation follows a route. */
+    public void onLocationChanged(@NonNull Location location) {
+        if (mRerouter != null && mIsNavigating) {
+            mRerouter.onLocationChanged(location);
+        }
+    }
+
+    private void stopRerouter() {
+        if (mRerouter != null) {
+            mRerouter.stop();
+            mRerouter = null;
+        }
+    }
+
+    /**
+     * Returns whether the given position would look the same as the previous one on the screen and
+     * in the notification, in addition to the trip.
+     */
+    private static boolean isSameDisplay(@Nullable Instruction previous, Instruction position) {
+        return previous != null
+                && TripUpdater.isSameAtDisplayPrecision(
+                        previous.getStepRemainingDistance(), position.getStepRemainingDistance())
+                && previous.getShouldShowNextStep() == position.getShouldShowNextStep()
+                && previous.getShouldShowLanes() == position.getShouldShowLanes()
+                && Objects.equals(previous.getJunctionImage(), position.getJunctionImage())
+                && TextUtils.equals(
+                        previous.getNotificationTitle(), position.getNotificationTitle())
+                && TextUtils.equals(
+                        previous.getNotificationContent(), position.getNotificationContent())
+                && previous.getNotificationIcon() == position.getNotificationIcon();
+    }
+
+    /** Sends the given state to the listener, and the notification of the given instruction. */
+    void update(@NonNull NavigationState state, @NonNull Instruction instruction) {
         if (mListener != null) {
-            mListener.navigationStateChanged(
-                    isNavigating,
-                    isRerouting,
-                    hasArrived,
-                    destinations,
-                    steps,
-                    nextDestinationTravelEstimate,
-                    nextStepRemainingDistance,
-                    shouldShowNextStep,
-                    shouldShowLanes,
-                    junctionImage);
+            mListener.navigationStateChanged(state);
         }
 
+        String notificationTitle = instruction.getNotificationTitle();
         if (mNotificationManager != null && !TextUtils.isEmpty(notificationTitle)) {
             mNotificationManager.notify(
                     NAV_NOTIFICATION_ID,
                     getNotification(
-                            shouldNotify,
+                            instruction.getShouldNotify(),
                             true,
                             notificationTitle,
-                            notificationContent,
-                            notificationIcon));
+                            instruction.getNotificationContent(),
+                            instruction.getNotificationIcon()));
         }
     }
 
@@ -384,20 +466,12 @@ public class NavigationService extends Service {
                         null,
                         R.drawable.ic_launcher));
 
+        mLastShownPosition = null;
         if (mNavigationManager != null) {
             mNavigationManager.navigationStarted();
             mIsNavigating = true;
             mListener.navigationStateChanged(
-                    mIsNavigating,
-                    /* isRerouting= */ true,
-                    /* hasArrived= */ false,
-                    /* destinations= */ null,
-                    /* steps= */ null,
-                    /* nextDestinationTravelEstimate= */ null,
-                    /* nextStepRemainingDistance= */ null,
-                    /* shouldShowNextStep= */ false,
-                    /* shouldShowLanes= */ false,
-                    /* junctionImage= */ null);
+                    NavigationState.builder().setIsNavigating(true).setIsRerouting(true).build());
         }
     }
 
@@ -405,101 +479,33 @@ public class NavigationService extends Service {
     @SuppressWarnings("deprecation")
     public void stopNavigation() {
         Log.i(TAG, "Stopping Navigation");
+        stopRerouter();
         if (mScript != null) {
             mScript.stop();
-            mDestinations.clear();
-            mSteps.clear();
             mScript = null;
         }
+        mDestinations.clear();
+        mSteps.clear();
 
+        mLastShownPosition = null;
+        if (mTripUpdater != null) {
+            // A trip sent after the navigation ended would be rejected by the host.
+            mTripUpdater.reset();
+        }
         if (mNavigationManager != null) {
             mNavigationManager.navigationEnded();
             mIsNavigating = false;
-            mListener.navigationStateChanged(
-                    mIsNavigating,
-                    /* isRerouting= */ false,
-                    /* hasArrived= */ false,
-                    /* destinations= */ null,
-                    /* steps= */ null,
-                    /* nextDestinationTravelEstimate= */ null,
-                    /* nextStepRemainingDistance= */ null,
-                    /* shouldShowNextStep= */ false,
-                    /* shouldShowLanes= */ false,
-                    /* junctionImage= */ null);
+            mListener.navigationStateChanged(NavigationState.IDLE);
         }
         stopForeground(true);
         stopSelf();
     }
 
     private void playNavigationDirection(@RawRes int resourceId) {
-        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O) {
-            return;
-        }
-        CarContext carContext = mCarContext;
-        if (carContext == null) {
-            return;
-        }
-
-        MediaPlayer mediaPlayer = new MediaPlayer();
-
-        // Use USAGE_ASSISTANCE_NAVIGATION_GUIDANCE as the usage type for any navigation related
-        // audio, so that the audio will be played in the car speaker.
-        AudioAttributes audioAttributes =
-                new AudioAttributes.Builder()
-                        .setContentType(AudioAttributes.CONTENT_TYPE_SPEECH)
-                        .setUsage(AudioAttributes.USAGE_ASSISTANCE_NAVIGATION_GUIDANCE)
-                        .build();
-
-        mediaPlayer.setAudioAttributes(audioAttributes);
-
-        // Request audio focus with AUDIOFOCUS_GAIN_TRANSIENT_MAY_DUCK so that it will duck ongoing
-        // media.
-        // Ducking will behave differently depending on what is playing, if it is music it will
-        // lower
-        // the volume, if it is speech, it will pause it.
-        AudioFocusRequest request =
-                new AudioFocusRequest.Builder(AudioManager.AUDIOFOCUS_GAIN_TRANSIENT_MAY_DUCK)
-                        .setAudioAttributes(audioAttributes)
-                        .build();
-
-        AudioManager audioManager = carContext.getSystemService(AudioManager.class);
-
-        mediaPlayer.setOnCompletionListener(
-                player -> {
-                    try {
-                        // When the audio finishes playing: stop and release the media player.
-                        player.stop();
-                        player.release();
-                    } finally {
-                        // Release the audio focus so that any previously playing audio can
-                        // continue.
-                        audioManager.abandonAudioFocusRequest(request);
-                    }
-                });
-
-        // Requesting the audio focus.
-        if (audioManager.requestAudioFocus(request) != AUDIOFOCUS_REQUEST_GRANTED) {
-            // If audio focus is not granted ignore it.
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.O || mAudioEngine == null) {
             return;
         }
-
-        try {
-            // Load our raw resource file, in the case where you synthesize the audio for the given
-            // direction, just use that audio file.
-            AssetFileDescriptor afd = carContext.getResources().openRawResourceFd(resourceId);
-            mediaPlayer.setDataSource(
-                    afd.getFileDescriptor(), afd.getStartOffset(), afd.getLength());
-            afd.close();
-
-            mediaPlayer.prepare();
-        } catch (IOException e) {
-            Log.e(TAG, "Failure loading audio resource", e);
-            // Release the audio focus so that any previously playing audio can continue.
-            audioManager.abandonAudioFocusRequest(request);
-        }
-
-        // Start the audio playback.
-        mediaPlayer.start();
+        mAudioEngine.play(resourceId, GuidanceAudioEngine.PRIORITY_NORMAL);
     }
 
     private void endNavigationFromScript() {
@@ -0,0 +1,281 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.nav;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.car.app.model.CarIcon;
+import androidx.car.app.model.Distance;
+import androidx.car.app.navigation.model.Destination;
+import androidx.car.app.navigation.model.Step;
+import androidx.car.app.navigation.model.TravelEstimate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * An immutable snapshot of the state of navigation, as shown on the navigation screen.
+ *
+ * <p>Use {@link #diff} to find which parts of the state changed from a previous snapshot, e.g. to
+ * only rebuild the parts of the screen that show them.
+ */
+public final class NavigationState {
+    /** Whether navigating, rerouting or arrived changed. */
+    public static final int CHANGE_STATUS = 1;
+    /** The list of destinations changed. */
+    public static final int CHANGE_DESTINATIONS = 1 << 1;
+    /** The list of steps changed, e.g. a step was passed or the route was replaced. */
+    public static final int CHANGE_STEPS = 1 << 2;
+    /** The travel estimate to the destination changed, at the precision it is displayed at. */
+    public static final int CHANGE_DESTINATION_TRAVEL_ESTIMATE = 1 << 3;
+    /** The distance to the end of the step changed, at the precision it is displayed at. */
+    public static final int CHANGE_STEP_REMAINING_DISTANCE = 1 << 4;
+    /** Whether to show the step after the current one changed. */
+    public static final int CHANGE_SHOULD_SHOW_NEXT_STEP = 1 << 5;
+    /** Whether to show the lanes of the current step changed. */
+    public static final int CHANGE_SHOULD_SHOW_LANES = 1 << 6;
+    /** The junction image changed, or was added or removed. */
+    public static final int CHANGE_JUNCTION_IMAGE = 1 << 7;
+    /** All of the above, e.g. when there is no previous state to compare with. */
+    public static final int CHANGE_ALL = (1 << 8) - 1;
+
+    /** The state when not navigating. */
+    public static final NavigationState IDLE = builder().build();
+
+    private final boolean mIsNavigating;
+    private final boolean mIsRerouting;
+    private final boolean mHasArrived;
+    @Nullable
+    private final List<Destination> mDestinations;
+    @Nullable
+    private final List<Step> mSteps;
+    @Nullable
+    private final TravelEstimate mDestinationTravelEstimate;
+    @Nullable
+    private final Distance mStepRemainingDistance;
+    private final boolean mShouldShowNextStep;
+    private final boolean mShouldShowLanes;
+    @Nullable
+    private final CarIcon mJunctionImage;
+
+    /** Constructs a new builder of {@link NavigationState}. */
+    @NonNull
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public boolean getIsNavigating() {
+        return mIsNavigating;
+    }
+
+    public boolean getIsRerouting() {
+        return mIsRerouting;
+    }
+
+    public boolean getHasArrived() {
+        return mHasArrived;
+    }
+
+    @Nullable
+    public List<Destination> getDestinations() {
+        return mDestinations;
+    }
+
+    @Nullable
+    public List<Step> getSteps() {
+        return mSteps;
+    }
+
+    @Nullable
+    public TravelEstimate getDestinationTravelEstimate() {
+        return mDestinationTravelEstimate;
+    }
+
+    @Nullable
+    public Distance getStepRemainingDistance() {
+        return mStepRemainingDistance;
+    }
+
+    public boolean getShouldShowNextStep() {
+        return mShouldShowNextStep;
+    }
+
+    public boolean getShouldShowLanes() {
+        return mShouldShowLanes;
+    }
+
+    @Nullable
+    public CarIcon getJunctionImage() {
+        return mJunctionImage;
+    }
+
+    /**
+     * Returns the {@code CHANGE_*} bits of the parts of this state that differ from the given
+     * previous state, or {@link #CHANGE_ALL} if there is no previous state.
+     *
+     * <p>Distances and travel estimates are compared at the precision they are displayed at.
+     */
+    public int diff(@Nullable NavigationState previous) {
+        if (previous == null) {
+            return CHANGE_ALL;
+        }
+        if (previous == this) {
+            return 0;
+        }
+
+        int changes = 0;
+        if (mIsNavigating != previous.mIsNavigating
+                || mIsRerouting != previous.mIsRerouting
+                || mHasArrived != previous.mHasArrived) {
+            changes |= CHANGE_STATUS;
+        }
+        if (!Objects.equals(mDestinations, previous.mDestinations)) {
+            changes |= CHANGE_DESTINATIONS;
+        }
+        if (!Objects.equals(mSteps, previous.mSteps)) {
+            changes |= CHANGE_STEPS;
+        }
+        if (!TripUpdater.isSameAtDisplayPrecision(
+                mDestinationTravelEstimate, previous.mDestinationTravelEstimate)) {
+            changes |= CHANGE_DESTINATION_TRAVEL_ESTIMATE;
+        }
+        if (!TripUpdater.isSameAtDisplayPrecision(
+                mStepRemainingDistance, previous.mStepRemainingDistance)) {
+            changes |= CHANGE_STEP_REMAINING_DISTANCE;
+        }
+        if (mShouldShowNextStep != previous.mShouldShowNextStep) {
+            changes |= CHANGE_SHOULD_SHOW_NEXT_STEP;
+        }
+        if (mShouldShowLanes != previous.mShouldShowLanes) {
+            changes |= CHANGE_SHOULD_SHOW_LANES;
+        }
+        if (!Objects.equals(mJunctionImage, previous.mJunctionImage)) {
+            changes |= CHANGE_JUNCTION_IMAGE;
+        }
+        return changes;
+    }
+
+    NavigationState(Builder builder) {
+        mIsNavigating = builder.mIsNavigating;
+        mIsRerouting = builder.mIsRerouting;
+        mHasArrived = builder.mHasArrived;
+        mDestinations = copyOf(builder.mDestinations);
+        mSteps = copyOf(builder.mSteps);
+        mDestinationTravelEstimate = builder.mDestinationTravelEstimate;
+        mStepRemainingDistance = builder.mStepRemainingDistance;
+        mShouldShowNextStep = builder.mShouldShowNextStep;
+        mShouldShowLanes = builder.mShouldShowLanes;
+        mJunctionImage = builder.mJunctionImage;
+    }
+
+    // The lists of the service change as the script runs, so they are copied.
+    @Nullable
+    private static <T> List<T> copyOf(@Nullable List<T> list) {
+        return list == null ? null : Collections.unmodifiableList(new ArrayList<>(list));
+    }
+
+    /** Builder for creating a {@link NavigationState}. */
+    public static final class Builder {
+        boolean mIsNavigating;
+        boolean mIsRerouting;
+        boolean mHasArrived;
+        @Nullable
+        List<Destination> mDestinations;
+        @Nullable
+        List<Step> mSteps;
+        @Nullable
+        TravelEstimate mDestinationTravelEstimate;
+        @Nullable
+        Distance mStepRemainingDistance;
+        boolean mShouldShowNextStep;
+        boolean mShouldShowLanes;
+        @Nullable
+        CarIcon mJunctionImage;
+
+        Builder() {
+        }
+
+        @NonNull
+        public Builder setIsNavigating(boolean isNavigating) {
+            mIsNavigating = isNavigating;
+            return this;
+        }
+
+        @NonNull
+        public Builder setIsRerouting(boolean isRerouting) {
+            mIsRerouting = isRerouting;
+            return this;
+        }
+
+        @NonNull
+        public Builder setHasArrived(boolean hasArrived) {
+            mHasArrived = hasArrived;
+            return this;
+        }
+
+        @NonNull
+        public Builder setDestinations(@Nullable List<Destination> destinations) {
+            mDestinations = destinations;
+            return this;
+        }
+
+        @NonNull
+        public Builder setSteps(@Nullable List<Step> steps) {
+            mSteps = steps;
+            return this;
+        }
+
+        @NonNull
+        public Builder setDestinationTravelEstimate(
+                @Nullable TravelEstimate destinationTravelEstimate) {
+            mDestinationTravelEstimate = destinationTravelEstimate;
+            return this;
+        }
+
+        @NonNull
+        public Builder setStepRemainingDistance(@Nullable Distance stepRemainingDistance) {
+            mStepRemainingDistance = stepRemainingDistance;
+            return this;
+        }
+
+        @NonNull
+        public Builder setShouldShowNextStep(boolean shouldShowNextStep) {
+            mShouldShowNextStep = shouldShowNextStep;
+            return this;
+        }
+
+        @NonNull
+        public Builder setShouldShowLanes(boolean shouldShowLanes) {
+            mShouldShowLanes = shouldShowLanes;
+            return this;
+        }
+
+        @NonNull
+        public Builder setJunctionImage(@Nullable CarIcon junctionImage) {
+            mJunctionImage = junctionImage;
+            return this;
+        }
+
+        /** Constructs the {@link NavigationState} defined by this builder. */
+        @NonNull
+        public NavigationState build() {
+            return new NavigationState(this);
+        }
+    }
+}
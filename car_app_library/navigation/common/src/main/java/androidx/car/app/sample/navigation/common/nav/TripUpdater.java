@@ -0,0 +1,219 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.nav;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.car.app.model.DateTimeWithZone;
+import androidx.car.app.model.Distance;
+import androidx.car.app.navigation.NavigationManager;
+import androidx.car.app.navigation.model.TravelEstimate;
+import androidx.car.app.navigation.model.Trip;
+import androidx.car.app.sample.navigation.common.model.ScriptScheduler;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends {@link Trip}s to the host, skipping the ones that would look the same as the last one sent,
+ * and limiting the rate of the others.
+ *
+ * <p>Trips are compared at the precision the host displays them at, e.g. a distance of 1.23 km and
+ * one of 1.24 km are the same. A trip that changes the steps, destinations, road or loading state
+ * is sent at once, and one that only changes the travel estimates is sent at most once per
+ * {@link #MIN_INTERVAL_MILLIS}: if several arrive in that interval, only the latest one is sent, at
+ * the end of the interval.
+ *
+ * <p>The interval is measured by the {@link ScriptScheduler} of the script the trips come from, so
+ * that a script run faster than real time is rate limited in its own time. As stopping, splicing
+ * or inserting into the script cancels the tasks of its scheduler, the send at the end of the
+ * interval is scheduled again with each trip that arrives in the interval.
+ */
+final class TripUpdater {
+    /** The minimum interval between two trips that only change the travel estimates. */
+    static final long MIN_INTERVAL_MILLIS = 1000;
+
+    private final NavigationManager mNavigationManager;
+
+    // The scheduler of the last trip, whose time the interval is measured in.
+    @Nullable
+    private ScriptScheduler mScheduler;
+
+    @Nullable
+    private Trip mLastSentTrip;
+    private long mLastSentTimeMillis;
+
+    // The latest trip not sent yet, waiting for the end of the interval.
+    @Nullable
+    private Trip mPendingTrip;
+    // Numbers the pending trips, so that a send scheduled for an older one does nothing.
+    private int mPendingGeneration;
+
+    TripUpdater(@NonNull NavigationManager navigationManager) {
+        mNavigationManager = navigationManager;
+    }
+
+    /**
+     * Sends the given trip to the host, now or at the end of the current interval.
+     *
+     * @param trip      the trip to send
+     * @param scheduler the scheduler of the script the trip comes from
+     * @return whether the trip looks different from the previous one, i.e. whether it is sent
+     */
+    boolean update(@NonNull Trip trip, @NonNull ScriptScheduler scheduler) {
+        Trip previous = mPendingTrip != null ? mPendingTrip : mLastSentTrip;
+        if (previous != null && isSameAtDisplayPrecision(previous, trip)) {
+            return false;
+        }
+
+        long now = scheduler.getTimeMillis();
+        if (mLastSentTrip == null
+                || scheduler != mScheduler
+                || !isSameRoute(mLastSentTrip, trip)
+                || now - mLastSentTimeMillis >= MIN_INTERVAL_MILLIS) {
+            // The times of another scheduler cannot be compared with those of this one.
+            mScheduler = scheduler;
+            dropPending();
+            send(trip, now);
+        } else {
+            if (mPendingTrip == null) {
+                mPendingGeneration++;
+            }
+            mPendingTrip = trip;
+            int generation = mPendingGeneration;
+            scheduler.schedule(
+                    () -> sendPending(generation),
+                    mLastSentTimeMillis + MIN_INTERVAL_MILLIS - now);
+        }
+        return true;
+    }
+
+    /** Drops the pending trip, and forgets the last one sent, e.g. when navigation stops. */
+    void reset() {
+        dropPending();
+        mLastSentTrip = null;
+        mScheduler = null;
+    }
+
+    private void dropPending() {
+        if (mPendingTrip != null) {
+            mPendingTrip = null;
+            mPendingGeneration++;
+        }
+    }
+
+    private void sendPending(int generation) {
+        Trip trip = mPendingTrip;
+        if (trip != null && generation == mPendingGeneration) {
+            mPendingTrip = null;
+            send(trip, mScheduler.getTimeMillis());
+        }
+    }
+
+    private void send(Trip trip, long timeMillis) {
+        mNavigationManager.updateTrip(trip);
+        mLastSentTrip = trip;
+        mLastSentTimeMillis = timeMillis;
+    }
+
+    /** Returns whether the given trips have the same steps, destinations, road and loading. */
+    private static boolean isSameRoute(Trip a, Trip b) {
+        return a.isLoading() == b.isLoading()
+                && Objects.equals(a.getCurrentRoad(), b.getCurrentRoad())
+                && a.getSteps().equals(b.getSteps())
+                && a.getDestinations().equals(b.getDestinations());
+    }
+
+    /** Returns whether the given trips would be displayed the same by the host. */
+    static boolean isSameAtDisplayPrecision(@NonNull Trip a, @NonNull Trip b) {
+        return isSameRoute(a, b)
+                && isSameAtDisplayPrecision(
+                        a.getStepTravelEstimates(), b.getStepTravelEstimates())
+                && isSameAtDisplayPrecision(
+                        a.getDestinationTravelEstimates(), b.getDestinationTravelEstimates());
+    }
+
+    private static boolean isSameAtDisplayPrecision(
+            List<TravelEstimate> a, List<TravelEstimate> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (!isSameAtDisplayPrecision(a.get(i), b.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Returns whether the given travel estimates would be displayed the same. */
+    static boolean isSameAtDisplayPrecision(
+            @Nullable TravelEstimate a, @Nullable TravelEstimate b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return isSameAtDisplayPrecision(a.getRemainingDistance(), b.getRemainingDistance())
+                && toMinutes(a.getRemainingTimeSeconds()) == toMinutes(b.getRemainingTimeSeconds())
+                && isSameAtDisplayPrecision(
+                        a.getArrivalTimeAtDestination(), b.getArrivalTimeAtDestination())
+                && Objects.equals(a.getRemainingTimeColor(), b.getRemainingTimeColor())
+                && Objects.equals(a.getRemainingDistanceColor(), b.getRemainingDistanceColor())
+                && Objects.equals(a.getTripText(), b.getTripText())
+                && Objects.equals(a.getTripIcon(), b.getTripIcon());
+    }
+
+    /**
+     * Returns whether the given distances would be displayed the same, i.e. in the same unit and
+     * with the same digits: kilometers and miles with one decimal, other units without.
+     */
+    static boolean isSameAtDisplayPrecision(@Nullable Distance a, @Nullable Distance b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.getDisplayUnit() == b.getDisplayUnit() && toDisplayDigits(a) == toDisplayDigits(b);
+    }
+
+    /** Returns whether the given times would be displayed the same, i.e. to the minute. */
+    private static boolean isSameAtDisplayPrecision(
+            @Nullable DateTimeWithZone a, @Nullable DateTimeWithZone b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return TimeUnit.MILLISECONDS.toMinutes(a.getTimeSinceEpochMillis())
+                        == TimeUnit.MILLISECONDS.toMinutes(b.getTimeSinceEpochMillis())
+                && a.getZoneOffsetSeconds() == b.getZoneOffsetSeconds()
+                && Objects.equals(a.getZoneShortName(), b.getZoneShortName());
+    }
+
+    private static long toDisplayDigits(Distance distance) {
+        switch (distance.getDisplayUnit()) {
+            case Distance.UNIT_KILOMETERS:
+            case Distance.UNIT_KILOMETERS_P1:
+            case Distance.UNIT_MILES:
+            case Distance.UNIT_MILES_P1:
+                return Math.round(distance.getDisplayDistance() * 10);
+            default:
+                return Math.round(distance.getDisplayDistance());
+        }
+    }
+
+    /** Rounds a remaining time to the minute, keeping the unknown time apart. */
+    private static long toMinutes(long seconds) {
+        return seconds < 0 ? -1 : (seconds + 30) / 60;
+    }
+}
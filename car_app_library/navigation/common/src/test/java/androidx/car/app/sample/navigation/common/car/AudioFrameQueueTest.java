@@ -0,0 +1,122 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+
+/** Tests the hand-off of frames between the threads of {@link AudioFrameQueue}. */
+@RunWith(JUnit4.class)
+public class AudioFrameQueueTest {
+    private static final int FRAME_SIZE = 8;
+
+    @Test
+    public void create_capacityNotAPowerOfTwo_throws() {
+        assertThrows(IllegalArgumentException.class, () -> new AudioFrameQueue(3, FRAME_SIZE));
+        assertThrows(IllegalArgumentException.class, () -> new AudioFrameQueue(0, FRAME_SIZE));
+    }
+
+    @Test
+    public void claim_full_returnsNullUntilAFrameIsReleased() {
+        AudioFrameQueue queue = new AudioFrameQueue(2, FRAME_SIZE);
+        publish(queue, 1);
+        publish(queue, 2);
+
+        assertThat(queue.claim()).isNull();
+
+        queue.take();
+        queue.release();
+        assertThat(queue.claim()).isNotNull();
+    }
+
+    @Test
+    public void take_returnsTheFramesInOrder_thenNullOnceClosed() {
+        AudioFrameQueue queue = new AudioFrameQueue(4, FRAME_SIZE);
+        publish(queue, 1);
+        publish(queue, 2);
+        queue.close();
+
+        assertThat(takeValue(queue)).isEqualTo(1);
+        assertThat(takeValue(queue)).isEqualTo(2);
+        assertThat(queue.take()).isNull();
+    }
+
+    @Test
+    public void asBuffer_coversTheSizeOfTheFrame() {
+        AudioFrameQueue queue = new AudioFrameQueue(1, FRAME_SIZE);
+        AudioFrameQueue.Frame frame = queue.claim();
+        frame.mSize = 3;
+
+        ByteBuffer buffer = frame.asBuffer();
+
+        assertThat(buffer.position()).isEqualTo(0);
+        assertThat(buffer.remaining()).isEqualTo(3);
+    }
+
+    @Test
+    public void take_fromAnotherThread_getsEveryFramePublished() throws InterruptedException {
+        int frameCount = 100_000;
+        AudioFrameQueue queue = new AudioFrameQueue(8, FRAME_SIZE);
+        Thread producer = new Thread(() -> {
+            for (int i = 0; i < frameCount; ) {
+                if (publish(queue, i)) {
+                    i++;
+                } else {
+                    Thread.yield();
+                }
+            }
+            queue.close();
+        });
+        producer.start();
+
+        int expected = 0;
+        AudioFrameQueue.Frame frame;
+        while ((frame = queue.take()) != null) {
+            assertThat(frame.asBuffer().getInt()).isEqualTo(expected++);
+            queue.release();
+        }
+        producer.join();
+
+        assertThat(expected).isEqualTo(frameCount);
+    }
+
+    /** Publishes a frame holding the given value, and returns whether the queue had room. */
+    private static boolean publish(AudioFrameQueue queue, int value) {
+        AudioFrameQueue.Frame frame = queue.claim();
+        if (frame == null) {
+            return false;
+        }
+        frame.mBuffer.clear();
+        frame.mBuffer.putInt(value);
+        frame.mSize = Integer.BYTES;
+        queue.publish();
+        return true;
+    }
+
+    private static int takeValue(AudioFrameQueue queue) {
+        int value = queue.take().asBuffer().getInt();
+        queue.release();
+        return value;
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.nio.ByteBuffer;
+
+/** Tests the segments reported by {@link LocalVoiceRecognizer}. */
+@RunWith(JUnit4.class)
+public class LocalVoiceRecognizerTest {
+    private static final int SAMPLE_RATE = 16000;
+
+    private final LocalVoiceRecognizer mRecognizer = new LocalVoiceRecognizer();
+
+    @Test
+    public void endSegment_reportsTheLengthOfTheSegment() {
+        mRecognizer.beginSegment(SAMPLE_RATE);
+        mRecognizer.addSamples(ByteBuffer.allocate(SAMPLE_RATE));
+        mRecognizer.addSamples(ByteBuffer.allocate(SAMPLE_RATE * 2));
+
+        assertThat(mRecognizer.endSegment()).isEqualTo("Speech #1, 1.5 s");
+        assertThat(mRecognizer.getSegmentCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void addSamples_consumesTheBuffer() {
+        ByteBuffer samples = ByteBuffer.allocate(100);
+        samples.position(40);
+        mRecognizer.beginSegment(SAMPLE_RATE);
+
+        mRecognizer.addSamples(samples);
+
+        assertThat(samples.hasRemaining()).isFalse();
+    }
+
+    @Test
+    public void cancelSegment_dropsTheSamples_andIsNotCounted() {
+        mRecognizer.beginSegment(SAMPLE_RATE);
+        mRecognizer.addSamples(ByteBuffer.allocate(SAMPLE_RATE * 2));
+        mRecognizer.cancelSegment();
+        mRecognizer.beginSegment(SAMPLE_RATE);
+        mRecognizer.addSamples(ByteBuffer.allocate(SAMPLE_RATE));
+
+        assertThat(mRecognizer.endSegment()).isEqualTo("Speech #1, 0.5 s");
+    }
+
+    @Test
+    public void endSegment_countsTheSegments() {
+        for (int i = 0; i < 3; i++) {
+            mRecognizer.beginSegment(SAMPLE_RATE);
+            mRecognizer.endSegment();
+        }
+
+        assertThat(mRecognizer.getSegmentCount()).isEqualTo(3);
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.concurrent.TimeUnit;
+
+/** Tests how {@link MapGestureIntegrator} gathers gestures and animates them over frames. */
+@RunWith(JUnit4.class)
+public class MapGestureIntegratorTest {
+    private static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+
+    private final MapGestureIntegrator mGestures = new MapGestureIntegrator();
+    private long mFrameTimeNanos = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void advance_nothingGathered_returnsFalse() {
+        assertThat(mGestures.advance(nextFrame())).isFalse();
+        assertThat(mGestures.isAnimating()).isFalse();
+    }
+
+    @Test
+    public void advance_appliesTheScrollsAndScalesGatheredOnce() {
+        mGestures.addScroll(3, 1);
+        mGestures.addScroll(2, 1);
+        mGestures.addScale(10, 20, 2f);
+        mGestures.addScale(30, 40, 1.5f);
+
+        assertThat(mGestures.advance(nextFrame())).isTrue();
+        assertThat(mGestures.getTranslateX()).isEqualTo(-5f);
+        assertThat(mGestures.getTranslateY()).isEqualTo(-2f);
+        assertThat(mGestures.getScaleFactor()).isEqualTo(3f);
+        assertThat(mGestures.getFocusX()).isEqualTo(30f);
+        assertThat(mGestures.getFocusY()).isEqualTo(40f);
+
+        assertThat(mGestures.advance(nextFrame())).isFalse();
+    }
+
+    @Test
+    public void fling_movesByTheVelocityTimesTheTimeConstant_thenStops() {
+        mGestures.fling(1000, -500);
+
+        float translateX = 0;
+        float translateY = 0;
+        int frames = 0;
+        while (mGestures.isAnimating() && frames < 600) {
+            mGestures.advance(nextFrame());
+            translateX += mGestures.getTranslateX();
+            translateY += mGestures.getTranslateY();
+            frames++;
+        }
+
+        assertThat(mGestures.isAnimating()).isFalse();
+        // The integral of the decaying speed is 0.3 s worth of the initial speed, less the part
+        // after the fling stops at 30 px/s.
+        assertThat((double) translateX).isWithin(15).of(300);
+        assertThat((double) translateY).isWithin(10).of(-150);
+    }
+
+    @Test
+    public void addScroll_stopsTheFling() {
+        mGestures.fling(1000, 0);
+        mGestures.advance(nextFrame());
+
+        mGestures.addScroll(1, 0);
+
+        assertThat(mGestures.isAnimating()).isFalse();
+    }
+
+    @Test
+    public void animateScale_reachesTheFactorExactly() {
+        mGestures.animateScale(100, 200, 2f);
+
+        float scale = 1f;
+        int frames = 0;
+        while (mGestures.isAnimating() && frames < 600) {
+            mGestures.advance(nextFrame());
+            scale *= mGestures.getScaleFactor();
+            frames++;
+        }
+
+        assertThat((double) scale).isWithin(1e-4).of(2);
+        // 250 ms at 60 frames per second.
+        assertThat(frames).isAtMost(16);
+        assertThat(mGestures.getFocusX()).isEqualTo(100f);
+    }
+
+    @Test
+    public void animateScale_whileZooming_continuesFromTheEndOfTheFirstZoom() {
+        float scale = 1f;
+        mGestures.animateScale(0, 0, 2f);
+        for (int i = 0; i < 5; i++) {
+            mGestures.advance(nextFrame());
+            scale *= mGestures.getScaleFactor();
+        }
+
+        mGestures.animateScale(0, 0, 1.5f);
+        while (mGestures.isAnimating()) {
+            mGestures.advance(nextFrame());
+            scale *= mGestures.getScaleFactor();
+        }
+
+        assertThat((double) scale).isWithin(1e-4).of(3);
+    }
+
+    @Test
+    public void advance_afterAStall_onlyAdvancesTheMaximumFrameTime() {
+        mGestures.fling(1000, 0);
+        mGestures.advance(nextFrame());
+
+        mFrameTimeNanos += TimeUnit.SECONDS.toNanos(5);
+        mGestures.advance(nextFrame());
+
+        // Much less than the whole fling, which would have ended during the stall.
+        assertThat(mGestures.getTranslateX()).isLessThan(100f);
+        assertThat(mGestures.isAnimating()).isTrue();
+    }
+
+    @Test
+    public void stop_dropsTheGesturesAndAnimations() {
+        mGestures.addScroll(5, 5);
+        mGestures.fling(1000, 0);
+        mGestures.animateScale(0, 0, 2f);
+
+        mGestures.stop();
+
+        assertThat(mGestures.isAnimating()).isFalse();
+        assertThat(mGestures.advance(nextFrame())).isFalse();
+    }
+
+    private long nextFrame() {
+        mFrameTimeNanos += FRAME_NANOS;
+        return mFrameTimeNanos;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.internal.DoNotInstrument;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests the grid pyramid of {@link MapMarkerLayer}, and the markers and clusters it draws. */
+@RunWith(RobolectricTestRunner.class)
+@DoNotInstrument
+public class MapMarkerLayerTest {
+    private static final int MAP_WIDTH = 100;
+    private static final int MAP_HEIGHT = 60;
+
+    @Test
+    public void index_hasLevelsUpToACellCoveringTheMap() {
+        MapMarkerLayer.Index index = createIndex(1, 1);
+
+        // Cells of 4, 8, 16, 32, 64 and 128 pixels.
+        assertThat(index.mLevelCount).isEqualTo(6);
+        assertThat(index.mColumns[0]).isEqualTo(25);
+        assertThat(index.mRows[0]).isEqualTo(15);
+        assertThat(index.mColumns[2]).isEqualTo(7);
+        assertThat(index.mRows[2]).isEqualTo(4);
+        assertThat(index.mColumns[5]).isEqualTo(1);
+        assertThat(index.mRows[5]).isEqualTo(1);
+    }
+
+    @Test
+    public void index_countsTheMarkersOfEachCellAtEveryLevel() {
+        MapMarkerLayer.Index index = createIndex(1, 1, 3, 2, 10, 1);
+
+        // The first two markers share a 4 pixel cell, the third is two cells to the right.
+        assertThat(index.mCounts[0][0]).isEqualTo(2);
+        assertThat(index.mCounts[0][1]).isEqualTo(0);
+        assertThat(index.mCounts[0][2]).isEqualTo(1);
+        assertThat(index.mCounts[1][0]).isEqualTo(2);
+        assertThat(index.mCounts[1][1]).isEqualTo(1);
+        for (int level = 2; level < index.mLevelCount; level++) {
+            assertThat(index.mCounts[level][0]).isEqualTo(3);
+            assertThat(sum(index.mCounts[level])).isEqualTo(3);
+        }
+    }
+
+    @Test
+    public void index_sumsThePositionsForTheCentroidOfEachCell() {
+        MapMarkerLayer.Index index = createIndex(1, 1, 3, 2, 10, 1);
+
+        assertThat(index.mSumX[0][0] / index.mCounts[0][0]).isEqualTo(2f);
+        assertThat(index.mSumY[0][0] / index.mCounts[0][0]).isEqualTo(1.5f);
+        assertThat(index.mSumX[0][2] / index.mCounts[0][2]).isEqualTo(10f);
+        int top = index.mLevelCount - 1;
+        assertThat(index.mSumX[top][0] / index.mCounts[top][0]).isWithin(1e-5f).of(14f / 3);
+        assertThat(index.mSumY[top][0] / index.mCounts[top][0]).isWithin(1e-5f).of(4f / 3);
+    }
+
+    @Test
+    public void index_markersOffTheMap_areInTheCellsAtItsEdges() {
+        MapMarkerLayer.Index index = createIndex(-50, 30, 500, 1000);
+
+        int columns = index.mColumns[0];
+        assertThat(index.mCounts[0][7 * columns]).isEqualTo(1);
+        assertThat(index.mCounts[0][14 * columns + 24]).isEqualTo(1);
+        assertThat(sum(index.mCounts[0])).isEqualTo(2);
+        // The centroids stay where the markers are.
+        assertThat(index.mSumX[0][7 * columns]).isEqualTo(-50f);
+        assertThat(index.mSumY[0][14 * columns + 24]).isEqualTo(1000f);
+    }
+
+    @Test
+    public void draw_zoomedOut_drawsNearbyMarkersAsACluster() {
+        MapMarkerLayer layer = new MapMarkerLayer(MAP_WIDTH, MAP_HEIGHT);
+        layer.setMarkers(new float[] {1, 1, 9, 9});
+        RecordingCanvas canvas = new RecordingCanvas();
+
+        // 64 pixel cells are the first ones at least CLUSTER_SIZE_PX on the canvas.
+        canvas.draw(layer, 1, new Rect(0, 0, MAP_WIDTH, MAP_HEIGHT));
+
+        assertThat(canvas.mCircles).hasSize(1);
+        assertThat(canvas.mTexts).containsExactly("2");
+        assertThat(canvas.mCircles.get(0)[0]).isEqualTo(5f);
+        assertThat(canvas.mCircles.get(0)[1]).isEqualTo(5f);
+    }
+
+    @Test
+    public void draw_zoomedIn_drawsEachMarker() {
+        MapMarkerLayer layer = new MapMarkerLayer(MAP_WIDTH, MAP_HEIGHT);
+        layer.setMarkers(new float[] {1, 1, 9, 9});
+        RecordingCanvas canvas = new RecordingCanvas();
+
+        // 4 pixel cells are 48 pixels on the canvas.
+        canvas.draw(layer, 12, new Rect(0, 0, 12 * MAP_WIDTH, 12 * MAP_HEIGHT));
+
+        assertThat(canvas.mCircles).hasSize(2);
+        assertThat(canvas.mTexts).isEmpty();
+    }
+
+    @Test
+    public void draw_markersOutsideTheArea_areCulled() {
+        MapMarkerLayer layer = new MapMarkerLayer(MAP_WIDTH, MAP_HEIGHT);
+        // Markers every 20 pixels, 240 pixels apart on the canvas.
+        float[] positions = new float[2 * 5 * 3];
+        for (int i = 0; i < 5 * 3; i++) {
+            positions[2 * i] = 2 + 20 * (i % 5);
+            positions[2 * i + 1] = 2 + 20 * (i / 5);
+        }
+        layer.setMarkers(positions);
+        RecordingCanvas canvas = new RecordingCanvas();
+
+        canvas.draw(layer, 12, new Rect(0, 0, 300, 300));
+
+        // Those at 24 and 264 pixels on both axes.
+        assertThat(canvas.mCircles).hasSize(4);
+    }
+
+    @Test
+    public void draw_markerAcrossTheEdgeOfTheArea_isDrawn() {
+        MapMarkerLayer layer = new MapMarkerLayer(MAP_WIDTH, MAP_HEIGHT);
+        // At 305 and 310 pixels on the canvas, the first within the marker radius of the area.
+        layer.setMarkers(new float[] {305f / 12, 1, 310f / 12, 30});
+        RecordingCanvas canvas = new RecordingCanvas();
+
+        canvas.draw(layer, 12, new Rect(0, 0, 300, 720));
+
+        assertThat(canvas.mCircles).hasSize(1);
+        assertThat(canvas.mCircles.get(0)[0]).isWithin(1e-3f).of(305f);
+    }
+
+    private static MapMarkerLayer.Index createIndex(float... positions) {
+        return new MapMarkerLayer.Index(positions, positions.length / 2, MAP_WIDTH, MAP_HEIGHT);
+    }
+
+    private static int sum(int[] values) {
+        int sum = 0;
+        for (int value : values) {
+            sum += value;
+        }
+        return sum;
+    }
+
+    /** A canvas that records the circles and texts drawn on it. */
+    private static final class RecordingCanvas extends Canvas {
+        final List<float[]> mCircles = new ArrayList<>();
+        final List<String> mTexts = new ArrayList<>();
+
+        void draw(MapMarkerLayer layer, float scale, Rect area) {
+            Matrix matrix = new Matrix();
+            matrix.setScale(scale, scale);
+            layer.draw(this, matrix, area);
+        }
+
+        @Override
+        public void drawCircle(float cx, float cy, float radius, @NonNull Paint paint) {
+            mCircles.add(new float[] {cx, cy, radius});
+        }
+
+        @Override
+        public void drawText(@NonNull String text, float x, float y, @NonNull Paint paint) {
+            mTexts.add(text);
+        }
+    }
+}
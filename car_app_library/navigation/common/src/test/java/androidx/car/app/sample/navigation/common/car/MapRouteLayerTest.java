@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Random;
+
+/** Tests the Douglas-Peucker tolerances {@link MapRouteLayer} simplifies the route with. */
+@RunWith(JUnit4.class)
+public class MapRouteLayerTest {
+    @Test
+    public void computeTolerances_endsAreAlwaysKept() {
+        float[] points = {0, 0, 10, 0};
+
+        float[] tolerances = MapRouteLayer.computeTolerances(points, 2);
+
+        assertThat(tolerances[0]).isEqualTo(Float.POSITIVE_INFINITY);
+        assertThat(tolerances[1]).isEqualTo(Float.POSITIVE_INFINITY);
+    }
+
+    @Test
+    public void computeTolerances_pointsOnAStraightLine_areDroppedFirst() {
+        float[] points = {0, 0, 1, 0, 2, 0, 3, 0, 4, 0};
+
+        float[] tolerances = MapRouteLayer.computeTolerances(points, 5);
+
+        assertThat(tolerances[1]).isEqualTo(0f);
+        assertThat(tolerances[2]).isEqualTo(0f);
+        assertThat(tolerances[3]).isEqualTo(0f);
+    }
+
+    @Test
+    public void computeTolerances_isTheDistanceToTheSegmentThePointSplits() {
+        float[] points = {0, 0, 10, 5, 20, 0};
+
+        float[] tolerances = MapRouteLayer.computeTolerances(points, 3);
+
+        assertThat(tolerances[1]).isEqualTo(5f);
+    }
+
+    @Test
+    public void computeTolerances_isCappedByTheToleranceOfTheEnclosingSplit() {
+        // The second point splits the route 3 pixels away from it, and the third is farther from
+        // the segment left after it, but is dropped along with it.
+        float[] points = {0, 0, 5, 3, 5, -3, 10, 0};
+
+        float[] tolerances = MapRouteLayer.computeTolerances(points, 4);
+
+        assertThat(tolerances[1]).isEqualTo(3f);
+        assertThat(tolerances[2]).isEqualTo(3f);
+    }
+
+    @Test
+    public void computeTolerances_keepsTheSamePointsAsDouglasPeucker() {
+        Random random = new Random(42);
+        int count = 2000;
+        float[] points = new float[2 * count];
+        for (int i = 1; i < count; i++) {
+            points[2 * i] = points[2 * i - 2] + random.nextFloat() * 4;
+            points[2 * i + 1] = points[2 * i - 1] + random.nextFloat() * 8 - 4;
+        }
+
+        float[] tolerances = MapRouteLayer.computeTolerances(points, count);
+
+        for (float tolerance : new float[] {0.25f, 1, 4, 16, 64}) {
+            boolean[] isKept = new boolean[count];
+            isKept[0] = true;
+            isKept[count - 1] = true;
+            simplify(points, 0, count - 1, tolerance, isKept);
+            for (int i = 0; i < count; i++) {
+                assertThat(tolerances[i] > tolerance).isEqualTo(isKept[i]);
+            }
+        }
+    }
+
+    /** Marks the points Douglas-Peucker keeps between two points, as a reference. */
+    private static void simplify(float[] points, int first, int last, float tolerance,
+            boolean[] isKept) {
+        int farthest = -1;
+        float maxDistance = -1;
+        for (int i = first + 1; i < last; i++) {
+            float distance = distanceToSegment(points, i, first, last);
+            if (distance > maxDistance) {
+                maxDistance = distance;
+                farthest = i;
+            }
+        }
+        if (farthest < 0 || maxDistance <= tolerance) {
+            return;
+        }
+        isKept[farthest] = true;
+        simplify(points, first, farthest, tolerance, isKept);
+        simplify(points, farthest, last, tolerance, isKept);
+    }
+
+    private static float distanceToSegment(float[] points, int point, int first, int last) {
+        float x = points[2 * point];
+        float y = points[2 * point + 1];
+        float x1 = points[2 * first];
+        float y1 = points[2 * first + 1];
+        float dx = points[2 * last] - x1;
+        float dy = points[2 * last + 1] - y1;
+        float lengthSquared = dx * dx + dy * dy;
+        float t = lengthSquared == 0
+                ? 0
+                : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+        return (float) Math.hypot(x - (x1 + t * dx), y - (y1 + t * dy));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2022 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import static androidx.car.app.sample.navigation.common.car.VoiceActivityDetector.EVENT_NONE;
+import static androidx.car.app.sample.navigation.common.car.VoiceActivityDetector.EVENT_NO_SPEECH;
+import static androidx.car.app.sample.navigation.common.car.VoiceActivityDetector.EVENT_SPEECH_DISCARDED;
+import static androidx.car.app.sample.navigation.common.car.VoiceActivityDetector.EVENT_SPEECH_END;
+import static androidx.car.app.sample.navigation.common.car.VoiceActivityDetector.EVENT_SPEECH_START;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Random;
+
+/** Tests {@link VoiceActivityDetector} on synthetic tones and noise. */
+@RunWith(JUnit4.class)
+public class VoiceActivityDetectorTest {
+    private static final int SAMPLE_RATE = 16000;
+    private static final int FRAME_MILLIS = 20;
+    private static final int FRAME_SAMPLES = SAMPLE_RATE * FRAME_MILLIS / 1000;
+
+    // Quiet cabin noise, and speech well above it.
+    private static final int QUIET_NOISE_AMPLITUDE = 10;
+    private static final int LOUD_NOISE_AMPLITUDE = 600;
+    private static final int SPEECH_AMPLITUDE = 5000;
+
+    private final VoiceActivityDetector mDetector = new VoiceActivityDetector(SAMPLE_RATE);
+    private final Random mRandom = new Random(42);
+
+    @Test
+    public void process_speechThenSilence_endsTheSegmentAfterTheTrailingSilence() {
+        assertThat(feedNoise(QUIET_NOISE_AMPLITUDE, 500)).isEqualTo(EVENT_NONE);
+
+        assertThat(process(tone(SPEECH_AMPLITUDE))).isEqualTo(EVENT_SPEECH_START);
+        assertThat(feedTone(SPEECH_AMPLITUDE, 1000)).isEqualTo(EVENT_NONE);
+        assertThat(mDetector.isInSpeech()).isTrue();
+
+        int silenceMillis = 0;
+        int event = EVENT_NONE;
+        while (event == EVENT_NONE && silenceMillis < 5000) {
+            event = process(noise(QUIET_NOISE_AMPLITUDE));
+            silenceMillis += FRAME_MILLIS;
+        }
+        assertThat(event).isEqualTo(EVENT_SPEECH_END);
+        assertThat(silenceMillis).isEqualTo(VoiceActivityDetector.TRAILING_SILENCE_MILLIS);
+        assertThat(mDetector.isInSpeech()).isFalse();
+        assertThat(mDetector.isDone()).isTrue();
+    }
+
+    @Test
+    public void process_click_isDiscarded() {
+        feedNoise(QUIET_NOISE_AMPLITUDE, 500);
+
+        assertThat(process(tone(SPEECH_AMPLITUDE))).isEqualTo(EVENT_SPEECH_START);
+        assertThat(feedNoise(QUIET_NOISE_AMPLITUDE, 2000)).isEqualTo(EVENT_SPEECH_DISCARDED);
+
+        assertThat(mDetector.isDone()).isFalse();
+    }
+
+    @Test
+    public void process_onlyNoise_givesUpAfterTheTimeout() {
+        assertThat(feedNoise(QUIET_NOISE_AMPLITUDE,
+                VoiceActivityDetector.NO_SPEECH_TIMEOUT_MILLIS - FRAME_MILLIS))
+                .isEqualTo(EVENT_NONE);
+
+        assertThat(process(noise(QUIET_NOISE_AMPLITUDE))).isEqualTo(EVENT_NO_SPEECH);
+        assertThat(mDetector.isDone()).isTrue();
+    }
+
+    @Test
+    public void process_loudNoise_isNotSpeech() {
+        assertThat(feedNoise(LOUD_NOISE_AMPLITUDE, 3000)).isEqualTo(EVENT_NONE);
+
+        assertThat(process(tone(SPEECH_AMPLITUDE))).isEqualTo(EVENT_SPEECH_START);
+    }
+
+    @Test
+    public void process_endlessSpeech_endsAtTheMaximumLength() {
+        feedNoise(QUIET_NOISE_AMPLITUDE, 500);
+        assertThat(process(tone(SPEECH_AMPLITUDE))).isEqualTo(EVENT_SPEECH_START);
+
+        assertThat(feedTone(SPEECH_AMPLITUDE, VoiceActivityDetector.MAX_SPEECH_MILLIS))
+                .isEqualTo(EVENT_SPEECH_END);
+    }
+
+    @Test
+    public void process_emptyFrame_doesNothing() {
+        assertThat(mDetector.process(new byte[1], 1)).isEqualTo(EVENT_NONE);
+    }
+
+    /** Feeds noise for the given time, and returns the first event, or EVENT_NONE. */
+    private int feedNoise(int amplitude, int millis) {
+        for (int time = 0; time < millis; time += FRAME_MILLIS) {
+            int event = process(noise(amplitude));
+            if (event != EVENT_NONE) {
+                return event;
+            }
+        }
+        return EVENT_NONE;
+    }
+
+    /** Feeds a tone for the given time, and returns the first event, or EVENT_NONE. */
+    private int feedTone(int amplitude, int millis) {
+        for (int time = 0; time < millis; time += FRAME_MILLIS) {
+            int event = process(tone(amplitude));
+            if (event != EVENT_NONE) {
+                return event;
+            }
+        }
+        return EVENT_NONE;
+    }
+
+    private int process(short[] samples) {
+        byte[] data = new byte[samples.length * 2];
+        for (int i = 0; i < samples.length; i++) {
+            data[2 * i] = (byte) samples[i];
+            data[2 * i + 1] = (byte) (samples[i] >> 8);
+        }
+        return mDetector.process(data, data.length);
+    }
+
+    /** Returns a frame of a 300 Hz tone, a whole number of periods long. */
+    private static short[] tone(int amplitude) {
+        short[] samples = new short[FRAME_SAMPLES];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (amplitude * Math.sin(2 * Math.PI * 300 * i / SAMPLE_RATE));
+        }
+        return samples;
+    }
+
+    /** Returns a frame of white noise. */
+    private short[] noise(int amplitude) {
+        short[] samples = new short[FRAME_SAMPLES];
+        for (int i = 0; i < samples.length; i++) {
+            samples[i] = (short) (mRandom.nextInt(2 * amplitude + 1) - amplitude);
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.car;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/** Tests that {@link WavFileWriter} writes a valid 16-bit mono WAV file. */
+@RunWith(JUnit4.class)
+public class WavFileWriterTest {
+    private static final int SAMPLE_RATE = 16000;
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("recording", ".wav");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void close_afterWrites_patchesTheSizesInTheHeader() throws IOException {
+        WavFileWriter writer =
+                new WavFileWriter(new RandomAccessFile(mFile, "rw").getChannel(), SAMPLE_RATE);
+        writer.write(ByteBuffer.allocate(3200));
+        writer.write(ByteBuffer.allocate(1600));
+        assertThat(writer.getDataSize()).isEqualTo(4800);
+        writer.close();
+
+        ByteBuffer wav = read();
+        assertThat(wav.limit()).isEqualTo(WavFileWriter.HEADER_SIZE + 4800);
+        assertThat(getTag(wav, 0)).isEqualTo("RIFF");
+        assertThat(wav.getInt(4)).isEqualTo(36 + 4800);
+        assertThat(getTag(wav, 8)).isEqualTo("WAVE");
+        assertThat(getTag(wav, 36)).isEqualTo("data");
+        assertThat(wav.getInt(40)).isEqualTo(4800);
+    }
+
+    @Test
+    public void close_afterWrites_describes16BitMonoPcm() throws IOException {
+        WavFileWriter writer =
+                new WavFileWriter(new RandomAccessFile(mFile, "rw").getChannel(), SAMPLE_RATE);
+        writer.write(ByteBuffer.allocate(320));
+        writer.close();
+
+        ByteBuffer wav = read();
+        assertThat(getTag(wav, 12)).isEqualTo("fmt ");
+        assertThat(wav.getInt(16)).isEqualTo(16);
+        // Format, channel count, sample rate, byte rate, block align and bits per sample.
+        assertThat(wav.getShort(20)).isEqualTo((short) 1);
+        assertThat(wav.getShort(22)).isEqualTo((short) 1);
+        assertThat(wav.getInt(24)).isEqualTo(SAMPLE_RATE);
+        assertThat(wav.getInt(28)).isEqualTo(2 * SAMPLE_RATE);
+        assertThat(wav.getShort(32)).isEqualTo((short) 2);
+        assertThat(wav.getShort(34)).isEqualTo((short) 16);
+    }
+
+    @Test
+    public void close_withoutWrites_writesAnEmptyFile() throws IOException {
+        new WavFileWriter(new RandomAccessFile(mFile, "rw").getChannel(), SAMPLE_RATE).close();
+
+        ByteBuffer wav = read();
+        assertThat(wav.limit()).isEqualTo(WavFileWriter.HEADER_SIZE);
+        assertThat(wav.getInt(4)).isEqualTo(36);
+        assertThat(wav.getInt(40)).isEqualTo(0);
+    }
+
+    @Test
+    public void create_existingFile_overwritesIt() throws IOException {
+        Files.write(mFile.toPath(), new byte[2 * WavFileWriter.HEADER_SIZE + 100]);
+
+        WavFileWriter writer =
+                new WavFileWriter(new RandomAccessFile(mFile, "rw").getChannel(), SAMPLE_RATE);
+        writer.write(ByteBuffer.allocate(10));
+        writer.close();
+
+        assertThat(read().limit()).isEqualTo(WavFileWriter.HEADER_SIZE + 10);
+    }
+
+    private ByteBuffer read() throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(mFile.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static String getTag(ByteBuffer wav, int offset) {
+        byte[] tag = new byte[4];
+        for (int i = 0; i < tag.length; i++) {
+            tag[i] = wav.get(offset + i);
+        }
+        return new String(tag, StandardCharsets.US_ASCII);
+    }
+}
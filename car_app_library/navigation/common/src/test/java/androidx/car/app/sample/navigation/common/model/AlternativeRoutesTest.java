@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.internal.DoNotInstrument;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests which alternatives {@link AlternativeRoutes} keeps, on small graphs of one-way roads from
+ * a start to a destination where every road is driven at 10 m/s.
+ */
+@RunWith(RobolectricTestRunner.class)
+@DoNotInstrument
+public class AlternativeRoutesTest {
+    private static final double SPEED_METERS_PER_SECOND = 10;
+    private static final long TIMEOUT_MILLIS = 10000;
+    private static final double LATITUDE = 47.6;
+    private static final double START_LONGITUDE = -122.2;
+    private static final double VIA_LONGITUDE = -122.19975;
+    private static final double DESTINATION_LONGITUDE = -122.1995;
+
+    private final RoadGraphWriter mWriter = new RoadGraphWriter();
+    // The nodes are a few meters apart, so that the roads are never shorter than the straight
+    // line between their ends.
+    private final int mStart = mWriter.addNode(LATITUDE, START_LONGITUDE);
+    private final int mDestination = mWriter.addNode(LATITUDE, DESTINATION_LONGITUDE);
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("road_graph", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void start_findsTheFastestRouteThenTheAlternativesInPenaltyOrder() throws IOException {
+        // The fastest route takes 100 s. B drives its first half and takes 115 s, C shares
+        // nothing and takes 140 s: the smallest penalty finds B, the larger ones find C.
+        int a = addRoute(mStart, 500, 500, mDestination);
+        addRoute(a, 300, 350, mDestination);
+        addRoute(mStart, 700, 700, mDestination);
+        RecordingListener listener = new RecordingListener();
+
+        search(4, listener);
+
+        assertThat(listener.getDurationsMillis()).containsExactly(100000L, 115000L, 140000L)
+                .inOrder();
+        assertThat(listener.mDoneCount).isEqualTo(1);
+    }
+
+    @Test
+    public void start_enoughRoutesFound_stopsAtTheFirstAlternatives() throws IOException {
+        int a = addRoute(mStart, 500, 500, mDestination);
+        addRoute(a, 300, 350, mDestination);
+        addRoute(mStart, 700, 700, mDestination);
+        RecordingListener listener = new RecordingListener();
+
+        search(2, listener);
+
+        assertThat(listener.getDurationsMillis()).containsExactly(100000L, 115000L).inOrder();
+        assertThat(listener.mDoneCount).isEqualTo(1);
+    }
+
+    @Test
+    public void start_alternativeMostlyOnTheFastestRoute_isDropped() throws IOException {
+        // The alternative drives the first 900 m of the fastest route, 75% of its 1200 m.
+        int a = addRoute(mStart, 900, 100, mDestination);
+        addRoute(a, 150, 150, mDestination);
+        RecordingListener listener = new RecordingListener();
+
+        search(4, listener);
+
+        assertThat(listener.getDurationsMillis()).containsExactly(100000L);
+        assertThat(listener.mDoneCount).isEqualTo(1);
+    }
+
+    @Test
+    public void start_alternativeMuchSlowerThanTheFastestRoute_isDropped() throws IOException {
+        addRoute(mStart, 500, 500, mDestination);
+        addRoute(mStart, 800, 800, mDestination);
+        RecordingListener listener = new RecordingListener();
+
+        search(4, listener);
+
+        assertThat(listener.getDurationsMillis()).containsExactly(100000L);
+        assertThat(listener.mDoneCount).isEqualTo(1);
+    }
+
+    @Test
+    public void cancel_onTheFastestRoute_stopsCallingTheListener() throws IOException {
+        int a = addRoute(mStart, 500, 500, mDestination);
+        addRoute(a, 300, 350, mDestination);
+        addRoute(mStart, 700, 700, mDestination);
+        writeGraph();
+        List<AlternativeRoutes> search = new ArrayList<>();
+        RecordingListener listener =
+                new RecordingListener() {
+                    @Override
+                    public void onRouteFound(@NonNull Route route) {
+                        super.onRouteFound(route);
+                        search.get(0).cancel();
+                    }
+                };
+        search.add(new AlternativeRoutes(mFile, 4, listener));
+        start(search.get(0));
+        waitUntil(() -> !listener.mRoutes.isEmpty());
+
+        // Another search on the same threads, to let the cancelled ones end.
+        RecordingListener other = new RecordingListener();
+        start(new AlternativeRoutes(mFile, 4, other));
+        waitUntil(() -> other.mDoneCount > 0);
+
+        assertThat(listener.getDurationsMillis()).containsExactly(100000L);
+        assertThat(listener.mDoneCount).isEqualTo(0);
+    }
+
+    @Test
+    public void start_searchThrows_isDone() throws IOException {
+        addRoute(mStart, 500, 500, mDestination);
+        writeGraph();
+        // Makes the roads of the start, the first of the 3 nodes, run past the end of the file.
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            int outIndex = RoadGraph.HEADER_BYTES + 3 * RoadGraph.NODE_BYTES;
+            for (int node = 1; node <= 3; node++) {
+                file.seek(outIndex + node * 4);
+                file.writeInt(1 << 20);
+            }
+        }
+        RecordingListener listener = new RecordingListener();
+
+        start(new AlternativeRoutes(mFile, 4, listener));
+        waitUntil(() -> listener.mDoneCount > 0);
+
+        assertThat(listener.mRoutes).isEmpty();
+        assertThat(listener.mDoneCount).isEqualTo(1);
+    }
+
+    /** Adds a route from a node to another through a new node, and returns the new node. */
+    private int addRoute(int from, double firstMeters, double secondMeters, int to) {
+        int via = mWriter.addNode(LATITUDE, VIA_LONGITUDE);
+        mWriter.addRoad(from, via, firstMeters, SPEED_METERS_PER_SECOND, null, 1, 0);
+        mWriter.addRoad(via, to, secondMeters, SPEED_METERS_PER_SECOND, null, 1, 0);
+        return via;
+    }
+
+    private void search(int maxRouteCount, RecordingListener listener) throws IOException {
+        writeGraph();
+        start(new AlternativeRoutes(mFile, maxRouteCount, listener));
+        waitUntil(() -> listener.mDoneCount > 0);
+    }
+
+    private static void start(AlternativeRoutes search) {
+        search.start(LATITUDE, START_LONGITUDE, LATITUDE, DESTINATION_LONGITUDE);
+    }
+
+    private void writeGraph() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(mFile)) {
+            mWriter.writeTo(out);
+        }
+    }
+
+    /** Runs the main looper until the condition holds, as the searches post to it. */
+    private static void waitUntil(Condition condition) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.holds()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            ShadowLooper.idleMainLooper();
+            Thread.yield();
+        }
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    private static class RecordingListener implements AlternativeRoutes.Listener {
+        final List<Route> mRoutes = new ArrayList<>();
+        int mDoneCount;
+
+        @Override
+        public void onRouteFound(@NonNull Route route) {
+            mRoutes.add(route);
+        }
+
+        @Override
+        public void onDone() {
+            mDoneCount++;
+        }
+
+        List<Long> getDurationsMillis() {
+            List<Long> durations = new ArrayList<>();
+            for (Route route : mRoutes) {
+                durations.add(route.getDurationMillis());
+            }
+            return durations;
+        }
+    }
+}
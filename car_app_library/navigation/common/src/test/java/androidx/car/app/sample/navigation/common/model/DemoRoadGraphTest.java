@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+/** Tests that the {@link DemoRoadGraph} has routes between the demo places. */
+@RunWith(JUnit4.class)
+public class DemoRoadGraphTest {
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("road_graph", ".bin");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void writeIfMissing_noFile_writesTheStreetsOfTheDemoScripts() throws IOException {
+        DemoRoadGraph.writeIfMissing(mFile);
+
+        RoadGraph graph = RoadGraph.map(mFile);
+        assertThat(graph.hasHierarchy()).isTrue();
+        Set<String> names = new HashSet<>();
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            names.add(graph.getEdgeName(edge));
+        }
+        assertThat(names).containsAtLeast("3rd Street", "State Street", "Kirkland Way",
+                "6th Street");
+    }
+
+    @Test
+    public void writeIfMissing_noFile_hasNodesAtTheDemoPlaces() throws IOException {
+        DemoRoadGraph.writeIfMissing(mFile);
+
+        RoadGraph graph = RoadGraph.map(mFile);
+        assertIsNodeAt(graph, DemoRoadGraph.START_LATITUDE, DemoRoadGraph.START_LONGITUDE);
+        assertIsNodeAt(graph, DemoRoadGraph.DESTINATION_LATITUDE,
+                DemoRoadGraph.DESTINATION_LONGITUDE);
+    }
+
+    @Test
+    public void writeIfMissing_noFile_hasAlternativesBetweenTheDemoPlaces() throws IOException {
+        DemoRoadGraph.writeIfMissing(mFile);
+        Router router = new Router(RoadGraph.map(mFile));
+
+        Route fastest = router.route(DemoRoadGraph.START_LATITUDE, DemoRoadGraph.START_LONGITUDE,
+                DemoRoadGraph.DESTINATION_LATITUDE, DemoRoadGraph.DESTINATION_LONGITUDE);
+        router.setPenalty(fastest, 2f);
+        Route alternative = router.route(DemoRoadGraph.START_LATITUDE,
+                DemoRoadGraph.START_LONGITUDE, DemoRoadGraph.DESTINATION_LATITUDE,
+                DemoRoadGraph.DESTINATION_LONGITUDE);
+
+        assertThat(fastest).isNotNull();
+        assertThat(alternative).isNotNull();
+        assertThat(alternative.getMainRoadName()).isNotEqualTo(fastest.getMainRoadName());
+        assertThat(alternative.getSharedLengthMeters(fastest))
+                .isLessThan(fastest.getLengthMeters() / 2);
+    }
+
+    @Test
+    public void writeIfMissing_existingFile_keepsIt() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(mFile)) {
+            out.write(new byte[] {1, 2, 3});
+        }
+
+        DemoRoadGraph.writeIfMissing(mFile);
+
+        assertThat(mFile.length()).isEqualTo(3);
+    }
+
+    private static void assertIsNodeAt(RoadGraph graph, double latitude, double longitude) {
+        int node = graph.findNearestNode(latitude, longitude);
+        assertThat(node).isAtLeast(0);
+        assertThat(RoadGraph.distanceMeters(latitude, longitude, graph.getLatitude(node),
+                graph.getLongitude(node))).isLessThan(1.0);
+    }
+}
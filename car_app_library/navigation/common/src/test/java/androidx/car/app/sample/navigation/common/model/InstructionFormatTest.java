@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/** Tests the varint encoding of {@link InstructionFormat}. */
+@RunWith(JUnit4.class)
+public class InstructionFormatTest {
+    @Test
+    public void writeVarint_usesSevenBitsPerByte() throws IOException {
+        assertThat(writeVarint(0)).isEqualTo(new byte[]{0});
+        assertThat(writeVarint(127)).isEqualTo(new byte[]{127});
+        assertThat(writeVarint(128)).isEqualTo(new byte[]{(byte) 0x80, 1});
+        assertThat(writeVarint(300)).isEqualTo(new byte[]{(byte) 0xac, 2});
+        assertThat(writeVarint(-1)).hasLength(10);
+    }
+
+    @Test
+    public void writeSignedVarint_keepsSmallNegativeValuesShort() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InstructionFormat.writeSignedVarint(out, -1);
+        assertThat(out.toByteArray()).isEqualTo(new byte[]{1});
+
+        out.reset();
+        InstructionFormat.writeSignedVarint(out, -64);
+        assertThat(out.toByteArray()).isEqualTo(new byte[]{127});
+    }
+
+    @Test
+    public void readVarint_returnsTheValuesWritten() throws IOException {
+        long[] values = {0, 1, 127, 128, 16383, 16384, Integer.MAX_VALUE, Long.MAX_VALUE, -1,
+                Long.MIN_VALUE};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (long value : values) {
+            InstructionFormat.writeVarint(out, value);
+            InstructionFormat.writeSignedVarint(out, value);
+        }
+
+        ByteBuffer in = ByteBuffer.wrap(out.toByteArray());
+        for (long value : values) {
+            assertThat(InstructionFormat.readVarint(in)).isEqualTo(value);
+            assertThat(InstructionFormat.readSignedVarint(in)).isEqualTo(value);
+        }
+        assertThat(in.hasRemaining()).isFalse();
+    }
+
+    @Test
+    public void readVarint_tooLong_throws() {
+        byte[] bytes = new byte[11];
+        Arrays.fill(bytes, (byte) 0x80);
+
+        assertThrows(IllegalStateException.class,
+                () -> InstructionFormat.readVarint(ByteBuffer.wrap(bytes)));
+    }
+
+    @Test
+    public void readVarintInt_outOfRange_throws() throws IOException {
+        byte[] bytes = writeVarint(Integer.MAX_VALUE + 1L);
+
+        assertThrows(IllegalStateException.class,
+                () -> InstructionFormat.readVarintInt(ByteBuffer.wrap(bytes)));
+    }
+
+    private static byte[] writeVarint(long value) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        InstructionFormat.writeVarint(out, value);
+        return out.toByteArray();
+    }
+}
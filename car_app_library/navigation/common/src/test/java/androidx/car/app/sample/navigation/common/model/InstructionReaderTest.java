@@ -0,0 +1,202 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.content.Context;
+
+import androidx.annotation.Nullable;
+import androidx.car.app.model.Distance;
+import androidx.car.app.navigation.model.TravelEstimate;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.internal.DoNotInstrument;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/** Tests that {@link InstructionReader} reads back what {@link InstructionWriter} wrote. */
+@RunWith(RobolectricTestRunner.class)
+@DoNotInstrument
+public class InstructionReaderTest {
+    // The magic number and the version.
+    private static final int HEADER_SIZE = 5;
+
+    private final Context mContext = ApplicationProvider.getApplicationContext();
+
+    @Test
+    public void read_demoScript_returnsTheInstructionsWritten() throws IOException {
+        List<Instruction> written = toList(DemoScripts.getNavigateHome(mContext).iterator());
+
+        List<Instruction> read = toList(new InstructionReader(mContext, write(written)));
+
+        assertThat(read).hasSize(written.size());
+        for (int i = 0; i < written.size(); i++) {
+            assertSameInstruction(read.get(i), written.get(i));
+        }
+    }
+
+    @Test
+    public void read_truncatedStream_endsAtTheLastCompleteInstruction() throws IOException {
+        List<Instruction> written = toList(DemoScripts.getNavigateHome(mContext).iterator());
+        ByteBuffer buffer = write(written);
+
+        buffer.limit(buffer.limit() - 1);
+        List<Instruction> read = toList(new InstructionReader(mContext, buffer));
+
+        assertThat(read).hasSize(written.size() - 1);
+    }
+
+    @Test
+    public void read_unknownInstructionType_endsTheStream() throws IOException {
+        List<Instruction> written = toList(DemoScripts.getNavigateHome(mContext).iterator());
+        ByteBuffer buffer = write(written);
+
+        buffer.put(HEADER_SIZE, (byte) Instruction.Type.values().length);
+
+        assertThat(toList(new InstructionReader(mContext, buffer))).isEmpty();
+    }
+
+    @Test
+    public void read_unknownString_endsTheStream() throws IOException {
+        Instruction instruction =
+                Instruction.builder(Instruction.Type.SET_TRIP_POSITION_NAVIGATION, 1000)
+                        .setRoad("Main St.")
+                        .build();
+        ByteBuffer buffer = write(Arrays.asList(instruction, instruction));
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        // The road of the first instruction introduces string 1, turn it into string 2.
+        int road = indexOf(bytes, "Main St.".getBytes(StandardCharsets.UTF_8)) - 2;
+        assertThat(bytes[road]).isEqualTo((byte) 1);
+        bytes[road] = 2;
+
+        assertThat(toList(new InstructionReader(mContext, ByteBuffer.wrap(bytes)))).isEmpty();
+    }
+
+    @Test
+    public void read_stringLongerThanTheStream_endsTheStream() throws IOException {
+        Instruction instruction =
+                Instruction.builder(Instruction.Type.SET_TRIP_POSITION_NAVIGATION, 1000)
+                        .setRoad("Main St.")
+                        .build();
+        ByteBuffer buffer = write(Arrays.asList(instruction, instruction));
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        // Replace the one-byte length of the road with Integer.MAX_VALUE, as a varint.
+        int length = indexOf(bytes, "Main St.".getBytes(StandardCharsets.UTF_8)) - 1;
+        assertThat(bytes[length]).isEqualTo((byte) "Main St.".length());
+        ByteBuffer corrupt = ByteBuffer.allocate(bytes.length + 4);
+        corrupt.put(bytes, 0, length);
+        corrupt.put(new byte[]{(byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07});
+        corrupt.put(bytes, length + 1, bytes.length - length - 1);
+        corrupt.flip();
+
+        assertThat(toList(new InstructionReader(mContext, corrupt))).isEmpty();
+    }
+
+    @Test
+    public void create_notAnInstructionStream_throws() {
+        assertThrows(IOException.class,
+                () -> new InstructionReader(mContext, ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5})));
+        assertThrows(IOException.class,
+                () -> new InstructionReader(mContext, ByteBuffer.wrap(new byte[]{0x4e})));
+    }
+
+    private ByteBuffer write(List<Instruction> instructions) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InstructionWriter writer = new InstructionWriter(mContext, out)) {
+            writer.writeAll(instructions);
+        }
+        return ByteBuffer.wrap(out.toByteArray());
+    }
+
+    private static List<Instruction> toList(Iterator<Instruction> instructions) {
+        List<Instruction> list = new ArrayList<>();
+        while (instructions.hasNext()) {
+            list.add(instructions.next());
+        }
+        return list;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] pattern) {
+        for (int i = 0; i + pattern.length <= bytes.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(bytes, i, i + pattern.length), pattern)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static void assertSameInstruction(Instruction actual, Instruction expected) {
+        assertThat(actual.getType()).isEqualTo(expected.getType());
+        assertThat(actual.getDurationMillis()).isEqualTo(expected.getDurationMillis());
+        assertThat(actual.getDestination()).isEqualTo(expected.getDestination());
+        assertThat(actual.getStep()).isEqualTo(expected.getStep());
+        assertSameDistance(actual.getStepRemainingDistance(), expected.getStepRemainingDistance());
+        assertSameEstimate(actual.getStepTravelEstimate(), expected.getStepTravelEstimate());
+        assertSameEstimate(
+                actual.getDestinationTravelEstimate(), expected.getDestinationTravelEstimate());
+        assertThat(actual.getRoad()).isEqualTo(expected.getRoad());
+        assertThat(actual.getJunctionImage()).isEqualTo(expected.getJunctionImage());
+        assertThat(actual.getShouldNotify()).isEqualTo(expected.getShouldNotify());
+        assertThat(actual.getNotificationTitle()).isEqualTo(expected.getNotificationTitle());
+        assertThat(actual.getNotificationContent()).isEqualTo(expected.getNotificationContent());
+        assertThat(actual.getNotificationIcon()).isEqualTo(expected.getNotificationIcon());
+        assertThat(actual.getShouldShowNextStep()).isEqualTo(expected.getShouldShowNextStep());
+        assertThat(actual.getShouldShowLanes()).isEqualTo(expected.getShouldShowLanes());
+    }
+
+    private static void assertSameEstimate(
+            @Nullable TravelEstimate actual, @Nullable TravelEstimate expected) {
+        if (expected == null) {
+            assertThat(actual).isNull();
+            return;
+        }
+        assertSameDistance(actual.getRemainingDistance(), expected.getRemainingDistance());
+        assertThat(actual.getRemainingTimeSeconds()).isEqualTo(expected.getRemainingTimeSeconds());
+        assertThat(actual.getArrivalTimeAtDestination())
+                .isEqualTo(expected.getArrivalTimeAtDestination());
+        assertThat(actual.getRemainingTimeColor()).isEqualTo(expected.getRemainingTimeColor());
+        assertThat(actual.getRemainingDistanceColor())
+                .isEqualTo(expected.getRemainingDistanceColor());
+    }
+
+    /** Distances are written with a fixed precision, see {@link InstructionFormat}. */
+    private static void assertSameDistance(@Nullable Distance actual, @Nullable Distance expected) {
+        if (expected == null) {
+            assertThat(actual).isNull();
+            return;
+        }
+        assertThat(actual.getDisplayUnit()).isEqualTo(expected.getDisplayUnit());
+        assertThat(actual.getDisplayDistance())
+                .isWithin(0.5 / InstructionFormat.DISTANCE_SCALE)
+                .of(expected.getDisplayDistance());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/** Tests that {@link OffRouteDetector} tells when the car has left the route. */
+@RunWith(JUnit4.class)
+public class OffRouteDetectorTest {
+    // The route goes north along this longitude, with a node every this many degrees.
+    private static final double LONGITUDE = -122.2;
+    private static final double START_LATITUDE = 47.6;
+    private static final double NODE_DEGREES = 0.001;
+    private static final int NODE_COUNT = 6;
+
+    // About 150 meters east of the route.
+    private static final double OFF_ROUTE_LONGITUDE = LONGITUDE + 0.002;
+    private static final float ACCURACY_METERS = 10;
+
+    private File mFile;
+    private OffRouteDetector mDetector;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("road_graph", ".bin");
+        RoadGraphWriter writer = new RoadGraphWriter();
+        for (int i = 0; i < NODE_COUNT; i++) {
+            writer.addNode(START_LATITUDE + i * NODE_DEGREES, LONGITUDE);
+        }
+        for (int i = 0; i + 1 < NODE_COUNT; i++) {
+            writer.addTwoWayRoad(i, i + 1, 111, 10, "Road", 1, 0);
+        }
+        try (FileOutputStream out = new FileOutputStream(mFile)) {
+            writer.writeTo(out);
+        }
+        Route route = new Router(RoadGraph.map(mFile)).route(0, NODE_COUNT - 1);
+        mDetector = new OffRouteDetector(route);
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void onLocation_beforeFirstMatch_isNotOffRoute() {
+        for (int i = 0; i < 10; i++) {
+            assertThat(offRoute(START_LATITUDE, i * 1000L)).isFalse();
+        }
+    }
+
+    @Test
+    public void onLocation_singleJump_isNotOffRoute() {
+        assertThat(onRoute(START_LATITUDE, 0)).isFalse();
+        assertThat(offRoute(START_LATITUDE + NODE_DEGREES, 1000)).isFalse();
+        for (int i = 2; i < 10; i++) {
+            assertThat(onRoute(START_LATITUDE + i * NODE_DEGREES / 4, i * 1000L)).isFalse();
+        }
+    }
+
+    @Test
+    public void onLocation_offRouteLongEnough_isOffRoute() {
+        assertThat(onRoute(START_LATITUDE, 0)).isFalse();
+        assertThat(offRoute(START_LATITUDE + NODE_DEGREES, 1000)).isFalse();
+        assertThat(offRoute(START_LATITUDE + NODE_DEGREES, 3000)).isFalse();
+        // Three fixes in a row, but not over long enough yet.
+        assertThat(offRoute(START_LATITUDE + NODE_DEGREES, 4000)).isFalse();
+        assertThat(offRoute(START_LATITUDE + NODE_DEGREES, 5000)).isTrue();
+    }
+
+    @Test
+    public void onLocation_backOnRoute_startsCountingAgain() {
+        assertThat(onRoute(START_LATITUDE, 0)).isFalse();
+        assertThat(offRoute(START_LATITUDE + NODE_DEGREES, 1000)).isFalse();
+        assertThat(offRoute(START_LATITUDE + NODE_DEGREES, 3000)).isFalse();
+        assertThat(onRoute(START_LATITUDE + NODE_DEGREES, 4000)).isFalse();
+        assertThat(offRoute(START_LATITUDE + 2 * NODE_DEGREES, 5000)).isFalse();
+        assertThat(offRoute(START_LATITUDE + 2 * NODE_DEGREES, 7000)).isFalse();
+        assertThat(offRoute(START_LATITUDE + 2 * NODE_DEGREES, 10000)).isTrue();
+    }
+
+    @Test
+    public void getRemainingMeters_followsTheMatchedSegment() {
+        assertThat(mDetector.getRemainingMeters()).isWithin(1e-6).of((NODE_COUNT - 1) * 111);
+
+        onRoute(START_LATITUDE + 2.5 * NODE_DEGREES, 0);
+
+        assertThat(mDetector.getRemainingMeters()).isWithin(1e-6).of((NODE_COUNT - 3) * 111);
+    }
+
+    private boolean onRoute(double latitude, long timeMillis) {
+        return mDetector.onLocation(latitude, LONGITUDE, ACCURACY_METERS, timeMillis);
+    }
+
+    private boolean offRoute(double latitude, long timeMillis) {
+        return mDetector.onLocation(latitude, OFF_ROUTE_LONGITUDE, ACCURACY_METERS, timeMillis);
+    }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.robolectric.Shadows.shadowOf;
+
+import android.location.Location;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+import androidx.car.app.CarContext;
+import androidx.car.app.testing.TestCarContext;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.internal.DoNotInstrument;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests when {@link Rerouter} searches a new route, and which instructions its listener gets, on
+ * a road going north with a side road to the east of two of its nodes.
+ */
+@RunWith(RobolectricTestRunner.class)
+@DoNotInstrument
+public class RerouterTest {
+    private static final double LATITUDE = 47.6;
+    private static final double LONGITUDE = -122.2;
+    // About 111 meters north, and 75 meters east.
+    private static final double STEP_DEGREES = 0.001;
+    private static final double SPEED_METERS_PER_SECOND = 10;
+    private static final long FIX_INTERVAL_MILLIS = 2000;
+    private static final long TIMEOUT_MILLIS = 10000;
+
+    // The route, from the first node of the road to its last one.
+    private static final int START = 0;
+    private static final int DESTINATION = 3;
+    // The ends of the side roads, east of the nodes 1 and 2 of the road.
+    private static final int EAST_OF_FIRST = 4;
+    private static final int EAST_OF_SECOND = 5;
+
+    private final CarContext mCarContext =
+            TestCarContext.createCarContext(ApplicationProvider.getApplicationContext());
+    private RouteInstructions mInstructions;
+    private long mTimeMillis;
+
+    @Before
+    public void setUp() throws IOException {
+        RoadGraph graph = buildGraph();
+        mInstructions = RouteInstructions.create(mCarContext,
+                new Router(graph).route(START, DESTINATION), "Home", "1 Home St");
+    }
+
+    @Test
+    public void onLocationChanged_offTheRoute_reroutesFromTheNearestNode() {
+        RecordingListener listener = new RecordingListener();
+        Rerouter rerouter = new Rerouter(mInstructions, listener);
+
+        driveOnTheRoute(rerouter);
+        leaveTheRoute(rerouter, EAST_OF_FIRST);
+        waitUntil(() -> !listener.mRerouted.isEmpty());
+
+        assertThat(listener.mRerouting).hasSize(1);
+        assertThat(listener.mRerouting.get(0).getType())
+                .isEqualTo(Instruction.Type.SET_REROUTING);
+        assertThat(listener.mRerouted).hasSize(1);
+        RouteInstructions rerouted = listener.mRerouted.get(0);
+        assertThat(rerouted.isContinuation()).isTrue();
+        Route route = rerouted.getRoute();
+        assertThat(route.getNode(0)).isEqualTo(EAST_OF_FIRST);
+        assertThat(route.getNode(route.getNodeCount() - 1)).isEqualTo(DESTINATION);
+    }
+
+    @Test
+    public void onLocationChanged_offTheRouteAgain_dropsTheRouteOfTheFirstSearch() {
+        RecordingListener listener = new RecordingListener();
+        Rerouter rerouter = new Rerouter(mInstructions, listener);
+        driveOnTheRoute(rerouter);
+        leaveTheRoute(rerouter, EAST_OF_FIRST);
+        // The route of the first search is posted, but not handed to the listener yet.
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (shadowOf(Looper.getMainLooper()).isIdle()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            Thread.yield();
+        }
+
+        leaveTheRoute(rerouter, EAST_OF_SECOND);
+        waitUntil(() -> !listener.mRerouted.isEmpty());
+        ShadowLooper.idleMainLooper();
+
+        assertThat(listener.mRerouting).hasSize(2);
+        assertThat(listener.mRerouted).hasSize(1);
+        assertThat(listener.mRerouted.get(0).getRoute().getNode(0)).isEqualTo(EAST_OF_SECOND);
+    }
+
+    @Test
+    public void onLocationChanged_farFromTheRoads_goesOnWithThePreviousInstructions() {
+        ScriptScheduler scheduler = ScriptScheduler.asFastAsPossible();
+        List<Script> scripts = new ArrayList<>();
+        RecordingListener listener =
+                new RecordingListener() {
+                    @Override
+                    public void onRerouting(@NonNull Instruction instruction) {
+                        super.onRerouting(instruction);
+                        scripts.get(0).insert(instruction);
+                    }
+                };
+        Rerouter rerouter = new Rerouter(mInstructions, listener);
+        List<Instruction.Type> processed = new ArrayList<>();
+        Script script = Script.create(mInstructions.iterator(),
+                (instruction, nextInstruction) -> {
+                    processed.add(instruction.getType());
+                    if (processed.size() == 1) {
+                        // The car leaves the route, more than 100 meters from the roads, while the
+                        // first instruction lasts.
+                        driveOnTheRoute(rerouter);
+                        leaveTheRoute(rerouter, LATITUDE + STEP_DEGREES * 1.5,
+                                LONGITUDE + STEP_DEGREES * 3);
+                    }
+                },
+                scheduler);
+        scripts.add(script);
+
+        script.start();
+        waitForTheSearches();
+
+        assertThat(listener.mRerouting).hasSize(1);
+        assertThat(listener.mRerouted).isEmpty();
+        List<Instruction.Type> expected = new ArrayList<>();
+        for (Instruction instruction : mInstructions) {
+            expected.add(instruction.getType());
+        }
+        expected.add(1, Instruction.Type.SET_REROUTING);
+        assertThat(processed).containsExactlyElementsIn(expected).inOrder();
+    }
+
+    /** Sends a fix at the start of the route, which the route is matched from. */
+    private void driveOnTheRoute(Rerouter rerouter) {
+        rerouter.onLocationChanged(createLocation(LATITUDE, LONGITUDE));
+    }
+
+    /** Sends fixes at the given node until the car is off the route. */
+    private void leaveTheRoute(Rerouter rerouter, int node) {
+        RoadGraph graph = mInstructions.getRoute().getGraph();
+        leaveTheRoute(rerouter, graph.getLatitude(node), graph.getLongitude(node));
+    }
+
+    private void leaveTheRoute(Rerouter rerouter, double latitude, double longitude) {
+        for (int i = 0; i < 3; i++) {
+            rerouter.onLocationChanged(createLocation(latitude, longitude));
+        }
+    }
+
+    private Location createLocation(double latitude, double longitude) {
+        mTimeMillis += FIX_INTERVAL_MILLIS;
+        Location location = new Location("test");
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        location.setAccuracy(5);
+        location.setTime(mTimeMillis);
+        return location;
+    }
+
+    /**
+     * Waits for the searches started so far to end, by rerouting another car: the searches run
+     * one after another.
+     */
+    private void waitForTheSearches() {
+        RecordingListener listener = new RecordingListener();
+        Rerouter rerouter = new Rerouter(mInstructions, listener);
+        driveOnTheRoute(rerouter);
+        leaveTheRoute(rerouter, EAST_OF_FIRST);
+        waitUntil(() -> !listener.mRerouted.isEmpty());
+    }
+
+    /** Runs the main looper until the condition holds, as the searches post to it. */
+    private static void waitUntil(Condition condition) {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (!condition.holds()) {
+            assertThat(System.currentTimeMillis()).isLessThan(deadline);
+            ShadowLooper.idleMainLooper();
+            Thread.yield();
+        }
+    }
+
+    private interface Condition {
+        boolean holds();
+    }
+
+    private static RoadGraph buildGraph() throws IOException {
+        RoadGraphWriter writer = new RoadGraphWriter();
+        for (int i = START; i <= DESTINATION; i++) {
+            writer.addNode(LATITUDE + i * STEP_DEGREES, LONGITUDE);
+        }
+        writer.addNode(LATITUDE + STEP_DEGREES, LONGITUDE + STEP_DEGREES);
+        writer.addNode(LATITUDE + 2 * STEP_DEGREES, LONGITUDE + STEP_DEGREES);
+        for (int i = START; i < DESTINATION; i++) {
+            writer.addTwoWayRoad(i, i + 1, 111, SPEED_METERS_PER_SECOND, "Main St", 2, 0);
+        }
+        writer.addTwoWayRoad(EAST_OF_FIRST, 1, 75, SPEED_METERS_PER_SECOND, "1st Ave", 1, 0);
+        writer.addTwoWayRoad(EAST_OF_SECOND, 2, 75, SPEED_METERS_PER_SECOND, "2nd Ave", 1, 0);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        return new RoadGraph(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    private static class RecordingListener implements Rerouter.Listener {
+        final List<Instruction> mRerouting = new ArrayList<>();
+        final List<RouteInstructions> mRerouted = new ArrayList<>();
+
+        @Override
+        public void onRerouting(@NonNull Instruction instruction) {
+            mRerouting.add(instruction);
+        }
+
+        @Override
+        public void onRerouted(@NonNull RouteInstructions instructions) {
+            mRerouted.add(instructions);
+        }
+    }
+}
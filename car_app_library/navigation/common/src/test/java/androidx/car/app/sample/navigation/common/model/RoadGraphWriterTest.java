@@ -0,0 +1,204 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/** Tests that {@link RoadGraph} maps back the graph {@link RoadGraphWriter} wrote to a file. */
+@RunWith(JUnit4.class)
+public class RoadGraphWriterTest {
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("road_graph", ".bin");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Test
+    public void map_plainGraph_readsBackTheNodesAndRoads() throws IOException {
+        RoadGraphWriter writer = new RoadGraphWriter();
+        int a = writer.addNode(47.610123, -122.201456);
+        int b = writer.addNode(47.611, -122.2015);
+        int c = writer.addNode(-33.9, 151.2);
+        writer.addTwoWayRoad(a, b, 123.4, 10, "Main St", 2, 0);
+        writer.addRoad(b, c, 50, 5, null, 0, RoadGraph.ROAD_ROUNDABOUT);
+
+        RoadGraph graph = writeAndMap(writer);
+
+        assertThat(graph.hasHierarchy()).isFalse();
+        assertThat(graph.getNodeCount()).isEqualTo(3);
+        assertThat(graph.getEdgeCount()).isEqualTo(3);
+        assertThat(graph.getMaxSpeedMetersPerSecond()).isEqualTo(10f);
+        assertThat(graph.getLatitude(a)).isWithin(1e-9).of(47.610123);
+        assertThat(graph.getLongitude(a)).isWithin(1e-9).of(-122.201456);
+        assertThat(graph.getLatitude(c)).isWithin(1e-9).of(-33.9);
+        assertThat(graph.getLongitude(c)).isWithin(1e-9).of(151.2);
+
+        int ab = findEdge(graph, a, b);
+        assertThat(graph.getEdgeLengthDecimeters(ab)).isEqualTo(1234);
+        assertThat(graph.getEdgeTimeMillis(ab)).isEqualTo(12340);
+        assertThat(graph.getEdgeName(ab)).isEqualTo("Main St");
+        assertThat(graph.getEdgeLanes(ab)).isEqualTo(2);
+        assertThat(graph.getEdgeFlags(ab)).isEqualTo(0);
+        assertThat(graph.isShortcut(ab)).isFalse();
+        int ba = findEdge(graph, b, a);
+        assertThat(graph.getEdgeNameIndex(ba)).isEqualTo(graph.getEdgeNameIndex(ab));
+        int bc = findEdge(graph, b, c);
+        assertThat(graph.getEdgeName(bc)).isEmpty();
+        assertThat(graph.getEdgeLanes(bc)).isEqualTo(0);
+        assertThat(graph.getEdgeFlags(bc)).isEqualTo(RoadGraph.ROAD_ROUNDABOUT);
+        assertThat(findEdge(graph, c, b)).isEqualTo(-1);
+        assertInEdgesMatchOutEdges(graph);
+    }
+
+    @Test
+    public void map_contractedGraph_readsBackTheRanksAndShortcuts() throws IOException {
+        // A path of nodes, where every node but the ends is contracted with a shortcut.
+        RoadGraphWriter writer = new RoadGraphWriter();
+        int nodeCount = 6;
+        for (int i = 0; i < nodeCount; i++) {
+            writer.addNode(47.6 + i * 0.001, -122.2);
+        }
+        for (int i = 0; i + 1 < nodeCount; i++) {
+            writer.addTwoWayRoad(i, i + 1, 100, 10, "Road", 1, 0);
+        }
+        writer.contract();
+
+        RoadGraph graph = writeAndMap(writer);
+
+        assertThat(graph.hasHierarchy()).isTrue();
+        // Each node has a rank of its own.
+        boolean[] isRankTaken = new boolean[nodeCount];
+        for (int node = 0; node < nodeCount; node++) {
+            isRankTaken[graph.getRank(node)] = true;
+        }
+        for (boolean isTaken : isRankTaken) {
+            assertThat(isTaken).isTrue();
+        }
+        int shortcuts = 0;
+        for (int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            if (!graph.isShortcut(edge)) {
+                continue;
+            }
+            shortcuts++;
+            // A shortcut stands for two edges that join at a node, and takes as long as both.
+            int first = graph.getEdgeFirstChild(edge);
+            int second = graph.getEdgeSecondChild(edge);
+            assertThat(graph.getEdgeTimeMillis(edge))
+                    .isEqualTo(graph.getEdgeTimeMillis(first) + graph.getEdgeTimeMillis(second));
+            assertThat(graph.getEdgeLengthDecimeters(edge)).isEqualTo(
+                    graph.getEdgeLengthDecimeters(first) + graph.getEdgeLengthDecimeters(second));
+            assertThat(graph.getEdgeTarget(second)).isEqualTo(graph.getEdgeTarget(edge));
+            assertThat(graph.getFirstOutEdge(graph.getEdgeTarget(first)))
+                    .isAtMost(second);
+            assertThat(graph.getLastOutEdge(graph.getEdgeTarget(first)))
+                    .isGreaterThan(second);
+        }
+        assertThat(shortcuts).isGreaterThan(0);
+        assertInEdgesMatchOutEdges(graph);
+    }
+
+    @Test
+    public void map_notARoadGraph_throws() throws IOException {
+        try (FileOutputStream out = new FileOutputStream(mFile)) {
+            out.write(new byte[64]);
+        }
+
+        assertThrows(IOException.class, () -> RoadGraph.map(mFile));
+    }
+
+    @Test
+    public void map_truncatedGraph_throws() throws IOException {
+        RoadGraphWriter writer = new RoadGraphWriter();
+        int a = writer.addNode(47.6, -122.2);
+        int b = writer.addNode(47.601, -122.2);
+        writer.addTwoWayRoad(a, b, 100, 10, "Main St", 1, 0);
+        try (FileOutputStream out = new FileOutputStream(mFile)) {
+            writer.writeTo(out);
+        }
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            file.setLength(file.length() - 1);
+        }
+
+        assertThrows(IOException.class, () -> RoadGraph.map(mFile));
+    }
+
+    @Test
+    public void addRoad_afterContract_throws() {
+        RoadGraphWriter writer = new RoadGraphWriter();
+        int a = writer.addNode(47.6, -122.2);
+        int b = writer.addNode(47.601, -122.2);
+        writer.contract();
+
+        assertThrows(IllegalStateException.class,
+                () -> writer.addRoad(a, b, 100, 10, null, 1, 0));
+    }
+
+    private RoadGraph writeAndMap(RoadGraphWriter writer) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(mFile)) {
+            writer.writeTo(out);
+        }
+        return RoadGraph.map(mFile);
+    }
+
+    /** Returns the road from one node to another, or -1 if there is none. */
+    private static int findEdge(RoadGraph graph, int from, int to) {
+        for (int edge = graph.getFirstOutEdge(from); edge < graph.getLastOutEdge(from); edge++) {
+            if (graph.getEdgeTarget(edge) == to && !graph.isShortcut(edge)) {
+                return edge;
+            }
+        }
+        return -1;
+    }
+
+    /** Asserts that each edge is listed once as an incoming edge of its target, from its source. */
+    private static void assertInEdgesMatchOutEdges(RoadGraph graph) {
+        int[] inCounts = new int[graph.getEdgeCount()];
+        for (int node = 0; node < graph.getNodeCount(); node++) {
+            for (int inEdge = graph.getFirstInEdge(node); inEdge < graph.getLastInEdge(node);
+                    inEdge++) {
+                int edge = graph.getInEdge(inEdge);
+                int source = graph.getInEdgeSource(inEdge);
+                assertThat(graph.getEdgeTarget(edge)).isEqualTo(node);
+                assertThat(edge).isAtLeast(graph.getFirstOutEdge(source));
+                assertThat(edge).isLessThan(graph.getLastOutEdge(source));
+                inCounts[edge]++;
+            }
+        }
+        for (int count : inCounts) {
+            assertThat(count).isEqualTo(1);
+        }
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.car.app.CarContext;
+import androidx.car.app.navigation.model.Lane;
+import androidx.car.app.navigation.model.Maneuver;
+import androidx.car.app.navigation.model.Step;
+import androidx.car.app.testing.TestCarContext;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.internal.DoNotInstrument;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Tests how {@link RouteInstructions} groups the roads of a route into steps. */
+@RunWith(RobolectricTestRunner.class)
+@DoNotInstrument
+public class RouteInstructionsTest {
+    private static final double LATITUDE = 47.6;
+    private static final double LONGITUDE = -122.2;
+    // About 111 meters north, and 75 meters east.
+    private static final double STEP_DEGREES = 0.001;
+    private static final double SPEED_METERS_PER_SECOND = 10;
+    private static final String DESTINATION_NAME = "Home";
+    private static final String DESTINATION_ADDRESS = "1 Home St";
+
+    // An intersection: Main St goes north and becomes Broadway, and 1st Ave turns right.
+    private static final int MAIN_START = 0;
+    private static final int MAIN_END = 2;
+    private static final int BROADWAY_END = 3;
+    private static final int FIRST_AVE_END = 4;
+
+    // A roundabout driven counter-clockwise, with a road out of it to each side.
+    private static final int ROUNDABOUT_SOUTH_END = 4;
+    private static final int ROUNDABOUT_EAST_END = 5;
+    private static final int ROUNDABOUT_NORTH_END = 6;
+
+    private final CarContext mCarContext =
+            TestCarContext.createCarContext(ApplicationProvider.getApplicationContext());
+
+    @Test
+    public void iterator_turnAtAnIntersection_endsTheLegWithTheTurnAndItsLanes()
+            throws IOException {
+        RoadGraph graph = buildIntersection();
+
+        List<Step> steps = getSteps(graph, MAIN_START, FIRST_AVE_END);
+
+        assertThat(steps).hasSize(2);
+        assertStep(steps.get(0), Maneuver.TYPE_TURN_NORMAL_RIGHT, "1st Ave");
+        List<Lane> lanes = steps.get(0).getLanes();
+        assertThat(lanes).hasSize(2);
+        assertThat(lanes.get(0).getDirections().get(0).isRecommended()).isFalse();
+        assertThat(lanes.get(1).getDirections().get(0).isRecommended()).isTrue();
+        assertStep(steps.get(1), Maneuver.TYPE_DESTINATION, DESTINATION_NAME);
+    }
+
+    @Test
+    public void iterator_roadNameChange_endsTheLegWithoutLanes() throws IOException {
+        RoadGraph graph = buildIntersection();
+
+        List<Step> steps = getSteps(graph, MAIN_START, BROADWAY_END);
+
+        assertThat(steps).hasSize(2);
+        assertStep(steps.get(0), Maneuver.TYPE_NAME_CHANGE, "Broadway");
+        assertThat(steps.get(0).getLanes()).isEmpty();
+        assertStep(steps.get(1), Maneuver.TYPE_DESTINATION, DESTINATION_NAME);
+    }
+
+    @Test
+    public void iterator_sameRoadThroughNodes_isOneLeg() throws IOException {
+        RoadGraph graph = buildIntersection();
+
+        List<Step> steps = getSteps(graph, MAIN_START, MAIN_END);
+
+        assertThat(steps).hasSize(1);
+        assertStep(steps.get(0), Maneuver.TYPE_DESTINATION, DESTINATION_NAME);
+    }
+
+    @Test
+    public void iterator_roundaboutStraightOn_countsTheExitsPassed() throws IOException {
+        RoadGraph graph = buildRoundabout();
+
+        List<Step> steps = getSteps(graph, ROUNDABOUT_SOUTH_END, ROUNDABOUT_NORTH_END);
+
+        assertThat(steps).hasSize(2);
+        Step roundabout = steps.get(0);
+        assertStep(roundabout, Maneuver.TYPE_ROUNDABOUT_ENTER_AND_EXIT_CCW_WITH_ANGLE,
+                "North Rd");
+        assertThat(roundabout.getManeuver().getRoundaboutExitNumber()).isEqualTo(2);
+        assertThat(roundabout.getManeuver().getRoundaboutExitAngle()).isEqualTo(180);
+        assertStep(steps.get(1), Maneuver.TYPE_DESTINATION, DESTINATION_NAME);
+    }
+
+    @Test
+    public void iterator_roundaboutFirstExitRight_isAQuarterOfTheWayRound() throws IOException {
+        RoadGraph graph = buildRoundabout();
+
+        List<Step> steps = getSteps(graph, ROUNDABOUT_SOUTH_END, ROUNDABOUT_EAST_END);
+
+        assertThat(steps).hasSize(2);
+        Step roundabout = steps.get(0);
+        assertStep(roundabout, Maneuver.TYPE_ROUNDABOUT_ENTER_AND_EXIT_CCW_WITH_ANGLE,
+                "East Rd");
+        assertThat(roundabout.getManeuver().getRoundaboutExitNumber()).isEqualTo(1);
+        assertThat(roundabout.getManeuver().getRoundaboutExitAngle()).isEqualTo(90);
+    }
+
+    @Test
+    public void continueWith_onlyAddsTheSteps() throws IOException {
+        RoadGraph graph = buildIntersection();
+        Router router = new Router(graph);
+        RouteInstructions instructions = RouteInstructions.create(mCarContext,
+                router.route(MAIN_START, FIRST_AVE_END), DESTINATION_NAME, DESTINATION_ADDRESS);
+
+        RouteInstructions continuation =
+                instructions.continueWith(router.route(MAIN_END, FIRST_AVE_END));
+
+        assertThat(continuation.isContinuation()).isTrue();
+        List<Instruction.Type> types = new ArrayList<>();
+        for (Instruction instruction : continuation) {
+            types.add(instruction.getType());
+        }
+        assertThat(types).doesNotContain(Instruction.Type.START_NAVIGATION);
+        assertThat(types).doesNotContain(Instruction.Type.ADD_DESTINATION_NAVIGATION);
+        assertThat(types).contains(Instruction.Type.ADD_STEP_NAVIGATION);
+        assertThat(types.get(types.size() - 1)).isEqualTo(Instruction.Type.END_NAVIGATION);
+    }
+
+    /** Returns the steps the instructions of the fastest route between two nodes add. */
+    private List<Step> getSteps(RoadGraph graph, int from, int to) {
+        Route route = new Router(graph).route(from, to);
+        RouteInstructions instructions =
+                RouteInstructions.create(mCarContext, route, DESTINATION_NAME, DESTINATION_ADDRESS);
+        List<Step> steps = new ArrayList<>();
+        for (Instruction instruction : instructions) {
+            if (instruction.getType() == Instruction.Type.ADD_STEP_NAVIGATION) {
+                steps.add(instruction.getStep());
+            }
+        }
+        return steps;
+    }
+
+    private static void assertStep(Step step, int maneuverType, String road) {
+        assertThat(step.getManeuver().getType()).isEqualTo(maneuverType);
+        assertThat(step.getRoad().toCharSequence().toString()).isEqualTo(road);
+    }
+
+    private static RoadGraph buildIntersection() throws IOException {
+        GraphBuilder graph = new GraphBuilder();
+        graph.addNode(0, 0);
+        graph.addNode(1, 0);
+        graph.addNode(2, 0);
+        graph.addNode(3, 0);
+        graph.addNode(2, 1);
+        graph.addTwoWayRoad(MAIN_START, 1, "Main St", 2);
+        graph.addTwoWayRoad(1, MAIN_END, "Main St", 2);
+        graph.addTwoWayRoad(MAIN_END, BROADWAY_END, "Broadway", 2);
+        graph.addTwoWayRoad(MAIN_END, FIRST_AVE_END, "1st Ave", 1);
+        return graph.build();
+    }
+
+    private static RoadGraph buildRoundabout() throws IOException {
+        GraphBuilder graph = new GraphBuilder();
+        int south = graph.addNode(-1, 0);
+        int east = graph.addNode(0, 1);
+        int north = graph.addNode(1, 0);
+        int west = graph.addNode(0, -1);
+        graph.addNode(-3, 0);
+        graph.addNode(0, 3);
+        graph.addNode(3, 0);
+        int westEnd = graph.addNode(0, -3);
+        int[] ring = {south, east, north, west};
+        for (int i = 0; i < ring.length; i++) {
+            graph.addRoundabout(ring[i], ring[(i + 1) % ring.length]);
+        }
+        graph.addTwoWayRoad(ROUNDABOUT_SOUTH_END, south, "South Rd", 1);
+        graph.addTwoWayRoad(east, ROUNDABOUT_EAST_END, "East Rd", 1);
+        graph.addTwoWayRoad(north, ROUNDABOUT_NORTH_END, "North Rd", 1);
+        graph.addTwoWayRoad(west, westEnd, "West Rd", 1);
+        return graph.build();
+    }
+
+    /** Builds a graph on a grid of {@link #STEP_DEGREES}, with roads as long as they look. */
+    private static final class GraphBuilder {
+        private final RoadGraphWriter mWriter = new RoadGraphWriter();
+        private final List<double[]> mPositions = new ArrayList<>();
+
+        int addNode(int north, int east) {
+            double latitude = LATITUDE + north * STEP_DEGREES;
+            double longitude = LONGITUDE + east * STEP_DEGREES;
+            mPositions.add(new double[] {latitude, longitude});
+            return mWriter.addNode(latitude, longitude);
+        }
+
+        void addTwoWayRoad(int from, int to, String name, int lanes) {
+            mWriter.addTwoWayRoad(from, to, getLengthMeters(from, to), SPEED_METERS_PER_SECOND,
+                    name, lanes, 0);
+        }
+
+        void addRoundabout(int from, int to) {
+            mWriter.addRoad(from, to, getLengthMeters(from, to), SPEED_METERS_PER_SECOND,
+                    "Circle", 1, RoadGraph.ROAD_ROUNDABOUT);
+        }
+
+        RoadGraph build() throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            mWriter.writeTo(out);
+            return new RoadGraph(ByteBuffer.wrap(out.toByteArray()));
+        }
+
+        private double getLengthMeters(int from, int to) {
+            double[] a = mPositions.get(from);
+            double[] b = mPositions.get(to);
+            return RoadGraph.distanceMeters(a[0], a[1], b[0], b[1]);
+        }
+    }
+}
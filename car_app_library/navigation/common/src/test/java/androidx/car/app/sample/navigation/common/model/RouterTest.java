@@ -0,0 +1,211 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+import java.util.Random;
+
+/**
+ * Tests that {@link Router} finds the fastest routes, with A* in a plain graph and with the
+ * contraction hierarchy, against Dijkstra on a small synthetic grid.
+ */
+@RunWith(JUnit4.class)
+public class RouterTest {
+    private static final int GRID_SIZE = 12;
+    private static final double GRID_STEP_DEGREES = 0.001;
+    private static final int ROUTE_COUNT = 200;
+
+    @Test
+    public void route_plainAndHierarchy_takeAsLongAsDijkstra() throws IOException {
+        RoadGraph plain = buildGrid(new Random(1), /* contract= */ false);
+        RoadGraph hierarchy = buildGrid(new Random(1), /* contract= */ true);
+        assertThat(hierarchy.hasHierarchy()).isTrue();
+        Router plainRouter = new Router(plain);
+        Router hierarchyRouter = new Router(hierarchy);
+
+        Random random = new Random(2);
+        int found = 0;
+        for (int i = 0; i < ROUTE_COUNT; i++) {
+            int from = random.nextInt(plain.getNodeCount());
+            int to = random.nextInt(plain.getNodeCount());
+            long expected = dijkstra(plain, from, to);
+
+            Route plainRoute = plainRouter.route(from, to);
+            Route hierarchyRoute = hierarchyRouter.route(from, to);
+
+            if (expected < 0) {
+                assertThat(plainRoute).isNull();
+                assertThat(hierarchyRoute).isNull();
+                continue;
+            }
+            found++;
+            assertIsPath(plainRoute, from, to);
+            assertIsPath(hierarchyRoute, from, to);
+            assertThat(plainRoute.getDurationMillis()).isEqualTo(expected);
+            assertThat(hierarchyRoute.getDurationMillis()).isEqualTo(expected);
+        }
+        assertThat(found).isGreaterThan(ROUTE_COUNT / 2);
+    }
+
+    @Test
+    public void route_sameNode_isEmpty() throws IOException {
+        RoadGraph graph = buildGrid(new Random(1), /* contract= */ true);
+
+        Route route = new Router(graph).route(5, 5);
+
+        assertThat(route.getNodeCount()).isEqualTo(1);
+        assertThat(route.getDurationMillis()).isEqualTo(0);
+    }
+
+    @Test
+    public void route_unreachable_returnsNull() throws IOException {
+        RoadGraphWriter writer = new RoadGraphWriter();
+        int a = writer.addNode(47.6, -122.2);
+        int b = writer.addNode(47.601, -122.2);
+        writer.addRoad(a, b, 100, 10, "One way", 1, 0);
+
+        Router router = new Router(write(writer));
+
+        assertThat(router.route(a, b)).isNotNull();
+        assertThat(router.route(b, a)).isNull();
+    }
+
+    @Test
+    public void setPenalty_avoidsTheRoadsOfTheRoute_andIsRemoved() throws IOException {
+        RoadGraph graph = buildGrid(new Random(1), /* contract= */ true);
+        Router router = new Router(graph);
+        int from = 0;
+        int to = graph.getNodeCount() - 1;
+        Route fastest = router.route(from, to);
+
+        router.setPenalty(fastest, 5);
+        Route alternative = router.route(from, to);
+        router.setPenalty(null, 1);
+
+        assertIsPath(alternative, from, to);
+        assertThat(alternative.getDurationMillis()).isAtLeast(fastest.getDurationMillis());
+        assertThat(alternative.getSharedLengthMeters(fastest))
+                .isLessThan(fastest.getLengthMeters());
+        assertThat(router.route(from, to).getDurationMillis())
+                .isEqualTo(fastest.getDurationMillis());
+    }
+
+    /**
+     * Returns a grid of two-way roads of random speeds, with a few one-way roads and roads left
+     * out, so that some nodes cannot be reached.
+     */
+    private static RoadGraph buildGrid(Random random, boolean contract) throws IOException {
+        RoadGraphWriter writer = new RoadGraphWriter();
+        int[][] nodes = new int[GRID_SIZE][GRID_SIZE];
+        for (int row = 0; row < GRID_SIZE; row++) {
+            for (int column = 0; column < GRID_SIZE; column++) {
+                nodes[row][column] = writer.addNode(47.6 + row * GRID_STEP_DEGREES,
+                        -122.2 + column * GRID_STEP_DEGREES);
+            }
+        }
+        for (int row = 0; row < GRID_SIZE; row++) {
+            for (int column = 0; column < GRID_SIZE; column++) {
+                if (column + 1 < GRID_SIZE) {
+                    addRandomRoad(writer, random, nodes[row][column], nodes[row][column + 1]);
+                }
+                if (row + 1 < GRID_SIZE) {
+                    addRandomRoad(writer, random, nodes[row][column], nodes[row + 1][column]);
+                }
+            }
+        }
+        if (contract) {
+            writer.contract();
+        }
+        return write(writer);
+    }
+
+    private static void addRandomRoad(RoadGraphWriter writer, Random random, int from, int to) {
+        double lengthMeters = 80 + random.nextInt(40);
+        double speed = 5 + random.nextInt(25);
+        int kind = random.nextInt(10);
+        if (kind == 0) {
+            return;
+        } else if (kind == 1) {
+            writer.addRoad(from, to, lengthMeters, speed, "Road " + from, 1, 0);
+        } else if (kind == 2) {
+            writer.addRoad(to, from, lengthMeters, speed, "Road " + from, 1, 0);
+        } else {
+            writer.addTwoWayRoad(from, to, lengthMeters, speed, "Road " + from, 2, 0);
+        }
+    }
+
+    private static RoadGraph write(RoadGraphWriter writer) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writer.writeTo(out);
+        return new RoadGraph(ByteBuffer.wrap(out.toByteArray()));
+    }
+
+    /** Asserts that the route drives roads from one node to the next, from start to end. */
+    private static void assertIsPath(Route route, int from, int to) {
+        assertThat(route).isNotNull();
+        RoadGraph graph = route.getGraph();
+        assertThat(route.getNode(0)).isEqualTo(from);
+        assertThat(route.getNode(route.getNodeCount() - 1)).isEqualTo(to);
+        assertThat(route.getEdgeCount()).isEqualTo(route.getNodeCount() - 1);
+        for (int i = 0; i < route.getEdgeCount(); i++) {
+            int edge = route.getEdge(i);
+            assertThat(graph.isShortcut(edge)).isFalse();
+            assertThat(edge).isAtLeast(graph.getFirstOutEdge(route.getNode(i)));
+            assertThat(edge).isLessThan(graph.getLastOutEdge(route.getNode(i)));
+            assertThat(graph.getEdgeTarget(edge)).isEqualTo(route.getNode(i + 1));
+        }
+    }
+
+    /** Returns the fastest time between two nodes of a plain graph, or -1 if there is none. */
+    private static long dijkstra(RoadGraph graph, int from, int to) {
+        long[] times = new long[graph.getNodeCount()];
+        Arrays.fill(times, Long.MAX_VALUE);
+        times[from] = 0;
+        PriorityQueue<long[]> queue = new PriorityQueue<>((a, b) -> Long.compare(a[0], b[0]));
+        queue.add(new long[] {0, from});
+        while (!queue.isEmpty()) {
+            long[] entry = queue.poll();
+            int node = (int) entry[1];
+            if (entry[0] > times[node]) {
+                continue;
+            }
+            if (node == to) {
+                return entry[0];
+            }
+            for (int edge = graph.getFirstOutEdge(node); edge < graph.getLastOutEdge(node);
+                    edge++) {
+                int target = graph.getEdgeTarget(edge);
+                long time = entry[0] + graph.getEdgeTimeMillis(edge);
+                if (time < times[target]) {
+                    times[target] = time;
+                    queue.add(new long[] {time, target});
+                }
+            }
+        }
+        return -1;
+    }
+}
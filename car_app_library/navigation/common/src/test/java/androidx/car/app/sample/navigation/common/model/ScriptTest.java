@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.model;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Tests the order and timing of the instructions a {@link Script} executes. */
+@RunWith(JUnit4.class)
+public class ScriptTest {
+    private final ScriptScheduler mScheduler = ScriptScheduler.asFastAsPossible();
+    private final long mStartMillis = mScheduler.getTimeMillis();
+
+    // The instructions processed, the instruction after each one, and the virtual time each one
+    // was processed at.
+    private final List<Instruction> mProcessed = new ArrayList<>();
+    private final List<Instruction> mNextProcessed = new ArrayList<>();
+    private final List<Long> mProcessedMillis = new ArrayList<>();
+
+    private final Instruction mStart = create(Instruction.Type.START_NAVIGATION, 1000);
+    private final Instruction mPosition =
+            create(Instruction.Type.SET_TRIP_POSITION_NAVIGATION, 500);
+    private final Instruction mEnd = create(Instruction.Type.END_NAVIGATION, 0);
+
+    @Test
+    public void execute_runsEachInstructionOnceThePreviousOneLasted() {
+        Script.execute(Arrays.asList(mStart, mPosition, mEnd).iterator(), this::process,
+                mScheduler);
+
+        assertThat(mProcessed).containsExactly(mStart, mPosition, mEnd).inOrder();
+        assertThat(mProcessedMillis)
+                .containsExactly(mStartMillis, mStartMillis + 1000, mStartMillis + 1500)
+                .inOrder();
+    }
+
+    @Test
+    public void create_doesNotRunTheInstructionsUntilStarted() {
+        Script script = Script.create(Arrays.asList(mStart, mEnd).iterator(), this::process,
+                mScheduler);
+
+        assertThat(mProcessed).isEmpty();
+
+        script.start();
+
+        assertThat(mProcessed).containsExactly(mStart, mEnd).inOrder();
+    }
+
+    @Test
+    public void stop_fromAnInstruction_runsNoFurtherInstruction() {
+        List<Script> scripts = new ArrayList<>();
+        Script script = Script.create(Arrays.asList(mStart, mPosition, mEnd).iterator(),
+                (instruction, nextInstruction) -> {
+                    process(instruction, nextInstruction);
+                    if (instruction == mPosition) {
+                        // The script is known here even though it runs within start.
+                        scripts.get(0).stop();
+                    }
+                },
+                mScheduler);
+        scripts.add(script);
+
+        script.start();
+
+        assertThat(mProcessed).containsExactly(mStart, mPosition).inOrder();
+    }
+
+    @Test
+    public void insert_whileAnInstructionLasts_resumesOnceTheInsertedOneLasted() {
+        Instruction rerouting = create(Instruction.Type.SET_REROUTING, 2000);
+        List<Script> scripts = new ArrayList<>();
+        Script script = Script.create(Arrays.asList(mStart, mPosition, mEnd).iterator(),
+                (instruction, nextInstruction) -> {
+                    process(instruction, nextInstruction);
+                    if (instruction == mPosition) {
+                        // Inserted 200 ms into the position, as the rerouter would.
+                        mScheduler.schedule(() -> scripts.get(0).insert(rerouting), 200);
+                    }
+                },
+                mScheduler);
+        scripts.add(script);
+
+        script.start();
+
+        assertThat(mProcessed).containsExactly(mStart, mPosition, rerouting, mEnd).inOrder();
+        assertThat(mProcessedMillis)
+                .containsExactly(mStartMillis, mStartMillis + 1000, mStartMillis + 1200,
+                        mStartMillis + 3200)
+                .inOrder();
+        assertThat(mNextProcessed.get(2)).isSameInstanceAs(mEnd);
+    }
+
+    @Test
+    public void insert_afterTheInstructionsRanOut_runsOnlyTheInsertedOne() {
+        Instruction rerouting = create(Instruction.Type.SET_REROUTING, 2000);
+        Script script = Script.execute(Arrays.asList(mStart, mEnd).iterator(), this::process,
+                mScheduler);
+
+        script.insert(rerouting);
+
+        assertThat(mProcessed).containsExactly(mStart, mEnd, rerouting).inOrder();
+        assertThat(mNextProcessed.get(2)).isNull();
+    }
+
+    @Test
+    public void splice_afterTheInstructionsRanOut_runsTheNewInstructions() {
+        Script script = Script.execute(Arrays.asList(mStart, mEnd).iterator(), this::process,
+                mScheduler);
+
+        script.splice(Arrays.asList(mPosition, mEnd).iterator());
+
+        assertThat(mProcessed).containsExactly(mStart, mEnd, mPosition, mEnd).inOrder();
+        assertThat(mProcessedMillis)
+                .containsExactly(mStartMillis, mStartMillis + 1000, mStartMillis + 1000,
+                        mStartMillis + 1500)
+                .inOrder();
+    }
+
+    private void process(Instruction instruction, Instruction nextInstruction) {
+        mProcessed.add(instruction);
+        mNextProcessed.add(nextInstruction);
+        mProcessedMillis.add(mScheduler.getTimeMillis());
+    }
+
+    private static Instruction create(Instruction.Type type, long durationMillis) {
+        return Instruction.builder(type, durationMillis).build();
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.nav;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static org.junit.Assert.assertThrows;
+
+import android.location.Location;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.internal.DoNotInstrument;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/** Tests the parsing of GPX and NMEA tracks by {@link LocationTrack}. */
+@RunWith(RobolectricTestRunner.class)
+@DoNotInstrument
+public class LocationTrackTest {
+    // 2021-06-01T12:00:00Z.
+    private static final long JUNE_1_NOON_MILLIS = 1622548800000L;
+    private static final long DAY_MILLIS = 24 * 60 * 60 * 1000;
+
+    @Test
+    public void readGpx_readsTheTrackPoints() throws IOException {
+        LocationTrack track = LocationTrack.readGpx(toStream(
+                "<?xml version=\"1.0\"?>\n"
+                        + "<gpx version=\"1.1\">\n"
+                        + "  <wpt lat=\"10\" lon=\"20\"><name>Ignored</name></wpt>\n"
+                        + "  <trk><trkseg>\n"
+                        + "    <trkpt lat=\"47.6\" lon=\"-122.2\">\n"
+                        + "      <ele>12.5</ele><time>2021-06-01T12:00:00Z</time>\n"
+                        + "    </trkpt>\n"
+                        + "    <trkpt lat=\"47.7\" lon=\"-122.3\">\n"
+                        + "      <time>2021-06-01T14:00:01.5+02:00</time>\n"
+                        + "    </trkpt>\n"
+                        + "  </trkseg></trk>\n"
+                        + "</gpx>\n"));
+
+        assertThat(track.size()).isEqualTo(2);
+        assertThat(track.getStartTimeMillis()).isEqualTo(JUNE_1_NOON_MILLIS);
+        assertThat(track.getEndTimeMillis()).isEqualTo(JUNE_1_NOON_MILLIS + 1500);
+
+        Location location = new Location("test");
+        track.sample(JUNE_1_NOON_MILLIS, 0, location);
+        assertThat(location.getLatitude()).isWithin(1e-9).of(47.6);
+        assertThat(location.getLongitude()).isWithin(1e-9).of(-122.2);
+        assertThat(location.getAltitude()).isWithin(1e-9).of(12.5);
+    }
+
+    @Test
+    public void readGpx_routeWithoutTimes_spacesThePointsBySeconds() throws IOException {
+        LocationTrack track = LocationTrack.readGpx(toStream(
+                "<gpx><rte>"
+                        + "<rtept lat=\"1\" lon=\"2\"/><rtept lat=\"3\" lon=\"4\"/>"
+                        + "<rtept lat=\"5\" lon=\"6\"/>"
+                        + "</rte></gpx>"));
+
+        assertThat(track.size()).isEqualTo(3);
+        assertThat(track.getEndTimeMillis() - track.getStartTimeMillis()).isEqualTo(2000);
+    }
+
+    @Test
+    public void readGpx_noPoints_throws() {
+        assertThrows(IOException.class, () -> LocationTrack.readGpx(toStream("<gpx></gpx>")));
+    }
+
+    @Test
+    public void readNmea_readsRmcAndGgaOfTheSameFix() throws IOException {
+        LocationTrack track = LocationTrack.readNmea(toStream(
+                sentence("GPRMC,120000.00,A,4736.000,N,12212.000,W,10.0,90.0,010621,,,A")
+                        + sentence("GPGGA,120000.00,4736.000,N,12212.000,W,1,08,0.9,15.0,M,,M,,")
+                        + sentence(
+                                "GPRMC,120001.00,A,4736.060,N,12212.000,W,10.0,90.0,010621,,,A")));
+
+        assertThat(track.size()).isEqualTo(2);
+        assertThat(track.getStartTimeMillis()).isEqualTo(JUNE_1_NOON_MILLIS);
+        assertThat(track.getEndTimeMillis()).isEqualTo(JUNE_1_NOON_MILLIS + 1000);
+
+        Location location = new Location("test");
+        track.sample(JUNE_1_NOON_MILLIS, 0, location);
+        assertThat(location.getLatitude()).isWithin(1e-9).of(47.6);
+        assertThat(location.getLongitude()).isWithin(1e-9).of(-122.2);
+        assertThat(location.getAltitude()).isWithin(1e-9).of(15.0);
+        assertThat((double) location.getSpeed()).isWithin(1e-3).of(5.14444);
+        assertThat((double) location.getBearing()).isWithin(1e-3).of(90.0);
+    }
+
+    @Test
+    public void readNmea_skipsBadChecksumsAndInvalidFixes() throws IOException {
+        String good = sentence("GPGGA,120000,4736.000,N,12212.000,W,1,08,0.9,15.0,M,,M,,");
+        String noFix = sentence("GPGGA,120001,4736.000,N,12212.000,W,0,00,,,M,,M,,");
+        String badChecksum =
+                "$GPGGA,120002,4736.000,N,12212.000,W,1,08,0.9,15.0,M,,M,,*00\n";
+
+        LocationTrack track = LocationTrack.readNmea(toStream(good + noFix + badChecksum));
+
+        assertThat(track.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void readNmea_ggaOnlyPastMidnight_carriesTheDayOver() throws IOException {
+        LocationTrack track = LocationTrack.readNmea(toStream(
+                sentence("GPGGA,235959,4736.000,N,12212.000,W,1,08,0.9,15.0,M,,M,,")
+                        + sentence("GPGGA,000000,4736.001,N,12212.000,W,1,08,0.9,15.0,M,,M,,")
+                        + sentence("GPGGA,000001,4736.002,N,12212.000,W,1,08,0.9,15.0,M,,M,,")));
+
+        assertThat(track.size()).isEqualTo(3);
+        assertThat(track.getTimeMillis(0)).isEqualTo(DAY_MILLIS - 1000);
+        assertThat(track.getTimeMillis(1)).isEqualTo(DAY_MILLIS);
+        assertThat(track.getTimeMillis(2)).isEqualTo(DAY_MILLIS + 1000);
+    }
+
+    @Test
+    public void readNmea_ggaSlightlyOutOfOrder_staysOnTheSameDay() throws IOException {
+        LocationTrack track = LocationTrack.readNmea(toStream(
+                sentence("GPGGA,120001,4736.000,N,12212.000,W,1,08,0.9,15.0,M,,M,,")
+                        + sentence("GPGGA,120000,4736.001,N,12212.000,W,1,08,0.9,15.0,M,,M,,")
+                        + sentence("GPGGA,120002,4736.002,N,12212.000,W,1,08,0.9,15.0,M,,M,,")));
+
+        // The fix that goes back in time is dropped, rather than moved to the next day.
+        assertThat(track.size()).isEqualTo(2);
+        assertThat(track.getEndTimeMillis() - track.getStartTimeMillis()).isEqualTo(1000);
+    }
+
+    /** Returns the given NMEA sentence body with its delimiters and checksum, as a line. */
+    private static String sentence(String body) {
+        int checksum = 0;
+        for (int i = 0; i < body.length(); i++) {
+            checksum ^= body.charAt(i);
+        }
+        return String.format(Locale.ROOT, "$%s*%02X\r\n", body, checksum);
+    }
+
+    private static InputStream toStream(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.nav;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import android.os.Build;
+
+import androidx.car.app.sample.navigation.common.model.DemoScripts;
+import androidx.car.app.sample.navigation.common.model.ScriptScheduler;
+import androidx.car.app.testing.TestCarContext;
+import androidx.car.app.testing.navigation.TestNavigationManager;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.internal.DoNotInstrument;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A soak test of the trip updates of {@link NavigationService}, which runs the demo scripts many
+ * times in a row with the virtual clock of {@link ScriptScheduler#asFastAsPossible}.
+ *
+ * <p>Runs on API level 23, where the service has no audio engine, so that only the trips are
+ * exercised.
+ */
+@RunWith(RobolectricTestRunner.class)
+@DoNotInstrument
+@Config(sdk = Build.VERSION_CODES.M)
+public class NavigationServiceTest {
+    private static final int RUN_COUNT = 50;
+
+    private final TestCarContext mTestCarContext =
+            TestCarContext.createCarContext(ApplicationProvider.getApplicationContext());
+    private final List<NavigationState> mStates = new ArrayList<>();
+
+    private NavigationService mService;
+
+    @Before
+    public void setUp() {
+        mService = Robolectric.setupService(NavigationService.class);
+        mService.setCarContext(mTestCarContext, mStates::add);
+    }
+
+    @Test
+    public void executeInstructions_repeatedly_endsEachTripWithoutLeakingState() {
+        TestNavigationManager navigationManager =
+                mTestCarContext.getCarService(TestNavigationManager.class);
+        int maxDestinationCount = -1;
+
+        for (int i = 0; i < RUN_COUNT; i++) {
+            mStates.clear();
+            int tripCount = navigationManager.getTripsSent().size();
+            mService.executeInstructions(
+                    DemoScripts.getNavigateHome(mTestCarContext),
+                    ScriptScheduler.asFastAsPossible());
+            assertThat(navigationManager.getTripsSent().size()).isGreaterThan(tripCount);
+
+            // The trips left pending by the rate limit are sent in the time of the script, and
+            // the last one must be dropped once the navigation ended.
+            tripCount = navigationManager.getTripsSent().size();
+            ShadowLooper.idleMainLooper(2 * TripUpdater.MIN_INTERVAL_MILLIS, MILLISECONDS);
+            assertThat(navigationManager.getTripsSent()).hasSize(tripCount);
+
+            // The destinations of a run must not leak into the next one.
+            if (i == 0) {
+                maxDestinationCount = getMaxDestinationCount();
+                assertThat(maxDestinationCount).isGreaterThan(0);
+            } else {
+                assertThat(getMaxDestinationCount()).isEqualTo(maxDestinationCount);
+            }
+            assertThat(mService.getIsNavigating()).isFalse();
+            assertThat(mStates.get(mStates.size() - 1)).isSameInstanceAs(NavigationState.IDLE);
+        }
+
+        assertThat(navigationManager.getNavigationStartedCount()).isEqualTo(RUN_COUNT);
+        assertThat(navigationManager.getNavigationEndedCount()).isEqualTo(RUN_COUNT);
+    }
+
+    private int getMaxDestinationCount() {
+        int count = 0;
+        for (NavigationState state : mStates) {
+            if (state.getDestinations() != null) {
+                count = Math.max(count, state.getDestinations().size());
+            }
+        }
+        return count;
+    }
+}
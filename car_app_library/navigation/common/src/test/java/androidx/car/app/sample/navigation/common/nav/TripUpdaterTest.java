@@ -0,0 +1,189 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.navigation.common.nav;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+import androidx.annotation.NonNull;
+import androidx.car.app.model.DateTimeWithZone;
+import androidx.car.app.model.Distance;
+import androidx.car.app.navigation.NavigationManagerCallback;
+import androidx.car.app.navigation.model.Destination;
+import androidx.car.app.navigation.model.Maneuver;
+import androidx.car.app.navigation.model.Step;
+import androidx.car.app.navigation.model.TravelEstimate;
+import androidx.car.app.navigation.model.Trip;
+import androidx.car.app.sample.navigation.common.model.ScriptScheduler;
+import androidx.car.app.testing.TestCarContext;
+import androidx.car.app.testing.navigation.TestNavigationManager;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.internal.DoNotInstrument;
+import org.robolectric.shadows.ShadowLooper;
+
+/** Tests that {@link TripUpdater} skips and rate limits the trips as documented. */
+@RunWith(RobolectricTestRunner.class)
+@DoNotInstrument
+public class TripUpdaterTest {
+    private static final long ARRIVAL_MILLIS = 1622548800000L;
+
+    private final TestCarContext mTestCarContext =
+            TestCarContext.createCarContext(ApplicationProvider.getApplicationContext());
+    private final TestNavigationManager mNavigationManager =
+            mTestCarContext.getCarService(TestNavigationManager.class);
+    private final TripUpdater mTripUpdater = new TripUpdater(mNavigationManager);
+    private final ScriptScheduler mScheduler = ScriptScheduler.realTime();
+
+    @Before
+    public void setUp() {
+        mNavigationManager.setNavigationManagerCallback(new NavigationManagerCallback() {
+            @Override
+            public void onStopNavigation() {
+            }
+        });
+        mNavigationManager.navigationStarted();
+    }
+
+    @Test
+    public void update_sameAtDisplayPrecision_isSkipped() {
+        assertThat(mTripUpdater.update(createTrip("Main St.", 1.23), mScheduler)).isTrue();
+        assertThat(mTripUpdater.update(createTrip("Main St.", 1.24), mScheduler)).isFalse();
+
+        assertThat(mNavigationManager.getTripsSent()).hasSize(1);
+    }
+
+    @Test
+    public void update_newRoad_isSentAtOnce() {
+        mTripUpdater.update(createTrip("Main St.", 1.2), mScheduler);
+        Trip trip = createTrip("Elm St.", 1.2);
+
+        assertThat(mTripUpdater.update(trip, mScheduler)).isTrue();
+
+        assertThat(mNavigationManager.getTripsSent()).hasSize(2);
+        assertThat(mNavigationManager.getTripsSent().get(1)).isSameInstanceAs(trip);
+    }
+
+    @Test
+    public void update_estimatesOnly_sendsTheLatestAtTheEndOfTheInterval() {
+        mTripUpdater.update(createTrip("Main St.", 1.5), mScheduler);
+        mTripUpdater.update(createTrip("Main St.", 1.4), mScheduler);
+        Trip latest = createTrip("Main St.", 1.3);
+        mTripUpdater.update(latest, mScheduler);
+        assertThat(mNavigationManager.getTripsSent()).hasSize(1);
+
+        ShadowLooper.idleMainLooper(TripUpdater.MIN_INTERVAL_MILLIS, MILLISECONDS);
+
+        assertThat(mNavigationManager.getTripsSent()).hasSize(2);
+        assertThat(mNavigationManager.getTripsSent().get(1)).isSameInstanceAs(latest);
+    }
+
+    @Test
+    public void update_estimatesOnlyAfterTheInterval_isSentAtOnce() {
+        mTripUpdater.update(createTrip("Main St.", 1.5), mScheduler);
+        ShadowLooper.idleMainLooper(TripUpdater.MIN_INTERVAL_MILLIS, MILLISECONDS);
+
+        mTripUpdater.update(createTrip("Main St.", 1.4), mScheduler);
+
+        assertThat(mNavigationManager.getTripsSent()).hasSize(2);
+    }
+
+    @Test
+    public void update_acceleratedScheduler_measuresTheIntervalInScriptTime() {
+        ScriptScheduler scheduler = ScriptScheduler.accelerated(10);
+        mTripUpdater.update(createTrip("Main St.", 1.5), scheduler);
+        mTripUpdater.update(createTrip("Main St.", 1.4), scheduler);
+
+        ShadowLooper.idleMainLooper(TripUpdater.MIN_INTERVAL_MILLIS / 10, MILLISECONDS);
+
+        assertThat(mNavigationManager.getTripsSent()).hasSize(2);
+    }
+
+    @Test
+    public void update_afterTheScriptCancelledItsTasks_sendsTheLatestAtTheEndOfTheInterval() {
+        mTripUpdater.update(createTrip("Main St.", 1.5), mScheduler);
+        mTripUpdater.update(createTrip("Main St.", 1.4), mScheduler);
+        // E.g. the script was spliced with the instructions of a new route.
+        mScheduler.cancelAll();
+        Trip latest = createTrip("Main St.", 1.3);
+        mTripUpdater.update(latest, mScheduler);
+
+        ShadowLooper.idleMainLooper(TripUpdater.MIN_INTERVAL_MILLIS, MILLISECONDS);
+
+        assertThat(mNavigationManager.getTripsSent()).hasSize(2);
+        assertThat(mNavigationManager.getTripsSent().get(1)).isSameInstanceAs(latest);
+    }
+
+    @Test
+    public void update_anotherScheduler_isSentAtOnce() {
+        mTripUpdater.update(createTrip("Main St.", 1.5), mScheduler);
+
+        mTripUpdater.update(createTrip("Main St.", 1.4), ScriptScheduler.realTime());
+
+        assertThat(mNavigationManager.getTripsSent()).hasSize(2);
+    }
+
+    @Test
+    public void reset_dropsThePendingTrip() {
+        mTripUpdater.update(createTrip("Main St.", 1.5), mScheduler);
+        mTripUpdater.update(createTrip("Main St.", 1.4), mScheduler);
+
+        mTripUpdater.reset();
+        ShadowLooper.idleMainLooper(TripUpdater.MIN_INTERVAL_MILLIS, MILLISECONDS);
+
+        assertThat(mNavigationManager.getTripsSent()).hasSize(1);
+    }
+
+    @Test
+    public void isSameAtDisplayPrecision_comparesTheDisplayedDigits() {
+        assertThat(TripUpdater.isSameAtDisplayPrecision(
+                Distance.create(1.23, Distance.UNIT_KILOMETERS),
+                Distance.create(1.24, Distance.UNIT_KILOMETERS))).isTrue();
+        assertThat(TripUpdater.isSameAtDisplayPrecision(
+                Distance.create(1.2, Distance.UNIT_KILOMETERS),
+                Distance.create(1.3, Distance.UNIT_KILOMETERS))).isFalse();
+        assertThat(TripUpdater.isSameAtDisplayPrecision(
+                Distance.create(120.4, Distance.UNIT_METERS),
+                Distance.create(119.6, Distance.UNIT_METERS))).isTrue();
+        assertThat(TripUpdater.isSameAtDisplayPrecision(
+                Distance.create(100, Distance.UNIT_METERS),
+                Distance.create(0.1, Distance.UNIT_KILOMETERS))).isFalse();
+    }
+
+    /** Returns a trip on the given road, with the given distance to the destination, in km. */
+    private static Trip createTrip(@NonNull String road, double kilometers) {
+        Step step = new Step.Builder("Turn left")
+                .setManeuver(new Maneuver.Builder(Maneuver.TYPE_TURN_NORMAL_LEFT).build())
+                .setRoad("Elm St.")
+                .build();
+        TravelEstimate estimate = new TravelEstimate.Builder(
+                Distance.create(kilometers, Distance.UNIT_KILOMETERS),
+                DateTimeWithZone.create(ARRIVAL_MILLIS, 0, "UTC"))
+                .setRemainingTimeSeconds(600)
+                .build();
+        return new Trip.Builder()
+                .addStep(step, estimate)
+                .addDestination(new Destination.Builder().setName("Home").build(), estimate)
+                .setCurrentRoad(road)
+                .build();
+    }
+}
@@ -20,6 +20,10 @@ import android.location.Location;
 
 import androidx.car.app.sample.places.common.places.PlaceCategory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
 /** App-wide constants */
 class Constants {
     /** The initial location to use as an anchor for searches. */
@@ -37,21 +41,58 @@ class Constants {
     /** The maximum number of location search results when searching for anchors. */
     static final int LOCATION_SEARCH_MAX_RESULTS = 5;
 
+    /** The width of the corridor around the demo route to search for POIs along the way. */
+    static final int ROUTE_SEARCH_CORRIDOR_METERS = 1000;
+
+    /** The maximum number of queries in flight when searching along the demo route. */
+    static final int ROUTE_SEARCH_MAX_CONCURRENCY = 3;
+
+    /** A demo route from the initial search location, to search for POIs along the way. */
+    static final List<Location> DEMO_ROUTE;
+
+    static final PlaceCategory RESTAURANTS = PlaceCategory.create("Restaurants", "restaurant");
+    static final PlaceCategory GAS_STATIONS = PlaceCategory.create("Gas stations", "gas_station");
+
     static final PlaceCategory[] CATEGORIES = {
             PlaceCategory.create("Banks", "bank"),
             PlaceCategory.create("Bars", "bar"),
             PlaceCategory.create("Parking", "parking"),
-            PlaceCategory.create("Restaurants", "restaurant"),
-            PlaceCategory.create("Gas stations", "gas_station"),
+            RESTAURANTS,
+            GAS_STATIONS,
             PlaceCategory.create("Transit stations", "transit_station")
     };
 
+    /**
+     * Groups of categories that are searched together and shown as a single list, e.g. "food or
+     * gas near me".
+     */
+    static final PlaceCategory[][] CATEGORY_GROUPS = {
+            {RESTAURANTS, GAS_STATIONS}
+    };
+
     static {
         INITIAL_SEARCH_LOCATION = new Location("PlacesDemo");
 
         // Googleplex
         INITIAL_SEARCH_LOCATION.setLatitude(37.422255);
         INITIAL_SEARCH_LOCATION.setLongitude(-122.084047);
+
+        // Southbound on US 101, from the Googleplex to Sunnyvale.
+        double[][] points = {
+                {37.422255, -122.084047},
+                {37.415500, -122.077000},
+                {37.403000, -122.045000},
+                {37.390000, -122.015000},
+                {37.377000, -121.993000}
+        };
+        List<Location> route = new ArrayList<>();
+        for (double[] point : points) {
+            Location location = new Location("PlacesDemo");
+            location.setLatitude(point[0]);
+            location.setLongitude(point[1]);
+            route.add(location);
+        }
+        DEMO_ROUTE = Collections.unmodifiableList(route);
     }
 
     private Constants() {
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.places.common;
+
+import static androidx.car.app.sample.places.common.Executors.TIMEOUT_EXECUTOR;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A point in time by which a chain of asynchronous operations must complete.
+ *
+ * <p>A screen creates a deadline with its total time budget, and each stage of the chain is
+ * bounded by the time that remains when it starts, rather than by a fixed timeout of its own.
+ * The stages run on {@link Executors#DEADLINE_EXECUTOR}, where they do not wait behind other work
+ * while their budget runs out.
+ */
+class Deadline {
+    private final long mDeadlineNanos;
+
+    /** Returns a deadline that expires after the given duration from now. */
+    static Deadline after(long duration, @NonNull TimeUnit unit) {
+        return new Deadline(System.nanoTime() + unit.toNanos(duration));
+    }
+
+    /** Returns the time remaining until the deadline, in milliseconds, or {@code 0} if expired. */
+    long getRemainingMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(Math.max(0, mDeadlineNanos - System.nanoTime()));
+    }
+
+    /**
+     * Returns the time remaining until the deadline, in milliseconds, to use as an I/O timeout.
+     *
+     * <p>I/O APIs such as {@link java.net.URLConnection#setReadTimeout} treat {@code 0} as an
+     * infinite timeout, so this never returns less than {@code 1}.
+     */
+    int getRemainingTimeoutMillis() {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(1, getRemainingMillis()));
+    }
+
+    /** Returns whether the deadline has passed. */
+    boolean isExpired() {
+        return System.nanoTime() - mDeadlineNanos >= 0;
+    }
+
+    /**
+     * Returns a future that completes like the given one, or fails with a {@link
+     * java.util.concurrent.TimeoutException} and cancels it when the deadline passes.
+     */
+    @NonNull
+    <T> ListenableFuture<T> bound(@NonNull ListenableFuture<T> future) {
+        return Futures.withTimeout(
+                future,
+                Math.max(0, mDeadlineNanos - System.nanoTime()),
+                TimeUnit.NANOSECONDS,
+                TIMEOUT_EXECUTOR);
+    }
+
+    private Deadline(long deadlineNanos) {
+        mDeadlineNanos = deadlineNanos;
+    }
+}
@@ -21,6 +21,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
 
 /** Holder for executors used in the app. */
 abstract class Executors {
@@ -30,6 +31,32 @@ abstract class Executors {
                     java.util.concurrent.Executors.newSingleThreadExecutor(
                             new ThreadFactoryBuilder().setNameFormat("places-demo-%d").build()));
 
+    /**
+     * An executor used to run independent place queries concurrently, such as one query per
+     * category in a multi-category search.
+     */
+    static final ListeningExecutorService SEARCH_EXECUTOR =
+            MoreExecutors.listeningDecorator(
+                    java.util.concurrent.Executors.newFixedThreadPool(
+                            4,
+                            new ThreadFactoryBuilder().setNameFormat("places-search-%d").build()));
+
+    /**
+     * An executor used to run the stages of a load bounded by a {@link Deadline}, such as the
+     * place details, address and photo, so that they never wait behind unrelated work and use up
+     * their budget before they start.
+     */
+    static final ListeningExecutorService DEADLINE_EXECUTOR =
+            MoreExecutors.listeningDecorator(
+                    java.util.concurrent.Executors.newFixedThreadPool(
+                            3,
+                            new ThreadFactoryBuilder().setNameFormat("places-details-%d").build()));
+
+    /** An executor used to time out operations that run past their deadline. */
+    static final ScheduledExecutorService TIMEOUT_EXECUTOR =
+            java.util.concurrent.Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("places-timeout-%d").build());
+
     /** An executor that runs its tasks in the UI thread. */
     static final ExecutorService UI_EXECUTOR = UiExecutor.get();
 
@@ -28,11 +28,16 @@ import com.google.common.util.concurrent.SettableFuture;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLConnection;
 
 /** Image-related utilities. */
 class ImageUtil {
+    /**
+     * Loads a bitmap from the given URL, giving up if the server does not reply within the given
+     * time, or waiting indefinitely if the timeout is {@code 0}.
+     */
     static ListenableFuture<Bitmap> loadBitmapFromUrl(@NonNull Context context,
-            @NonNull String urlString) {
+            @NonNull String urlString, int timeoutMillis) {
         SettableFuture<Bitmap> future = SettableFuture.create();
         URL url;
         try {
@@ -44,7 +49,10 @@ class ImageUtil {
 
         Bitmap bmp;
         try {
-            bmp = BitmapFactory.decodeStream(url.openConnection().getInputStream());
+            URLConnection connection = url.openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            bmp = BitmapFactory.decodeStream(connection.getInputStream());
         } catch (IOException e) {
             future.setException(e);
             return future;
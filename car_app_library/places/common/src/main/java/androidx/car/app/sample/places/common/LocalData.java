@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.places.common;
+
+import static androidx.car.app.sample.places.common.Executors.BACKGROUND_EXECUTOR;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.car.app.sample.places.common.places.PlaceInfo;
+import androidx.car.app.sample.places.common.places.PlaceNameIndex;
+import androidx.car.app.sample.places.common.places.RecentsStore;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Holder for the data the app keeps on the device across sessions.
+ *
+ * <p>All disk access happens in the {@link Executors#BACKGROUND_EXECUTOR}, never in the UI thread.
+ */
+class LocalData {
+    private static final String TAG = "PlacesDemo";
+    private static final String PLACE_NAME_INDEX_FILE = "place_name_index";
+    private static final String RECENTS_FILE = "recents";
+
+    @Nullable
+    private static PlaceNameIndex sPlaceNameIndex;
+
+    @Nullable
+    private static ListenableFuture<RecentsStore> sRecentsStore;
+
+    private static final AtomicBoolean sIsSavePending = new AtomicBoolean();
+
+    /**
+     * Returns the index of the names of the places seen before.
+     *
+     * <p>The first call returns an empty index, and loads its contents from disk in the
+     * background.
+     */
+    @NonNull
+    static synchronized PlaceNameIndex getPlaceNameIndex(@NonNull Context context) {
+        if (sPlaceNameIndex == null) {
+            PlaceNameIndex index = new PlaceNameIndex();
+            Context appContext = context.getApplicationContext();
+            BACKGROUND_EXECUTOR.execute(
+                    () -> {
+                        try {
+                            index.readFrom(getPlaceNameIndexFile(appContext));
+                        } catch (IOException e) {
+                            Log.e(TAG, "Error reading the place name index.", e);
+                        }
+                    });
+            sPlaceNameIndex = index;
+        }
+        return sPlaceNameIndex;
+    }
+
+    /**
+     * Records the given places as seen now, and saves the place name index in the background.
+     *
+     * <p>Saves requested while one is already pending are coalesced into it.
+     */
+    static void addSeenPlaces(@NonNull Context context, @NonNull List<PlaceInfo> places) {
+        if (places.isEmpty()) {
+            return;
+        }
+
+        PlaceNameIndex index = getPlaceNameIndex(context);
+        index.addAll(places, System.currentTimeMillis());
+        if (sIsSavePending.compareAndSet(false, true)) {
+            Context appContext = context.getApplicationContext();
+            BACKGROUND_EXECUTOR.execute(
+                    () -> {
+                        sIsSavePending.set(false);
+                        try {
+                            index.writeTo(getPlaceNameIndexFile(appContext));
+                        } catch (IOException e) {
+                            Log.e(TAG, "Error writing the place name index.", e);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Returns the store of recent searches and places.
+     *
+     * <p>The first call loads the store from disk in the background, and seeds the place name index
+     * with the recent places once loaded.
+     */
+    @NonNull
+    static synchronized ListenableFuture<RecentsStore> getRecentsStore(@NonNull Context context) {
+        if (sRecentsStore == null) {
+            Context appContext = context.getApplicationContext();
+            PlaceNameIndex index = getPlaceNameIndex(appContext);
+            sRecentsStore =
+                    BACKGROUND_EXECUTOR.submit(
+                            () -> {
+                                RecentsStore store =
+                                        new RecentsStore(
+                                                new File(appContext.getFilesDir(), RECENTS_FILE),
+                                                BACKGROUND_EXECUTOR);
+                                try {
+                                    store.load();
+                                } catch (IOException e) {
+                                    Log.e(TAG, "Error reading the recents.", e);
+                                }
+                                store.addRecentPlacesTo(index);
+                                return store;
+                            });
+        }
+        return sRecentsStore;
+    }
+
+    /** Records a search term in the recents, once they are loaded. */
+    @SuppressWarnings({"FutureReturnValueIgnored"})
+    static void addRecentSearch(@NonNull Context context, @NonNull String search) {
+        Futures.transform(
+                getRecentsStore(context),
+                store -> {
+                    store.addSearch(search);
+                    return null;
+                },
+                MoreExecutors.directExecutor());
+    }
+
+    /** Records a selected place in the recents, once they are loaded. */
+    @SuppressWarnings({"FutureReturnValueIgnored"})
+    static void addRecentPlace(@NonNull Context context, @NonNull PlaceInfo place) {
+        Futures.transform(
+                getRecentsStore(context),
+                store -> {
+                    store.addPlace(place);
+                    return null;
+                },
+                MoreExecutors.directExecutor());
+    }
+
+    private static File getPlaceNameIndexFile(Context context) {
+        return new File(context.getFilesDir(), PLACE_NAME_INDEX_FILE);
+    }
+
+    private LocalData() {
+    }
+}
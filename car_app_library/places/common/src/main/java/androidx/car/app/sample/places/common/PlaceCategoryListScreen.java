@@ -36,6 +36,8 @@ import androidx.car.app.sample.places.common.places.PlaceCategory;
 import androidx.lifecycle.DefaultLifecycleObserver;
 import androidx.lifecycle.LifecycleOwner;
 
+import java.util.Arrays;
+
 /** A screen that displays a list of place categories. */
 public class PlaceCategoryListScreen extends Screen implements DefaultLifecycleObserver {
 
@@ -81,6 +83,43 @@ public class PlaceCategoryListScreen extends Screen implements DefaultLifecycleO
                             .build());
         }
 
+        // Add one row per group of categories, showing their places as a single list.
+        for (PlaceCategory[] group : Constants.CATEGORY_GROUPS) {
+            String title = getGroupTitle(group);
+            PlaceListScreen screen = PlaceListScreen.create(
+                    getCarContext(),
+                    mSearchLocation,
+                    Constants.POI_SEARCH_RADIUS_METERS,
+                    Constants.POI_SEARCH_MAX_RESULTS,
+                    title,
+                    Arrays.asList(group),
+                    mAnchorLocation);
+
+            listBuilder.addItem(
+                    new Row.Builder()
+                            .setTitle(title)
+                            .setOnClickListener(() -> getScreenManager().push(screen))
+                            .setBrowsable(true)
+                            .build());
+        }
+
+        // Add a row for the gas stations along the demo route, ordered by detour.
+        PlaceCategory gasStations = Constants.GAS_STATIONS;
+        String alongRouteTitle = gasStations.getDisplayName() + " along the way";
+        PlaceListScreen alongRouteScreen = PlaceListScreen.createAlongRoute(
+                getCarContext(),
+                Constants.DEMO_ROUTE,
+                Constants.ROUTE_SEARCH_CORRIDOR_METERS,
+                Constants.POI_SEARCH_MAX_RESULTS,
+                alongRouteTitle,
+                gasStations);
+        listBuilder.addItem(
+                new Row.Builder()
+                        .setTitle(alongRouteTitle)
+                        .setOnClickListener(() -> getScreenManager().push(alongRouteScreen))
+                        .setBrowsable(true)
+                        .build());
+
         Place.Builder anchorBuilder;
 
         // If we have an anchor explicitly set, display it in the map. Otherwise, use the current
@@ -118,6 +157,17 @@ public class PlaceCategoryListScreen extends Screen implements DefaultLifecycleO
                 .build();
     }
 
+    private static String getGroupTitle(PlaceCategory[] group) {
+        StringBuilder title = new StringBuilder();
+        for (PlaceCategory category : group) {
+            if (title.length() > 0) {
+                title.append(" or ");
+            }
+            title.append(category.getDisplayName());
+        }
+        return title.toString();
+    }
+
     private void setSearchLocation(@Nullable Object location) {
         if (location != null) {
             mAnchorLocation = (Location) location;
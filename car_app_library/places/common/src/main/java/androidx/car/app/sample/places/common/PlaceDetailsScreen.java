@@ -17,7 +17,7 @@
 package androidx.car.app.sample.places.common;
 
 import static androidx.car.app.CarToast.LENGTH_LONG;
-import static androidx.car.app.sample.places.common.Executors.BACKGROUND_EXECUTOR;
+import static androidx.car.app.sample.places.common.Executors.DEADLINE_EXECUTOR;
 import static androidx.car.app.sample.places.common.Executors.UI_EXECUTOR;
 
 import android.content.Context;
@@ -56,17 +56,27 @@ import com.google.common.util.concurrent.ListenableFuture;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 /** A screen that displays a the details for a given place. */
 public class PlaceDetailsScreen extends Screen implements DefaultLifecycleObserver {
     private static final String FULL_STAR = "\u2605";
     private static final String HALF_STAR = "\u00BD";
 
+    /**
+     * The total time budget for loading the details, address and photo of the place, after which
+     * the screen shows whatever has loaded so far.
+     */
+    private static final long LOAD_BUDGET_MILLIS = 1500;
+
     private final PlaceInfo mPlace;
 
     // Loaded asynchronously from the network.
     @Nullable
     private Bitmap mPhoto;
+    @Nullable
+    private Address mAddress;
+    private boolean mIsLoading = true;
 
     private Geocoder mGeocoder;
     @Nullable
@@ -97,16 +107,19 @@ public class PlaceDetailsScreen extends Screen implements DefaultLifecycleObserv
     public Template onGetTemplate() {
         Pane.Builder paneBuilder = new Pane.Builder();
 
-        // If we don't have any places yet, show a loading progress indicator.
-        if (mDetails == null) {
+        // Show a loading progress indicator until the details have loaded, or the load budget has
+        // run out.
+        if (mIsLoading) {
             paneBuilder.setLoading(true);
         } else {
             Row.Builder row1Builder = new Row.Builder().setTitle("Address");
 
             // Add the address, split in multiple lines.
-            List<CharSequence> addressLines = getAddressLines(mPlace.getAddress(mGeocoder));
-            for (CharSequence line : addressLines) {
-                row1Builder.addText(line);
+            if (mAddress != null) {
+                List<CharSequence> addressLines = getAddressLines(mAddress);
+                for (CharSequence line : addressLines) {
+                    row1Builder.addText(line);
+                }
             }
 
             if (mPhoto != null) {
@@ -120,18 +133,21 @@ public class PlaceDetailsScreen extends Screen implements DefaultLifecycleObserv
             boolean hasSecondRow = false;
             Row.Builder row2Builder = new Row.Builder().setTitle("Phone Number and Rating");
 
-            // Add the phone number.
-            String phoneNumber = mDetails.getPhoneNumber();
-            if (phoneNumber != null) {
-                hasSecondRow = true;
-                row2Builder.addText(phoneNumber);
-            }
-
-            // Add the place's ratings.
-            double ratings = mDetails.getRatings();
-            if (ratings >= 0) {
-                hasSecondRow = true;
-                row2Builder.addText(getRatingsString(ratings));
+            // The details may be missing if they did not load in time.
+            if (mDetails != null) {
+                // Add the phone number.
+                String phoneNumber = mDetails.getPhoneNumber();
+                if (phoneNumber != null) {
+                    hasSecondRow = true;
+                    row2Builder.addText(phoneNumber);
+                }
+
+                // Add the place's ratings.
+                double ratings = mDetails.getRatings();
+                if (ratings >= 0) {
+                    hasSecondRow = true;
+                    row2Builder.addText(getRatingsString(ratings));
+                }
             }
 
             if (hasSecondRow) {
@@ -153,7 +169,13 @@ public class PlaceDetailsScreen extends Screen implements DefaultLifecycleObserv
     }
 
     private void onClickNavigate() {
-        Uri uri = Uri.parse("geo:0,0?q=" + mPlace.getAddress(mGeocoder).getAddressLine(0));
+        // Fall back to the coordinates of the place if its address did not load in time.
+        String query =
+                mAddress != null
+                        ? mAddress.getAddressLine(0)
+                        : mPlace.getLocation().getLatitude() + ","
+                                + mPlace.getLocation().getLongitude();
+        Uri uri = Uri.parse("geo:0,0?q=" + query);
         Intent intent = new Intent(CarContext.ACTION_NAVIGATE, uri);
 
         try {
@@ -218,23 +240,35 @@ public class PlaceDetailsScreen extends Screen implements DefaultLifecycleObserv
                 Spannable.SPAN_EXCLUSIVE_EXCLUSIVE);
     }
 
+    @SuppressWarnings({"FutureReturnValueIgnored"})
     private ListenableFuture<Void> update(Context context) {
-        // Load details first, then the icon, then the photo.
-        return Futures.transformAsync(
-                loadDetails(),
-                details1 ->
-                        Futures.transformAsync(
-                                loadPhoto(context, details1),
-                                details2 -> {
-                                    invalidate();
-                                    return Futures.immediateFuture(null);
-                                },
-                                UI_EXECUTOR),
+        // Every stage is bounded by what remains of the load budget when it starts.
+        Deadline deadline = Deadline.after(LOAD_BUDGET_MILLIS, TimeUnit.MILLISECONDS);
+
+        // Load the details and the address concurrently, then the photo once the details are
+        // known.
+        ListenableFuture<PlaceDetails> details = loadDetails(deadline);
+        ListenableFuture<Address> address = loadAddress(deadline);
+        Futures.transformAsync(
+                details,
+                details1 -> loadPhoto(context, details1, deadline),
                 UI_EXECUTOR);
+
+        // Stop showing the loading indicator once the details and the address have either loaded
+        // or run out of time. A photo that loads later in the budget triggers another update.
+        return Futures.whenAllComplete(details, address)
+                .call(
+                        () -> {
+                            mIsLoading = false;
+                            invalidate();
+                            return null;
+                        },
+                        UI_EXECUTOR);
     }
 
-    private ListenableFuture<Void> loadPhoto(Context context, @Nullable PlaceDetails details) {
-        if (details == null) {
+    private ListenableFuture<Void> loadPhoto(
+            Context context, @Nullable PlaceDetails details, Deadline deadline) {
+        if (details == null || deadline.isExpired()) {
             return Futures.immediateFuture(null);
         }
 
@@ -243,23 +277,37 @@ public class PlaceDetailsScreen extends Screen implements DefaultLifecycleObserv
             return Futures.immediateFuture(null);
         }
         return Futures.transformAsync(
-                ImageUtil.loadBitmapFromUrl(context, photos.get(0)),
+                deadline.bound(
+                        Futures.submitAsync(
+                                () ->
+                                        ImageUtil.loadBitmapFromUrl(
+                                                context,
+                                                photos.get(0),
+                                                deadline.getRemainingTimeoutMillis()),
+                                DEADLINE_EXECUTOR)),
                 bitmap -> {
                     mPhoto = bitmap;
-                    invalidate();
+                    if (!mIsLoading) {
+                        invalidate();
+                    }
                     return Futures.immediateFuture(null);
                 },
                 UI_EXECUTOR);
     }
 
     @SuppressWarnings({"FutureReturnValueIgnored"})
-    private ListenableFuture<PlaceDetails> loadDetails() {
+    private ListenableFuture<PlaceDetails> loadDetails(Deadline deadline) {
         return Futures.transformAsync(
                 // Run the query in the background thread, and update with the results in the UI
                 // thread.
-                Futures.submitAsync(
-                        () -> Futures.immediateFuture(mPlaceFinder.getPlaceDetails(mPlace.getId())),
-                        BACKGROUND_EXECUTOR),
+                deadline.bound(
+                        Futures.submitAsync(
+                                () ->
+                                        Futures.immediateFuture(
+                                                mPlaceFinder.getPlaceDetails(
+                                                        mPlace.getId(),
+                                                        deadline.getRemainingTimeoutMillis())),
+                                DEADLINE_EXECUTOR)),
                 place -> {
                     mDetails = place;
                     return Futures.immediateFuture(place);
@@ -267,6 +315,20 @@ public class PlaceDetailsScreen extends Screen implements DefaultLifecycleObserv
                 UI_EXECUTOR);
     }
 
+    private ListenableFuture<Address> loadAddress(Deadline deadline) {
+        return Futures.transformAsync(
+                // Geocode in another thread, concurrently with the details query.
+                deadline.bound(
+                        Futures.submitAsync(
+                                () -> Futures.immediateFuture(mPlace.getAddress(mGeocoder)),
+                                DEADLINE_EXECUTOR)),
+                address -> {
+                    mAddress = address;
+                    return Futures.immediateFuture(address);
+                },
+                UI_EXECUTOR);
+    }
+
     private PlaceDetailsScreen(@NonNull CarContext carContext, @NonNull PlaceInfo place) {
         super(carContext);
         mPlace = place;
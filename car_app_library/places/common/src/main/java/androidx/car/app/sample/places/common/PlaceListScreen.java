@@ -19,6 +19,7 @@ package androidx.car.app.sample.places.common;
 import static android.text.Spanned.SPAN_INCLUSIVE_INCLUSIVE;
 
 import static androidx.car.app.sample.places.common.Executors.BACKGROUND_EXECUTOR;
+import static androidx.car.app.sample.places.common.Executors.SEARCH_EXECUTOR;
 import static androidx.car.app.sample.places.common.Executors.UI_EXECUTOR;
 
 import android.location.Geocoder;
@@ -41,15 +42,18 @@ import androidx.car.app.model.PlaceListMapTemplate;
 import androidx.car.app.model.PlaceMarker;
 import androidx.car.app.model.Row;
 import androidx.car.app.model.Template;
+import androidx.car.app.sample.places.common.places.MultiCategorySearch;
 import androidx.car.app.sample.places.common.places.PlaceCategory;
 import androidx.car.app.sample.places.common.places.PlaceFinder;
 import androidx.car.app.sample.places.common.places.PlaceInfo;
+import androidx.car.app.sample.places.common.places.RouteSearch;
 import androidx.lifecycle.DefaultLifecycleObserver;
 import androidx.lifecycle.LifecycleOwner;
 
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.util.Collections;
 import java.util.List;
 
 /** A screen that displays a list of places for a given category, around a given location. */
@@ -61,9 +65,16 @@ public class PlaceListScreen extends Screen implements DefaultLifecycleObserver
     @Nullable
     private final Location mAnchor;
     private final int mRadiusMeters;
-    private final PlaceCategory mCategory;
+    private final String mTitle;
+    private final List<PlaceCategory> mCategories;
     private final int mMaxSearchResults;
 
+    // The route to search along, instead of around the search center, or null if none.
+    @Nullable
+    private final List<Location> mRoute;
+    // The width of the corridor around the route to search through, if there is a route.
+    private final int mCorridorWidthMeters;
+
     private Geocoder mGeocoder;
 
     @Nullable
@@ -72,6 +83,16 @@ public class PlaceListScreen extends Screen implements DefaultLifecycleObserver
     @NonNull
     private PlaceFinder mPlaceFinder;
 
+    @NonNull
+    private MultiCategorySearch mMultiCategorySearch;
+
+    @NonNull
+    private RouteSearch mRouteSearch;
+
+    // The search along the route in progress, cancelled when the screen is stopped.
+    @Nullable
+    private ListenableFuture<List<PlaceInfo>> mRouteQuery;
+
     /**
      * Returns a screen showing the places that result by querying around the given location and
      * radius (in meters), for the given category.
@@ -84,7 +105,68 @@ public class PlaceListScreen extends Screen implements DefaultLifecycleObserver
             PlaceCategory category,
             @Nullable Location anchor) {
         return new PlaceListScreen(
-                carContext, searchCenter, radiusMeters, maxSearchResults, category, anchor);
+                carContext,
+                searchCenter,
+                radiusMeters,
+                maxSearchResults,
+                category.getDisplayName(),
+                Collections.singletonList(category),
+                anchor,
+                /* route= */ null,
+                /* corridorWidthMeters= */ 0);
+    }
+
+    /**
+     * Returns a screen showing the places that result by querying around the given location and
+     * radius (in meters), for any of the given categories.
+     *
+     * <p>The categories are queried concurrently and their places are shown as a single list,
+     * ordered by distance to the search center.
+     */
+    static PlaceListScreen create(
+            @NonNull CarContext carContext,
+            @NonNull Location searchCenter,
+            int radiusMeters,
+            int maxSearchResults,
+            @NonNull String title,
+            @NonNull List<PlaceCategory> categories,
+            @Nullable Location anchor) {
+        return new PlaceListScreen(
+                carContext,
+                searchCenter,
+                radiusMeters,
+                maxSearchResults,
+                title,
+                categories,
+                anchor,
+                /* route= */ null,
+                /* corridorWidthMeters= */ 0);
+    }
+
+    /**
+     * Returns a screen showing the places of the given category within a corridor of the given
+     * width (in meters) around the given route.
+     *
+     * <p>The route is searched in parts, concurrently, and the list is updated as each part is
+     * found, ordered by the detour to reach the place from the route.
+     */
+    static PlaceListScreen createAlongRoute(
+            @NonNull CarContext carContext,
+            @NonNull List<Location> route,
+            int corridorWidthMeters,
+            int maxSearchResults,
+            @NonNull String title,
+            @NonNull PlaceCategory category) {
+        return new PlaceListScreen(
+                carContext,
+                route.get(0),
+                /* radiusMeters= */ 0,
+                maxSearchResults,
+                title,
+                Collections.singletonList(category),
+                /* anchor= */ null,
+                route,
+                corridorWidthMeters);
     }
 
     @Override
@@ -92,6 +174,10 @@ public class PlaceListScreen extends Screen implements DefaultLifecycleObserver
         mGeocoder = new Geocoder(getCarContext());
         mPlaceFinder =
                 new PlaceFinder(getCarContext().getResources().getString(R.string.PLACES_API_KEY));
+        mMultiCategorySearch = new MultiCategorySearch(mPlaceFinder, SEARCH_EXECUTOR);
+        mRouteSearch =
+                new RouteSearch(
+                        mPlaceFinder, SEARCH_EXECUTOR, Constants.ROUTE_SEARCH_MAX_CONCURRENCY);
     }
 
     @Override
@@ -100,6 +186,15 @@ public class PlaceListScreen extends Screen implements DefaultLifecycleObserver
         update();
     }
 
+    @Override
+    public void onStop(@NonNull LifecycleOwner owner) {
+        // Stop the queries left along the route, they are issued again when the screen restarts.
+        if (mRouteQuery != null) {
+            mRouteQuery.cancel(/* mayInterruptIfRunning= */ true);
+            mRouteQuery = null;
+        }
+    }
+
     @NonNull
     @Override
     public Template onGetTemplate() {
@@ -171,7 +266,7 @@ public class PlaceListScreen extends Screen implements DefaultLifecycleObserver
 
         PlaceListMapTemplate.Builder builder =
                 new PlaceListMapTemplate.Builder()
-                        .setTitle(mCategory.getDisplayName())
+                        .setTitle(mTitle)
                         .setHeaderAction(Action.BACK)
                         .setAnchor(anchor)
                         .setCurrentLocationEnabled(true);
@@ -183,24 +278,51 @@ public class PlaceListScreen extends Screen implements DefaultLifecycleObserver
     }
 
     private void onClickPlace(PlaceInfo place) {
+        LocalData.addRecentPlace(getCarContext(), place);
         getScreenManager().push(PlaceDetailsScreen.create(getCarContext(), place));
     }
 
     @SuppressWarnings({"FutureReturnValueIgnored"})
     private ListenableFuture<Void> update() {
+        ListenableFuture<List<PlaceInfo>> query;
+        if (mRoute != null) {
+            // Show the places found along the route so far, while the rest of it is searched.
+            query =
+                    mRouteSearch.getPlacesAlongRoute(
+                            mRoute,
+                            mCorridorWidthMeters,
+                            mMaxSearchResults,
+                            mCategories.get(0).getCategory(),
+                            places -> {
+                                mPlaces = places;
+                                invalidate();
+                            },
+                            UI_EXECUTOR);
+            mRouteQuery = query;
+        } else if (mCategories.size() == 1) {
+            // Run the query in the background thread.
+            query =
+                    Futures.submitAsync(
+                            () ->
+                                    Futures.immediateFuture(
+                                            mPlaceFinder.getPlacesByCategory(
+                                                    mSearchCenter,
+                                                    mRadiusMeters,
+                                                    mMaxSearchResults,
+                                                    mCategories.get(0).getCategory())),
+                            BACKGROUND_EXECUTOR);
+        } else {
+            // Fan out one query per category, and merge them into a single list.
+            query =
+                    mMultiCategorySearch.getPlacesByCategories(
+                            mSearchCenter, mRadiusMeters, mMaxSearchResults, mCategories);
+        }
+
+        // Update with the results in the UI thread.
         return Futures.transformAsync(
-                // Run the query in the background thread, and update with the results in the UI
-                // thread.
-                Futures.submitAsync(
-                        () ->
-                                Futures.immediateFuture(
-                                        mPlaceFinder.getPlacesByCategory(
-                                                mSearchCenter,
-                                                mRadiusMeters,
-                                                mMaxSearchResults,
-                                                mCategory.getCategory())),
-                        BACKGROUND_EXECUTOR),
+                query,
                 places -> {
+                    LocalData.addSeenPlaces(getCarContext(), places);
                     mPlaces = places;
                     invalidate();
                     return null;
@@ -218,15 +340,21 @@ public class PlaceListScreen extends Screen implements DefaultLifecycleObserver
             @NonNull Location searchCenter,
             int radiusMeters,
             int maxSearchResults,
-            PlaceCategory category,
-            @Nullable Location anchor) {
+            String title,
+            List<PlaceCategory> categories,
+            @Nullable Location anchor,
+            @Nullable List<Location> route,
+            int corridorWidthMeters) {
         super(carContext);
 
         mSearchCenter = searchCenter;
         mRadiusMeters = radiusMeters;
         mMaxSearchResults = maxSearchResults;
-        mCategory = category;
+        mTitle = title;
+        mCategories = categories;
         mAnchor = anchor;
+        mRoute = route;
+        mCorridorWidthMeters = corridorWidthMeters;
 
         getLifecycle().addObserver(this);
     }
@@ -44,6 +44,10 @@ public class PlacesCarAppService extends CarAppService {
             @Override
             @NonNull
             public Screen onCreateScreen(@NonNull Intent intent) {
+                // Start loading the data kept on the device, so that it is ready by the time the
+                // screens need it.
+                LocalData.getRecentsStore(getCarContext());
+
                 if (getCarContext().checkSelfPermission(Manifest.permission.ACCESS_FINE_LOCATION)
                         == PackageManager.PERMISSION_GRANTED) {
                     return PlaceCategoryListScreen.create(getCarContext());
@@ -23,6 +23,7 @@ import android.location.Geocoder;
 import android.location.Location;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.car.app.CarContext;
 import androidx.car.app.Screen;
 import androidx.car.app.model.Action;
@@ -33,14 +34,19 @@ import androidx.car.app.model.SearchTemplate.SearchCallback;
 import androidx.car.app.model.Template;
 import androidx.car.app.sample.places.common.places.PlaceFinder;
 import androidx.car.app.sample.places.common.places.PlaceInfo;
+import androidx.car.app.sample.places.common.places.PlaceNameIndex;
+import androidx.car.app.sample.places.common.places.RecentsStore;
 import androidx.lifecycle.DefaultLifecycleObserver;
 import androidx.lifecycle.LifecycleOwner;
 
 import com.google.common.util.concurrent.Futures;
 
+import java.util.List;
+
 /** A screen that displays a search edit text and search results. */
 public class SearchScreen extends Screen implements DefaultLifecycleObserver {
     private static final String TAG = "PlacesDemo";
+    private static final int MAX_RECENT_ROWS = 6;
 
     boolean mIsSearchComplete;
 
@@ -52,6 +58,15 @@ public class SearchScreen extends Screen implements DefaultLifecycleObserver {
     @NonNull
     private Location mSearchLocation;
 
+    @NonNull
+    private PlaceNameIndex mPlaceNameIndex;
+
+    @Nullable
+    private RecentsStore mRecentsStore;
+
+    @NonNull
+    private String mSearchText = "";
+
     private ItemList mItemList = withNoResults(new ItemList.Builder()).build();
 
     SearchScreen(@NonNull CarContext carContext) {
@@ -60,11 +75,26 @@ public class SearchScreen extends Screen implements DefaultLifecycleObserver {
     }
 
     @Override
+    @SuppressWarnings({"FutureReturnValueIgnored"})
     public void onCreate(@NonNull LifecycleOwner owner) {
         mPlaceFinder =
                 new PlaceFinder(getCarContext().getResources().getString(R.string.PLACES_API_KEY));
         mGeocoder = new Geocoder(getCarContext());
         mSearchLocation = Constants.INITIAL_SEARCH_LOCATION;
+        mPlaceNameIndex = LocalData.getPlaceNameIndex(getCarContext());
+
+        // Show the recent searches and places until the user types something.
+        Futures.transform(
+                LocalData.getRecentsStore(getCarContext()),
+                store -> {
+                    mRecentsStore = store;
+                    if (mSearchText.isEmpty()) {
+                        mItemList = buildRecentsList();
+                        invalidate();
+                    }
+                    return null;
+                },
+                UI_EXECUTOR);
     }
 
     @NonNull
@@ -79,8 +109,7 @@ public class SearchScreen extends Screen implements DefaultLifecycleObserver {
 
                     @Override
                     public void onSearchSubmitted(@NonNull String searchTerm) {
-                        mIsSearchComplete = true;
-                        doSearch(searchTerm);
+                        submitSearch(searchTerm);
                     }
                 })
                 .setHeaderAction(Action.BACK)
@@ -89,10 +118,26 @@ public class SearchScreen extends Screen implements DefaultLifecycleObserver {
                 .build();
     }
 
+    void submitSearch(String searchTerm) {
+        LocalData.addRecentSearch(getCarContext(), searchTerm);
+        mIsSearchComplete = true;
+        doSearch(searchTerm);
+    }
+
     void doSearch(String searchText) {
+        mSearchText = searchText;
         ItemList.Builder builder = new ItemList.Builder();
         if (searchText.isEmpty()) {
             mItemList = withNoResults(builder).build();
+            if (!mIsSearchComplete) {
+                // There is nothing to query, show the recent searches and places instead.
+                mItemList = buildRecentsList();
+                invalidate();
+                return;
+            }
+        } else if (!mIsSearchComplete) {
+            // Show the matching places seen before right away, while the query is in flight.
+            showPreviouslySeenPlaces(searchText);
         }
 
         Futures.transformAsync(
@@ -108,8 +153,10 @@ public class SearchScreen extends Screen implements DefaultLifecycleObserver {
                                                 searchText)),
                         BACKGROUND_EXECUTOR),
                 places -> {
+                    LocalData.addSeenPlaces(getCarContext(), places);
                     if (mIsSearchComplete) {
                         if (!places.isEmpty()) {
+                            LocalData.addRecentPlace(getCarContext(), places.get(0));
                             setResult(places.get(0).getLocation());
                         }
                     } else {
@@ -127,11 +174,7 @@ public class SearchScreen extends Screen implements DefaultLifecycleObserver {
                                 if (addressLine != null) {
                                     rowBuilder.addText(addressLine);
                                 }
-                                rowBuilder.setOnClickListener(
-                                        () -> {
-                                            setResult(place.getLocation());
-                                            finish();
-                                        });
+                                rowBuilder.setOnClickListener(() -> selectPlace(place));
                                 builder.addItem(rowBuilder.build());
                             }
                         }
@@ -143,6 +186,70 @@ public class SearchScreen extends Screen implements DefaultLifecycleObserver {
                 .addListener(this::searchCompleted, UI_EXECUTOR);
     }
 
+    private void showPreviouslySeenPlaces(String searchText) {
+        List<PlaceInfo> places =
+                mPlaceNameIndex.lookup(
+                        searchText,
+                        mSearchLocation,
+                        System.currentTimeMillis(),
+                        Constants.LOCATION_SEARCH_MAX_RESULTS);
+        if (places.isEmpty()) {
+            return;
+        }
+
+        ItemList.Builder builder = new ItemList.Builder();
+        for (PlaceInfo place : places) {
+            builder.addItem(
+                    new Row.Builder()
+                            .setTitle(place.getName())
+                            .setOnClickListener(() -> selectPlace(place))
+                            .build());
+        }
+        mItemList = builder.build();
+        invalidate();
+    }
+
+    private ItemList buildRecentsList() {
+        ItemList.Builder builder = withNoResults(new ItemList.Builder());
+        if (mRecentsStore == null) {
+            return builder.build();
+        }
+
+        // Show the recent places first, leaving at least half of the rows for the recent searches.
+        int rowCount = 0;
+        for (PlaceInfo place : mRecentsStore.getRecentPlaces()) {
+            if (rowCount == MAX_RECENT_ROWS / 2) {
+                break;
+            }
+            rowCount++;
+            builder.addItem(
+                    new Row.Builder()
+                            .setTitle(place.getName())
+                            .addText("Recent place")
+                            .setOnClickListener(() -> selectPlace(place))
+                            .build());
+        }
+        for (String search : mRecentsStore.getRecentSearches()) {
+            if (rowCount == MAX_RECENT_ROWS) {
+                break;
+            }
+            rowCount++;
+            builder.addItem(
+                    new Row.Builder()
+                            .setTitle(search)
+                            .addText("Recent search")
+                            .setOnClickListener(() -> submitSearch(search))
+                            .build());
+        }
+        return builder.build();
+    }
+
+    private void selectPlace(PlaceInfo place) {
+        LocalData.addRecentPlace(getCarContext(), place);
+        setResult(place.getLocation());
+        finish();
+    }
+
     private void searchCompleted() {
         if (mIsSearchComplete) {
             finish();
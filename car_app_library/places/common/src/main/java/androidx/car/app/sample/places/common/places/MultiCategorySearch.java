@@ -0,0 +1,91 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.places.common.places;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Searches for places matching any of several categories, e.g. "food or gas near me".
+ *
+ * <p>One query per category is issued concurrently on the given executor, so the overall latency
+ * is that of the slowest query rather than the sum of all of them. The results are merged into a
+ * single list ordered by distance, with duplicates removed.
+ */
+public class MultiCategorySearch {
+    @NonNull
+    private final PlaceFinder mPlaceFinder;
+    @NonNull
+    private final ListeningExecutorService mExecutor;
+
+    public MultiCategorySearch(
+            @NonNull PlaceFinder placeFinder, @NonNull ListeningExecutorService executor) {
+        mPlaceFinder = placeFinder;
+        mExecutor = executor;
+    }
+
+    /**
+     * Queries the map server for places within the radius of the given location, that belong to
+     * any of the given categories.
+     *
+     * <p>A query that fails only drops its own places from the result.
+     *
+     * @param location   the location to search around of
+     * @param radius     the radius around location to search for (in m)
+     * @param maxCount   the maximum number of places to return in the list
+     * @param categories the categories to search for
+     */
+    @NonNull
+    public ListenableFuture<List<PlaceInfo>> getPlacesByCategories(
+            @NonNull Location location,
+            double radius,
+            int maxCount,
+            @NonNull List<PlaceCategory> categories) {
+        List<ListenableFuture<List<PlaceInfo>>> queries = new ArrayList<>(categories.size());
+        for (PlaceCategory category : categories) {
+            queries.add(
+                    mExecutor.submit(
+                            () ->
+                                    mPlaceFinder.getPlacesByCategory(
+                                            location, radius, maxCount, category.getCategory())));
+        }
+
+        return Futures.transform(
+                Futures.successfulAsList(queries),
+                results -> {
+                    PlaceMerger merger =
+                            new PlaceMerger(maxCount, PlaceMerger.byDistanceFrom(location));
+                    for (List<PlaceInfo> places : results) {
+                        // Failed queries show up as null.
+                        if (places != null) {
+                            merger.addAll(places);
+                        }
+                    }
+                    return merger.getSortedPlaces();
+                },
+                MoreExecutors.directExecutor());
+    }
+}
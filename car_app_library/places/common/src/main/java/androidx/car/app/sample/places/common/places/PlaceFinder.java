@@ -55,8 +55,21 @@ public class PlaceFinder {
     /** Queries the details for a place give its id. */
     @Nullable
     public PlaceDetails getPlaceDetails(@NonNull String placeId) {
+        return getPlaceDetails(placeId, 0);
+    }
+
+    /**
+     * Queries the details for a place give its id, giving up if the server does not reply within
+     * the given time.
+     *
+     * @param placeId       the id of the place
+     * @param timeoutMillis the timeout for connecting to and reading from the server, or {@code 0}
+     *                      to wait indefinitely
+     */
+    @Nullable
+    public PlaceDetails getPlaceDetails(@NonNull String placeId, int timeoutMillis) {
         try {
-            String jsonResult = getResult(makeDetailsURL(placeId));
+            String jsonResult = getResult(makeDetailsURL(placeId), timeoutMillis);
             JSONObject root = throwIfError(new JSONObject(jsonResult));
             JSONObject result = root.getJSONObject("result");
 
@@ -106,7 +119,7 @@ public class PlaceFinder {
         try {
             URL url = makeSearchURL(location, radius, searchTerm, isCategory);
             Log.i(TAG, "Searching with URL: " + url);
-            String jsonResult = getResult(url);
+            String jsonResult = getResult(url, 0);
 
             JSONObject root = throwIfError(new JSONObject(jsonResult));
             JSONArray jArray = root.getJSONArray("results");
@@ -184,8 +197,10 @@ public class PlaceFinder {
                         + mApiKey);
     }
 
-    private static String getResult(URL url) throws IOException {
+    private static String getResult(URL url, int timeoutMillis) throws IOException {
         HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
         connection.setDoInput(true);
         connection.setDoOutput(true);
         return streamToString(connection.getInputStream());
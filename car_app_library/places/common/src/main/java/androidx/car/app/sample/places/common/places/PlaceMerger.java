@@ -0,0 +1,102 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.places.common.places;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Merges the places returned by several queries into a single list, dropping duplicates by place
+ * id and keeping only the best {@code maxCount} places for a given ordering.
+ *
+ * <p>The kept places live in a bounded heap with the worst place at its head, so merging {@code n}
+ * places costs {@code O(n log maxCount)} no matter how many queries produced them.
+ *
+ * <p>This class is not thread safe, callers are expected to merge from a single thread.
+ */
+public class PlaceMerger {
+    private final int mMaxCount;
+    private final Comparator<PlaceInfo> mComparator;
+    private final PriorityQueue<PlaceInfo> mHeap;
+    private final Set<String> mSeenIds = new HashSet<>();
+
+    /**
+     * Returns a {@link Comparator} that orders places by their straight-line distance to the given
+     * location, closest first.
+     */
+    @NonNull
+    public static Comparator<PlaceInfo> byDistanceFrom(@NonNull Location location) {
+        return (a, b) ->
+                Float.compare(
+                        location.distanceTo(a.getLocation()), location.distanceTo(b.getLocation()));
+    }
+
+    /**
+     * @param maxCount   the maximum number of places to keep
+     * @param comparator the ordering of the places, best first
+     */
+    public PlaceMerger(int maxCount, @NonNull Comparator<PlaceInfo> comparator) {
+        mMaxCount = maxCount;
+        mComparator = comparator;
+        mHeap = new PriorityQueue<>(Math.max(1, maxCount), (a, b) -> comparator.compare(b, a));
+    }
+
+    /**
+     * Offers a place to the merger.
+     *
+     * @return {@code true} if the place is currently among the kept places
+     */
+    public boolean add(@NonNull PlaceInfo place) {
+        if (mMaxCount <= 0 || !mSeenIds.add(place.getId())) {
+            return false;
+        }
+        if (mHeap.size() < mMaxCount) {
+            mHeap.add(place);
+            return true;
+        }
+        if (mComparator.compare(place, mHeap.peek()) >= 0) {
+            return false;
+        }
+        mHeap.poll();
+        mHeap.add(place);
+        return true;
+    }
+
+    /** Offers all the given places to the merger. */
+    public void addAll(@NonNull List<PlaceInfo> places) {
+        for (PlaceInfo place : places) {
+            add(place);
+        }
+    }
+
+    /** Returns the kept places, best first. */
+    @NonNull
+    public List<PlaceInfo> getSortedPlaces() {
+        List<PlaceInfo> places = new ArrayList<>(mHeap);
+        Collections.sort(places, mComparator);
+        return places;
+    }
+}
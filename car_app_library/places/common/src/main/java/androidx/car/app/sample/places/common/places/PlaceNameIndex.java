@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.places.common.places;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An on-device prefix index over the names of the places seen before, used to suggest places
+ * while the user types, before any network result arrives.
+ *
+ * <p>Each place is indexed under its whole name and under every word of its name, so that typing
+ * "cof" matches "Blue Bottle Coffee". Matches are ranked by how recently the place was seen and
+ * by how close it is to the search location.
+ *
+ * <p>The index holds up to a fixed number of places, evicting the least recently seen ones, which
+ * are kept in order of the time they were seen so that an eviction does not scan the index. It
+ * can be written to and read from a file. All methods are thread safe.
+ */
+public class PlaceNameIndex {
+    private static final int FILE_VERSION = 1;
+    private static final int DEFAULT_MAX_SIZE = 1000;
+    private static final long RECENCY_HALF_LIFE_MILLIS = TimeUnit.DAYS.toMillis(7);
+    private static final char KEY_SEPARATOR = '\u0000';
+    private static final String LOCATION_PROVIDER = "PlaceNameIndex";
+
+    /** A place in the index, and the keys it is indexed under. */
+    private static class Entry {
+        final PlaceInfo mPlace;
+        final long mSeenMillis;
+        final List<String> mKeys;
+
+        Entry(PlaceInfo place, long seenMillis, List<String> keys) {
+            mPlace = place;
+            mSeenMillis = seenMillis;
+            mKeys = keys;
+        }
+    }
+
+    private final int mMaxSize;
+
+    // Keys are a normalized name suffix starting at a word, followed by the place id, so that all
+    // the keys starting with a given prefix form a contiguous range.
+    private final TreeMap<String, Entry> mEntriesByKey = new TreeMap<>();
+
+    private final Map<String, Entry> mEntriesById = new HashMap<>();
+
+    // The entries, least recently seen first, with ties broken by place id.
+    private final TreeSet<Entry> mEntriesBySeenTime =
+            new TreeSet<>(
+                    (a, b) ->
+                            a.mSeenMillis != b.mSeenMillis
+                                    ? Long.compare(a.mSeenMillis, b.mSeenMillis)
+                                    : a.mPlace.getId().compareTo(b.mPlace.getId()));
+
+    public PlaceNameIndex() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /** @param maxSize the maximum number of places to keep in the index */
+    public PlaceNameIndex(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    /**
+     * Adds a place to the index, or refreshes the time it was last seen if it is already there.
+     *
+     * @param place      the place to add
+     * @param seenMillis the time the place was seen, in milliseconds since the epoch
+     */
+    public synchronized void add(@NonNull PlaceInfo place, long seenMillis) {
+        Entry existing = mEntriesById.get(place.getId());
+        if (existing != null) {
+            if (existing.mSeenMillis >= seenMillis) {
+                return;
+            }
+            remove(existing);
+        }
+
+        String name = normalize(place.getName());
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; i < name.length(); i++) {
+            if (i == 0 || (name.charAt(i - 1) == ' ' && name.charAt(i) != ' ')) {
+                keys.add(name.substring(i) + KEY_SEPARATOR + place.getId());
+            }
+        }
+
+        Entry entry = new Entry(place, seenMillis, keys);
+        mEntriesById.put(place.getId(), entry);
+        mEntriesBySeenTime.add(entry);
+        for (String key : keys) {
+            mEntriesByKey.put(key, entry);
+        }
+
+        if (mEntriesById.size() > mMaxSize) {
+            remove(mEntriesBySeenTime.first());
+        }
+    }
+
+    /** Adds all the given places to the index, as seen at the given time. */
+    public synchronized void addAll(@NonNull List<PlaceInfo> places, long seenMillis) {
+        for (PlaceInfo place : places) {
+            add(place, seenMillis);
+        }
+    }
+
+    /**
+     * Returns the places whose name, or a word in their name, starts with the given prefix.
+     *
+     * @param prefix    the prefix to look for, case insensitive
+     * @param location  the location used to rank places by distance
+     * @param nowMillis the current time, used to rank places by recency
+     * @param maxCount  the maximum number of places to return
+     * @return the matching places, best match first
+     */
+    @NonNull
+    public synchronized List<PlaceInfo> lookup(
+            @NonNull String prefix, @NonNull Location location, long nowMillis, int maxCount) {
+        String normalizedPrefix = normalize(prefix);
+        if (normalizedPrefix.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        Map<String, Double> scores = new HashMap<>();
+        PlaceMerger merger =
+                new PlaceMerger(
+                        maxCount,
+                        (a, b) -> Double.compare(scores.get(b.getId()), scores.get(a.getId())));
+        Map<String, Entry> matches =
+                mEntriesByKey.subMap(
+                        normalizedPrefix, true, normalizedPrefix + Character.MAX_VALUE, false);
+        for (Entry entry : matches.values()) {
+            PlaceInfo place = entry.mPlace;
+            if (!scores.containsKey(place.getId())) {
+                scores.put(place.getId(), getScore(entry, location, nowMillis));
+                merger.add(place);
+            }
+        }
+        return merger.getSortedPlaces();
+    }
+
+    /** Writes the contents of the index to the given file, replacing it atomically. */
+    public void writeTo(@NonNull File file) throws IOException {
+        List<Entry> entries;
+        synchronized (this) {
+            entries = new ArrayList<>(mEntriesById.values());
+        }
+
+        File tempFile = new File(file.getPath() + ".tmp");
+        try (DataOutputStream out =
+                     new DataOutputStream(
+                             new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(FILE_VERSION);
+            out.writeInt(entries.size());
+            for (Entry entry : entries) {
+                PlaceInfo place = entry.mPlace;
+                out.writeUTF(place.getId());
+                out.writeUTF(place.getName());
+                out.writeDouble(place.getLocation().getLatitude());
+                out.writeDouble(place.getLocation().getLongitude());
+                out.writeLong(entry.mSeenMillis);
+            }
+        }
+        if (!tempFile.renameTo(file)) {
+            throw new IOException("Failed to rename " + tempFile + " to " + file);
+        }
+    }
+
+    /**
+     * Adds the places stored in the given file to the index. Places already in the index keep
+     * whichever time they were seen last.
+     *
+     * <p>A missing file, or one written by an incompatible version, is ignored.
+     */
+    public void readFrom(@NonNull File file) throws IOException {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (DataInputStream in =
+                     new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != FILE_VERSION) {
+                return;
+            }
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                String name = in.readUTF();
+                Location location = new Location(LOCATION_PROVIDER);
+                location.setLatitude(in.readDouble());
+                location.setLongitude(in.readDouble());
+                long seenMillis = in.readLong();
+                add(new PlaceInfo(id, name, location), seenMillis);
+            }
+        }
+    }
+
+    private void remove(Entry entry) {
+        mEntriesById.remove(entry.mPlace.getId());
+        mEntriesBySeenTime.remove(entry);
+        for (String key : entry.mKeys) {
+            mEntriesByKey.remove(key);
+        }
+    }
+
+    /**
+     * Returns the score of a place for ranking, the higher the better. The score halves for every
+     * {@link #RECENCY_HALF_LIFE_MILLIS} since the place was last seen, and decreases with the
+     * distance to the given location.
+     */
+    private static double getScore(Entry entry, Location location, long nowMillis) {
+        double age = Math.max(0, nowMillis - entry.mSeenMillis);
+        double recency = Math.pow(0.5, age / RECENCY_HALF_LIFE_MILLIS);
+        double distanceKm = location.distanceTo(entry.mPlace.getLocation()) / 1000.0;
+        return recency / (1 + distanceKm);
+    }
+
+    private static String normalize(String s) {
+        return s.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.places.common.places;
+
+import android.location.Location;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * A store of the recent searches and the recently selected places.
+ *
+ * <p>The store is held in memory, so reads never touch the disk. Changes are written behind, in
+ * the given executor, by appending records to a log file. When the log grows past a few times the
+ * size of the store, it is compacted by rewriting it with only the current contents.
+ *
+ * <p>All methods except {@link #load} are thread safe and can be called from the UI thread.
+ */
+public class RecentsStore {
+    private static final String TAG = "PlacesDemo";
+    private static final int FILE_VERSION = 1;
+    private static final int MAX_SEARCHES = 10;
+    private static final int MAX_PLACES = 20;
+
+    /** The number of records in the log past which it is compacted. */
+    private static final int COMPACTION_THRESHOLD = 4 * (MAX_SEARCHES + MAX_PLACES);
+
+    private static final byte RECORD_SEARCH = 1;
+    private static final byte RECORD_PLACE = 2;
+
+    private static final String LOCATION_PROVIDER = "RecentsStore";
+
+    /** A single change to the store, as written to the log. */
+    private static class Record {
+        final byte mType;
+        final long mTimeMillis;
+        final String mSearch;
+        final PlaceInfo mPlace;
+
+        Record(byte type, long timeMillis, String search, PlaceInfo place) {
+            mType = type;
+            mTimeMillis = timeMillis;
+            mSearch = search;
+            mPlace = place;
+        }
+    }
+
+    private final File mFile;
+    private final Executor mExecutor;
+
+    // The latest record for each search term and for each place id.
+    private final Map<String, Record> mSearches = new HashMap<>();
+    private final Map<String, Record> mPlaces = new HashMap<>();
+
+    // The records not written to the log yet.
+    private List<Record> mPendingRecords = new ArrayList<>();
+    private int mLogRecordCount;
+
+    // Whether the log must be rewritten before appending to it, e.g. because it is corrupted.
+    private boolean mNeedsCompaction;
+
+    /**
+     * @param file     the log file
+     * @param executor the executor where the log is written, which must run tasks one at a time
+     */
+    public RecentsStore(@NonNull File file, @NonNull Executor executor) {
+        mFile = file;
+        mExecutor = executor;
+    }
+
+    /**
+     * Reads the log into memory. Entries already added to the store keep whichever time is the
+     * latest.
+     *
+     * <p>A missing file, or one written by an incompatible version, is ignored, as are the records
+     * following a truncated or unknown one. In those cases the log is rewritten on the next change.
+     */
+    @WorkerThread
+    public void load() throws IOException {
+        if (!mFile.exists()) {
+            return;
+        }
+
+        List<Record> records = new ArrayList<>();
+        boolean isValid = true;
+        try (DataInputStream in =
+                     new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)))) {
+            if (in.readInt() == FILE_VERSION) {
+                Record record;
+                while ((record = readRecord(in)) != null) {
+                    records.add(record);
+                }
+            } else {
+                isValid = false;
+            }
+        } catch (EOFException | UnknownRecordException e) {
+            // A record that was not completely written, e.g. if the app was killed mid-write.
+            isValid = false;
+        }
+
+        synchronized (this) {
+            for (Record record : records) {
+                apply(record);
+            }
+            mLogRecordCount += records.size();
+            mNeedsCompaction |= !isValid;
+        }
+    }
+
+    /** Adds a search term to the store. */
+    public void addSearch(@NonNull String search) {
+        String trimmed = search.trim();
+        if (!trimmed.isEmpty()) {
+            add(new Record(RECORD_SEARCH, System.currentTimeMillis(), trimmed, null));
+        }
+    }
+
+    /** Adds a selected place to the store. */
+    public void addPlace(@NonNull PlaceInfo place) {
+        add(new Record(RECORD_PLACE, System.currentTimeMillis(), null, place));
+    }
+
+    /** Returns the recent search terms, most recent first. */
+    @NonNull
+    public synchronized List<String> getRecentSearches() {
+        List<String> searches = new ArrayList<>();
+        for (Record record : sortByRecency(mSearches)) {
+            searches.add(record.mSearch);
+        }
+        return searches;
+    }
+
+    /** Returns the recently selected places, most recent first. */
+    @NonNull
+    public synchronized List<PlaceInfo> getRecentPlaces() {
+        List<PlaceInfo> places = new ArrayList<>();
+        for (Record record : sortByRecency(mPlaces)) {
+            places.add(record.mPlace);
+        }
+        return places;
+    }
+
+    /** Adds the recently selected places to the given index, as seen when they were selected. */
+    public synchronized void addRecentPlacesTo(@NonNull PlaceNameIndex index) {
+        for (Record record : mPlaces.values()) {
+            index.add(record.mPlace, record.mTimeMillis);
+        }
+    }
+
+    private void add(Record record) {
+        boolean isFlushPending;
+        synchronized (this) {
+            apply(record);
+            isFlushPending = !mPendingRecords.isEmpty();
+            mPendingRecords.add(record);
+        }
+        // Writes requested while a flush is pending are written by it.
+        if (!isFlushPending) {
+            mExecutor.execute(this::flush);
+        }
+    }
+
+    @WorkerThread
+    private void flush() {
+        List<Record> records;
+        boolean isCompacting;
+        synchronized (this) {
+            if (mNeedsCompaction
+                    || mLogRecordCount + mPendingRecords.size() > COMPACTION_THRESHOLD) {
+                // The current contents already include all the pending records.
+                isCompacting = true;
+                records = new ArrayList<>(mSearches.values());
+                records.addAll(mPlaces.values());
+            } else {
+                isCompacting = false;
+                records = mPendingRecords;
+            }
+            mPendingRecords = new ArrayList<>();
+        }
+
+        try {
+            if (isCompacting) {
+                File tempFile = new File(mFile.getPath() + ".tmp");
+                writeRecords(tempFile, false, records);
+                if (!tempFile.renameTo(mFile)) {
+                    throw new IOException("Failed to rename " + tempFile + " to " + mFile);
+                }
+            } else {
+                writeRecords(mFile, mFile.exists(), records);
+            }
+            synchronized (this) {
+                if (isCompacting) {
+                    mLogRecordCount = records.size();
+                    mNeedsCompaction = false;
+                } else {
+                    mLogRecordCount += records.size();
+                }
+            }
+        } catch (IOException e) {
+            // Losing history is not fatal, the records are still in memory and the next write
+            // rewrites the whole log.
+            Log.e(TAG, "Error writing recents.", e);
+            synchronized (this) {
+                mNeedsCompaction = true;
+            }
+        }
+    }
+
+    /** Applies a record to the contents in memory. Must be called with the lock held. */
+    private void apply(Record record) {
+        Map<String, Record> entries = record.mType == RECORD_SEARCH ? mSearches : mPlaces;
+        String key = record.mType == RECORD_SEARCH ? record.mSearch : record.mPlace.getId();
+        Record existing = entries.get(key);
+        if (existing != null && existing.mTimeMillis > record.mTimeMillis) {
+            return;
+        }
+        entries.put(key, record);
+
+        int maxSize = record.mType == RECORD_SEARCH ? MAX_SEARCHES : MAX_PLACES;
+        if (entries.size() > maxSize) {
+            List<Record> sorted = sortByRecency(entries);
+            Record oldest = sorted.get(sorted.size() - 1);
+            entries.remove(oldest.mType == RECORD_SEARCH ? oldest.mSearch : oldest.mPlace.getId());
+        }
+    }
+
+    private static List<Record> sortByRecency(Map<String, Record> entries) {
+        List<Record> records = new ArrayList<>(entries.values());
+        Collections.sort(records, (a, b) -> Long.compare(b.mTimeMillis, a.mTimeMillis));
+        return records;
+    }
+
+    private static void writeRecords(File file, boolean append, List<Record> records)
+            throws IOException {
+        try (DataOutputStream out =
+                     new DataOutputStream(
+                             new BufferedOutputStream(new FileOutputStream(file, append)))) {
+            if (!append) {
+                out.writeInt(FILE_VERSION);
+            }
+            for (Record record : records) {
+                out.writeByte(record.mType);
+                out.writeLong(record.mTimeMillis);
+                if (record.mType == RECORD_SEARCH) {
+                    out.writeUTF(record.mSearch);
+                } else {
+                    out.writeUTF(record.mPlace.getId());
+                    out.writeUTF(record.mPlace.getName());
+                    out.writeDouble(record.mPlace.getLocation().getLatitude());
+                    out.writeDouble(record.mPlace.getLocation().getLongitude());
+                }
+            }
+        }
+    }
+
+    /** Returns the next record in the log, or {@code null} at its end. */
+    @Nullable
+    private static Record readRecord(DataInputStream in) throws IOException {
+        int type = in.read();
+        if (type == -1) {
+            return null;
+        }
+        long timeMillis = in.readLong();
+        switch (type) {
+            case RECORD_SEARCH:
+                return new Record(RECORD_SEARCH, timeMillis, in.readUTF(), null);
+            case RECORD_PLACE:
+                String id = in.readUTF();
+                String name = in.readUTF();
+                Location location = new Location(LOCATION_PROVIDER);
+                location.setLatitude(in.readDouble());
+                location.setLongitude(in.readDouble());
+                return new Record(
+                        RECORD_PLACE, timeMillis, null, new PlaceInfo(id, name, location));
+            default:
+                throw new UnknownRecordException(type);
+        }
+    }
+
+    /** Thrown when reading a record of an unknown type from the log. */
+    private static class UnknownRecordException extends IOException {
+        UnknownRecordException(int type) {
+            super("Unknown record type: " + type);
+        }
+    }
+}
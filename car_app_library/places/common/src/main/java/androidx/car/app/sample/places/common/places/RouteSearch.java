@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.places.common.places;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+/**
+ * Searches for places along a route, rather than around a single location.
+ *
+ * <p>The route is covered by a chain of overlapping search circles, one query is issued per
+ * circle, and at most {@code maxConcurrency} queries are in flight at any time. Places are ordered
+ * by their detour cost, i.e. the extra distance needed to leave the route, drive to the place and
+ * come back to the route. The circles reach past the corridor, so the places they find farther
+ * from the route than half the corridor width are dropped.
+ */
+public class RouteSearch {
+    private static final double EARTH_RADIUS_METERS = 6371000;
+
+    /** A listener for the partial results of a route search. */
+    public interface Listener {
+        /**
+         * Notifies that the places found so far have changed, e.g. because the query for another
+         * part of the route has completed.
+         *
+         * @param places the places found so far, in increasing order of detour cost
+         */
+        void onPlacesFound(@NonNull List<PlaceInfo> places);
+    }
+
+    @NonNull
+    private final PlaceFinder mPlaceFinder;
+    @NonNull
+    private final ListeningExecutorService mExecutor;
+    private final int mMaxConcurrency;
+
+    /**
+     * @param placeFinder    the {@link PlaceFinder} used to query each part of the route
+     * @param executor       the executor where the queries run
+     * @param maxConcurrency the maximum number of queries in flight for a single search
+     */
+    public RouteSearch(
+            @NonNull PlaceFinder placeFinder,
+            @NonNull ListeningExecutorService executor,
+            int maxConcurrency) {
+        mPlaceFinder = placeFinder;
+        mExecutor = executor;
+        mMaxConcurrency = Math.max(1, maxConcurrency);
+    }
+
+    /**
+     * Queries the map server for places of the given category within a corridor around the given
+     * route.
+     *
+     * <p>Cancelling the returned future cancels the queries in flight, and stops issuing queries
+     * for the rest of the route.
+     *
+     * <p>The listener gets the places in the order they were found: a list is never followed by
+     * an older one, and the last list is the same as the result.
+     *
+     * @param route               the route, as a polyline
+     * @param corridorWidthMeters the width of the corridor around the route to search through
+     * @param maxCount            the maximum number of places to return in the list
+     * @param category            the category to search for
+     * @param listener            an optional listener for partial results
+     * @param listenerExecutor    the executor where the listener is called
+     * @return a future with the places found, in increasing order of detour cost
+     */
+    @NonNull
+    public ListenableFuture<List<PlaceInfo>> getPlacesAlongRoute(
+            @NonNull List<Location> route,
+            double corridorWidthMeters,
+            int maxCount,
+            @NonNull String category,
+            @Nullable Listener listener,
+            @NonNull Executor listenerExecutor) {
+        if (corridorWidthMeters <= 0) {
+            throw new IllegalArgumentException("Corridor width must be positive");
+        }
+        if (route.isEmpty()) {
+            return Futures.immediateFuture(Collections.emptyList());
+        }
+
+        // A chain of circles of radius r spaced 2 * h apart covers a corridor of half-width h
+        // when r = h * sqrt(2): consecutive circles then cross exactly on the edges of the
+        // corridor, halfway between their centers.
+        double halfWidth = corridorWidthMeters / 2;
+        double radius = halfWidth * Math.sqrt(2);
+        List<Location> centers = splitRoute(route, 2 * halfWidth);
+
+        Search search = new Search(route, centers, radius, corridorWidthMeters, maxCount, category,
+                listener, listenerExecutor);
+        search.mResult.addListener(search::onResultDone, MoreExecutors.directExecutor());
+        search.launchQueries();
+        return search.mResult;
+    }
+
+    /** The state of a single, in-progress route search. */
+    private final class Search {
+        private final List<Location> mRoute;
+        private final List<Location> mCenters;
+        private final double mRadius;
+        // The detour cost of a place on the edge of the corridor.
+        private final double mMaxDetourCost;
+        private final int mMaxCount;
+        private final String mCategory;
+        @Nullable
+        private final Listener mListener;
+        private final Executor mListenerExecutor;
+
+        private final SettableFuture<List<PlaceInfo>> mResult = SettableFuture.create();
+        private final Map<String, Double> mDetourCosts = new HashMap<>();
+        private final PlaceMerger mMerger;
+        private final List<Future<?>> mQueries = new ArrayList<>();
+
+        private int mNextCenter;
+        private int mInFlight;
+        private int mCompleted;
+
+        // Numbers the lists of places found, to deliver them to the listener in order even if
+        // the listener executor runs them out of order.
+        private int mVersion;
+        private int mDeliveredVersion;
+
+        Search(
+                List<Location> route,
+                List<Location> centers,
+                double radius,
+                double maxDetourCost,
+                int maxCount,
+                String category,
+                @Nullable Listener listener,
+                Executor listenerExecutor) {
+            mRoute = route;
+            mCenters = centers;
+            mRadius = radius;
+            mMaxDetourCost = maxDetourCost;
+            mMaxCount = maxCount;
+            mCategory = category;
+            mListener = listener;
+            mListenerExecutor = listenerExecutor;
+            mMerger =
+                    new PlaceMerger(
+                            maxCount,
+                            (a, b) ->
+                                    Double.compare(
+                                            mDetourCosts.get(a.getId()),
+                                            mDetourCosts.get(b.getId())));
+        }
+
+        /** Issues queries for the next parts of the route, up to the concurrency limit. */
+        synchronized void launchQueries() {
+            // Only the queries in flight are kept, to cancel them with the result.
+            for (Iterator<Future<?>> queries = mQueries.iterator(); queries.hasNext(); ) {
+                if (queries.next().isDone()) {
+                    queries.remove();
+                }
+            }
+            while (mInFlight < mMaxConcurrency
+                    && mNextCenter < mCenters.size()
+                    && !mResult.isDone()) {
+                Location center = mCenters.get(mNextCenter++);
+                mInFlight++;
+                ListenableFuture<List<PlaceInfo>> query =
+                        mExecutor.submit(
+                                () ->
+                                        mPlaceFinder.getPlacesByCategory(
+                                                center, mRadius, mMaxCount, mCategory));
+                mQueries.add(query);
+                Futures.addCallback(
+                        query,
+                        new FutureCallback<List<PlaceInfo>>() {
+                            @Override
+                            public void onSuccess(List<PlaceInfo> places) {
+                                onQueryCompleted(places);
+                            }
+
+                            @Override
+                            public void onFailure(@NonNull Throwable t) {
+                                onQueryCompleted(Collections.emptyList());
+                            }
+                        },
+                        MoreExecutors.directExecutor());
+            }
+        }
+
+        /** Cancels the queries in flight once the result is cancelled. */
+        void onResultDone() {
+            if (!mResult.isCancelled()) {
+                return;
+            }
+            List<Future<?>> queries;
+            synchronized (this) {
+                queries = new ArrayList<>(mQueries);
+                mQueries.clear();
+            }
+            for (Future<?> query : queries) {
+                query.cancel(/* mayInterruptIfRunning= */ true);
+            }
+        }
+
+        private void onQueryCompleted(List<PlaceInfo> places) {
+            List<PlaceInfo> found;
+            boolean isComplete;
+            int version;
+            synchronized (this) {
+                mInFlight--;
+                mCompleted++;
+                for (PlaceInfo place : places) {
+                    Double detourCost = mDetourCosts.get(place.getId());
+                    if (detourCost == null) {
+                        detourCost = getDetourCost(mRoute, place.getLocation());
+                        mDetourCosts.put(place.getId(), detourCost);
+                    }
+                    if (detourCost <= mMaxDetourCost) {
+                        mMerger.add(place);
+                    }
+                }
+                found = mMerger.getSortedPlaces();
+                isComplete = mCompleted == mCenters.size();
+                version = ++mVersion;
+            }
+
+            if (mResult.isDone()) {
+                // Cancelled.
+                return;
+            }
+            if (mListener != null) {
+                mListenerExecutor.execute(() -> deliver(found, version));
+            }
+            if (isComplete) {
+                mResult.set(found);
+            } else {
+                launchQueries();
+            }
+        }
+
+        private void deliver(List<PlaceInfo> places, int version) {
+            synchronized (this) {
+                // Skips a list when a newer one was already delivered.
+                if (version <= mDeliveredVersion || mResult.isCancelled()) {
+                    return;
+                }
+                mDeliveredVersion = version;
+            }
+            mListener.onPlacesFound(places);
+        }
+    }
+
+    /**
+     * Returns the centers of the search circles for the given route, placed every {@code spacing}
+     * meters along it, starting at its first point and ending at its last one.
+     */
+    private static List<Location> splitRoute(List<Location> route, double spacing) {
+        List<Location> centers = new ArrayList<>();
+        centers.add(route.get(0));
+
+        // Distance traveled along the route since the last center.
+        double traveled = 0;
+        for (int i = 1; i < route.size(); i++) {
+            Location from = route.get(i - 1);
+            Location to = route.get(i);
+            double length = from.distanceTo(to);
+
+            double offset = spacing - traveled;
+            while (offset <= length) {
+                centers.add(interpolate(from, to, offset / length));
+                offset += spacing;
+            }
+            traveled = length - (offset - spacing);
+        }
+
+        if (traveled > 0) {
+            centers.add(route.get(route.size() - 1));
+        }
+        return centers;
+    }
+
+    private static Location interpolate(Location from, Location to, double fraction) {
+        Location location = new Location(from);
+        location.setLatitude(
+                from.getLatitude() + (to.getLatitude() - from.getLatitude()) * fraction);
+        location.setLongitude(
+                from.getLongitude() + (to.getLongitude() - from.getLongitude()) * fraction);
+        return location;
+    }
+
+    /**
+     * Returns an estimate of the detour needed to reach the given location from the route, in
+     * meters: twice the distance between the location and the closest point of the route.
+     *
+     * <p>Distances are computed on a local flat projection centered on the location, which is
+     * accurate enough within the few kilometers of a search corridor.
+     */
+    private static double getDetourCost(List<Location> route, Location location) {
+        double metersPerDegreeLat = Math.toRadians(1) * EARTH_RADIUS_METERS;
+        double metersPerDegreeLng =
+                metersPerDegreeLat * Math.cos(Math.toRadians(location.getLatitude()));
+
+        double minDistanceSquared = Double.MAX_VALUE;
+        double prevX = 0;
+        double prevY = 0;
+        for (int i = 0; i < route.size(); i++) {
+            Location point = route.get(i);
+            double x = (point.getLongitude() - location.getLongitude()) * metersPerDegreeLng;
+            double y = (point.getLatitude() - location.getLatitude()) * metersPerDegreeLat;
+            if (i == 0) {
+                minDistanceSquared = x * x + y * y;
+            } else {
+                minDistanceSquared =
+                        Math.min(
+                                minDistanceSquared,
+                                getDistanceToSegmentSquared(prevX, prevY, x, y));
+            }
+            prevX = x;
+            prevY = y;
+        }
+        return 2 * Math.sqrt(minDistanceSquared);
+    }
+
+    /** Returns the squared distance from the origin to the segment (x1, y1) - (x2, y2). */
+    private static double getDistanceToSegmentSquared(
+            double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : -(x1 * dx + y1 * dy) / lengthSquared;
+        t = Math.max(0, Math.min(1, t));
+        double x = x1 + t * dx;
+        double y = y1 + t * dy;
+        return x * x + y * y;
+    }
+}
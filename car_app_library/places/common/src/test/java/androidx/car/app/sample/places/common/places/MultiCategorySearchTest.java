@@ -0,0 +1,114 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.places.common.places;
+
+import static androidx.car.app.sample.places.common.places.PlaceMergerTest.createLocation;
+import static androidx.car.app.sample.places.common.places.PlaceMergerTest.createPlace;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.internal.DoNotInstrument;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Tests that {@link MultiCategorySearch} merges the places of each category. */
+@RunWith(RobolectricTestRunner.class)
+@DoNotInstrument
+public class MultiCategorySearchTest {
+    private static final Location ORIGIN = createLocation(37.42, -122.08);
+
+    private final PlaceInfo mNearRestaurant = createPlace("restaurant", 0.01);
+    private final PlaceInfo mFarRestaurant = createPlace("far restaurant", 0.04);
+    private final PlaceInfo mGasStation = createPlace("gas station", 0.02);
+    // A place returned for both categories.
+    private final PlaceInfo mDinerWithGas = createPlace("diner with gas", 0.03);
+
+    private final FakePlaceFinder mPlaceFinder = new FakePlaceFinder();
+    private final MultiCategorySearch mSearch = new MultiCategorySearch(
+            mPlaceFinder, MoreExecutors.newDirectExecutorService());
+
+    @Test
+    public void getPlacesByCategories_mergesTheCategoriesClosestFirst() throws Exception {
+        mPlaceFinder.mPlaces.put("restaurant",
+                Arrays.asList(mFarRestaurant, mDinerWithGas, mNearRestaurant));
+        mPlaceFinder.mPlaces.put("gas_station", Arrays.asList(mDinerWithGas, mGasStation));
+
+        List<PlaceInfo> places = mSearch.getPlacesByCategories(ORIGIN, 1000, 10,
+                Arrays.asList(PlaceCategory.create("Restaurants", "restaurant"),
+                        PlaceCategory.create("Gas stations", "gas_station"))).get();
+
+        assertThat(places)
+                .containsExactly(mNearRestaurant, mGasStation, mDinerWithGas, mFarRestaurant)
+                .inOrder();
+    }
+
+    @Test
+    public void getPlacesByCategories_keepsMaxCountPlaces() throws Exception {
+        mPlaceFinder.mPlaces.put("restaurant", Arrays.asList(mFarRestaurant, mNearRestaurant));
+        mPlaceFinder.mPlaces.put("gas_station", Arrays.asList(mDinerWithGas, mGasStation));
+
+        List<PlaceInfo> places = mSearch.getPlacesByCategories(ORIGIN, 1000, 2,
+                Arrays.asList(PlaceCategory.create("Restaurants", "restaurant"),
+                        PlaceCategory.create("Gas stations", "gas_station"))).get();
+
+        assertThat(places).containsExactly(mNearRestaurant, mGasStation).inOrder();
+    }
+
+    @Test
+    public void getPlacesByCategories_failedQuery_onlyDropsItsPlaces() throws Exception {
+        mPlaceFinder.mPlaces.put("gas_station", Arrays.asList(mGasStation));
+
+        // There are no restaurants to return, so that query fails.
+        List<PlaceInfo> places = mSearch.getPlacesByCategories(ORIGIN, 1000, 10,
+                Arrays.asList(PlaceCategory.create("Restaurants", "restaurant"),
+                        PlaceCategory.create("Gas stations", "gas_station"))).get();
+
+        assertThat(places).containsExactly(mGasStation);
+    }
+
+    /** Returns the places given for each category, and fails for the other categories. */
+    private static class FakePlaceFinder extends PlaceFinder {
+        final Map<String, List<PlaceInfo>> mPlaces = new HashMap<>();
+
+        FakePlaceFinder() {
+            super("key");
+        }
+
+        @NonNull
+        @Override
+        public List<PlaceInfo> getPlacesByCategory(@NonNull Location location, double radius,
+                int maxCount, @NonNull String category) {
+            List<PlaceInfo> places = mPlaces.get(category);
+            if (places == null) {
+                throw new IllegalStateException("Unexpected category: " + category);
+            }
+            return places;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.places.common.places;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.location.Location;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.internal.DoNotInstrument;
+
+import java.util.Arrays;
+
+/** Tests that {@link PlaceMerger} keeps the closest places, once each. */
+@RunWith(RobolectricTestRunner.class)
+@DoNotInstrument
+public class PlaceMergerTest {
+    private static final Location ORIGIN = createLocation(37.42, -122.08);
+
+    @Test
+    public void getSortedPlaces_returnsThePlacesClosestFirst() {
+        PlaceMerger merger = new PlaceMerger(10, PlaceMerger.byDistanceFrom(ORIGIN));
+        PlaceInfo far = createPlace("far", 0.03);
+        PlaceInfo near = createPlace("near", 0.01);
+        PlaceInfo middle = createPlace("middle", 0.02);
+
+        merger.addAll(Arrays.asList(far, near));
+        merger.add(middle);
+
+        assertThat(merger.getSortedPlaces()).containsExactly(near, middle, far).inOrder();
+    }
+
+    @Test
+    public void add_sameIdTwice_keepsTheFirstOne() {
+        PlaceMerger merger = new PlaceMerger(10, PlaceMerger.byDistanceFrom(ORIGIN));
+        PlaceInfo first = createPlace("id", 0.02);
+        PlaceInfo duplicate = createPlace("id", 0.01);
+
+        assertThat(merger.add(first)).isTrue();
+        assertThat(merger.add(duplicate)).isFalse();
+
+        assertThat(merger.getSortedPlaces()).containsExactly(first);
+    }
+
+    @Test
+    public void add_moreThanMaxCount_keepsTheClosestOnes() {
+        PlaceMerger merger = new PlaceMerger(2, PlaceMerger.byDistanceFrom(ORIGIN));
+        PlaceInfo a = createPlace("a", 0.04);
+        PlaceInfo b = createPlace("b", 0.01);
+        PlaceInfo c = createPlace("c", 0.03);
+        PlaceInfo d = createPlace("d", 0.02);
+
+        assertThat(merger.add(a)).isTrue();
+        assertThat(merger.add(b)).isTrue();
+        assertThat(merger.add(c)).isTrue();
+        assertThat(merger.add(d)).isTrue();
+
+        assertThat(merger.getSortedPlaces()).containsExactly(b, d).inOrder();
+    }
+
+    @Test
+    public void add_fartherThanAllKept_isDropped() {
+        PlaceMerger merger = new PlaceMerger(1, PlaceMerger.byDistanceFrom(ORIGIN));
+        PlaceInfo near = createPlace("near", 0.01);
+
+        merger.add(near);
+
+        assertThat(merger.add(createPlace("far", 0.02))).isFalse();
+        assertThat(merger.getSortedPlaces()).containsExactly(near);
+    }
+
+    @Test
+    public void add_droppedPlaceAgain_isStillADuplicate() {
+        PlaceMerger merger = new PlaceMerger(1, PlaceMerger.byDistanceFrom(ORIGIN));
+        PlaceInfo far = createPlace("far", 0.02);
+        PlaceInfo near = createPlace("near", 0.01);
+
+        merger.add(far);
+        merger.add(near);
+
+        assertThat(merger.add(far)).isFalse();
+        assertThat(merger.getSortedPlaces()).containsExactly(near);
+    }
+
+    @Test
+    public void add_zeroMaxCount_keepsNothing() {
+        PlaceMerger merger = new PlaceMerger(0, PlaceMerger.byDistanceFrom(ORIGIN));
+
+        assertThat(merger.add(createPlace("a", 0.01))).isFalse();
+        assertThat(merger.getSortedPlaces()).isEmpty();
+    }
+
+    /** Returns a place the given number of degrees north of the origin. */
+    static PlaceInfo createPlace(String id, double degreesNorth) {
+        return new PlaceInfo(id, "Place " + id,
+                createLocation(ORIGIN.getLatitude() + degreesNorth, ORIGIN.getLongitude()));
+    }
+
+    static Location createLocation(double latitude, double longitude) {
+        Location location = new Location("test");
+        location.setLatitude(latitude);
+        location.setLongitude(longitude);
+        return location;
+    }
+}
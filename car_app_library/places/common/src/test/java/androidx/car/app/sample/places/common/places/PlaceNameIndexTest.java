@@ -0,0 +1,145 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.places.common.places;
+
+import static androidx.car.app.sample.places.common.places.PlaceMergerTest.createLocation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.location.Location;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.internal.DoNotInstrument;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** Tests the prefix lookup and the eviction of {@link PlaceNameIndex}. */
+@RunWith(RobolectricTestRunner.class)
+@DoNotInstrument
+public class PlaceNameIndexTest {
+    private static final Location HERE = createLocation(37.42, -122.08);
+    private static final long NOW_MILLIS = TimeUnit.DAYS.toMillis(100);
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    private final PlaceNameIndex mIndex = new PlaceNameIndex();
+
+    @Test
+    public void lookup_prefixOfTheNameOrOfAWord_matchesThePlace() {
+        PlaceInfo coffee = createPlace("1", "Blue Bottle Coffee", 0);
+        mIndex.add(coffee, NOW_MILLIS);
+
+        assertThat(lookup("blue")).containsExactly(coffee);
+        assertThat(lookup("Cof")).containsExactly(coffee);
+        assertThat(lookup("  bottle c")).containsExactly(coffee);
+    }
+
+    @Test
+    public void lookup_middleOfAWord_doesNotMatch() {
+        mIndex.add(createPlace("1", "Blue Bottle Coffee", 0), NOW_MILLIS);
+
+        assertThat(lookup("ottle")).isEmpty();
+        assertThat(lookup("coffees")).isEmpty();
+        assertThat(lookup(" ")).isEmpty();
+    }
+
+    @Test
+    public void lookup_placeMatchingSeveralWords_isReturnedOnce() {
+        PlaceInfo place = createPlace("1", "Cafe Coffee Corner", 0);
+        mIndex.add(place, NOW_MILLIS);
+
+        assertThat(lookup("c")).containsExactly(place);
+    }
+
+    @Test
+    public void lookup_ranksRecentAndClosePlacesFirst() {
+        PlaceInfo recent = createPlace("1", "Coffee One", 0.01);
+        PlaceInfo old = createPlace("2", "Coffee Two", 0.01);
+        PlaceInfo far = createPlace("3", "Coffee Three", 0.05);
+        mIndex.add(old, NOW_MILLIS - 30 * DAY_MILLIS);
+        mIndex.add(far, NOW_MILLIS);
+        mIndex.add(recent, NOW_MILLIS);
+
+        assertThat(lookup("coffee")).containsExactly(recent, far, old).inOrder();
+    }
+
+    @Test
+    public void add_pastMaxSize_evictsTheLeastRecentlySeen() {
+        PlaceNameIndex index = new PlaceNameIndex(2);
+        PlaceInfo a = createPlace("a", "Cafe A", 0);
+        PlaceInfo b = createPlace("b", "Cafe B", 0);
+        PlaceInfo c = createPlace("c", "Cafe C", 0);
+        // Added out of the order they were seen in.
+        index.add(b, NOW_MILLIS - DAY_MILLIS);
+        index.add(a, NOW_MILLIS - 2 * DAY_MILLIS);
+        index.add(c, NOW_MILLIS);
+
+        assertThat(index.lookup("cafe", HERE, NOW_MILLIS, 10)).containsExactly(c, b).inOrder();
+    }
+
+    @Test
+    public void add_placeSeenAgain_isNotEvicted() {
+        PlaceNameIndex index = new PlaceNameIndex(2);
+        PlaceInfo a = createPlace("a", "Cafe A", 0);
+        PlaceInfo b = createPlace("b", "Cafe B", 0);
+        PlaceInfo c = createPlace("c", "Cafe C", 0);
+        index.add(a, NOW_MILLIS - 3 * DAY_MILLIS);
+        index.add(b, NOW_MILLIS - 2 * DAY_MILLIS);
+        index.add(a, NOW_MILLIS - DAY_MILLIS);
+        index.add(c, NOW_MILLIS);
+
+        assertThat(index.lookup("cafe", HERE, NOW_MILLIS, 10)).containsExactly(c, a).inOrder();
+    }
+
+    @Test
+    public void readFrom_fileWritten_restoresThePlaces() throws IOException {
+        PlaceInfo coffee = createPlace("1", "Blue Bottle Coffee", 0.01);
+        PlaceInfo tea = createPlace("2", "Tea House", 0.02);
+        mIndex.add(coffee, NOW_MILLIS);
+        mIndex.add(tea, NOW_MILLIS - DAY_MILLIS);
+        File file = File.createTempFile("place_names", ".bin");
+        try {
+            mIndex.writeTo(file);
+            PlaceNameIndex read = new PlaceNameIndex();
+            read.readFrom(file);
+
+            List<PlaceInfo> places = read.lookup("t", HERE, NOW_MILLIS, 10);
+            assertThat(places).hasSize(1);
+            assertThat(places.get(0).getId()).isEqualTo("2");
+            assertThat(places.get(0).getName()).isEqualTo("Tea House");
+            assertThat(places.get(0).getLocation().getLatitude())
+                    .isWithin(1e-9)
+                    .of(tea.getLocation().getLatitude());
+            assertThat(read.lookup("bottle", HERE, NOW_MILLIS, 10)).hasSize(1);
+        } finally {
+            file.delete();
+        }
+    }
+
+    private List<PlaceInfo> lookup(String prefix) {
+        return mIndex.lookup(prefix, HERE, NOW_MILLIS, 10);
+    }
+
+    private static PlaceInfo createPlace(String id, String name, double degreesNorth) {
+        return new PlaceInfo(id, name,
+                createLocation(HERE.getLatitude() + degreesNorth, HERE.getLongitude()));
+    }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.places.common.places;
+
+import static androidx.car.app.sample.places.common.places.PlaceMergerTest.createLocation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.internal.DoNotInstrument;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+
+/** Tests that {@link RecentsStore} reads back its log, once compacted or cut off. */
+@RunWith(RobolectricTestRunner.class)
+@DoNotInstrument
+public class RecentsStoreTest {
+    private File mFile;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("recents", ".log");
+        mFile.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+        new File(mFile.getPath() + ".tmp").delete();
+    }
+
+    @Test
+    public void load_logWritten_restoresTheSearchesAndPlaces() throws IOException {
+        RecentsStore store = createStore();
+        store.addSearch(" coffee ");
+        store.addSearch("gas");
+        store.addPlace(createPlace("1", "Blue Bottle Coffee"));
+
+        RecentsStore reopened = reopen();
+
+        assertThat(reopened.getRecentSearches()).containsExactly("coffee", "gas");
+        List<PlaceInfo> places = reopened.getRecentPlaces();
+        assertThat(places).hasSize(1);
+        assertThat(places.get(0).getId()).isEqualTo("1");
+        assertThat(places.get(0).getName()).isEqualTo("Blue Bottle Coffee");
+        assertThat(places.get(0).getLocation().getLatitude()).isWithin(1e-9).of(37.42);
+    }
+
+    @Test
+    public void addSearch_pastTheCompactionThreshold_rewritesTheLog() throws IOException {
+        RecentsStore store = createStore();
+        store.addSearch("a");
+        long oneRecordLength = mFile.length();
+        // Far more changes than the log keeps before it is compacted.
+        for (int i = 0; i < 1000; i++) {
+            store.addSearch("search " + (i % 5));
+        }
+
+        assertThat(mFile.length()).isLessThan(oneRecordLength * 200);
+        assertThat(new File(mFile.getPath() + ".tmp").exists()).isFalse();
+        assertThat(reopen().getRecentSearches())
+                .containsExactly("a", "search 0", "search 1", "search 2", "search 3", "search 4");
+    }
+
+    @Test
+    public void load_logCutOffInARecord_keepsTheRecordsBefore() throws IOException {
+        RecentsStore store = createStore();
+        store.addSearch("coffee");
+        store.addPlace(createPlace("1", "Cafe"));
+        long completeLength = mFile.length();
+        store.addPlace(createPlace("2", "Gas station"));
+        // As if the app was killed while appending the last record.
+        try (RandomAccessFile file = new RandomAccessFile(mFile, "rw")) {
+            file.setLength(completeLength + 12);
+        }
+
+        RecentsStore reopened = reopen();
+
+        assertThat(reopened.getRecentSearches()).containsExactly("coffee");
+        assertThat(reopened.getRecentPlaces()).hasSize(1);
+        assertThat(reopened.getRecentPlaces().get(0).getId()).isEqualTo("1");
+
+        // The next change rewrites the log without the partial record.
+        reopened.addSearch("gas");
+        RecentsStore reopenedAgain = reopen();
+        assertThat(reopenedAgain.getRecentSearches()).containsExactly("coffee", "gas");
+        assertThat(reopenedAgain.getRecentPlaces()).hasSize(1);
+    }
+
+    @Test
+    public void load_otherVersion_isIgnored() throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(mFile))) {
+            out.writeInt(1000);
+            out.writeByte(1);
+        }
+
+        RecentsStore store = reopen();
+        assertThat(store.getRecentSearches()).isEmpty();
+
+        store.addSearch("coffee");
+        assertThat(reopen().getRecentSearches()).containsExactly("coffee");
+    }
+
+    @Test
+    public void addPlace_pastTheMaximum_keepsTheMostRecent() throws IOException {
+        RecentsStore store = createStore();
+        for (int i = 0; i < 30; i++) {
+            store.addPlace(createPlace(Integer.toString(i), "Place " + i));
+        }
+
+        assertThat(store.getRecentPlaces()).hasSize(20);
+        assertThat(reopen().getRecentPlaces()).hasSize(20);
+    }
+
+    /** Returns a store that writes its log right away. */
+    private RecentsStore createStore() {
+        return new RecentsStore(mFile, Runnable::run);
+    }
+
+    private RecentsStore reopen() throws IOException {
+        RecentsStore store = createStore();
+        store.load();
+        return store;
+    }
+
+    private static PlaceInfo createPlace(String id, String name) {
+        return new PlaceInfo(id, name, createLocation(37.42, -122.08));
+    }
+}
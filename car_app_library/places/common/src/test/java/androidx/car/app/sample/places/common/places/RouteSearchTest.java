@@ -0,0 +1,124 @@
+/*
+ * Copyright (C) 2021 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package androidx.car.app.sample.places.common.places;
+
+import static androidx.car.app.sample.places.common.places.PlaceMergerTest.createLocation;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import android.location.Location;
+
+import androidx.annotation.NonNull;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.internal.DoNotInstrument;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/** Tests that {@link RouteSearch} finds the places within the corridor around a route. */
+@RunWith(RobolectricTestRunner.class)
+@DoNotInstrument
+public class RouteSearchTest {
+    private static final double LATITUDE = 37.42;
+    private static final double LONGITUDE = -122.08;
+    private static final double METERS_PER_DEGREE = Math.toRadians(1) * 6371000;
+    private static final int CORRIDOR_WIDTH_METERS = 1000;
+
+    // A route 2 km north, searched with circles 1 km apart.
+    private static final List<Location> ROUTE =
+            Arrays.asList(createLocation(LATITUDE, LONGITUDE), createPoint(2000, 0));
+
+    private final FakePlaceFinder mPlaceFinder = new FakePlaceFinder();
+    private final RouteSearch mSearch =
+            new RouteSearch(mPlaceFinder, MoreExecutors.newDirectExecutorService(), 2);
+
+    @Test
+    public void getPlacesAlongRoute_ordersThePlacesByDetour() throws Exception {
+        PlaceInfo onRoute = createPlace("on route", 1000, 0);
+        PlaceInfo near = createPlace("near", 500, 200);
+        PlaceInfo farther = createPlace("farther", 1500, -400);
+        mPlaceFinder.mPlaces = Arrays.asList(farther, onRoute, near);
+
+        List<PlaceInfo> places = search(null);
+
+        assertThat(places).containsExactly(onRoute, near, farther).inOrder();
+        assertThat(mPlaceFinder.mQueryCount).isEqualTo(3);
+    }
+
+    @Test
+    public void getPlacesAlongRoute_dropsThePlacesOutsideTheCorridor() throws Exception {
+        PlaceInfo inside = createPlace("inside", 1000, 450);
+        // Within the search circle around the middle of the route, but out of the corridor.
+        PlaceInfo outside = createPlace("outside", 1000, 600);
+        PlaceInfo beforeStart = createPlace("before start", -600, 0);
+        mPlaceFinder.mPlaces = Arrays.asList(outside, inside, beforeStart);
+
+        List<PlaceInfo> places = search(null);
+
+        assertThat(places).containsExactly(inside);
+    }
+
+    @Test
+    public void getPlacesAlongRoute_deliversTheResultLast() throws Exception {
+        mPlaceFinder.mPlaces = Arrays.asList(createPlace("a", 0, 100), createPlace("b", 0, 200));
+        List<List<PlaceInfo>> delivered = new ArrayList<>();
+
+        List<PlaceInfo> places = search(delivered::add);
+
+        assertThat(delivered).hasSize(3);
+        assertThat(delivered.get(delivered.size() - 1)).isEqualTo(places);
+    }
+
+    private List<PlaceInfo> search(RouteSearch.Listener listener) throws Exception {
+        return mSearch.getPlacesAlongRoute(ROUTE, CORRIDOR_WIDTH_METERS, 10, "gas_station",
+                listener, MoreExecutors.directExecutor()).get();
+    }
+
+    private static PlaceInfo createPlace(String id, double metersNorth, double metersEast) {
+        return new PlaceInfo(id, id, createPoint(metersNorth, metersEast));
+    }
+
+    /** Returns the location the given distances from the start of the route. */
+    private static Location createPoint(double metersNorth, double metersEast) {
+        return createLocation(LATITUDE + metersNorth / METERS_PER_DEGREE,
+                LONGITUDE + metersEast / METERS_PER_DEGREE / Math.cos(Math.toRadians(LATITUDE)));
+    }
+
+    /** Returns the same places for every part of the route. */
+    private static class FakePlaceFinder extends PlaceFinder {
+        List<PlaceInfo> mPlaces;
+        int mQueryCount;
+
+        FakePlaceFinder() {
+            super("key");
+        }
+
+        @NonNull
+        @Override
+        public List<PlaceInfo> getPlacesByCategory(@NonNull Location location, double radius,
+                int maxCount, @NonNull String category) {
+            mQueryCount++;
+            return mPlaces;
+        }
+    }
+}
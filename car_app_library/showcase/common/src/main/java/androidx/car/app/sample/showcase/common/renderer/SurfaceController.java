@@ -32,7 +32,12 @@ import androidx.lifecycle.DefaultLifecycleObserver;
 import androidx.lifecycle.Lifecycle;
 import androidx.lifecycle.LifecycleOwner;
 
-/** A very simple implementation of a renderer for the app's background surface. */
+/**
+ * A very simple implementation of a renderer for the app's background surface.
+ *
+ * <p>The time each frame takes is recorded in a {@link FrameStats}, which can be drawn over the
+ * surface with {@link #setShowFrameStats}.
+ */
 public final class SurfaceController implements DefaultLifecycleObserver {
     private static final String TAG = "showcase";
 
@@ -40,6 +45,9 @@ public final class SurfaceController implements DefaultLifecycleObserver {
     @Nullable private Renderer mOverrideRenderer;
 
     private final CarContext mCarContext;
+    private final FrameStats mFrameStats = new FrameStats();
+    private boolean mShowFrameStats;
+    private final Rect mFrameStatsArea = new Rect();
     @Nullable
     Surface mSurface;
     @Nullable
@@ -118,18 +126,37 @@ public final class SurfaceController implements DefaultLifecycleObserver {
         }
     }
 
+    /** Returns the stats of the frames rendered so far, e.g. to dump them. */
+    @NonNull
+    public FrameStats getFrameStats() {
+        return mFrameStats;
+    }
+
+    /** Sets whether to draw the stats of the frames over the surface. */
+    public void setShowFrameStats(boolean showFrameStats) {
+        mShowFrameStats = showFrameStats;
+        renderFrame();
+    }
+
     @Override
     public void onCreate(@NonNull LifecycleOwner owner) {
         Log.i(TAG, "SurfaceController created");
         mCarContext.getCarService(AppManager.class).setSurfaceCallback(mSurfaceCallback);
     }
 
+    @Override
+    public void onDestroy(@NonNull LifecycleOwner owner) {
+        Log.i(TAG, "SurfaceController destroyed, frames: " + mFrameStats);
+    }
+
     void renderFrame() {
         if (mSurface == null || !mSurface.isValid()) {
             // Surface is not available, or has been destroyed, skip this frame.
             return;
         }
+        long startNanos = System.nanoTime();
         Canvas canvas = mSurface.lockCanvas(null);
+        long lockedNanos = System.nanoTime();
 
         // Clear the background.
         canvas.drawColor(mCarContext.isDarkMode() ? Color.DKGRAY : Color.LTGRAY);
@@ -139,7 +166,16 @@ public final class SurfaceController implements DefaultLifecycleObserver {
         } else {
             mDefaultRenderer.renderFrame(canvas, mVisibleArea, mStableArea);
         }
+        if (mShowFrameStats) {
+            if (mVisibleArea != null && !mVisibleArea.isEmpty()) {
+                mFrameStatsArea.set(mVisibleArea);
+            } else {
+                canvas.getClipBounds(mFrameStatsArea);
+            }
+            mFrameStats.drawOverlay(canvas, mFrameStatsArea);
+        }
+        long drawnNanos = System.nanoTime();
         mSurface.unlockCanvasAndPost(canvas);
-
+        mFrameStats.recordFrame(startNanos, lockedNanos, drawnNanos, System.nanoTime());
     }
 }